@@ -0,0 +1,144 @@
+package com.seckill.cache.client;
+
+import com.seckill.common.api.cache.vo.HashTag;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 一致性哈希路由：把 key 映射到某个节点
+ * <p>
+ * 1. 每个节点在哈希环上放置 virtualNodes 个虚拟节点，按节点名称计算位置，节点的顺序不影响路由结果
+ * 2. 增加/删除一个节点时，只有约 1/N 的key改变所在节点
+ * 3. key 中含有 hash tag（{...}）时只按 tag 路由，见 HashTag
+ *
+ * @param <T> 节点类型
+ */
+public class ConsistentHashRouter<T>
+{
+    public static final int DEFAULT_VIRTUAL_NODES = 160;
+
+    private final List<String> names;
+
+    private final List<T> nodes;
+
+    /**
+     * 虚拟节点在环上的位置（升序）
+     */
+    private final long[] ring;
+
+    /**
+     * 与 ring 对应的节点下标
+     */
+    private final int[] owners;
+
+    public ConsistentHashRouter(List<String> names, List<T> nodes)
+    {
+        this(names, nodes, DEFAULT_VIRTUAL_NODES);
+    }
+
+    /**
+     * @param names        节点名称（如 host:port），决定节点在环上的位置，不能重复
+     * @param nodes        与名称一一对应的节点
+     * @param virtualNodes 每个节点的虚拟节点数量
+     */
+    public ConsistentHashRouter(List<String> names, List<T> nodes, int virtualNodes)
+    {
+        if (names.isEmpty() || names.size() != nodes.size())
+            throw new IllegalArgumentException("names and nodes must be non-empty and of the same size");
+        if (virtualNodes <= 0)
+            throw new IllegalArgumentException("virtualNodes must be positive: " + virtualNodes);
+
+        this.names = Collections.unmodifiableList(new ArrayList<>(names));
+        this.nodes = Collections.unmodifiableList(new ArrayList<>(nodes));
+
+        int size = names.size() * virtualNodes;
+        long[] points = new long[size];
+        int[] pointOwners = new int[size];
+        long[] packed = new long[size];
+        for (int node = 0; node < names.size(); node++)
+        {
+            for (int i = 0; i < virtualNodes; i++)
+            {
+                int index = node * virtualNodes + i;
+                points[index] = hash(names.get(node) + "#" + i);
+            }
+        }
+        // 按位置排序，同时保持位置与节点的对应关系
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++)
+            order[i] = i;
+        Arrays.sort(order, (a, b) -> Long.compare(points[a], points[b]));
+        for (int i = 0; i < size; i++)
+        {
+            packed[i] = points[order[i]];
+            pointOwners[i] = order[i] / virtualNodes;
+        }
+        this.ring = packed;
+        this.owners = pointOwners;
+    }
+
+    /**
+     * @param key 带前缀的真实key
+     * @return key 所在的节点
+     */
+    public T route(String key)
+    {
+        return nodes.get(indexOf(key));
+    }
+
+    /**
+     * @param key 带前缀的真实key
+     * @return key 所在节点的下标（与构造时的顺序一致）
+     */
+    public int indexOf(String key)
+    {
+        if (nodes.size() == 1)
+            return 0;
+        long point = hash(HashTag.routingKey(key));
+        int index = Arrays.binarySearch(ring, point);
+        if (index < 0)
+            index = -index - 1;
+        // 超过环上最大的位置时回到第一个虚拟节点
+        if (index == ring.length)
+            index = 0;
+        return owners[index];
+    }
+
+    public List<String> getNames()
+    {
+        return names;
+    }
+
+    public List<T> getNodes()
+    {
+        return nodes;
+    }
+
+    public int size()
+    {
+        return nodes.size();
+    }
+
+    /**
+     * 64 位 FNV-1a，再经过 murmur3 的混合函数打散
+     */
+    static long hash(String value)
+    {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8))
+        {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
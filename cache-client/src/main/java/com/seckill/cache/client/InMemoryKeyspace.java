@@ -0,0 +1,277 @@
+package com.seckill.cache.client;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * 进程内的 key -> byte[] 存储，模拟 redis 的单个数据库，供 InMemoryRedisClient 使用
+ * <p>
+ * 1. 每个key可以带过期时间，过期的key在访问时删除（与redis的惰性删除一致），也可以调用 purgeExpired() 主动清理
+ * 2. 单个key上的读-改-写（自增、SETNX、EXPIRE）通过 ConcurrentHashMap.compute 原子地完成
+ * 3. 时间由 clock 提供，测试时可以传入手动推进的时钟，不需要等待真实的过期时间
+ */
+public class InMemoryKeyspace
+{
+    /**
+     * 不过期
+     */
+    private static final long NEVER = Long.MAX_VALUE;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final LongSupplier clock;
+
+    public InMemoryKeyspace()
+    {
+        this(System::currentTimeMillis);
+    }
+
+    /**
+     * @param clock 当前时间（毫秒）
+     */
+    public InMemoryKeyspace(LongSupplier clock)
+    {
+        this.clock = clock;
+    }
+
+    public byte[] get(String key)
+    {
+        Entry entry = live(key);
+        return entry == null ? null : entry.value;
+    }
+
+    public boolean exists(String key)
+    {
+        return live(key) != null;
+    }
+
+    /**
+     * 写入值，覆盖原有的过期时间（SET/SETEX/PSETEX）
+     *
+     * @param ttlMillis 不大于0表示不过期
+     */
+    public void set(String key, byte[] value, long ttlMillis)
+    {
+        entries.put(key, new Entry(value, expireAt(ttlMillis)));
+    }
+
+    /**
+     * key 不存在（或已过期）时才写入（SET NX PX）
+     *
+     * @param ttlMillis 不大于0表示不过期
+     * @return 写入成功返回 true
+     */
+    public boolean setIfAbsent(String key, byte[] value, long ttlMillis)
+    {
+        long now = clock.getAsLong();
+        boolean[] written = new boolean[1];
+        entries.compute(key, (k, entry) -> {
+            if (entry != null && !entry.isExpired(now))
+                return entry;
+            written[0] = true;
+            return new Entry(value, ttlMillis > 0 ? now + ttlMillis : NEVER);
+        });
+        return written[0];
+    }
+
+    /**
+     * 对整数值增加 delta，key 不存在时从0开始且不过期，存在时保留原有的过期时间（INCRBY）
+     *
+     * @return 增加之后的值
+     * @throws IllegalStateException 值不是整数
+     */
+    public long incrBy(String key, long delta)
+    {
+        long now = clock.getAsLong();
+        long[] result = new long[1];
+        entries.compute(key, (k, entry) -> {
+            boolean live = entry != null && !entry.isExpired(now);
+            result[0] = (live ? toLong(k, entry.value) : 0) + delta;
+            return new Entry(toBytes(result[0]), live ? entry.expireAt : NEVER);
+        });
+        return result[0];
+    }
+
+    /**
+     * 从整数值中扣减至多 max，扣减后不小于0，key 不存在时不创建
+     *
+     * @return 实际扣减的数量
+     */
+    public long decrAtMost(String key, long max)
+    {
+        long now = clock.getAsLong();
+        long[] taken = new long[1];
+        entries.computeIfPresent(key, (k, entry) -> {
+            if (entry.isExpired(now))
+                return null;
+            long value = toLong(k, entry.value);
+            if (value <= 0)
+                return entry;
+            taken[0] = Math.min(value, max);
+            return new Entry(toBytes(value - taken[0]), entry.expireAt);
+        });
+        return taken[0];
+    }
+
+    /**
+     * 将位图中的若干位置为1，位图按需扩展，保留原有的过期时间（SETBIT）
+     * <p>
+     * 位的顺序与redis一致：下标0为第一个字节的最高位
+     *
+     * @return 原来为0、本次新置为1的位的数量
+     */
+    public long setBits(String key, long[] offsets)
+    {
+        long now = clock.getAsLong();
+        long[] changed = new long[1];
+        entries.compute(key, (k, entry) -> {
+            boolean live = entry != null && !entry.isExpired(now);
+            byte[] bits = live ? entry.value : new byte[0];
+            long maxOffset = -1;
+            for (long offset : offsets)
+                maxOffset = Math.max(maxOffset, offset);
+            if (maxOffset >= (long) bits.length * 8)
+                bits = Arrays.copyOf(bits, (int) (maxOffset / 8) + 1);
+            else
+                bits = bits.clone();
+            for (long offset : offsets)
+            {
+                int index = (int) (offset >>> 3);
+                int mask = 0x80 >>> (int) (offset & 7);
+                if ((bits[index] & mask) == 0)
+                {
+                    bits[index] |= mask;
+                    changed[0]++;
+                }
+            }
+            return new Entry(bits, live ? entry.expireAt : NEVER);
+        });
+        return changed[0];
+    }
+
+    /**
+     * 读取位图中的若干位，key 不存在或超出位图长度的位为0（GETBIT）
+     */
+    public boolean[] getBits(String key, long[] offsets)
+    {
+        Entry entry = live(key);
+        byte[] bits = entry == null ? new byte[0] : entry.value;
+        boolean[] result = new boolean[offsets.length];
+        for (int i = 0; i < offsets.length; i++)
+        {
+            long index = offsets[i] >>> 3;
+            result[i] = index < bits.length && (bits[(int) index] & (0x80 >>> (int) (offsets[i] & 7))) != 0;
+        }
+        return result;
+    }
+
+    /**
+     * @return key 存在并被删除返回 true
+     */
+    public boolean delete(String key)
+    {
+        Entry removed = entries.remove(key);
+        return removed != null && !removed.isExpired(clock.getAsLong());
+    }
+
+    /**
+     * 重新设置过期时间（EXPIRE），ttlMillis 不大于0时与redis一样直接删除key
+     *
+     * @return key 存在返回 true
+     */
+    public boolean expire(String key, long ttlMillis)
+    {
+        if (ttlMillis <= 0)
+            return delete(key);
+
+        long now = clock.getAsLong();
+        boolean[] updated = new boolean[1];
+        entries.computeIfPresent(key, (k, entry) -> {
+            if (entry.isExpired(now))
+                return null;
+            updated[0] = true;
+            return new Entry(entry.value, now + ttlMillis);
+        });
+        return updated[0];
+    }
+
+    /**
+     * 删除所有已过期的key
+     *
+     * @return 删除的数量
+     */
+    public int purgeExpired()
+    {
+        long now = clock.getAsLong();
+        int purged = 0;
+        for (Map.Entry<String, Entry> e : entries.entrySet())
+        {
+            if (e.getValue().isExpired(now) && entries.remove(e.getKey(), e.getValue()))
+                purged++;
+        }
+        return purged;
+    }
+
+    /**
+     * 清空所有key（FLUSHDB）
+     */
+    public void clear()
+    {
+        entries.clear();
+    }
+
+    private Entry live(String key)
+    {
+        Entry entry = entries.get(key);
+        if (entry == null)
+            return null;
+        if (entry.isExpired(clock.getAsLong()))
+        {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry;
+    }
+
+    private long expireAt(long ttlMillis)
+    {
+        return ttlMillis > 0 ? clock.getAsLong() + ttlMillis : NEVER;
+    }
+
+    private static long toLong(String key, byte[] value)
+    {
+        try
+        {
+            return Long.parseLong(new String(value, StandardCharsets.UTF_8));
+        } catch (NumberFormatException e)
+        {
+            throw new IllegalStateException("value is not an integer: " + key, e);
+        }
+    }
+
+    private static byte[] toBytes(long value)
+    {
+        return Long.toString(value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static final class Entry
+    {
+        final byte[] value;
+
+        final long expireAt;
+
+        Entry(byte[] value, long expireAt)
+        {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+
+        boolean isExpired(long now)
+        {
+            return expireAt <= now;
+        }
+    }
+}
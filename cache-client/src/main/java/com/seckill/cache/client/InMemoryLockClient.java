@@ -0,0 +1,123 @@
+package com.seckill.cache.client;
+
+import com.seckill.common.api.cache.DLockApi;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * 进程内的分布式锁实现，语义与 JedisLockClient 一致：
+ * 可重入（按 uniqueValue 计数），租期到期自动释放，只有持有者才能续期和解锁
+ * <p>
+ * 所有操作在同一个监视器上执行，锁释放时直接唤醒等待的 tryLock，相当于 redis 频道的释放通知
+ */
+public class InMemoryLockClient implements DLockApi
+{
+    private final LongSupplier clock;
+
+    private final Map<String, Holder> holders = new HashMap<>();
+
+    public InMemoryLockClient()
+    {
+        this(System::currentTimeMillis);
+    }
+
+    /**
+     * @param clock 当前时间（毫秒），测试时可以传入手动推进的时钟
+     */
+    public InMemoryLockClient(LongSupplier clock)
+    {
+        this.clock = clock;
+    }
+
+    @Override
+    public boolean lock(String lockKey, String uniqueValue, int expireTime)
+    {
+        return tryLock(lockKey, uniqueValue, 0, expireTime);
+    }
+
+    @Override
+    public synchronized boolean tryLock(String lockKey, String uniqueValue, long waitMillis, long leaseMillis)
+    {
+        long deadline = System.currentTimeMillis() + waitMillis;
+        while (true)
+        {
+            Holder holder = live(lockKey);
+            if (holder == null)
+            {
+                holders.put(lockKey, new Holder(uniqueValue, clock.getAsLong() + leaseMillis));
+                return true;
+            }
+            if (holder.owner.equals(uniqueValue))
+            {
+                holder.count++;
+                holder.expireAt = clock.getAsLong() + leaseMillis;
+                return true;
+            }
+
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0)
+                return false;
+            try
+            {
+                // 锁可能在等待期间过期，最多等到过期时间再检查
+                wait(Math.max(1, Math.min(remaining, holder.expireAt - clock.getAsLong())));
+            } catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public synchronized boolean renew(String lockKey, String uniqueValue, long leaseMillis)
+    {
+        Holder holder = live(lockKey);
+        if (holder == null || !holder.owner.equals(uniqueValue))
+            return false;
+        holder.expireAt = clock.getAsLong() + leaseMillis;
+        return true;
+    }
+
+    @Override
+    public synchronized boolean unlock(String lockKey, String uniqueValue)
+    {
+        Holder holder = live(lockKey);
+        if (holder == null || !holder.owner.equals(uniqueValue))
+            return false;
+        if (--holder.count == 0)
+        {
+            holders.remove(lockKey);
+            notifyAll();
+        }
+        return true;
+    }
+
+    private Holder live(String lockKey)
+    {
+        Holder holder = holders.get(lockKey);
+        if (holder != null && holder.expireAt <= clock.getAsLong())
+        {
+            holders.remove(lockKey);
+            return null;
+        }
+        return holder;
+    }
+
+    private static final class Holder
+    {
+        final String owner;
+
+        int count = 1;
+
+        long expireAt;
+
+        Holder(String owner, long expireAt)
+        {
+            this.owner = owner;
+            this.expireAt = expireAt;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.seckill.cache.client;
+
+import com.seckill.common.api.cache.RedisServiceApi;
+import com.seckill.common.api.cache.vo.AdmissionResult;
+import com.seckill.common.api.cache.vo.KeyPrefix;
+import com.seckill.common.api.cache.vo.RedisBatch;
+import com.seckill.common.api.cache.vo.RedisBatchResult;
+import com.seckill.common.codec.ValueCodecs;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 进程内的 RedisServiceApi 实现，不需要redis，用于本地运行、基准测试的对照组和确定性的并发测试
+ * <p>
+ * 1. 值按 KeyPrefix.codec() 编码为 byte[] 后保存，读取时重新解码，与 JedisRedisClient 的行为一致（调用方拿到的是副本）
+ * 2. 过期时间、自增/自减、SETNX 的语义与redis一致，见 InMemoryKeyspace
+ * 3. admit 先写入购买标记再扣减库存，库存不足时撤销标记：
+ *    与lua脚本的区别仅在于，售罄的请求在撤销之前的极短时间内，同一用户的重复请求会得到 DUPLICATE 而不是 SOLD_OUT
+ * 4. 没有其他进程订阅，publish 不做任何事
+ * 5. admitAndEnqueue 的消息保存在进程内的队列中，只能通过 streamEntries 读取（没有消费组）
+ */
+@Slf4j
+public class InMemoryRedisClient implements RedisServiceApi
+{
+    private static final byte[] MARK = "1".getBytes(StandardCharsets.UTF_8);
+
+    private final InMemoryKeyspace keyspace;
+
+    /**
+     * stream -> 追加的消息
+     */
+    private final Map<String, Queue<byte[]>> streams = new ConcurrentHashMap<>();
+
+    public InMemoryRedisClient()
+    {
+        this(new InMemoryKeyspace());
+    }
+
+    public InMemoryRedisClient(InMemoryKeyspace keyspace)
+    {
+        this.keyspace = keyspace;
+    }
+
+    public InMemoryKeyspace getKeyspace()
+    {
+        return keyspace;
+    }
+
+    @Override
+    public <T> T get(KeyPrefix prefix, String key, Class<T> clazz)
+    {
+        return ValueCodecs.of(prefix).decode(keyspace.get(prefix.getPrefix() + key), clazz);
+    }
+
+    @Override
+    public <T> boolean set(KeyPrefix prefix, String key, T value)
+    {
+        keyspace.set(prefix.getPrefix() + key, ValueCodecs.of(prefix).encode(value), ttlMillis(prefix));
+        return true;
+    }
+
+    @Override
+    public boolean exists(KeyPrefix keyPrefix, String key)
+    {
+        return keyspace.exists(keyPrefix.getPrefix() + key);
+    }
+
+    @Override
+    public long incr(KeyPrefix keyPrefix, String key)
+    {
+        return keyspace.incrBy(keyPrefix.getPrefix() + key, 1);
+    }
+
+    @Override
+    public long decr(KeyPrefix keyPrefix, String key)
+    {
+        return keyspace.incrBy(keyPrefix.getPrefix() + key, -1);
+    }
+
+    @Override
+    public boolean delete(KeyPrefix prefix, String key)
+    {
+        return keyspace.delete(prefix.getPrefix() + key);
+    }
+
+    @Override
+    public AdmissionResult admit(KeyPrefix stockPrefix, String stockKey, KeyPrefix markPrefix, String markKey)
+    {
+        String realMarkKey = markPrefix.getPrefix() + markKey;
+        if (!keyspace.setIfAbsent(realMarkKey, MARK, ttlMillis(markPrefix)))
+            return AdmissionResult.DUPLICATE;
+
+        if (keyspace.decrAtMost(stockPrefix.getPrefix() + stockKey, 1) == 1)
+            return AdmissionResult.ADMITTED;
+
+        keyspace.delete(realMarkKey);
+        return AdmissionResult.SOLD_OUT;
+    }
+
+    @Override
+    public boolean release(KeyPrefix stockPrefix, String stockKey, KeyPrefix markPrefix, String markKey)
+    {
+        if (!keyspace.delete(markPrefix.getPrefix() + markKey))
+            return false;
+        keyspace.incrBy(stockPrefix.getPrefix() + stockKey, 1);
+        return true;
+    }
+
+    @Override
+    public AdmissionResult admitAndEnqueue(KeyPrefix stockPrefix, String stockKey, KeyPrefix markPrefix, String markKey,
+                                           String stream, String field, byte[] message)
+    {
+        AdmissionResult result = admit(stockPrefix, stockKey, markPrefix, markKey);
+        if (result == AdmissionResult.ADMITTED)
+            streams.computeIfAbsent(stream, s -> new ConcurrentLinkedQueue<>()).add(message.clone());
+        return result;
+    }
+
+    /**
+     * @return admitAndEnqueue 追加到 stream 的消息，按追加的顺序
+     */
+    public List<byte[]> streamEntries(String stream)
+    {
+        Queue<byte[]> entries = streams.get(stream);
+        return entries == null ? new ArrayList<>() : new ArrayList<>(entries);
+    }
+
+    @Override
+    public <T> boolean setIfAbsent(KeyPrefix prefix, String key, T value)
+    {
+        return keyspace.setIfAbsent(prefix.getPrefix() + key, ValueCodecs.of(prefix).encode(value), ttlMillis(prefix));
+    }
+
+    @Override
+    public long incrBy(KeyPrefix keyPrefix, String key, long delta)
+    {
+        return keyspace.incrBy(keyPrefix.getPrefix() + key, delta);
+    }
+
+    @Override
+    public long decrAtMost(KeyPrefix keyPrefix, String key, long max)
+    {
+        return keyspace.decrAtMost(keyPrefix.getPrefix() + key, max);
+    }
+
+    @Override
+    public long publish(String channel, String message)
+    {
+        log.debug("in-memory publish ignored: channel-{}, message-{}", channel, message);
+        return 0;
+    }
+
+    @Override
+    public long setBits(KeyPrefix prefix, String key, long[] offsets)
+    {
+        return keyspace.setBits(prefix.getPrefix() + key, offsets);
+    }
+
+    @Override
+    public boolean[] getBits(KeyPrefix prefix, String key, long[] offsets)
+    {
+        return keyspace.getBits(prefix.getPrefix() + key, offsets);
+    }
+
+    /**
+     * 依次执行，结果类型与 JedisRedisClient.executeBatch 一致
+     */
+    @Override
+    public RedisBatchResult executeBatch(RedisBatch batch)
+    {
+        List<Object> results = new ArrayList<>(batch.size());
+        for (RedisBatch.Operation operation : batch.getOperations())
+        {
+            KeyPrefix prefix = operation.getPrefix();
+            String key = operation.getKey();
+            switch (operation.getType())
+            {
+                case GET:
+                    results.add(get(prefix, key, operation.getValueClass()));
+                    break;
+                case SET:
+                    results.add(set(prefix, key, operation.getValue()));
+                    break;
+                case SET_IF_ABSENT:
+                    results.add(setIfAbsent(prefix, key, operation.getValue()));
+                    break;
+                case EXISTS:
+                    results.add(exists(prefix, key));
+                    break;
+                case INCR:
+                    results.add(incr(prefix, key));
+                    break;
+                case DECR:
+                    results.add(decr(prefix, key));
+                    break;
+                case DELETE:
+                    results.add(delete(prefix, key));
+                    break;
+                case EXPIRE:
+                    results.add(keyspace.expire(operation.getRealKey(), ttlMillis(prefix)));
+                    break;
+                default:
+                    throw new IllegalArgumentException("unsupported batch operation: " + operation.getType());
+            }
+        }
+        return new RedisBatchResult(results);
+    }
+
+    private static long ttlMillis(KeyPrefix prefix)
+    {
+        return prefix.expireSeconds() * 1000L;
+    }
+}
@@ -0,0 +1,214 @@
+package com.seckill.cache.client;
+
+import com.seckill.common.api.cache.DLockApi;
+import lombok.extern.slf4j.Slf4j;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 基于 JedisPool 的分布式锁实现
+ * <p>
+ * 锁保存为 hash：field 为持有者的 uniqueValue，value 为重入次数，整个key带过期时间（租期）；
+ * 最后一次解锁时删除key并向 RELEASE_CHANNEL 发布锁名，等待中的 tryLock 收到后立即重试
+ */
+@Slf4j
+public class JedisLockClient implements DLockApi, Closeable
+{
+    /**
+     * 锁释放通知的频道，消息为锁名
+     */
+    public static final String RELEASE_CHANNEL = "seckill:lock:released";
+
+    private static final long MIN_BACKOFF_MILLIS = 10;
+
+    private static final long MAX_BACKOFF_MILLIS = 200;
+
+    /**
+     * 加锁脚本
+     * KEYS[1]: 锁, ARGV[1]: 持有者, ARGV[2]: 租期（毫秒）
+     * 获取成功（包括重入）返回 nil，否则返回锁的剩余时间（毫秒）
+     */
+    private static final LuaScript ACQUIRE_SCRIPT = new LuaScript(
+            "if redis.call('exists', KEYS[1]) == 0 or redis.call('hexists', KEYS[1], ARGV[1]) == 1 then " +
+            "redis.call('hincrby', KEYS[1], ARGV[1], 1) " +
+            "redis.call('pexpire', KEYS[1], ARGV[2]) " +
+            "return nil end " +
+            "return redis.call('pttl', KEYS[1])");
+
+    /**
+     * 续期脚本，返回 1: 成功, 0: 不再持有
+     */
+    private static final LuaScript RENEW_SCRIPT = new LuaScript(
+            "if redis.call('hexists', KEYS[1], ARGV[1]) == 1 then " +
+            "redis.call('pexpire', KEYS[1], ARGV[2]) " +
+            "return 1 end " +
+            "return 0");
+
+    /**
+     * 解锁脚本
+     * KEYS[1]: 锁, ARGV[1]: 持有者, ARGV[2]: 释放通知的频道
+     * 返回 -1: 不是持有者, 0: 已释放, 大于0: 剩余的重入次数
+     */
+    private static final LuaScript RELEASE_SCRIPT = new LuaScript(
+            "if redis.call('hexists', KEYS[1], ARGV[1]) == 0 then return -1 end " +
+            "local count = redis.call('hincrby', KEYS[1], ARGV[1], -1) " +
+            "if count > 0 then return count end " +
+            "redis.call('del', KEYS[1]) " +
+            "redis.call('publish', ARGV[2], KEYS[1]) " +
+            "return 0");
+
+    protected JedisPool jedisPool;
+
+    /**
+     * 任意锁释放时唤醒本进程中所有等待的线程，由它们各自重试
+     */
+    private final Object releaseSignal = new Object();
+
+    private RedisChannelSubscriber subscriber;
+
+    public JedisLockClient(JedisPool jedisPool)
+    {
+        this.jedisPool = jedisPool;
+    }
+
+    /**
+     * 订阅锁释放通知；不订阅时 tryLock 只按退避间隔重试
+     */
+    public void subscribe(String host, int port, int timeout)
+    {
+        subscriber = new RedisChannelSubscriber(host, port, timeout, RELEASE_CHANNEL, lockKey -> {
+            synchronized (releaseSignal)
+            {
+                releaseSignal.notifyAll();
+            }
+        });
+        subscriber.start();
+    }
+
+    @Override
+    public void close()
+    {
+        if (subscriber != null)
+            subscriber.close();
+    }
+
+    /**
+     * 获取锁
+     * @param lockKey     锁
+     * @param uniqueValue 能够唯一标识请求的值，以此保证锁的加解锁是同一个客户端
+     * @param expireTime  过期时间, 单位：milliseconds
+     * @return
+     */
+    @Override
+    public boolean lock(String lockKey, String uniqueValue, int expireTime)
+    {
+        return tryLock(lockKey, uniqueValue, 0, expireTime);
+    }
+
+    @Override
+    public boolean tryLock(String lockKey, String uniqueValue, long waitMillis, long leaseMillis)
+    {
+        long deadline = System.currentTimeMillis() + waitMillis;
+        long backoff = MIN_BACKOFF_MILLIS;
+        while (true)
+        {
+            Long ttl = acquire(lockKey, uniqueValue, leaseMillis);
+            if (ttl == null)
+                return true;
+
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0)
+                return false;
+
+            // 随机退避，避免等待者同时重试；锁快要过期时提前醒来
+            long sleep = ThreadLocalRandom.current().nextLong(backoff / 2, backoff + 1);
+            if (ttl > 0)
+                sleep = Math.min(sleep, ttl);
+            if (!awaitRelease(Math.min(sleep, remaining)))
+                return false;
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+        }
+    }
+
+    @Override
+    public boolean renew(String lockKey, String uniqueValue, long leaseMillis)
+    {
+        Jedis jedis=null;
+        try{
+            jedis=jedisPool.getResource();
+            Object result=RENEW_SCRIPT.eval(jedis,Collections.singletonList(lockKey),
+                    Arrays.asList(uniqueValue,String.valueOf(leaseMillis)));
+            return Long.valueOf(1).equals(result);
+        }finally
+        {
+            if(jedis!=null)
+                jedis.close();
+        }
+    }
+
+    /**
+     * 释放锁
+     * @param lockKey     锁
+     * @param uniqueValue 能够唯一标识请求的值，以此保证锁的加解锁是同一个客户端
+     * @return
+     */
+    @Override
+    public boolean unlock(String lockKey, String uniqueValue)
+    {
+        Jedis jedis=null;
+        try{
+            jedis=jedisPool.getResource();
+            Object result=RELEASE_SCRIPT.eval(jedis,Collections.singletonList(lockKey),
+                    Arrays.asList(uniqueValue,RELEASE_CHANNEL));
+            return result instanceof Long && (Long) result>=0;
+        }finally
+        {
+            if(jedis!=null)
+                jedis.close();
+        }
+    }
+
+    /**
+     * 尝试一次加锁，连接在等待之前归还连接池
+     *
+     * @return 获取成功返回 null，否则返回锁的剩余时间（毫秒）
+     */
+    private Long acquire(String lockKey, String uniqueValue, long leaseMillis)
+    {
+        Jedis jedis=null;
+        try{
+            jedis=jedisPool.getResource();
+            return (Long) ACQUIRE_SCRIPT.eval(jedis,Collections.singletonList(lockKey),
+                    Arrays.asList(uniqueValue,String.valueOf(leaseMillis)));
+        }finally
+        {
+            if(jedis!=null)
+                jedis.close();
+        }
+    }
+
+    /**
+     * @return 等待期间被中断时返回 false
+     */
+    private boolean awaitRelease(long millis)
+    {
+        synchronized (releaseSignal)
+        {
+            try
+            {
+                releaseSignal.wait(millis);
+                return true;
+            } catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                log.warn("等待锁时被中断");
+                return false;
+            }
+        }
+    }
+}
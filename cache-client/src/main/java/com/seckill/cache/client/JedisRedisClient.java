@@ -0,0 +1,567 @@
+package com.seckill.cache.client;
+
+import com.seckill.common.api.cache.RedisServiceApi;
+import com.seckill.common.api.cache.vo.AdmissionResult;
+import com.seckill.common.api.cache.vo.KeyPrefix;
+import com.seckill.common.api.cache.vo.RedisBatch;
+import com.seckill.common.api.cache.vo.RedisBatchResult;
+import com.seckill.common.codec.ValueCodec;
+import com.seckill.common.codec.ValueCodecs;
+import lombok.extern.slf4j.Slf4j;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.util.SafeEncoder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 基于 JedisPool 的 redis 服务实现
+ * <p>
+ * cache 模块通过 dubbo 暴露该实现；其他模块也可以直接在进程内使用，省去一次 dubbo 调用
+ * <p>
+ * 缓存值按 KeyPrefix.codec() 选择的编解码器转换为 byte[]，通过 jedis 的二进制命令读写
+ */
+@Slf4j
+public class JedisRedisClient implements RedisServiceApi
+{
+
+    protected JedisPool jedisPool;
+
+    /**
+     * 写入启用了近端缓存的前缀时是否发布失效消息；作为分片使用时由 ShardedRedisClient 统一向主节点发布
+     */
+    private boolean nearCacheInvalidation = true;
+
+    private static final byte[] NX=SafeEncoder.encode("NX");
+    private static final byte[] EX=SafeEncoder.encode("EX");
+
+    /**
+     * 秒杀资格判定脚本
+     * KEYS[1]: 库存, KEYS[2]: 购买标记
+     * ARGV[1]: 购买标记的过期时间（秒），不大于0表示不过期
+     * 返回 0: 获得资格, 1: 库存不足, 2: 重复秒杀
+     */
+    private static final LuaScript ADMIT_SCRIPT = new LuaScript(
+            "if redis.call('exists', KEYS[2]) == 1 then return 2 end " +
+            "local stock = tonumber(redis.call('get', KEYS[1])) " +
+            "if stock == nil or stock <= 0 then return 1 end " +
+            "redis.call('decr', KEYS[1]) " +
+            "local expire = tonumber(ARGV[1]) " +
+            "if expire > 0 then redis.call('setex', KEYS[2], expire, '1') " +
+            "else redis.call('set', KEYS[2], '1') end " +
+            "return 0");
+
+    /**
+     * 秒杀资格判定并入队脚本，获得资格时把消息追加到 stream
+     * KEYS[1]: 库存, KEYS[2]: 购买标记, KEYS[3]: stream
+     * ARGV[1]: 购买标记的过期时间（秒），不大于0表示不过期, ARGV[2]: 消息的字段名, ARGV[3]: 消息内容
+     * 返回值与 ADMIT_SCRIPT 相同；XADD 自动生成的id不确定，按命令复制
+     */
+    private static final LuaScript ADMIT_ENQUEUE_SCRIPT = new LuaScript(
+            "redis.replicate_commands() " +
+            "if redis.call('exists', KEYS[2]) == 1 then return 2 end " +
+            "local stock = tonumber(redis.call('get', KEYS[1])) " +
+            "if stock == nil or stock <= 0 then return 1 end " +
+            "redis.call('decr', KEYS[1]) " +
+            "local expire = tonumber(ARGV[1]) " +
+            "if expire > 0 then redis.call('setex', KEYS[2], expire, '1') " +
+            "else redis.call('set', KEYS[2], '1') end " +
+            "redis.call('xadd', KEYS[3], '*', ARGV[2], ARGV[3]) " +
+            "return 0");
+
+    /**
+     * 撤销秒杀资格脚本
+     * KEYS[1]: 库存, KEYS[2]: 购买标记
+     * 返回 1: 删除了标记并退回了库存, 0: 标记不存在
+     */
+    private static final LuaScript RELEASE_SCRIPT = new LuaScript(
+            "if redis.call('del', KEYS[2]) == 0 then return 0 end " +
+            "redis.call('incr', KEYS[1]) " +
+            "return 1");
+
+    /**
+     * 批量扣减脚本，扣减后不小于0
+     * KEYS[1]: 库存, ARGV[1]: 最多扣减的数量
+     * 返回实际扣减的数量
+     */
+    private static final LuaScript DECR_AT_MOST_SCRIPT = new LuaScript(
+            "local stock = tonumber(redis.call('get', KEYS[1])) " +
+            "if stock == nil or stock <= 0 then return 0 end " +
+            "local n = math.min(stock, tonumber(ARGV[1])) " +
+            "redis.call('decrby', KEYS[1], n) " +
+            "return n");
+
+    public JedisRedisClient(JedisPool jedisPool)
+    {
+        this.jedisPool = jedisPool;
+    }
+
+    public void setNearCacheInvalidation(boolean nearCacheInvalidation)
+    {
+        this.nearCacheInvalidation = nearCacheInvalidation;
+    }
+
+    @Override
+    public <T> T get(KeyPrefix prefix, String key, Class<T> clazz)
+    {
+        Jedis jedis=null;
+        try{
+            jedis=jedisPool.getResource();
+            String realKey=prefix.getPrefix()+key;
+            byte[] bytes=jedis.get(SafeEncoder.encode(realKey));
+            T objValue=ValueCodecs.of(prefix).decode(bytes,clazz);
+            log.info("redis get:{}",objValue);
+            return objValue;
+        }finally
+        {
+            retrunToPool(jedis);
+        }
+    }
+
+    @Override
+    public <T> boolean set(KeyPrefix prefix, String key, T value)
+    {
+        Jedis jedis=null;
+        try{
+            jedis=jedisPool.getResource();
+
+            byte[] bytes=ValueCodecs.of(prefix).encode(value);
+            String realKey=prefix.getPrefix()+key;
+            int expires=prefix.expireSeconds();
+
+            if(expires<=0)
+                jedis.set(SafeEncoder.encode(realKey),bytes);
+            else jedis.setex(SafeEncoder.encode(realKey),expires,bytes);
+            invalidateNearCache(jedis,prefix,realKey);
+
+            log.info("redis set: key-{},bytes-{}",realKey,bytes.length);
+            return true;
+        }finally
+        {
+            retrunToPool(jedis);
+        }
+    }
+
+    @Override
+    public boolean exists(KeyPrefix keyPrefix, String key)
+    {
+        Jedis jedis=null;
+        try{
+            jedis=jedisPool.getResource();
+            String realKey=keyPrefix.getPrefix()+key;
+            log.info("redis exist:key-{}",realKey);
+            return jedis.exists(realKey);
+        }finally
+        {
+            retrunToPool(jedis);
+        }
+    }
+
+    @Override
+    public long incr(KeyPrefix keyPrefix, String key)
+    {
+        Jedis jedis=null;
+        try{
+            jedis=jedisPool.getResource();
+            String realKey=keyPrefix.getPrefix()+key;
+            long result=jedis.incr(realKey);
+            invalidateNearCache(jedis,keyPrefix,realKey);
+            log.info("redis incr:key-{}",realKey);
+
+            return result;
+        }finally
+        {
+            retrunToPool(jedis);
+        }
+    }
+
+    @Override
+    public long decr(KeyPrefix keyPrefix, String key)
+    {
+        Jedis jedis=null;
+        try{
+            jedis= jedisPool.getResource();
+            String realKey=keyPrefix.getPrefix()+key;
+            long result=jedis.decr(realKey);
+            invalidateNearCache(jedis,keyPrefix,realKey);
+            log.info("redis decr:key-{}",realKey);
+            return result;
+        }finally
+        {
+            retrunToPool(jedis);
+        }
+    }
+
+    @Override
+    public boolean delete(KeyPrefix prefix, String key)
+    {
+        Jedis jedis=null;
+        try{
+            jedis=jedisPool.getResource();
+            String realKey=prefix.getPrefix()+key;
+            Long result=jedis.del(realKey);
+            invalidateNearCache(jedis,prefix,realKey);
+            log.info("redis delete:{}",realKey);
+
+            return result>0;
+        }finally
+        {
+            retrunToPool(jedis);
+        }
+    }
+
+    @Override
+    public AdmissionResult admit(KeyPrefix stockPrefix, String stockKey, KeyPrefix markPrefix, String markKey)
+    {
+        Jedis jedis=null;
+        try{
+            jedis=jedisPool.getResource();
+            String realStockKey=stockPrefix.getPrefix()+stockKey;
+            String realMarkKey=markPrefix.getPrefix()+markKey;
+            Object result=ADMIT_SCRIPT.eval(jedis,Arrays.asList(realStockKey,realMarkKey),
+                    Collections.singletonList(String.valueOf(markPrefix.expireSeconds())));
+            log.info("redis admit:stock-{},mark-{},result-{}",realStockKey,realMarkKey,result);
+            return toAdmission((Long) result);
+        }finally
+        {
+            retrunToPool(jedis);
+        }
+    }
+
+    @Override
+    public AdmissionResult admitAndEnqueue(KeyPrefix stockPrefix, String stockKey, KeyPrefix markPrefix, String markKey,
+                                           String stream, String field, byte[] message)
+    {
+        Jedis jedis=null;
+        try{
+            jedis=jedisPool.getResource();
+            String realStockKey=stockPrefix.getPrefix()+stockKey;
+            String realMarkKey=markPrefix.getPrefix()+markKey;
+            Object result=ADMIT_ENQUEUE_SCRIPT.evalBinary(jedis,
+                    Arrays.asList(SafeEncoder.encode(realStockKey),SafeEncoder.encode(realMarkKey),SafeEncoder.encode(stream)),
+                    Arrays.asList(SafeEncoder.encode(String.valueOf(markPrefix.expireSeconds())),SafeEncoder.encode(field),message));
+            log.info("redis admitAndEnqueue:stock-{},mark-{},stream-{},result-{}",realStockKey,realMarkKey,stream,result);
+            return toAdmission((Long) result);
+        }finally
+        {
+            retrunToPool(jedis);
+        }
+    }
+
+    @Override
+    public boolean release(KeyPrefix stockPrefix, String stockKey, KeyPrefix markPrefix, String markKey)
+    {
+        Jedis jedis=null;
+        try{
+            jedis=jedisPool.getResource();
+            String realStockKey=stockPrefix.getPrefix()+stockKey;
+            String realMarkKey=markPrefix.getPrefix()+markKey;
+            Object result=RELEASE_SCRIPT.eval(jedis,Arrays.asList(realStockKey,realMarkKey),Collections.emptyList());
+            log.info("redis release:stock-{},mark-{},result-{}",realStockKey,realMarkKey,result);
+            return (Long) result==1;
+        }finally
+        {
+            retrunToPool(jedis);
+        }
+    }
+
+    private static AdmissionResult toAdmission(long code)
+    {
+        if(code==0)
+            return AdmissionResult.ADMITTED;
+        else if(code==1)
+            return AdmissionResult.SOLD_OUT;
+        else return AdmissionResult.DUPLICATE;
+    }
+
+    @Override
+    public <T> boolean setIfAbsent(KeyPrefix prefix, String key, T value)
+    {
+        Jedis jedis=null;
+        try{
+            jedis=jedisPool.getResource();
+
+            byte[] bytes=ValueCodecs.of(prefix).encode(value);
+            String realKey=prefix.getPrefix()+key;
+            int expires=prefix.expireSeconds();
+
+            boolean result;
+            if(expires<=0)
+                result=jedis.setnx(SafeEncoder.encode(realKey),bytes)==1;
+            else result="OK".equals(jedis.set(SafeEncoder.encode(realKey),bytes,NX,EX,expires));
+            if(result)
+                invalidateNearCache(jedis,prefix,realKey);
+
+            log.info("redis setIfAbsent: key-{},result-{}",realKey,result);
+            return result;
+        }finally
+        {
+            retrunToPool(jedis);
+        }
+    }
+
+    @Override
+    public long incrBy(KeyPrefix keyPrefix, String key, long delta)
+    {
+        Jedis jedis=null;
+        try{
+            jedis=jedisPool.getResource();
+            String realKey=keyPrefix.getPrefix()+key;
+            long result=jedis.incrBy(realKey,delta);
+            invalidateNearCache(jedis,keyPrefix,realKey);
+            log.info("redis incrBy:key-{},delta-{}",realKey,delta);
+            return result;
+        }finally
+        {
+            retrunToPool(jedis);
+        }
+    }
+
+    @Override
+    public long decrAtMost(KeyPrefix keyPrefix, String key, long max)
+    {
+        Jedis jedis=null;
+        try{
+            jedis=jedisPool.getResource();
+            String realKey=keyPrefix.getPrefix()+key;
+            Object result=DECR_AT_MOST_SCRIPT.eval(jedis,Collections.singletonList(realKey),
+                    Collections.singletonList(String.valueOf(max)));
+            invalidateNearCache(jedis,keyPrefix,realKey);
+            log.info("redis decrAtMost:key-{},max-{},result-{}",realKey,max,result);
+            return (Long) result;
+        }finally
+        {
+            retrunToPool(jedis);
+        }
+    }
+
+    @Override
+    public long publish(String channel, String message)
+    {
+        Jedis jedis=null;
+        try{
+            jedis=jedisPool.getResource();
+            long receivers=jedis.publish(channel,message);
+            log.info("redis publish:channel-{},message-{},receivers-{}",channel,message,receivers);
+            return receivers;
+        }finally
+        {
+            retrunToPool(jedis);
+        }
+    }
+
+    @Override
+    public long setBits(KeyPrefix prefix, String key, long[] offsets)
+    {
+        Jedis jedis=null;
+        try{
+            jedis=jedisPool.getResource();
+            String realKey=prefix.getPrefix()+key;
+            Pipeline pipeline=jedis.pipelined();
+            List<Response<Boolean>> replies=new ArrayList<>(offsets.length);
+            for(long offset:offsets)
+                replies.add(pipeline.setbit(realKey,offset,true));
+            pipeline.sync();
+
+            long changed=0;
+            for(Response<Boolean> reply:replies)
+            {
+                if(!reply.get())
+                    changed++;
+            }
+            log.debug("redis setBits:key-{},bits-{},changed-{}",realKey,offsets.length,changed);
+            return changed;
+        }finally
+        {
+            retrunToPool(jedis);
+        }
+    }
+
+    @Override
+    public boolean[] getBits(KeyPrefix prefix, String key, long[] offsets)
+    {
+        Jedis jedis=null;
+        try{
+            jedis=jedisPool.getResource();
+            String realKey=prefix.getPrefix()+key;
+            Pipeline pipeline=jedis.pipelined();
+            List<Response<Boolean>> replies=new ArrayList<>(offsets.length);
+            for(long offset:offsets)
+                replies.add(pipeline.getbit(realKey,offset));
+            pipeline.sync();
+
+            boolean[] bits=new boolean[offsets.length];
+            for(int i=0;i<bits.length;i++)
+                bits[i]=replies.get(i).get();
+            log.debug("redis getBits:key-{},bits-{}",realKey,offsets.length);
+            return bits;
+        }finally
+        {
+            retrunToPool(jedis);
+        }
+    }
+
+    @Override
+    public RedisBatchResult executeBatch(RedisBatch batch)
+    {
+        if(batch.isEmpty())
+            return new RedisBatchResult(Collections.emptyList());
+
+        Jedis jedis=null;
+        try{
+            jedis=jedisPool.getResource();
+            List<Object> results;
+            if(batch.allOf(RedisBatch.Type.GET))
+                results=mget(jedis,batch.getOperations());
+            else if(batch.allOf(RedisBatch.Type.SET)&&!anyExpires(batch.getOperations()))
+                results=mset(jedis,batch.getOperations());
+            else results=pipeline(jedis,batch.getOperations());
+
+            log.info("redis batch:size-{}",batch.size());
+            return new RedisBatchResult(results);
+        }finally
+        {
+            retrunToPool(jedis);
+        }
+    }
+
+    private static boolean anyExpires(List<RedisBatch.Operation> operations)
+    {
+        for(RedisBatch.Operation operation:operations)
+        {
+            if(operation.getPrefix().expireSeconds()>0)
+                return true;
+        }
+        return false;
+    }
+
+    private static List<Object> mget(Jedis jedis,List<RedisBatch.Operation> operations)
+    {
+        byte[][] keys=new byte[operations.size()][];
+        for(int i=0;i<keys.length;i++)
+            keys[i]=SafeEncoder.encode(operations.get(i).getRealKey());
+
+        List<byte[]> values=jedis.mget(keys);
+        List<Object> results=new ArrayList<>(values.size());
+        for(int i=0;i<keys.length;i++)
+        {
+            RedisBatch.Operation operation=operations.get(i);
+            results.add(ValueCodecs.of(operation.getPrefix()).decode(values.get(i),operation.getValueClass()));
+        }
+        return results;
+    }
+
+    private List<Object> mset(Jedis jedis,List<RedisBatch.Operation> operations)
+    {
+        byte[][] keysValues=new byte[operations.size()*2][];
+        for(int i=0;i<operations.size();i++)
+        {
+            RedisBatch.Operation operation=operations.get(i);
+            keysValues[2*i]=SafeEncoder.encode(operation.getRealKey());
+            keysValues[2*i+1]=ValueCodecs.of(operation.getPrefix()).encode(operation.getValue());
+        }
+        jedis.mset(keysValues);
+        for(RedisBatch.Operation operation:operations)
+            invalidateNearCache(jedis,operation.getPrefix(),operation.getRealKey());
+        return new ArrayList<>(Collections.nCopies(operations.size(),(Object) Boolean.TRUE));
+    }
+
+    private List<Object> pipeline(Jedis jedis,List<RedisBatch.Operation> operations)
+    {
+        Pipeline pipeline=jedis.pipelined();
+        List<Response<?>> responses=new ArrayList<>(operations.size());
+        for(RedisBatch.Operation operation:operations)
+        {
+            String realKey=operation.getRealKey();
+            byte[] keyBytes=SafeEncoder.encode(realKey);
+            int expires=operation.getPrefix().expireSeconds();
+            ValueCodec codec=ValueCodecs.of(operation.getPrefix());
+            switch (operation.getType())
+            {
+                case GET:
+                    responses.add(pipeline.get(keyBytes));
+                    break;
+                case SET:
+                    if(expires<=0)
+                        responses.add(pipeline.set(keyBytes,codec.encode(operation.getValue())));
+                    else responses.add(pipeline.setex(keyBytes,expires,codec.encode(operation.getValue())));
+                    break;
+                case SET_IF_ABSENT:
+                    if(expires<=0)
+                        responses.add(pipeline.setnx(keyBytes,codec.encode(operation.getValue())));
+                    else responses.add(pipeline.set(keyBytes,codec.encode(operation.getValue()),NX,EX,expires));
+                    break;
+                case EXISTS:
+                    responses.add(pipeline.exists(realKey));
+                    break;
+                case INCR:
+                    responses.add(pipeline.incr(realKey));
+                    break;
+                case DECR:
+                    responses.add(pipeline.decr(realKey));
+                    break;
+                case DELETE:
+                    responses.add(pipeline.del(realKey));
+                    break;
+                case EXPIRE:
+                    responses.add(pipeline.expire(realKey,expires));
+                    break;
+                default:
+                    throw new IllegalArgumentException("unsupported batch operation: "+operation.getType());
+            }
+            // 写操作通知近端缓存失效，publish 的结果不计入批量操作的结果
+            if(nearCacheInvalidation&&operation.getType()!=RedisBatch.Type.GET&&operation.getType()!=RedisBatch.Type.EXISTS
+                    &&operation.getPrefix().nearCacheSize()>0)
+                pipeline.publish(NearCacheRedisService.INVALIDATION_CHANNEL,realKey);
+        }
+        pipeline.sync();
+
+        List<Object> results=new ArrayList<>(operations.size());
+        for(int i=0;i<operations.size();i++)
+            results.add(toResult(operations.get(i),responses.get(i).get()));
+        return results;
+    }
+
+    private static Object toResult(RedisBatch.Operation operation,Object reply)
+    {
+        switch (operation.getType())
+        {
+            case GET:
+                return ValueCodecs.of(operation.getPrefix()).decode((byte[]) reply,operation.getValueClass());
+            case SET:
+                return "OK".equals(reply);
+            case SET_IF_ABSENT:
+                // SETNX 返回 1/0，SET NX EX 返回 OK/null
+                return reply instanceof Long ? (Long) reply==1 : "OK".equals(reply);
+            case EXISTS:
+                return reply;
+            case DELETE:
+            case EXPIRE:
+                return (Long) reply>0;
+            default:
+                return reply;
+        }
+    }
+
+
+    /**
+     * 启用了近端缓存的前缀，写入后通知各节点的近端缓存失效
+     */
+    private void invalidateNearCache(Jedis jedis,KeyPrefix prefix,String realKey)
+    {
+        if(nearCacheInvalidation&&prefix.nearCacheSize()>0)
+            jedis.publish(NearCacheRedisService.INVALIDATION_CHANNEL,realKey);
+    }
+
+    protected static void retrunToPool(Jedis jedis)
+    {
+        if(jedis!=null)
+            jedis.close();
+    }
+
+}
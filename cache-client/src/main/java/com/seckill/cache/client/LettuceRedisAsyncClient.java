@@ -0,0 +1,241 @@
+package com.seckill.cache.client;
+
+import com.seckill.common.api.cache.RedisServiceAsyncApi;
+import com.seckill.common.api.cache.vo.KeyPrefix;
+import com.seckill.common.api.cache.vo.RedisBatch;
+import com.seckill.common.api.cache.vo.RedisBatchResult;
+import com.seckill.common.codec.ValueCodec;
+import com.seckill.common.codec.ValueCodecs;
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.SetArgs;
+import io.lettuce.core.TimeoutOptions;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import io.lettuce.core.codec.ByteArrayCodec;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * 基于 lettuce 的异步 redis 服务实现
+ * <p>
+ * 1. 所有调用共用一个多路复用的连接，命令由 netty 的 IO 线程写出和读取响应，调用线程不阻塞，
+ *    在途的操作数量不再受连接池大小限制，也不会随之增加线程
+ * 2. 同一连接上的命令按发送顺序执行，批量操作的各命令连续写出，相当于 pipeline
+ * 3. 编解码与 JedisRedisClient 一致（KeyPrefix.codec()），两者可以读写同一份数据
+ * 4. 命令超时取 timeout，超时的 future 以 RedisCommandTimeoutException 结束
+ */
+@Slf4j
+public class LettuceRedisAsyncClient implements RedisServiceAsyncApi, Closeable
+{
+    private static final byte[] INVALIDATION_CHANNEL = bytes(NearCacheRedisService.INVALIDATION_CHANNEL);
+
+    private final RedisClient redisClient;
+
+    private final StatefulRedisConnection<byte[], byte[]> connection;
+
+    private final RedisAsyncCommands<byte[], byte[]> commands;
+
+    /**
+     * 写入启用了近端缓存的前缀时是否发布失效消息；作为分片使用时由 ShardedRedisAsyncClient 统一向主节点发布
+     */
+    private boolean nearCacheInvalidation = true;
+
+    public LettuceRedisAsyncClient(String host, int port, int timeout)
+    {
+        RedisURI uri = RedisURI.builder()
+                .withHost(host)
+                .withPort(port)
+                .withTimeout(Duration.ofMillis(timeout))
+                .build();
+        this.redisClient = RedisClient.create(uri);
+        this.redisClient.setOptions(ClientOptions.builder()
+                .timeoutOptions(TimeoutOptions.enabled())
+                .build());
+        this.connection = redisClient.connect(ByteArrayCodec.INSTANCE);
+        this.commands = connection.async();
+        log.info("异步redis客户端已连接：{}:{}", host, port);
+    }
+
+    public void setNearCacheInvalidation(boolean nearCacheInvalidation)
+    {
+        this.nearCacheInvalidation = nearCacheInvalidation;
+    }
+
+    /**
+     * 向频道发布消息（PUBLISH）
+     *
+     * @return 收到消息的订阅者数量
+     */
+    public CompletableFuture<Long> publish(String channel, String message)
+    {
+        return commands.publish(bytes(channel), bytes(message)).toCompletableFuture();
+    }
+
+    @Override
+    public <T> CompletableFuture<T> get(KeyPrefix prefix, String key, Class<T> clazz)
+    {
+        ValueCodec codec = ValueCodecs.of(prefix);
+        return commands.get(bytes(prefix.getPrefix() + key))
+                .thenApply(value -> codec.decode(value, clazz))
+                .toCompletableFuture();
+    }
+
+    @Override
+    public <T> CompletableFuture<Boolean> set(KeyPrefix prefix, String key, T value)
+    {
+        String realKey = prefix.getPrefix() + key;
+        byte[] bytes = ValueCodecs.of(prefix).encode(value);
+        int expires = prefix.expireSeconds();
+
+        CompletionStage<String> reply = expires <= 0
+                ? commands.set(bytes(realKey), bytes)
+                : commands.setex(bytes(realKey), expires, bytes);
+        invalidateNearCache(prefix, realKey);
+        return reply.thenApply("OK"::equals).toCompletableFuture();
+    }
+
+    @Override
+    public CompletableFuture<Boolean> exists(KeyPrefix keyPrefix, String key)
+    {
+        return commands.exists(bytes(keyPrefix.getPrefix() + key))
+                .thenApply(count -> count > 0)
+                .toCompletableFuture();
+    }
+
+    @Override
+    public CompletableFuture<Long> incr(KeyPrefix keyPrefix, String key)
+    {
+        String realKey = keyPrefix.getPrefix() + key;
+        CompletionStage<Long> reply = commands.incr(bytes(realKey));
+        invalidateNearCache(keyPrefix, realKey);
+        return reply.toCompletableFuture();
+    }
+
+    @Override
+    public CompletableFuture<Long> decr(KeyPrefix keyPrefix, String key)
+    {
+        String realKey = keyPrefix.getPrefix() + key;
+        CompletionStage<Long> reply = commands.decr(bytes(realKey));
+        invalidateNearCache(keyPrefix, realKey);
+        return reply.toCompletableFuture();
+    }
+
+    @Override
+    public CompletableFuture<Boolean> delete(KeyPrefix prefix, String key)
+    {
+        String realKey = prefix.getPrefix() + key;
+        CompletionStage<Long> reply = commands.del(bytes(realKey));
+        invalidateNearCache(prefix, realKey);
+        return reply.thenApply(count -> count > 0).toCompletableFuture();
+    }
+
+    @Override
+    public <T> CompletableFuture<Boolean> setIfAbsent(KeyPrefix prefix, String key, T value)
+    {
+        String realKey = prefix.getPrefix() + key;
+        byte[] bytes = ValueCodecs.of(prefix).encode(value);
+        int expires = prefix.expireSeconds();
+
+        CompletionStage<Boolean> reply = expires <= 0
+                ? commands.setnx(bytes(realKey), bytes)
+                : commands.set(bytes(realKey), bytes, SetArgs.Builder.nx().ex(expires)).thenApply("OK"::equals);
+        invalidateNearCache(prefix, realKey);
+        return reply.toCompletableFuture();
+    }
+
+    @Override
+    public CompletableFuture<RedisBatchResult> executeBatch(RedisBatch batch)
+    {
+        List<CompletableFuture<?>> replies = new ArrayList<>(batch.size());
+        for (RedisBatch.Operation operation : batch.getOperations())
+            replies.add(execute(operation).toCompletableFuture());
+
+        return CompletableFuture.allOf(replies.toArray(new CompletableFuture[0]))
+                .thenApply(ignored -> {
+                    List<Object> results = new ArrayList<>(replies.size());
+                    for (CompletableFuture<?> reply : replies)
+                        results.add(reply.join());
+                    return new RedisBatchResult(results);
+                });
+    }
+
+    /**
+     * 发送批量操作中的一个命令，结果类型与 JedisRedisClient 的批量操作一致
+     */
+    private CompletionStage<?> execute(RedisBatch.Operation operation)
+    {
+        String realKey = operation.getRealKey();
+        byte[] key = bytes(realKey);
+        int expires = operation.getPrefix().expireSeconds();
+        ValueCodec codec = ValueCodecs.of(operation.getPrefix());
+
+        CompletionStage<?> reply;
+        switch (operation.getType())
+        {
+            case GET:
+                return commands.get(key).thenApply(value -> codec.decode(value, operation.getValueClass()));
+            case EXISTS:
+                return commands.exists(key).thenApply(count -> count > 0);
+            case SET:
+                reply = (expires <= 0
+                        ? commands.set(key, codec.encode(operation.getValue()))
+                        : commands.setex(key, expires, codec.encode(operation.getValue())))
+                        .thenApply("OK"::equals);
+                break;
+            case SET_IF_ABSENT:
+                reply = expires <= 0
+                        ? commands.setnx(key, codec.encode(operation.getValue()))
+                        : commands.set(key, codec.encode(operation.getValue()), SetArgs.Builder.nx().ex(expires))
+                                .thenApply("OK"::equals);
+                break;
+            case INCR:
+                reply = commands.incr(key);
+                break;
+            case DECR:
+                reply = commands.decr(key);
+                break;
+            case DELETE:
+                reply = commands.del(key).thenApply(count -> count > 0);
+                break;
+            case EXPIRE:
+                reply = commands.expire(key, expires);
+                break;
+            default:
+                throw new IllegalArgumentException("unsupported batch operation: " + operation.getType());
+        }
+        invalidateNearCache(operation.getPrefix(), realKey);
+        return reply;
+    }
+
+    /**
+     * 启用了近端缓存的前缀，写入后通知各节点的近端缓存失效
+     * <p>
+     * 与写命令在同一连接上发送，redis 按顺序执行，不需要等待写命令的响应
+     */
+    private void invalidateNearCache(KeyPrefix prefix, String realKey)
+    {
+        if (nearCacheInvalidation && prefix.nearCacheSize() > 0)
+            commands.publish(INVALIDATION_CHANNEL, bytes(realKey));
+    }
+
+    private static byte[] bytes(String value)
+    {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close()
+    {
+        connection.close();
+        redisClient.shutdown();
+    }
+}
@@ -0,0 +1,65 @@
+package com.seckill.cache.client;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.util.SafeEncoder;
+
+import java.util.List;
+
+/**
+ * 预加载的 lua 脚本
+ * <p>
+ * 首次执行时通过 SCRIPT LOAD 加载并缓存 sha1，之后只通过 EVALSHA 发送 sha1；
+ * redis 重启或执行了 SCRIPT FLUSH 后返回 NOSCRIPT，此时重新加载一次再执行
+ */
+public class LuaScript
+{
+    private final String script;
+
+    private volatile String sha;
+
+    public LuaScript(String script)
+    {
+        this.script = script;
+    }
+
+    public Object eval(Jedis jedis, List<String> keys, List<String> args)
+    {
+        String currentSha = sha;
+        if (currentSha == null)
+            currentSha = load(jedis);
+        try{
+            return jedis.evalsha(currentSha, keys, args);
+        }catch (JedisDataException e)
+        {
+            if (e.getMessage() == null || !e.getMessage().startsWith("NOSCRIPT"))
+                throw e;
+            return jedis.evalsha(load(jedis), keys, args);
+        }
+    }
+
+    /**
+     * 参数为二进制内容时使用
+     */
+    public Object evalBinary(Jedis jedis, List<byte[]> keys, List<byte[]> args)
+    {
+        String currentSha = sha;
+        if (currentSha == null)
+            currentSha = load(jedis);
+        try{
+            return jedis.evalsha(SafeEncoder.encode(currentSha), keys, args);
+        }catch (JedisDataException e)
+        {
+            if (e.getMessage() == null || !e.getMessage().startsWith("NOSCRIPT"))
+                throw e;
+            return jedis.evalsha(SafeEncoder.encode(load(jedis)), keys, args);
+        }
+    }
+
+    private String load(Jedis jedis)
+    {
+        String loadedSha = jedis.scriptLoad(script);
+        sha = loadedSha;
+        return loadedSha;
+    }
+}
@@ -0,0 +1,431 @@
+package com.seckill.cache.client;
+
+import com.seckill.common.api.cache.RedisServiceApi;
+import com.seckill.common.api.cache.vo.AdmissionResult;
+import com.seckill.common.api.cache.vo.KeyPrefix;
+import com.seckill.common.api.cache.vo.RedisBatch;
+import com.seckill.common.api.cache.vo.RedisBatchResult;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 进程内近端缓存，装饰 RedisServiceApi
+ * <p>
+ * 1. 只缓存 KeyPrefix.nearCacheSize() 大于0的前缀的 get/exists 结果（包括不存在的结果），每个前缀按容量做 LRU 淘汰
+ * 2. 缓存有效期为 defaultTtlMillis，且不超过前缀的 expireSeconds()
+ * 3. 任意节点通过 JedisRedisClient 写入/删除这些前缀的key时，向 INVALIDATION_CHANNEL 发布失效消息（真实key），
+ *    各节点收到后删除本地缓存；订阅断开重连后清空全部近端缓存，避免使用断开期间已经失效的值
+ * 4. 缓存的是解码后的对象，调用方不能修改 get 返回的对象
+ */
+@Slf4j
+public class NearCacheRedisService implements RedisServiceApi, Closeable
+{
+    /**
+     * 近端缓存失效消息的频道
+     */
+    public static final String INVALIDATION_CHANNEL = "seckill:nearcache:invalidate";
+
+    private final RedisServiceApi delegate;
+
+    private final long defaultTtlMillis;
+
+    private final Map<String, PrefixCache> caches = new ConcurrentHashMap<>();
+
+    private volatile MeterRegistry meterRegistry;
+
+    private RedisChannelSubscriber subscriber;
+
+    public NearCacheRedisService(RedisServiceApi delegate, long defaultTtlMillis)
+    {
+        this.delegate = delegate;
+        this.defaultTtlMillis = defaultTtlMillis;
+    }
+
+    /**
+     * 订阅失效消息
+     */
+    public void subscribe(String host, int port, int timeout)
+    {
+        subscriber = new RedisChannelSubscriber(host, port, timeout, INVALIDATION_CHANNEL, this::invalidate);
+        subscriber.setOnSubscribed(this::clear);
+        subscriber.start();
+    }
+
+    @Override
+    public void close()
+    {
+        if (subscriber != null)
+            subscriber.close();
+    }
+
+    /**
+     * 注册每个前缀的命中/未命中/淘汰计数
+     */
+    public synchronized void bindTo(MeterRegistry registry)
+    {
+        this.meterRegistry = registry;
+        for (PrefixCache cache : caches.values())
+            cache.bindTo(registry);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(KeyPrefix prefix, String key, Class<T> clazz)
+    {
+        if (prefix.nearCacheSize() <= 0)
+            return delegate.get(prefix, key, clazz);
+
+        PrefixCache cache = cacheOf(prefix);
+        String realKey = prefix.getPrefix() + key;
+        Entry entry = cache.get(realKey);
+        if (entry != null && entry.type == clazz)
+        {
+            cache.hits.increment();
+            return (T) entry.value;
+        }
+
+        cache.misses.increment();
+        long version = cache.version();
+        T value = delegate.get(prefix, key, clazz);
+        cache.put(realKey, new Entry(value, clazz, value != null, System.currentTimeMillis() + cache.ttlMillis), version);
+        return value;
+    }
+
+    @Override
+    public boolean exists(KeyPrefix prefix, String key)
+    {
+        if (prefix.nearCacheSize() <= 0)
+            return delegate.exists(prefix, key);
+
+        PrefixCache cache = cacheOf(prefix);
+        String realKey = prefix.getPrefix() + key;
+        Entry entry = cache.get(realKey);
+        if (entry != null)
+        {
+            cache.hits.increment();
+            return entry.exists;
+        }
+
+        cache.misses.increment();
+        long version = cache.version();
+        boolean exists = delegate.exists(prefix, key);
+        cache.put(realKey, new Entry(null, null, exists, System.currentTimeMillis() + cache.ttlMillis), version);
+        return exists;
+    }
+
+    @Override
+    public <T> boolean set(KeyPrefix prefix, String key, T value)
+    {
+        try
+        {
+            return delegate.set(prefix, key, value);
+        } finally
+        {
+            invalidateLocal(prefix, key);
+        }
+    }
+
+    @Override
+    public long incr(KeyPrefix keyPrefix, String key)
+    {
+        try
+        {
+            return delegate.incr(keyPrefix, key);
+        } finally
+        {
+            invalidateLocal(keyPrefix, key);
+        }
+    }
+
+    @Override
+    public long decr(KeyPrefix keyPrefix, String key)
+    {
+        try
+        {
+            return delegate.decr(keyPrefix, key);
+        } finally
+        {
+            invalidateLocal(keyPrefix, key);
+        }
+    }
+
+    @Override
+    public boolean delete(KeyPrefix prefix, String key)
+    {
+        try
+        {
+            return delegate.delete(prefix, key);
+        } finally
+        {
+            invalidateLocal(prefix, key);
+        }
+    }
+
+    @Override
+    public AdmissionResult admit(KeyPrefix stockPrefix, String stockKey, KeyPrefix markPrefix, String markKey)
+    {
+        return delegate.admit(stockPrefix, stockKey, markPrefix, markKey);
+    }
+
+    @Override
+    public AdmissionResult admitAndEnqueue(KeyPrefix stockPrefix, String stockKey, KeyPrefix markPrefix, String markKey,
+                                           String stream, String field, byte[] message)
+    {
+        return delegate.admitAndEnqueue(stockPrefix, stockKey, markPrefix, markKey, stream, field, message);
+    }
+
+    @Override
+    public boolean release(KeyPrefix stockPrefix, String stockKey, KeyPrefix markPrefix, String markKey)
+    {
+        return delegate.release(stockPrefix, stockKey, markPrefix, markKey);
+    }
+
+    @Override
+    public <T> boolean setIfAbsent(KeyPrefix prefix, String key, T value)
+    {
+        try
+        {
+            return delegate.setIfAbsent(prefix, key, value);
+        } finally
+        {
+            invalidateLocal(prefix, key);
+        }
+    }
+
+    @Override
+    public long incrBy(KeyPrefix keyPrefix, String key, long delta)
+    {
+        try
+        {
+            return delegate.incrBy(keyPrefix, key, delta);
+        } finally
+        {
+            invalidateLocal(keyPrefix, key);
+        }
+    }
+
+    @Override
+    public long decrAtMost(KeyPrefix keyPrefix, String key, long max)
+    {
+        try
+        {
+            return delegate.decrAtMost(keyPrefix, key, max);
+        } finally
+        {
+            invalidateLocal(keyPrefix, key);
+        }
+    }
+
+    @Override
+    public long publish(String channel, String message)
+    {
+        return delegate.publish(channel, message);
+    }
+
+    @Override
+    public long setBits(KeyPrefix prefix, String key, long[] offsets)
+    {
+        return delegate.setBits(prefix, key, offsets);
+    }
+
+    @Override
+    public boolean[] getBits(KeyPrefix prefix, String key, long[] offsets)
+    {
+        return delegate.getBits(prefix, key, offsets);
+    }
+
+    @Override
+    public RedisBatchResult executeBatch(RedisBatch batch)
+    {
+        try
+        {
+            return delegate.executeBatch(batch);
+        } finally
+        {
+            for (RedisBatch.Operation operation : batch.getOperations())
+            {
+                if (operation.getType() != RedisBatch.Type.GET && operation.getType() != RedisBatch.Type.EXISTS)
+                    invalidateLocal(operation.getPrefix(), operation.getKey());
+            }
+        }
+    }
+
+    /**
+     * 收到失效消息，删除对应的缓存
+     *
+     * @param realKey 带前缀的真实key
+     */
+    public void invalidate(String realKey)
+    {
+        for (PrefixCache cache : caches.values())
+        {
+            if (realKey.startsWith(cache.prefix))
+                cache.remove(realKey);
+        }
+    }
+
+    /**
+     * 清空全部近端缓存
+     */
+    public void clear()
+    {
+        for (PrefixCache cache : caches.values())
+            cache.clear();
+    }
+
+    /**
+     * 本节点的写操作立即失效本地缓存，不等待失效消息
+     */
+    private void invalidateLocal(KeyPrefix prefix, String key)
+    {
+        if (prefix.nearCacheSize() <= 0)
+            return;
+        PrefixCache cache = caches.get(prefix.getPrefix());
+        if (cache != null)
+            cache.remove(prefix.getPrefix() + key);
+    }
+
+    private PrefixCache cacheOf(KeyPrefix prefix)
+    {
+        PrefixCache cache = caches.get(prefix.getPrefix());
+        if (cache != null)
+            return cache;
+
+        synchronized (this)
+        {
+            return caches.computeIfAbsent(prefix.getPrefix(), p -> {
+                long ttlMillis = defaultTtlMillis;
+                if (prefix.expireSeconds() > 0)
+                    ttlMillis = Math.min(ttlMillis, prefix.expireSeconds() * 1000L);
+                PrefixCache created = new PrefixCache(p, prefix.nearCacheSize(), ttlMillis);
+                if (meterRegistry != null)
+                    created.bindTo(meterRegistry);
+                log.info("启用近端缓存: prefix-{}, maxSize-{}, ttlMillis-{}", p, prefix.nearCacheSize(), ttlMillis);
+                return created;
+            });
+        }
+    }
+
+    private static class Entry
+    {
+        final Object value;
+
+        /**
+         * get 时的类型，只由 exists 写入时为 null
+         */
+        final Class<?> type;
+
+        final boolean exists;
+
+        final long expireAt;
+
+        Entry(Object value, Class<?> type, boolean exists, long expireAt)
+        {
+            this.value = value;
+            this.type = type;
+            this.exists = exists;
+            this.expireAt = expireAt;
+        }
+    }
+
+    /**
+     * 单个前缀的 LRU 缓存
+     */
+    private static class PrefixCache
+    {
+        final String prefix;
+
+        final long ttlMillis;
+
+        final LongAdder hits = new LongAdder();
+
+        final LongAdder misses = new LongAdder();
+
+        final LongAdder evictions = new LongAdder();
+
+        /**
+         * 每次失效递增；从redis读取期间发生过失效的结果不再放入缓存，避免缓存旧值
+         */
+        private long version;
+
+        private final LinkedHashMap<String, Entry> entries;
+
+        PrefixCache(String prefix, int maxSize, long ttlMillis)
+        {
+            this.prefix = prefix;
+            this.ttlMillis = ttlMillis;
+            this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true)
+            {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest)
+                {
+                    if (size() > maxSize)
+                    {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        synchronized Entry get(String realKey)
+        {
+            Entry entry = entries.get(realKey);
+            if (entry != null && entry.expireAt <= System.currentTimeMillis())
+            {
+                entries.remove(realKey);
+                return null;
+            }
+            return entry;
+        }
+
+        synchronized long version()
+        {
+            return version;
+        }
+
+        synchronized void put(String realKey, Entry entry, long expectedVersion)
+        {
+            if (version == expectedVersion)
+                entries.put(realKey, entry);
+        }
+
+        synchronized void remove(String realKey)
+        {
+            version++;
+            entries.remove(realKey);
+        }
+
+        synchronized void clear()
+        {
+            version++;
+            entries.clear();
+        }
+
+        synchronized int size()
+        {
+            return entries.size();
+        }
+
+        void bindTo(MeterRegistry registry)
+        {
+            FunctionCounter.builder("seckill.nearcache.hits", hits, LongAdder::sum)
+                    .tag("prefix", prefix).register(registry);
+            FunctionCounter.builder("seckill.nearcache.misses", misses, LongAdder::sum)
+                    .tag("prefix", prefix).register(registry);
+            FunctionCounter.builder("seckill.nearcache.evictions", evictions, LongAdder::sum)
+                    .tag("prefix", prefix).register(registry);
+            Gauge.builder("seckill.nearcache.size", this, PrefixCache::size)
+                    .tag("prefix", prefix).register(registry);
+        }
+    }
+}
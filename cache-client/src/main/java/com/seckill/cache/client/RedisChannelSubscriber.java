@@ -0,0 +1,169 @@
+package com.seckill.cache.client;
+
+import lombok.extern.slf4j.Slf4j;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPubSub;
+
+import java.io.Closeable;
+import java.util.function.Consumer;
+
+/**
+ * redis 频道订阅
+ * <p>
+ * 订阅会一直占用一个连接，因此不从连接池中获取，而是在单独的后台线程中建立连接；
+ * 连接断开后间隔 reconnectMillis 重新订阅，断开期间发布的消息会丢失，
+ * 需要时通过 onSubscribed 回调在（重新）订阅成功后补偿同步状态，通过 onDisconnected 回调在断开时停止依赖订阅的状态
+ */
+@Slf4j
+public class RedisChannelSubscriber implements Closeable
+{
+    private final String host;
+
+    private final int port;
+
+    private final int timeout;
+
+    private final String channel;
+
+    private final Consumer<String> listener;
+
+    private Runnable onSubscribed = () -> { };
+
+    private Runnable onDisconnected = () -> { };
+
+    private long reconnectMillis = 1000;
+
+    private volatile boolean running;
+
+    private volatile JedisPubSub pubSub;
+
+    private Thread thread;
+
+    public RedisChannelSubscriber(String host, int port, int timeout, String channel, Consumer<String> listener)
+    {
+        this.host = host;
+        this.port = port;
+        this.timeout = timeout;
+        this.channel = channel;
+        this.listener = listener;
+    }
+
+    public void setOnSubscribed(Runnable onSubscribed)
+    {
+        this.onSubscribed = onSubscribed;
+    }
+
+    public void setOnDisconnected(Runnable onDisconnected)
+    {
+        this.onDisconnected = onDisconnected;
+    }
+
+    public void setReconnectMillis(long reconnectMillis)
+    {
+        this.reconnectMillis = reconnectMillis;
+    }
+
+    public synchronized void start()
+    {
+        if (running)
+            return;
+        running = true;
+        thread = new Thread(this::run, "redis-subscriber-" + channel);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run()
+    {
+        while (running)
+        {
+            Jedis jedis = null;
+            try
+            {
+                jedis = new Jedis(host, port, timeout);
+                pubSub = new JedisPubSub()
+                {
+                    @Override
+                    public void onMessage(String channel, String message)
+                    {
+                        try
+                        {
+                            listener.accept(message);
+                        } catch (RuntimeException e)
+                        {
+                            log.error("处理订阅消息失败: channel-{}, message-{}", channel, message, e);
+                        }
+                    }
+
+                    @Override
+                    public void onSubscribe(String channel, int subscribedChannels)
+                    {
+                        log.info("订阅redis频道: {}", channel);
+                        try
+                        {
+                            onSubscribed.run();
+                        } catch (RuntimeException e)
+                        {
+                            log.error("订阅回调失败: channel-{}", channel, e);
+                        }
+                    }
+                };
+                // 阻塞直到取消订阅或连接断开
+                jedis.subscribe(pubSub, channel);
+            } catch (Exception e)
+            {
+                if (running)
+                {
+                    log.warn("redis频道订阅断开，{}ms后重连: channel-{}, {}", reconnectMillis, channel, e.getMessage());
+                    disconnected();
+                    sleepQuietly(reconnectMillis);
+                }
+            } finally
+            {
+                if (jedis != null)
+                    jedis.close();
+            }
+        }
+    }
+
+    private void disconnected()
+    {
+        try
+        {
+            onDisconnected.run();
+        } catch (RuntimeException e)
+        {
+            log.error("断开回调失败: channel-{}", channel, e);
+        }
+    }
+
+    private static void sleepQuietly(long millis)
+    {
+        try
+        {
+            Thread.sleep(millis);
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public synchronized void close()
+    {
+        running = false;
+        JedisPubSub current = pubSub;
+        if (current != null && current.isSubscribed())
+        {
+            try
+            {
+                current.unsubscribe();
+            } catch (Exception e)
+            {
+                log.warn("取消订阅失败: channel-{}", channel, e);
+            }
+        }
+        if (thread != null)
+            thread.interrupt();
+    }
+}
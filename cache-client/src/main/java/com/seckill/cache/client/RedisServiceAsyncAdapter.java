@@ -0,0 +1,86 @@
+package com.seckill.cache.client;
+
+import com.seckill.common.api.cache.RedisServiceApi;
+import com.seckill.common.api.cache.RedisServiceAsyncApi;
+import com.seckill.common.api.cache.vo.KeyPrefix;
+import com.seckill.common.api.cache.vo.RedisBatch;
+import com.seckill.common.api.cache.vo.RedisBatchResult;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * 用同步的 RedisServiceApi 实现异步接口：操作在调用线程中执行，返回已经完成的 future
+ * <p>
+ * 用于本身不会阻塞的实现（如 InMemoryRedisClient），异常通过 future 返回，与真正的异步实现一致
+ */
+public class RedisServiceAsyncAdapter implements RedisServiceAsyncApi
+{
+    private final RedisServiceApi delegate;
+
+    public RedisServiceAsyncAdapter(RedisServiceApi delegate)
+    {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public <T> CompletableFuture<T> get(KeyPrefix prefix, String key, Class<T> clazz)
+    {
+        return call(() -> delegate.get(prefix, key, clazz));
+    }
+
+    @Override
+    public <T> CompletableFuture<Boolean> set(KeyPrefix prefix, String key, T value)
+    {
+        return call(() -> delegate.set(prefix, key, value));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> exists(KeyPrefix keyPrefix, String key)
+    {
+        return call(() -> delegate.exists(keyPrefix, key));
+    }
+
+    @Override
+    public CompletableFuture<Long> incr(KeyPrefix keyPrefix, String key)
+    {
+        return call(() -> delegate.incr(keyPrefix, key));
+    }
+
+    @Override
+    public CompletableFuture<Long> decr(KeyPrefix keyPrefix, String key)
+    {
+        return call(() -> delegate.decr(keyPrefix, key));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> delete(KeyPrefix prefix, String key)
+    {
+        return call(() -> delegate.delete(prefix, key));
+    }
+
+    @Override
+    public <T> CompletableFuture<Boolean> setIfAbsent(KeyPrefix prefix, String key, T value)
+    {
+        return call(() -> delegate.setIfAbsent(prefix, key, value));
+    }
+
+    @Override
+    public CompletableFuture<RedisBatchResult> executeBatch(RedisBatch batch)
+    {
+        return call(() -> delegate.executeBatch(batch));
+    }
+
+    private static <R> CompletableFuture<R> call(Supplier<R> operation)
+    {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        try
+        {
+            future.complete(operation.get());
+        } catch (RuntimeException e)
+        {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+}
@@ -0,0 +1,106 @@
+package com.seckill.cache.client;
+
+import lombok.extern.slf4j.Slf4j;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * redis 分片节点及其连接池
+ * <p>
+ * 节点列表为 host:port,host:port,...，未配置时只使用 redis.host/redis.port 一个节点；
+ * 第一个节点为主节点：频道的发布/订阅（售罄广播、近端缓存失效、锁释放通知）和分布式锁都只使用主节点，
+ * 因此配置了节点列表时，第一个节点需要与 redis.host/redis.port 一致
+ */
+@Slf4j
+public class RedisShards implements Closeable
+{
+    private final List<HostAndPort> nodes;
+
+    private final List<JedisPool> pools;
+
+    private final int timeout;
+
+    public RedisShards(String nodes, String defaultHost, int defaultPort, JedisPoolConfig poolConfig, int timeout)
+    {
+        this.nodes = Collections.unmodifiableList(parse(nodes, defaultHost, defaultPort));
+        this.timeout = timeout;
+        List<JedisPool> created = new ArrayList<>(this.nodes.size());
+        for (HostAndPort node : this.nodes)
+            created.add(new JedisPool(poolConfig, node.getHost(), node.getPort(), timeout));
+        this.pools = Collections.unmodifiableList(created);
+        log.info("redis分片节点：{}", this.nodes);
+    }
+
+    /**
+     * 解析节点列表
+     *
+     * @param nodes 逗号分隔的 host:port，为空时使用默认节点
+     */
+    public static List<HostAndPort> parse(String nodes, String defaultHost, int defaultPort)
+    {
+        List<HostAndPort> result = new ArrayList<>();
+        if (nodes != null)
+        {
+            for (String node : nodes.split(","))
+            {
+                node = node.trim();
+                if (node.isEmpty())
+                    continue;
+                int colon = node.lastIndexOf(':');
+                if (colon <= 0)
+                    throw new IllegalArgumentException("redis node must be host:port: " + node);
+                HostAndPort hostAndPort = new HostAndPort(node.substring(0, colon), Integer.parseInt(node.substring(colon + 1)));
+                if (result.contains(hostAndPort))
+                    throw new IllegalArgumentException("duplicate redis node: " + node);
+                result.add(hostAndPort);
+            }
+        }
+        if (result.isEmpty())
+            result.add(new HostAndPort(defaultHost, defaultPort));
+        return result;
+    }
+
+    public List<HostAndPort> getNodes()
+    {
+        return nodes;
+    }
+
+    /**
+     * @return 节点名称（host:port），用于一致性哈希
+     */
+    public List<String> getNames()
+    {
+        List<String> names = new ArrayList<>(nodes.size());
+        for (HostAndPort node : nodes)
+            names.add(node.toString());
+        return names;
+    }
+
+    public List<JedisPool> getPools()
+    {
+        return pools;
+    }
+
+    public JedisPool getPrimary()
+    {
+        return pools.get(0);
+    }
+
+    public int getTimeout()
+    {
+        return timeout;
+    }
+
+    @Override
+    public void close()
+    {
+        for (JedisPool pool : pools)
+            pool.close();
+    }
+}
@@ -0,0 +1,268 @@
+package com.seckill.cache.client;
+
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.Consumer;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.StreamMessage;
+import io.lettuce.core.TimeoutOptions;
+import io.lettuce.core.XReadArgs;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.sync.RedisCommands;
+import io.lettuce.core.codec.ByteArrayCodec;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一个redis节点上的 stream 消费组操作（XADD / XREADGROUP / XACK / XPENDING / XCLAIM），基于 lettuce 的同步命令
+ * <p>
+ * 1. 每个实例一个连接；XREADGROUP 带 BLOCK 时会占住连接，因此每个消费线程使用自己的实例，
+ *    命令超时需要大于阻塞时间
+ * 2. 确认的同时删除消息（XACK + XDEL，一个lua脚本），stream 中只保留尚未确认的消息，不需要另外裁剪
+ * 3. 创建消费组、查询空闲的待确认消息也通过lua脚本完成，不依赖客户端对这些命令的支持
+ */
+@Slf4j
+public class RedisStreamClient implements Closeable
+{
+    /**
+     * 创建消费组，stream 不存在时一并创建，消费组已存在时忽略
+     * KEYS[1]: stream, ARGV[1]: 消费组
+     */
+    private static final String CREATE_GROUP_SCRIPT =
+            "local reply = redis.pcall('xgroup', 'create', KEYS[1], ARGV[1], '0', 'mkstream') " +
+            "if type(reply) == 'table' and reply.err and not string.find(reply.err, 'BUSYGROUP') then " +
+            "return redis.error_reply(reply.err) end " +
+            "return 1";
+
+    /**
+     * 确认并删除消息
+     * KEYS[1]: stream, ARGV[1]: 消费组, ARGV[2...]: 消息id
+     * 返回确认的消息数量
+     */
+    private static final String ACK_SCRIPT =
+            "local ids = {} " +
+            "for i = 2, #ARGV do ids[#ids + 1] = ARGV[i] end " +
+            "local acked = redis.call('xack', KEYS[1], ARGV[1], unpack(ids)) " +
+            "redis.call('xdel', KEYS[1], unpack(ids)) " +
+            "return acked";
+
+    /**
+     * 最早的 count 条待确认消息中，空闲时间不小于 minIdle 的消息
+     * KEYS[1]: stream, ARGV[1]: 消费组, ARGV[2]: count, ARGV[3]: minIdle（毫秒）
+     * 返回 [id, 投递次数, id, 投递次数, ...]
+     */
+    private static final String IDLE_SCRIPT =
+            "local pending = redis.call('xpending', KEYS[1], ARGV[1], '-', '+', tonumber(ARGV[2])) " +
+            "local result = {} " +
+            "for _, entry in ipairs(pending) do " +
+            "if entry[3] >= tonumber(ARGV[3]) then " +
+            "result[#result + 1] = entry[1] result[#result + 1] = entry[4] end end " +
+            "return result";
+
+    private final String node;
+
+    private final RedisClient redisClient;
+
+    private final StatefulRedisConnection<byte[], byte[]> connection;
+
+    private final RedisCommands<byte[], byte[]> commands;
+
+    /**
+     * @param timeout 命令超时（毫秒），需要大于 read 的阻塞时间
+     */
+    public RedisStreamClient(String host, int port, int timeout)
+    {
+        RedisURI uri = RedisURI.builder()
+                .withHost(host)
+                .withPort(port)
+                .withTimeout(Duration.ofMillis(timeout))
+                .build();
+        this.node = host + ":" + port;
+        this.redisClient = RedisClient.create(uri);
+        this.redisClient.setOptions(ClientOptions.builder()
+                .timeoutOptions(TimeoutOptions.enabled())
+                .build());
+        this.connection = redisClient.connect(ByteArrayCodec.INSTANCE);
+        this.commands = connection.sync();
+        log.info("redis stream 客户端已连接：{}", node);
+    }
+
+    public String getNode()
+    {
+        return node;
+    }
+
+    /**
+     * 追加一条消息（XADD）
+     *
+     * @return 消息id
+     */
+    public String add(String stream, String field, byte[] message)
+    {
+        return commands.xadd(bytes(stream), Collections.singletonMap(bytes(field), message));
+    }
+
+    /**
+     * 创建消费组，从 stream 中最早的消息开始消费；消费组已存在时不做任何事
+     */
+    public void createGroup(String stream, String group)
+    {
+        commands.eval(CREATE_GROUP_SCRIPT, ScriptOutputType.INTEGER, new byte[][]{bytes(stream)}, bytes(group));
+    }
+
+    /**
+     * 读取尚未投递给消费组的消息（XREADGROUP ... STREAMS stream &gt;），没有消息时最多阻塞 blockMillis
+     */
+    public List<Entry> read(String stream, String group, String consumer, int count, long blockMillis, String field)
+    {
+        List<StreamMessage<byte[], byte[]>> messages = commands.xreadgroup(
+                Consumer.from(bytes(group), bytes(consumer)),
+                XReadArgs.Builder.count(count).block(blockMillis),
+                XReadArgs.StreamOffset.lastConsumed(bytes(stream)));
+        return entries(messages, field);
+    }
+
+    /**
+     * 确认并删除消息
+     *
+     * @return 确认的消息数量
+     */
+    public long acknowledge(String stream, String group, List<String> ids)
+    {
+        if (ids.isEmpty())
+            return 0;
+        byte[][] args = new byte[ids.size() + 1][];
+        args[0] = bytes(group);
+        for (int i = 0; i < ids.size(); i++)
+            args[i + 1] = bytes(ids.get(i));
+        Long acked = commands.eval(ACK_SCRIPT, ScriptOutputType.INTEGER, new byte[][]{bytes(stream)}, args);
+        return acked == null ? 0 : acked;
+    }
+
+    /**
+     * 最早的 count 条待确认消息中，已经空闲了 minIdleMillis 的消息（其消费者可能已经崩溃）
+     */
+    public List<Pending> idle(String stream, String group, int count, long minIdleMillis)
+    {
+        List<Object> reply = commands.eval(IDLE_SCRIPT, ScriptOutputType.MULTI, new byte[][]{bytes(stream)},
+                bytes(group), bytes(String.valueOf(count)), bytes(String.valueOf(minIdleMillis)));
+        List<Pending> pending = new ArrayList<>(reply.size() / 2);
+        for (int i = 0; i + 1 < reply.size(); i += 2)
+            pending.add(new Pending(new String((byte[]) reply.get(i), StandardCharsets.UTF_8), (Long) reply.get(i + 1)));
+        return pending;
+    }
+
+    /**
+     * 把空闲了 minIdleMillis 的消息转给 consumer（XCLAIM），返回转移成功的消息；投递次数加一
+     */
+    public List<Entry> claim(String stream, String group, String consumer, long minIdleMillis, List<String> ids, String field)
+    {
+        if (ids.isEmpty())
+            return Collections.emptyList();
+        List<StreamMessage<byte[], byte[]>> messages = commands.xclaim(bytes(stream),
+                Consumer.from(bytes(group), bytes(consumer)), minIdleMillis, ids.toArray(new String[0]));
+        return entries(messages, field);
+    }
+
+    private static List<Entry> entries(List<StreamMessage<byte[], byte[]>> messages, String field)
+    {
+        if (messages == null || messages.isEmpty())
+            return Collections.emptyList();
+        byte[] fieldBytes = bytes(field);
+        List<Entry> entries = new ArrayList<>(messages.size());
+        for (StreamMessage<byte[], byte[]> message : messages)
+        {
+            byte[] payload = null;
+            Map<byte[], byte[]> body = message.getBody();
+            if (body != null)
+            {
+                for (Map.Entry<byte[], byte[]> entry : body.entrySet())
+                {
+                    if (Arrays.equals(entry.getKey(), fieldBytes))
+                        payload = entry.getValue();
+                }
+            }
+            entries.add(new Entry(message.getId(), payload));
+        }
+        return entries;
+    }
+
+    private static byte[] bytes(String value)
+    {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close()
+    {
+        connection.close();
+        redisClient.shutdown();
+    }
+
+    /**
+     * stream 中的一条消息
+     */
+    public static final class Entry
+    {
+        private final String id;
+
+        private final byte[] payload;
+
+        Entry(String id, byte[] payload)
+        {
+            this.id = id;
+            this.payload = payload;
+        }
+
+        public String getId()
+        {
+            return id;
+        }
+
+        /**
+         * @return 消息字段的值，消息已被删除或没有该字段时为 null
+         */
+        public byte[] getPayload()
+        {
+            return payload;
+        }
+    }
+
+    /**
+     * 一条待确认的消息
+     */
+    public static final class Pending
+    {
+        private final String id;
+
+        private final long deliveries;
+
+        Pending(String id, long deliveries)
+        {
+            this.id = id;
+            this.deliveries = deliveries;
+        }
+
+        public String getId()
+        {
+            return id;
+        }
+
+        /**
+         * @return 已经投递的次数
+         */
+        public long getDeliveries()
+        {
+            return deliveries;
+        }
+    }
+}
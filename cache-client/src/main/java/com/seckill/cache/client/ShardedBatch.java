@@ -0,0 +1,73 @@
+package com.seckill.cache.client;
+
+import com.seckill.common.api.cache.vo.RedisBatch;
+import com.seckill.common.api.cache.vo.RedisBatchResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 按分片拆分批量操作，并把各分片的结果按原来的操作顺序合并
+ */
+class ShardedBatch
+{
+    private final int size;
+
+    private final RedisBatch[] batches;
+
+    /**
+     * 每个分片上的操作在原批量操作中的下标
+     */
+    private final List<List<Integer>> indices;
+
+    ShardedBatch(RedisBatch batch, ConsistentHashRouter<?> router)
+    {
+        this.size = batch.size();
+        this.batches = new RedisBatch[router.size()];
+        this.indices = new ArrayList<>(router.size());
+        for (int shard = 0; shard < router.size(); shard++)
+            indices.add(new ArrayList<>());
+
+        List<RedisBatch.Operation> operations = batch.getOperations();
+        for (int i = 0; i < operations.size(); i++)
+        {
+            RedisBatch.Operation operation = operations.get(i);
+            int shard = router.indexOf(operation.getRealKey());
+            if (batches[shard] == null)
+                batches[shard] = new RedisBatch();
+            batches[shard].add(operation);
+            indices.get(shard).add(i);
+        }
+    }
+
+    int shardCount()
+    {
+        return batches.length;
+    }
+
+    /**
+     * @return 该分片上的操作，没有操作时返回 null
+     */
+    RedisBatch batchOf(int shard)
+    {
+        return batches[shard];
+    }
+
+    /**
+     * @param results 各分片的执行结果，没有操作的分片为 null
+     */
+    RedisBatchResult merge(RedisBatchResult[] results)
+    {
+        Object[] merged = new Object[size];
+        for (int shard = 0; shard < batches.length; shard++)
+        {
+            if (batches[shard] == null)
+                continue;
+            List<Integer> shardIndices = indices.get(shard);
+            for (int i = 0; i < shardIndices.size(); i++)
+                merged[shardIndices.get(i)] = results[shard].get(i);
+        }
+        return new RedisBatchResult(new ArrayList<>(Arrays.asList(merged)));
+    }
+}
@@ -0,0 +1,147 @@
+package com.seckill.cache.client;
+
+import com.seckill.common.api.cache.RedisServiceAsyncApi;
+import com.seckill.common.api.cache.vo.KeyPrefix;
+import com.seckill.common.api.cache.vo.RedisBatch;
+import com.seckill.common.api.cache.vo.RedisBatchResult;
+import redis.clients.jedis.HostAndPort;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 分片的异步 redis 服务实现，每个节点一个 LettuceRedisAsyncClient，路由规则与 ShardedRedisClient 一致
+ * <p>
+ * 批量操作按节点拆分后同时发往各节点，全部完成后按原来的操作顺序合并结果
+ */
+public class ShardedRedisAsyncClient implements RedisServiceAsyncApi, Closeable
+{
+    private final ConsistentHashRouter<LettuceRedisAsyncClient> router;
+
+    private final LettuceRedisAsyncClient primary;
+
+    public ShardedRedisAsyncClient(RedisShards shards)
+    {
+        this.router = new ConsistentHashRouter<>(shards.getNames(), clients(shards.getNodes(), shards.getTimeout()));
+        this.primary = router.getNodes().get(0);
+    }
+
+    private static List<LettuceRedisAsyncClient> clients(List<HostAndPort> nodes, int timeout)
+    {
+        List<LettuceRedisAsyncClient> clients = new ArrayList<>(nodes.size());
+        for (HostAndPort node : nodes)
+        {
+            LettuceRedisAsyncClient client = new LettuceRedisAsyncClient(node.getHost(), node.getPort(), timeout);
+            client.setNearCacheInvalidation(false);
+            clients.add(client);
+        }
+        return clients;
+    }
+
+    @Override
+    public <T> CompletableFuture<T> get(KeyPrefix prefix, String key, Class<T> clazz)
+    {
+        return route(prefix, key).get(prefix, key, clazz);
+    }
+
+    @Override
+    public <T> CompletableFuture<Boolean> set(KeyPrefix prefix, String key, T value)
+    {
+        return invalidateNearCache(prefix, key, route(prefix, key).set(prefix, key, value));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> exists(KeyPrefix keyPrefix, String key)
+    {
+        return route(keyPrefix, key).exists(keyPrefix, key);
+    }
+
+    @Override
+    public CompletableFuture<Long> incr(KeyPrefix keyPrefix, String key)
+    {
+        return invalidateNearCache(keyPrefix, key, route(keyPrefix, key).incr(keyPrefix, key));
+    }
+
+    @Override
+    public CompletableFuture<Long> decr(KeyPrefix keyPrefix, String key)
+    {
+        return invalidateNearCache(keyPrefix, key, route(keyPrefix, key).decr(keyPrefix, key));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> delete(KeyPrefix prefix, String key)
+    {
+        return invalidateNearCache(prefix, key, route(prefix, key).delete(prefix, key));
+    }
+
+    @Override
+    public <T> CompletableFuture<Boolean> setIfAbsent(KeyPrefix prefix, String key, T value)
+    {
+        return invalidateNearCache(prefix, key, route(prefix, key).setIfAbsent(prefix, key, value));
+    }
+
+    @Override
+    public CompletableFuture<RedisBatchResult> executeBatch(RedisBatch batch)
+    {
+        CompletableFuture<RedisBatchResult> result;
+        if (router.size() == 1)
+            result = primary.executeBatch(batch);
+        else
+        {
+            ShardedBatch sharded = new ShardedBatch(batch, router);
+            List<CompletableFuture<RedisBatchResult>> replies = new ArrayList<>(sharded.shardCount());
+            for (int shard = 0; shard < sharded.shardCount(); shard++)
+            {
+                RedisBatch shardBatch = sharded.batchOf(shard);
+                replies.add(shardBatch == null
+                        ? CompletableFuture.completedFuture(null)
+                        : router.getNodes().get(shard).executeBatch(shardBatch));
+            }
+            result = CompletableFuture.allOf(replies.toArray(new CompletableFuture[0]))
+                    .thenApply(ignored -> {
+                        RedisBatchResult[] results = new RedisBatchResult[replies.size()];
+                        for (int shard = 0; shard < results.length; shard++)
+                            results[shard] = replies.get(shard).join();
+                        return sharded.merge(results);
+                    });
+        }
+
+        return result.whenComplete((ignored, error) -> {
+            for (RedisBatch.Operation operation : batch.getOperations())
+            {
+                if (operation.getType() != RedisBatch.Type.GET && operation.getType() != RedisBatch.Type.EXISTS)
+                    publishInvalidation(operation.getPrefix(), operation.getKey());
+            }
+        });
+    }
+
+    private LettuceRedisAsyncClient route(KeyPrefix prefix, String key)
+    {
+        return router.route(prefix.getPrefix() + key);
+    }
+
+    /**
+     * 启用了近端缓存的前缀，写命令完成后（无论成功与否）通过主节点通知各节点的近端缓存失效
+     */
+    private <R> CompletableFuture<R> invalidateNearCache(KeyPrefix prefix, String key, CompletableFuture<R> reply)
+    {
+        if (prefix.nearCacheSize() <= 0)
+            return reply;
+        return reply.whenComplete((ignored, error) -> publishInvalidation(prefix, key));
+    }
+
+    private void publishInvalidation(KeyPrefix prefix, String key)
+    {
+        if (prefix.nearCacheSize() > 0)
+            primary.publish(NearCacheRedisService.INVALIDATION_CHANNEL, prefix.getPrefix() + key);
+    }
+
+    @Override
+    public void close()
+    {
+        for (LettuceRedisAsyncClient client : router.getNodes())
+            client.close();
+    }
+}
@@ -0,0 +1,227 @@
+package com.seckill.cache.client;
+
+import com.seckill.common.api.cache.RedisServiceApi;
+import com.seckill.common.api.cache.vo.AdmissionResult;
+import com.seckill.common.api.cache.vo.KeyPrefix;
+import com.seckill.common.api.cache.vo.RedisBatch;
+import com.seckill.common.api.cache.vo.RedisBatchResult;
+import redis.clients.jedis.JedisPool;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 分片的 redis 服务实现：按一致性哈希把每个key路由到一个节点
+ * <p>
+ * 1. 按带前缀的完整key路由；key 中含有 hash tag 时只按 tag 路由，同一商品的库存与购买标记因此落在同一节点，
+ *    admit 的lua脚本才能在单个节点上原子地执行
+ * 2. 批量操作按节点拆分，依次在各节点上执行（每个节点一次往返），结果按原来的操作顺序合并
+ * 3. 发布消息和近端缓存失效只发往主节点（第一个节点），订阅方只需要订阅主节点；
+ *    失效消息在写命令返回之后发布，避免其他节点在写入生效前重新加载旧值
+ * 4. 只有一个节点时与 JedisRedisClient 的行为一致
+ */
+public class ShardedRedisClient implements RedisServiceApi
+{
+    private final ConsistentHashRouter<JedisRedisClient> router;
+
+    private final JedisRedisClient primary;
+
+    public ShardedRedisClient(RedisShards shards)
+    {
+        this.router = new ConsistentHashRouter<>(shards.getNames(), clients(shards.getPools()));
+        this.primary = router.getNodes().get(0);
+    }
+
+    private static List<JedisRedisClient> clients(List<JedisPool> pools)
+    {
+        List<JedisRedisClient> clients = new ArrayList<>(pools.size());
+        for (JedisPool pool : pools)
+        {
+            JedisRedisClient client = new JedisRedisClient(pool);
+            client.setNearCacheInvalidation(false);
+            clients.add(client);
+        }
+        return clients;
+    }
+
+    public ConsistentHashRouter<JedisRedisClient> getRouter()
+    {
+        return router;
+    }
+
+    @Override
+    public <T> T get(KeyPrefix prefix, String key, Class<T> clazz)
+    {
+        return route(prefix, key).get(prefix, key, clazz);
+    }
+
+    @Override
+    public <T> boolean set(KeyPrefix prefix, String key, T value)
+    {
+        boolean result = route(prefix, key).set(prefix, key, value);
+        invalidateNearCache(prefix, key);
+        return result;
+    }
+
+    @Override
+    public boolean exists(KeyPrefix keyPrefix, String key)
+    {
+        return route(keyPrefix, key).exists(keyPrefix, key);
+    }
+
+    @Override
+    public long incr(KeyPrefix keyPrefix, String key)
+    {
+        long result = route(keyPrefix, key).incr(keyPrefix, key);
+        invalidateNearCache(keyPrefix, key);
+        return result;
+    }
+
+    @Override
+    public long decr(KeyPrefix keyPrefix, String key)
+    {
+        long result = route(keyPrefix, key).decr(keyPrefix, key);
+        invalidateNearCache(keyPrefix, key);
+        return result;
+    }
+
+    @Override
+    public boolean delete(KeyPrefix prefix, String key)
+    {
+        boolean result = route(prefix, key).delete(prefix, key);
+        invalidateNearCache(prefix, key);
+        return result;
+    }
+
+    /**
+     * 库存与购买标记必须路由到同一节点（使用相同的 hash tag），否则抛出 IllegalArgumentException
+     */
+    @Override
+    public AdmissionResult admit(KeyPrefix stockPrefix, String stockKey, KeyPrefix markPrefix, String markKey)
+    {
+        int shard = sameShard(stockPrefix, stockKey, markPrefix, markKey);
+        AdmissionResult result = router.getNodes().get(shard).admit(stockPrefix, stockKey, markPrefix, markKey);
+        invalidateNearCache(stockPrefix, stockKey);
+        return result;
+    }
+
+    @Override
+    public boolean release(KeyPrefix stockPrefix, String stockKey, KeyPrefix markPrefix, String markKey)
+    {
+        int shard = sameShard(stockPrefix, stockKey, markPrefix, markKey);
+        boolean released = router.getNodes().get(shard).release(stockPrefix, stockKey, markPrefix, markKey);
+        invalidateNearCache(stockPrefix, stockKey);
+        return released;
+    }
+
+    private int sameShard(KeyPrefix stockPrefix, String stockKey, KeyPrefix markPrefix, String markKey)
+    {
+        int shard = router.indexOf(stockPrefix.getPrefix() + stockKey);
+        if (router.indexOf(markPrefix.getPrefix() + markKey) != shard)
+            throw new IllegalArgumentException("stock key and mark key must share a hash tag: "
+                    + stockPrefix.getPrefix() + stockKey + ", " + markPrefix.getPrefix() + markKey);
+        return shard;
+    }
+
+    /**
+     * 在库存所在的节点上执行，消息追加到该节点上的 stream；库存与购买标记的要求同 admit
+     */
+    @Override
+    public AdmissionResult admitAndEnqueue(KeyPrefix stockPrefix, String stockKey, KeyPrefix markPrefix, String markKey,
+                                           String stream, String field, byte[] message)
+    {
+        int shard = sameShard(stockPrefix, stockKey, markPrefix, markKey);
+        AdmissionResult result = router.getNodes().get(shard)
+                .admitAndEnqueue(stockPrefix, stockKey, markPrefix, markKey, stream, field, message);
+        invalidateNearCache(stockPrefix, stockKey);
+        return result;
+    }
+
+    @Override
+    public <T> boolean setIfAbsent(KeyPrefix prefix, String key, T value)
+    {
+        boolean result = route(prefix, key).setIfAbsent(prefix, key, value);
+        invalidateNearCache(prefix, key);
+        return result;
+    }
+
+    @Override
+    public long incrBy(KeyPrefix keyPrefix, String key, long delta)
+    {
+        long result = route(keyPrefix, key).incrBy(keyPrefix, key, delta);
+        invalidateNearCache(keyPrefix, key);
+        return result;
+    }
+
+    @Override
+    public long decrAtMost(KeyPrefix keyPrefix, String key, long max)
+    {
+        long result = route(keyPrefix, key).decrAtMost(keyPrefix, key, max);
+        invalidateNearCache(keyPrefix, key);
+        return result;
+    }
+
+    @Override
+    public long publish(String channel, String message)
+    {
+        return primary.publish(channel, message);
+    }
+
+    @Override
+    public long setBits(KeyPrefix prefix, String key, long[] offsets)
+    {
+        return route(prefix, key).setBits(prefix, key, offsets);
+    }
+
+    @Override
+    public boolean[] getBits(KeyPrefix prefix, String key, long[] offsets)
+    {
+        return route(prefix, key).getBits(prefix, key, offsets);
+    }
+
+    @Override
+    public RedisBatchResult executeBatch(RedisBatch batch)
+    {
+        RedisBatchResult result;
+        if (router.size() == 1)
+            result = primary.executeBatch(batch);
+        else
+        {
+            ShardedBatch sharded = new ShardedBatch(batch, router);
+            RedisBatchResult[] results = new RedisBatchResult[sharded.shardCount()];
+            for (int shard = 0; shard < sharded.shardCount(); shard++)
+            {
+                RedisBatch shardBatch = sharded.batchOf(shard);
+                if (shardBatch != null)
+                    results[shard] = router.getNodes().get(shard).executeBatch(shardBatch);
+            }
+            result = sharded.merge(results);
+        }
+
+        for (RedisBatch.Operation operation : batch.getOperations())
+        {
+            if (isWrite(operation.getType()))
+                invalidateNearCache(operation.getPrefix(), operation.getKey());
+        }
+        return result;
+    }
+
+    private JedisRedisClient route(KeyPrefix prefix, String key)
+    {
+        return router.route(prefix.getPrefix() + key);
+    }
+
+    private static boolean isWrite(RedisBatch.Type type)
+    {
+        return type != RedisBatch.Type.GET && type != RedisBatch.Type.EXISTS;
+    }
+
+    /**
+     * 启用了近端缓存的前缀，写入后通过主节点通知各节点的近端缓存失效
+     */
+    private void invalidateNearCache(KeyPrefix prefix, String key)
+    {
+        if (prefix.nearCacheSize() > 0)
+            primary.publish(NearCacheRedisService.INVALIDATION_CHANNEL, prefix.getPrefix() + key);
+    }
+}
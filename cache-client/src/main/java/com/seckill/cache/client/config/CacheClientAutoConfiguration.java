@@ -0,0 +1,79 @@
+package com.seckill.cache.client.config;
+
+import com.seckill.cache.client.JedisLockClient;
+import com.seckill.cache.client.RedisShards;
+import com.seckill.cache.client.ShardedRedisAsyncClient;
+import com.seckill.cache.client.ShardedRedisClient;
+import com.seckill.common.api.cache.DLockApi;
+import com.seckill.common.api.cache.RedisServiceApi;
+import com.seckill.common.api.cache.RedisServiceAsyncApi;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+/**
+ * 进程内缓存客户端的自动配置
+ * <p>
+ * seckill.cache.mode=local 时生效：RedisServiceApi/DLockApi 直接通过本地 JedisPool 访问redis，
+ * RedisServiceAsyncApi 通过每个节点一个 lettuce 连接访问redis；
+ * 配置了 redis.nodes 时按一致性哈希分布到多个节点，分布式锁只使用主节点（第一个节点），
+ * 调用方依旧面向接口编程，不需要关心是本地调用还是 dubbo 远程调用
+ */
+@Configuration
+@ConditionalOnProperty(name = "seckill.cache.mode", havingValue = "local")
+@EnableConfigurationProperties(CacheClientProperties.class)
+@Slf4j
+public class CacheClientAutoConfiguration
+{
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnMissingBean
+    public RedisShards cacheClientRedisShards(CacheClientProperties properties)
+    {
+        JedisPoolConfig poolConfig=new JedisPoolConfig();
+        poolConfig.setMaxIdle(properties.getPoolMaxIdle());
+        poolConfig.setMaxTotal(properties.getPoolMaxTotal());
+        poolConfig.setMaxWaitMillis(properties.getPoolMaxWait() * 1000);
+
+        log.info("缓存客户端使用本地JedisPool：{}",properties.getNodes()==null?properties.getHost()+":"+properties.getPort():properties.getNodes());
+        return new RedisShards(properties.getNodes(),properties.getHost(),properties.getPort(),poolConfig,properties.getTimeout());
+    }
+
+    /**
+     * 主节点的连接池，由 RedisShards 负责关闭
+     */
+    @Bean(destroyMethod = "")
+    @ConditionalOnMissingBean
+    public JedisPool cacheClientJedisPool(RedisShards redisShards)
+    {
+        return redisShards.getPrimary();
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public RedisServiceApi redisServiceApi(RedisShards redisShards)
+    {
+        return new ShardedRedisClient(redisShards);
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnMissingBean
+    public RedisServiceAsyncApi redisServiceAsyncApi(RedisShards redisShards)
+    {
+        return new ShardedRedisAsyncClient(redisShards);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public DLockApi dLockApi(JedisPool jedisPool, CacheClientProperties properties)
+    {
+        JedisLockClient lockClient=new JedisLockClient(jedisPool);
+        lockClient.subscribe(properties.getHost(),properties.getPort(),properties.getTimeout());
+        return lockClient;
+    }
+}
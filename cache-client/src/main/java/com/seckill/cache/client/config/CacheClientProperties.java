@@ -0,0 +1,26 @@
+package com.seckill.cache.client.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 进程内缓存客户端的redis连接配置，与cache模块的 RedisConfig 使用相同的配置项
+ */
+@ConfigurationProperties(prefix = "redis")
+@Setter
+@Getter
+public class CacheClientProperties
+{
+    private String host = "127.0.0.1";
+    private int port = 6379;
+    private int timeout = 1000;
+    private int poolMaxTotal = 1000;
+    private int poolMaxIdle = 500;
+    private int poolMaxWait = 500;
+    /**
+     * 分片节点 host:port,host:port，为空时只使用 host/port
+     */
+    private String nodes;
+
+}
@@ -0,0 +1,56 @@
+package com.seckill.cache.client.config;
+
+import com.seckill.cache.client.InMemoryKeyspace;
+import com.seckill.cache.client.InMemoryLockClient;
+import com.seckill.cache.client.InMemoryRedisClient;
+import com.seckill.cache.client.RedisServiceAsyncAdapter;
+import com.seckill.common.api.cache.DLockApi;
+import com.seckill.common.api.cache.RedisServiceApi;
+import com.seckill.common.api.cache.RedisServiceAsyncApi;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 进程内缓存服务的自动配置
+ * <p>
+ * seckill.cache.mode=memory 时生效（通常通过 memory profile 的配置文件设置）：
+ * RedisServiceApi/RedisServiceAsyncApi 由同一个 InMemoryKeyspace 提供，DLockApi 由 InMemoryLockClient 提供，不需要redis
+ */
+@Configuration
+@ConditionalOnProperty(name = "seckill.cache.mode", havingValue = "memory")
+@Slf4j
+public class InMemoryCacheAutoConfiguration
+{
+
+    @Bean
+    @ConditionalOnMissingBean
+    public InMemoryKeyspace inMemoryKeyspace()
+    {
+        log.info("缓存服务使用进程内存储，数据不会持久化，也不会在节点间共享");
+        return new InMemoryKeyspace();
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public RedisServiceApi redisServiceApi(InMemoryKeyspace keyspace)
+    {
+        return new InMemoryRedisClient(keyspace);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public RedisServiceAsyncApi redisServiceAsyncApi(RedisServiceApi redisServiceApi)
+    {
+        return new RedisServiceAsyncAdapter(redisServiceApi);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public DLockApi dLockApi()
+    {
+        return new InMemoryLockClient();
+    }
+}
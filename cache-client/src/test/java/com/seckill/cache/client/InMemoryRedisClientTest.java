@@ -0,0 +1,239 @@
+package com.seckill.cache.client;
+
+import com.seckill.common.api.cache.vo.AccessKeyPrefix;
+import com.seckill.common.api.cache.vo.AdmissionResult;
+import com.seckill.common.api.cache.vo.GoodsKeyPrefix;
+import com.seckill.common.api.cache.vo.SkKeyPrefix;
+import com.seckill.common.api.cache.vo.SkUserKeyPrefix;
+import com.seckill.common.api.user.vo.UserVo;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * 进程内缓存服务：过期、自增/自减、锁，以及秒杀资格判定在并发下的正确性
+ */
+public class InMemoryRedisClientTest
+{
+    private final AtomicLong now = new AtomicLong(1_000_000L);
+
+    private InMemoryKeyspace keyspace;
+
+    private InMemoryRedisClient redisService;
+
+    private InMemoryLockClient lockClient;
+
+    @Before
+    public void setUp()
+    {
+        keyspace = new InMemoryKeyspace(now::get);
+        redisService = new InMemoryRedisClient(keyspace);
+        lockClient = new InMemoryLockClient(now::get);
+    }
+
+    @Test
+    public void valueExpiresWithPrefixTtl()
+    {
+        UserVo user = new UserVo();
+        user.setPhone(18912341234L);
+        user.setNickname("test");
+        redisService.set(SkUserKeyPrefix.TOKEN, "token", user);
+
+        UserVo cached = redisService.get(SkUserKeyPrefix.TOKEN, "token", UserVo.class);
+        assertEquals(user.getNickname(), cached.getNickname());
+        assertNotSame(user, cached);
+
+        now.addAndGet(SkUserKeyPrefix.TOKEN.expireSeconds() * 1000L);
+        assertNull(redisService.get(SkUserKeyPrefix.TOKEN, "token", UserVo.class));
+        assertFalse(redisService.exists(SkUserKeyPrefix.TOKEN, "token"));
+    }
+
+    @Test
+    public void incrKeepsTtlAndStartsFromZero()
+    {
+        assertEquals(1, redisService.incr(GoodsKeyPrefix.GOODS_STOCK, "1"));
+        assertEquals(0, redisService.decr(GoodsKeyPrefix.GOODS_STOCK, "1"));
+
+        AccessKeyPrefix access = AccessKeyPrefix.withExpire(5);
+        redisService.set(access, "counter", 5);
+        assertEquals(6, redisService.incr(access, "counter"));
+        now.addAndGet(5000);
+        assertEquals(1, redisService.incr(access, "counter"));
+    }
+
+    @Test
+    public void decrAtMostNeverGoesNegative()
+    {
+        redisService.set(GoodsKeyPrefix.GOODS_STOCK, "1", 7);
+        assertEquals(5, redisService.decrAtMost(GoodsKeyPrefix.GOODS_STOCK, "1", 5));
+        assertEquals(2, redisService.decrAtMost(GoodsKeyPrefix.GOODS_STOCK, "1", 5));
+        assertEquals(0, redisService.decrAtMost(GoodsKeyPrefix.GOODS_STOCK, "1", 5));
+        assertEquals(Integer.valueOf(0), redisService.get(GoodsKeyPrefix.GOODS_STOCK, "1", Integer.class));
+        assertEquals(0, redisService.decrAtMost(GoodsKeyPrefix.GOODS_STOCK, "missing", 5));
+    }
+
+    @Test
+    public void lockMatchesRedisLockSemantics()
+    {
+        assertTrue(lockClient.lock("lock", "a", 1000));
+        assertFalse(lockClient.lock("lock", "b", 1000));
+        assertFalse(lockClient.unlock("lock", "b"));
+        assertTrue(lockClient.unlock("lock", "a"));
+        assertFalse(lockClient.unlock("lock", "a"));
+
+        assertTrue(lockClient.lock("lock", "a", 1000));
+        now.addAndGet(1000);
+        assertFalse(lockClient.renew("lock", "a", 1000));
+        assertTrue(lockClient.lock("lock", "b", 1000));
+        assertFalse(lockClient.unlock("lock", "a"));
+    }
+
+    @Test
+    public void lockIsReentrantPerOwner()
+    {
+        assertTrue(lockClient.tryLock("lock", "a", 0, 1000));
+        assertTrue(lockClient.tryLock("lock", "a", 0, 1000));
+        assertTrue(lockClient.unlock("lock", "a"));
+        assertFalse(lockClient.tryLock("lock", "b", 0, 1000));
+
+        now.addAndGet(900);
+        assertTrue(lockClient.renew("lock", "a", 1000));
+        now.addAndGet(900);
+        assertFalse(lockClient.tryLock("lock", "b", 0, 1000));
+
+        assertTrue(lockClient.unlock("lock", "a"));
+        assertTrue(lockClient.tryLock("lock", "b", 0, 1000));
+    }
+
+    @Test
+    public void tryLockWakesUpWhenReleased() throws Exception
+    {
+        InMemoryLockClient realTimeLock = new InMemoryLockClient();
+        assertTrue(realTimeLock.tryLock("lock", "a", 0, 60_000));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Boolean> waiter = executor.submit(() -> realTimeLock.tryLock("lock", "b", 10_000, 60_000));
+        Thread.sleep(50);
+        assertFalse(waiter.isDone());
+
+        realTimeLock.unlock("lock", "a");
+        assertTrue(waiter.get(1, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertFalse(realTimeLock.tryLock("lock", "a", 20, 60_000));
+    }
+
+    @Test
+    public void bitsFollowRedisBitOrder()
+    {
+        assertEquals(3, redisService.setBits(SkUserKeyPrefix.PHONE_BLOOM, "bits", new long[]{0, 7, 100, 7}));
+        assertEquals(0, redisService.setBits(SkUserKeyPrefix.PHONE_BLOOM, "bits", new long[]{100}));
+
+        // 与 redis 一致：下标0为第一个字节的最高位
+        byte[] bits = keyspace.get(SkUserKeyPrefix.PHONE_BLOOM.getPrefix() + "bits");
+        assertEquals(13, bits.length);
+        assertEquals((byte) 0x81, bits[0]);
+
+        assertArrayEquals(new boolean[]{true, false, true, true, false},
+                redisService.getBits(SkUserKeyPrefix.PHONE_BLOOM, "bits", new long[]{0, 1, 7, 100, 1_000_000}));
+        assertArrayEquals(new boolean[]{false},
+                redisService.getBits(SkUserKeyPrefix.PHONE_BLOOM, "missing", new long[]{0}));
+    }
+
+    @Test
+    public void admitSellsExactlyTheStockUnderContention() throws Exception
+    {
+        int stock = 100;
+        int users = 2000;
+        int threads = 32;
+        redisService.set(GoodsKeyPrefix.GOODS_STOCK, GoodsKeyPrefix.stockKey(1), stock);
+
+        AtomicInteger admitted = new AtomicInteger();
+        AtomicInteger soldOut = new AtomicInteger();
+        AtomicInteger duplicate = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++)
+        {
+            int offset = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                // 每个用户请求两次，第二次只能是重复或售罄
+                for (int user = offset; user < users * 2; user += threads)
+                {
+                    AdmissionResult result = redisService.admit(GoodsKeyPrefix.GOODS_STOCK, GoodsKeyPrefix.stockKey(1),
+                            SkKeyPrefix.SK_BUYER, SkKeyPrefix.buyerKey(user % users, 1));
+                    if (result == AdmissionResult.ADMITTED)
+                        admitted.incrementAndGet();
+                    else if (result == AdmissionResult.SOLD_OUT)
+                        soldOut.incrementAndGet();
+                    else duplicate.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures)
+            future.get(30, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        assertEquals(stock, admitted.get());
+        assertEquals(users * 2, admitted.get() + soldOut.get() + duplicate.get());
+        assertEquals(Integer.valueOf(0), redisService.get(GoodsKeyPrefix.GOODS_STOCK, GoodsKeyPrefix.stockKey(1), Integer.class));
+
+        int marked = 0;
+        for (int user = 0; user < users; user++)
+        {
+            if (redisService.exists(SkKeyPrefix.SK_BUYER, SkKeyPrefix.buyerKey(user, 1)))
+                marked++;
+        }
+        assertEquals(stock, marked);
+    }
+
+    @Test
+    public void admitAndEnqueueAppendsOnlyAdmittedMessages()
+    {
+        redisService.set(GoodsKeyPrefix.GOODS_STOCK, GoodsKeyPrefix.stockKey(1), 1);
+
+        assertEquals(AdmissionResult.ADMITTED, redisService.admitAndEnqueue(GoodsKeyPrefix.GOODS_STOCK, GoodsKeyPrefix.stockKey(1),
+                SkKeyPrefix.SK_BUYER, SkKeyPrefix.buyerKey(1, 1), "stream", "m", new byte[]{1}));
+        assertEquals(AdmissionResult.DUPLICATE, redisService.admitAndEnqueue(GoodsKeyPrefix.GOODS_STOCK, GoodsKeyPrefix.stockKey(1),
+                SkKeyPrefix.SK_BUYER, SkKeyPrefix.buyerKey(1, 1), "stream", "m", new byte[]{1}));
+        assertEquals(AdmissionResult.SOLD_OUT, redisService.admitAndEnqueue(GoodsKeyPrefix.GOODS_STOCK, GoodsKeyPrefix.stockKey(1),
+                SkKeyPrefix.SK_BUYER, SkKeyPrefix.buyerKey(2, 1), "stream", "m", new byte[]{2}));
+
+        List<byte[]> entries = redisService.streamEntries("stream");
+        assertEquals(1, entries.size());
+        assertArrayEquals(new byte[]{1}, entries.get(0));
+    }
+
+    @Test
+    public void releaseReturnsStockOncePerMark()
+    {
+        redisService.set(GoodsKeyPrefix.GOODS_STOCK, GoodsKeyPrefix.stockKey(1), 1);
+        assertEquals(AdmissionResult.ADMITTED, redisService.admit(GoodsKeyPrefix.GOODS_STOCK, GoodsKeyPrefix.stockKey(1),
+                SkKeyPrefix.buyer(now.get() + 1000), SkKeyPrefix.buyerKey(1, 1)));
+
+        assertTrue(redisService.release(GoodsKeyPrefix.GOODS_STOCK, GoodsKeyPrefix.stockKey(1),
+                SkKeyPrefix.SK_BUYER, SkKeyPrefix.buyerKey(1, 1)));
+        assertFalse(redisService.release(GoodsKeyPrefix.GOODS_STOCK, GoodsKeyPrefix.stockKey(1),
+                SkKeyPrefix.SK_BUYER, SkKeyPrefix.buyerKey(1, 1)));
+        assertEquals(Integer.valueOf(1), redisService.get(GoodsKeyPrefix.GOODS_STOCK, GoodsKeyPrefix.stockKey(1), Integer.class));
+
+        // 撤销后同一用户可以再次获得资格
+        assertEquals(AdmissionResult.ADMITTED, redisService.admit(GoodsKeyPrefix.GOODS_STOCK, GoodsKeyPrefix.stockKey(1),
+                SkKeyPrefix.buyer(now.get() + 1000), SkKeyPrefix.buyerKey(1, 1)));
+    }
+}
@@ -0,0 +1,197 @@
+package com.seckill.cache.client;
+
+import com.seckill.common.api.cache.vo.KeyPrefix;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 近端缓存：命中与未命中（包括不存在的结果）、有效期、LRU 淘汰、本节点写入失效、读取期间失效的结果不缓存、重新订阅后清空
+ * <p>
+ * 直接写入 redisService 的值模拟其他节点的写入，近端缓存在失效之前仍返回旧值；
+ * redisService 的时钟固定，其中的值不会过期，近端缓存的有效期按实际时间计算
+ */
+public class NearCacheRedisServiceTest
+{
+    private static final long DEFAULT_TTL_MILLIS = 60_000;
+
+    private static final KeyPrefix PREFIX = prefix("near:", 60, 2);
+
+    private InMemoryRedisClient redisService;
+
+    private NearCacheRedisService nearCache;
+
+    @Before
+    public void setUp()
+    {
+        redisService = new InMemoryRedisClient(new InMemoryKeyspace(() -> 1_000_000L));
+        nearCache = new NearCacheRedisService(redisService, DEFAULT_TTL_MILLIS);
+    }
+
+    @Test
+    public void cachesHitsAndNegativeResults()
+    {
+        redisService.set(PREFIX, "a", "1");
+        assertEquals("1", nearCache.get(PREFIX, "a", String.class));
+        assertNull(nearCache.get(PREFIX, "b", String.class));
+
+        redisService.set(PREFIX, "a", "2");
+        redisService.set(PREFIX, "b", "2");
+        assertEquals("1", nearCache.get(PREFIX, "a", String.class));
+        assertNull(nearCache.get(PREFIX, "b", String.class));
+    }
+
+    @Test
+    public void cachesExistsIncludingAbsentKeys()
+    {
+        redisService.set(PREFIX, "a", "1");
+        assertTrue(nearCache.exists(PREFIX, "a"));
+        assertFalse(nearCache.exists(PREFIX, "b"));
+
+        redisService.delete(PREFIX, "a");
+        redisService.set(PREFIX, "b", "1");
+        assertTrue(nearCache.exists(PREFIX, "a"));
+        assertFalse(nearCache.exists(PREFIX, "b"));
+    }
+
+    @Test
+    public void prefixWithoutNearCacheIsNotCached()
+    {
+        KeyPrefix uncached = prefix("far:", 60, 0);
+        redisService.set(uncached, "a", "1");
+        assertEquals("1", nearCache.get(uncached, "a", String.class));
+
+        redisService.set(uncached, "a", "2");
+        assertEquals("2", nearCache.get(uncached, "a", String.class));
+    }
+
+    @Test
+    public void ttlIsCappedByPrefixExpire() throws InterruptedException
+    {
+        KeyPrefix shortLived = prefix("short:", 1, 2);
+        redisService.set(shortLived, "a", "1");
+        assertEquals("1", nearCache.get(shortLived, "a", String.class));
+
+        redisService.set(shortLived, "a", "2");
+        assertEquals("1", nearCache.get(shortLived, "a", String.class));
+
+        Thread.sleep(1100);
+        assertEquals("2", nearCache.get(shortLived, "a", String.class));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedBeyondNearCacheSize()
+    {
+        redisService.set(PREFIX, "a", "1");
+        redisService.set(PREFIX, "b", "1");
+        redisService.set(PREFIX, "c", "1");
+        nearCache.get(PREFIX, "a", String.class);
+        nearCache.get(PREFIX, "b", String.class);
+        nearCache.get(PREFIX, "a", String.class);
+        nearCache.get(PREFIX, "c", String.class);
+
+        redisService.set(PREFIX, "a", "2");
+        redisService.set(PREFIX, "b", "2");
+        redisService.set(PREFIX, "c", "2");
+        assertEquals("1", nearCache.get(PREFIX, "a", String.class));
+        assertEquals("1", nearCache.get(PREFIX, "c", String.class));
+        assertEquals("2", nearCache.get(PREFIX, "b", String.class));
+    }
+
+    @Test
+    public void writeOnThisNodeInvalidatesLocalEntry()
+    {
+        redisService.set(PREFIX, "a", "1");
+        assertEquals("1", nearCache.get(PREFIX, "a", String.class));
+
+        nearCache.set(PREFIX, "a", "2");
+        assertEquals("2", nearCache.get(PREFIX, "a", String.class));
+
+        nearCache.delete(PREFIX, "a");
+        assertNull(nearCache.get(PREFIX, "a", String.class));
+        assertFalse(nearCache.exists(PREFIX, "a"));
+    }
+
+    @Test
+    public void invalidationMessageRemovesEntry()
+    {
+        redisService.set(PREFIX, "a", "1");
+        assertEquals("1", nearCache.get(PREFIX, "a", String.class));
+
+        redisService.set(PREFIX, "a", "2");
+        nearCache.invalidate(PREFIX.getPrefix() + "a");
+        assertEquals("2", nearCache.get(PREFIX, "a", String.class));
+    }
+
+    @Test
+    public void loadRacingWithInvalidateIsNotCached()
+    {
+        // 读取到旧值之后、放入缓存之前，其他节点写入了新值并发来失效消息
+        InMemoryRedisClient racing = new InMemoryRedisClient(redisService.getKeyspace())
+        {
+            private boolean raced;
+
+            @Override
+            public <T> T get(KeyPrefix prefix, String key, Class<T> clazz)
+            {
+                T value = super.get(prefix, key, clazz);
+                if (!raced)
+                {
+                    raced = true;
+                    set(prefix, key, "2");
+                    nearCache.invalidate(prefix.getPrefix() + key);
+                }
+                return value;
+            }
+        };
+        nearCache = new NearCacheRedisService(racing, DEFAULT_TTL_MILLIS);
+
+        redisService.set(PREFIX, "a", "1");
+        assertEquals("1", nearCache.get(PREFIX, "a", String.class));
+        assertEquals("2", nearCache.get(PREFIX, "a", String.class));
+    }
+
+    /**
+     * 订阅（重连后重新订阅）成功时调用 clear，断开期间错过的失效消息不会留下旧值
+     */
+    @Test
+    public void clearOnResubscribeDropsAllEntries()
+    {
+        KeyPrefix other = prefix("other:", 60, 2);
+        redisService.set(PREFIX, "a", "1");
+        redisService.set(other, "a", "1");
+        nearCache.get(PREFIX, "a", String.class);
+        nearCache.get(other, "a", String.class);
+
+        redisService.set(PREFIX, "a", "2");
+        redisService.set(other, "a", "2");
+        nearCache.clear();
+        assertEquals("2", nearCache.get(PREFIX, "a", String.class));
+        assertEquals("2", nearCache.get(other, "a", String.class));
+    }
+
+    private static KeyPrefix prefix(String prefix, int expireSeconds, int nearCacheSize)
+    {
+        return new KeyPrefix()
+        {
+            @Override
+            public int expireSeconds()
+            {
+                return expireSeconds;
+            }
+
+            @Override
+            public String getPrefix()
+            {
+                return prefix;
+            }
+
+            @Override
+            public int nearCacheSize()
+            {
+                return nearCacheSize;
+            }
+        };
+    }
+}
@@ -0,0 +1,124 @@
+package com.seckill.cache.client;
+
+import com.seckill.common.api.cache.RedisServiceApi;
+import com.seckill.common.api.cache.vo.GoodsKeyPrefix;
+import com.seckill.common.api.cache.vo.SkUserKeyPrefix;
+import com.seckill.common.api.user.vo.UserVo;
+import org.apache.dubbo.config.ApplicationConfig;
+import org.apache.dubbo.config.ReferenceConfig;
+import org.apache.dubbo.config.RegistryConfig;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地直连（cache-client）与远程调用（dubbo -> cache模块）的延迟对比，输出 p50/p99
+ * <p>
+ * 需要本地运行 redis(6379)；remote 模式还需要 zookeeper(2181) 和 cache 模块
+ * <p>
+ * 运行：mvn -pl cache-client test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.seckill.cache.client.RedisLatencyBenchmark
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+@Threads(16)
+@State(Scope.Benchmark)
+public class RedisLatencyBenchmark
+{
+    @Param({"local", "remote"})
+    public String mode;
+
+    private RedisServiceApi redisService;
+
+    private JedisPool jedisPool;
+
+    private ReferenceConfig<RedisServiceApi> reference;
+
+    private UserVo user;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        if ("local".equals(mode))
+        {
+            JedisPoolConfig poolConfig = new JedisPoolConfig();
+            poolConfig.setMaxTotal(64);
+            poolConfig.setMaxIdle(64);
+            jedisPool = new JedisPool(poolConfig, "127.0.0.1", 6379, 1000);
+            redisService = new JedisRedisClient(jedisPool);
+        } else
+        {
+            reference = new ReferenceConfig<>();
+            reference.setApplication(new ApplicationConfig("seckill-cache-benchmark"));
+            reference.setRegistry(new RegistryConfig("zookeeper://127.0.0.1:2181"));
+            reference.setInterface(RedisServiceApi.class);
+            redisService = reference.get();
+        }
+
+        user = new UserVo();
+        user.setUuid(18912341234L);
+        user.setPhone(18912341234L);
+        user.setNickname("benchmark");
+        user.setRegisterDate(new Date());
+        user.setLoginCount(1);
+
+        redisService.set(SkUserKeyPrefix.TOKEN, "benchmark", user);
+        redisService.set(GoodsKeyPrefix.GOODS_STOCK, "benchmark", Integer.MAX_VALUE);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        redisService.delete(SkUserKeyPrefix.TOKEN, "benchmark");
+        redisService.delete(GoodsKeyPrefix.GOODS_STOCK, "benchmark");
+        if (jedisPool != null)
+            jedisPool.close();
+        if (reference != null)
+            reference.destroy();
+    }
+
+    /**
+     * 每个请求都会做的 token -> UserVo 查询
+     */
+    @Benchmark
+    public UserVo getToken()
+    {
+        return redisService.get(SkUserKeyPrefix.TOKEN, "benchmark", UserVo.class);
+    }
+
+    /**
+     * 刷新 token 有效期
+     */
+    @Benchmark
+    public boolean setToken()
+    {
+        return redisService.set(SkUserKeyPrefix.TOKEN, "benchmark", user);
+    }
+
+    /**
+     * 预减库存
+     */
+    @Benchmark
+    public long decrStock()
+    {
+        return redisService.decr(GoodsKeyPrefix.GOODS_STOCK, "benchmark");
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .include(RedisLatencyBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
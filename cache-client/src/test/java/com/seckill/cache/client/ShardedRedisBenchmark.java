@@ -0,0 +1,130 @@
+package com.seckill.cache.client;
+
+import com.seckill.common.api.cache.vo.GoodsKeyPrefix;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分片数量对吞吐量的影响：1~4 个 redis 节点，32 个线程对随机商品的库存做 incr/get
+ * <p>
+ * 运行前 main 方法先输出节点数从 n 增加到 n+1 时需要迁移的key比例（一致性哈希下约为 1/(n+1)）
+ * <p>
+ * 需要本地运行 4 个 redis 进程（6379~6382），例如：redis-server --port 6380 --save "" --daemonize yes
+ * <p>
+ * 运行：mvn -pl cache-client test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.seckill.cache.client.ShardedRedisBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+@Threads(32)
+@State(Scope.Benchmark)
+public class ShardedRedisBenchmark
+{
+    private static final int FIRST_PORT = 6379;
+
+    private static final int GOODS_COUNT = 10000;
+
+    @Param({"1", "2", "3", "4"})
+    public int nodes;
+
+    private RedisShards shards;
+
+    private ShardedRedisClient redisService;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        JedisPoolConfig poolConfig = new JedisPoolConfig();
+        poolConfig.setMaxTotal(64);
+        poolConfig.setMaxIdle(64);
+        shards = new RedisShards(nodeList(nodes), "127.0.0.1", FIRST_PORT, poolConfig, 1000);
+        redisService = new ShardedRedisClient(shards);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        for (int goodsId = 0; goodsId < GOODS_COUNT; goodsId++)
+            redisService.delete(GoodsKeyPrefix.GOODS_STOCK, GoodsKeyPrefix.stockKey(goodsId));
+        shards.close();
+    }
+
+    @Benchmark
+    public long incrStock()
+    {
+        return redisService.incr(GoodsKeyPrefix.GOODS_STOCK, randomStockKey());
+    }
+
+    @Benchmark
+    public Long getStock()
+    {
+        return redisService.get(GoodsKeyPrefix.GOODS_STOCK, randomStockKey(), Long.class);
+    }
+
+    private static String randomStockKey()
+    {
+        return GoodsKeyPrefix.stockKey(ThreadLocalRandom.current().nextInt(GOODS_COUNT));
+    }
+
+    private static String nodeList(int count)
+    {
+        StringBuilder nodes = new StringBuilder();
+        for (int i = 0; i < count; i++)
+        {
+            if (i > 0)
+                nodes.append(',');
+            nodes.append("127.0.0.1:").append(FIRST_PORT + i);
+        }
+        return nodes.toString();
+    }
+
+    /**
+     * 节点数从 from 增加到 from+1 时，改变所在节点的key的比例
+     */
+    private static double remappedFraction(int from)
+    {
+        ConsistentHashRouter<String> before = router(from);
+        ConsistentHashRouter<String> after = router(from + 1);
+        int moved = 0;
+        for (int goodsId = 0; goodsId < GOODS_COUNT; goodsId++)
+        {
+            String key = GoodsKeyPrefix.GOODS_STOCK.getPrefix() + GoodsKeyPrefix.stockKey(goodsId);
+            if (!before.route(key).equals(after.route(key)))
+                moved++;
+        }
+        return (double) moved / GOODS_COUNT;
+    }
+
+    private static ConsistentHashRouter<String> router(int count)
+    {
+        List<String> names = new ArrayList<>(count);
+        for (String node : nodeList(count).split(","))
+            names.add(node);
+        return new ConsistentHashRouter<>(names, Collections.unmodifiableList(names));
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        for (int from = 1; from < 4; from++)
+            System.out.printf("%d -> %d nodes: %.1f%% keys remapped (ideal %.1f%%)%n",
+                    from, from + 1, remappedFraction(from) * 100, 100.0 / (from + 1));
+
+        Options options = new OptionsBuilder()
+                .include(ShardedRedisBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,101 @@
+package com.seckill.cache.client;
+
+import com.seckill.common.api.cache.RedisServiceApi;
+import com.seckill.common.api.cache.vo.GoodsKeyPrefix;
+import com.seckill.common.api.cache.vo.RedisBatch;
+import com.seckill.common.api.cache.vo.RedisBatchResult;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 网关启动时的库存预热：逐个 set 与 executeBatch（MSET / pipeline）对比
+ * <p>
+ * 需要本地运行 redis(6379)
+ * <p>
+ * 运行：mvn -pl cache-client test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.seckill.cache.client.StockWarmupBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StockWarmupBenchmark
+{
+    @Param({"10000"})
+    public int goodsCount;
+
+    private JedisPool jedisPool;
+
+    private RedisServiceApi redisService;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        JedisPoolConfig poolConfig = new JedisPoolConfig();
+        poolConfig.setMaxTotal(8);
+        jedisPool = new JedisPool(poolConfig, "127.0.0.1", 6379, 5000);
+        redisService = new JedisRedisClient(jedisPool);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        RedisBatch batch = new RedisBatch();
+        for (long goodsId = 1; goodsId <= goodsCount; goodsId++)
+            batch.delete(GoodsKeyPrefix.GOODS_STOCK, "benchmark" + goodsId);
+        redisService.executeBatch(batch);
+        jedisPool.close();
+    }
+
+    /**
+     * 改造前：每个商品一次 set
+     */
+    @Benchmark
+    public void loopSet()
+    {
+        for (long goodsId = 1; goodsId <= goodsCount; goodsId++)
+            redisService.set(GoodsKeyPrefix.GOODS_STOCK, "benchmark" + goodsId, 100);
+    }
+
+    /**
+     * 改造后：全部为不过期的 set，合并为一次 MSET
+     */
+    @Benchmark
+    public RedisBatchResult batchMset()
+    {
+        RedisBatch batch = new RedisBatch();
+        for (long goodsId = 1; goodsId <= goodsCount; goodsId++)
+            batch.set(GoodsKeyPrefix.GOODS_STOCK, "benchmark" + goodsId, 100);
+        return redisService.executeBatch(batch);
+    }
+
+    /**
+     * 混合操作时走 pipeline
+     */
+    @Benchmark
+    public RedisBatchResult batchPipeline()
+    {
+        RedisBatch batch = new RedisBatch();
+        for (long goodsId = 1; goodsId <= goodsCount; goodsId++)
+            batch.set(GoodsKeyPrefix.GOODS_STOCK, "benchmark" + goodsId, 100)
+                    .exists(GoodsKeyPrefix.GOODS_STOCK, "benchmark" + goodsId);
+        return redisService.executeBatch(batch);
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .include(StockWarmupBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -17,5 +17,9 @@ public class RedisConfig
     private int poolMaxTotal;
     private int poolMaxIdle;
     private int poolMaxWait;
+    /**
+     * 分片节点 host:port,host:port，为空时只使用 host/port
+     */
+    private String nodes;
 
 }
@@ -1,5 +1,6 @@
 package com.seckill.cache.config;
 
+import com.seckill.cache.client.RedisShards;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.stereotype.Component;
@@ -12,15 +13,26 @@ public class RedisPoolFactory
     @Autowired
     RedisConfig redisConfig;
 
-    @Bean
-    public JedisPool JedisPoolFactory()
+    /**
+     * 各分片节点的连接池，每个节点使用相同的连接池配置
+     */
+    @Bean(destroyMethod = "close")
+    public RedisShards redisShards()
     {
         JedisPoolConfig poolConfig=new JedisPoolConfig();
         poolConfig.setMaxIdle(redisConfig.getPoolMaxIdle());
         poolConfig.setMaxTotal(redisConfig.getPoolMaxTotal());
         poolConfig.setMaxWaitMillis(redisConfig.getPoolMaxWait() * 1000);
 
-        JedisPool pool=new JedisPool(poolConfig,redisConfig.getHost(),redisConfig.getPort(),redisConfig.getTimeout());
-        return pool;
+        return new RedisShards(redisConfig.getNodes(),redisConfig.getHost(),redisConfig.getPort(),poolConfig,redisConfig.getTimeout());
+    }
+
+    /**
+     * 主节点的连接池，供分布式锁使用；由 RedisShards 负责关闭
+     */
+    @Bean(destroyMethod = "")
+    public JedisPool JedisPoolFactory(RedisShards redisShards)
+    {
+        return redisShards.getPrimary();
     }
 }
@@ -0,0 +1,26 @@
+package com.seckill.cache.service;
+
+import com.seckill.cache.client.RedisShards;
+import com.seckill.cache.client.ShardedRedisAsyncClient;
+import com.seckill.common.api.cache.RedisServiceAsyncApi;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.dubbo.config.annotation.Service;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * 通过dubbo对外暴露异步redis服务，具体实现见 cache-client 模块的 ShardedRedisAsyncClient
+ * <p>
+ * 方法返回 CompletableFuture，dubbo 在 future 完成时才写回响应，等待redis期间不占用dubbo的业务线程
+ */
+@Service(interfaceClass = RedisServiceAsyncApi.class)
+@Slf4j
+public class RedisServiceAsyncImpl extends ShardedRedisAsyncClient
+{
+
+    @Autowired
+    public RedisServiceAsyncImpl(RedisShards redisShards)
+    {
+        super(redisShards);
+    }
+
+}
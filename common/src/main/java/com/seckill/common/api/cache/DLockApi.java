@@ -2,24 +2,51 @@ package com.seckill.common.api.cache;
 
 /**
  * 分布式锁接口
+ * <p>
+ * 锁是可重入的：同一个 uniqueValue（持有者）可以多次加锁，加锁几次就需要解锁几次，最后一次解锁才真正释放；
+ * 持有者需要较长时间时，用 LockWatchdog 定期调用 renew 续期，而不是一开始就设置很长的过期时间
  */
 public interface DLockApi {
     /**
-     * 获取锁
+     * 获取锁，只尝试一次
      *
      * @param lockKey     锁
      * @param uniqueValue 能够唯一标识请求的值，以此保证锁的加解锁是同一个客户端
      * @param expireTime  过期时间, 单位：milliseconds
-     * @return
+     * @return 获取成功（或已经持有，重入）返回 true
      */
     boolean lock(String lockKey, String uniqueValue, int expireTime);
 
     /**
-     * 使用Lua脚本保证解锁的原子性
+     * 获取锁，被其他持有者占用时最多等待 waitMillis
+     * <p>
+     * 等待期间按指数退避重试，锁被释放时通过 redis 频道提前唤醒；
+     * 通过dubbo远程调用时，waitMillis 需要小于调用的超时时间
+     *
+     * @param lockKey     锁
+     * @param uniqueValue 持有者的唯一标识
+     * @param waitMillis  最长等待时间，不大于0表示只尝试一次
+     * @param leaseMillis 锁的过期时间（租期）
+     * @return 获取成功（或已经持有，重入）返回 true，等待超时返回 false
+     */
+    boolean tryLock(String lockKey, String uniqueValue, long waitMillis, long leaseMillis);
+
+    /**
+     * 续期：锁仍由 uniqueValue 持有时，把过期时间重置为 leaseMillis
+     *
+     * @param lockKey     锁
+     * @param uniqueValue 持有者的唯一标识
+     * @param leaseMillis 新的租期
+     * @return 锁已经过期或被其他持有者占用时返回 false
+     */
+    boolean renew(String lockKey, String uniqueValue, long leaseMillis);
+
+    /**
+     * 使用Lua脚本保证解锁的原子性，重入的锁只减少一次持有计数
      *
      * @param lockKey     锁
      * @param uniqueValue 能够唯一标识请求的值，以此保证锁的加解锁是同一个客户端
-     * @return
+     * @return 由 uniqueValue 持有时返回 true，否则（已过期、被其他持有者占用）返回 false
      */
     boolean unlock(String lockKey, String uniqueValue);
 }
@@ -1,7 +1,10 @@
 package com.seckill.common.api.cache;
 
 
+import com.seckill.common.api.cache.vo.AdmissionResult;
 import com.seckill.common.api.cache.vo.KeyPrefix;
+import com.seckill.common.api.cache.vo.RedisBatch;
+import com.seckill.common.api.cache.vo.RedisBatchResult;
 
 /**
  * redis 服务接口
@@ -66,4 +69,120 @@ public interface RedisServiceApi {
      * @return
      */
     boolean delete(KeyPrefix prefix, String key);
+
+    /**
+     * 秒杀资格判定，通过预加载的lua脚本（EVALSHA）在一次往返中原子地完成：
+     * 1. 购买标记已存在，返回 DUPLICATE，不扣减库存
+     * 2. 库存不大于0，返回 SOLD_OUT
+     * 3. 扣减库存并写入购买标记，返回 ADMITTED
+     *
+     * @param stockPrefix 库存key的前缀
+     * @param stockKey    库存key
+     * @param markPrefix  购买标记key的前缀
+     * @param markKey     购买标记key
+     * @return 判定结果
+     */
+    AdmissionResult admit(KeyPrefix stockPrefix, String stockKey, KeyPrefix markPrefix, String markKey);
+
+    /**
+     * 与 admit 相同，获得资格时在同一个lua脚本中把消息追加到 stream（XADD），
+     * 扣减库存与消息入队一起生效，不再需要另外投递到消息队列
+     * <p>
+     * stream 位于库存所在的节点上，不参与按key的路由：分片时每个节点各有一条同名的 stream
+     *
+     * @param stockPrefix 库存key的前缀
+     * @param stockKey    库存key
+     * @param markPrefix  购买标记key的前缀
+     * @param markKey     购买标记key
+     * @param stream      stream 的key（不加前缀）
+     * @param field       消息的字段名
+     * @param message     消息内容
+     * @return 判定结果，只有 ADMITTED 时追加了消息
+     */
+    AdmissionResult admitAndEnqueue(KeyPrefix stockPrefix, String stockKey, KeyPrefix markPrefix, String markKey,
+                                    String stream, String field, byte[] message);
+
+    /**
+     * 撤销秒杀资格（如消息投递失败、订单创建失败），通过lua脚本原子地完成：
+     * 购买标记存在时删除标记并把库存加一，标记不存在时不做任何事，同一资格重复撤销时只退回一次库存
+     * <p>
+     * 库存与购买标记的要求同 admit
+     *
+     * @param stockPrefix 库存key的前缀
+     * @param stockKey    库存key
+     * @param markPrefix  购买标记key的前缀
+     * @param markKey     购买标记key
+     * @return 是否删除了购买标记并退回了库存
+     */
+    boolean release(KeyPrefix stockPrefix, String stockKey, KeyPrefix markPrefix, String markKey);
+
+    /**
+     * key 不存在时才设置值（SETNX），过期时间取前缀中的设置
+     *
+     * @param prefix key的前缀
+     * @param key    key
+     * @param value  值
+     * @param <T>    值的类型
+     * @return 设置成功返回 true，key 已存在返回 false
+     */
+    <T> boolean setIfAbsent(KeyPrefix prefix, String key, T value);
+
+    /**
+     * 对key的值增加 delta（INCRBY）
+     *
+     * @param keyPrefix key的前缀
+     * @param key       key
+     * @param delta     增量
+     * @return 增加之后的值
+     */
+    long incrBy(KeyPrefix keyPrefix, String key, long delta);
+
+    /**
+     * 原子地从key的值中扣减至多 max，扣减后不会小于0（lua脚本）
+     * <p>
+     * 用于从库存中一次批量租借多个单位
+     *
+     * @param keyPrefix key的前缀
+     * @param key       key
+     * @param max       最多扣减的数量
+     * @return 实际扣减的数量，库存为空或key不存在时返回0
+     */
+    long decrAtMost(KeyPrefix keyPrefix, String key, long max);
+
+    /**
+     * 向频道发布消息（PUBLISH）
+     *
+     * @param channel 频道
+     * @param message 消息
+     * @return 收到消息的订阅者数量
+     */
+    long publish(String channel, String message);
+
+    /**
+     * 将位图中的若干位置为1（SETBIT），在一次往返中完成
+     *
+     * @param prefix  key的前缀
+     * @param key     key
+     * @param offsets 位的下标
+     * @return 原来为0、本次新置为1的位的数量
+     */
+    long setBits(KeyPrefix prefix, String key, long[] offsets);
+
+    /**
+     * 读取位图中的若干位（GETBIT），在一次往返中完成；key 不存在或超出位图长度的位为0
+     *
+     * @param prefix  key的前缀
+     * @param key     key
+     * @param offsets 位的下标
+     * @return 与 offsets 一一对应，位为1时为 true
+     */
+    boolean[] getBits(KeyPrefix prefix, String key, long[] offsets);
+
+    /**
+     * 在一次往返中执行一批操作（pipeline；全部为GET时使用MGET，全部为不过期的SET时使用MSET）
+     *
+     * @param batch 操作列表，可以跨不同的前缀
+     * @return 按操作顺序排列的结果
+     */
+    RedisBatchResult executeBatch(RedisBatch batch);
 }
@@ -0,0 +1,92 @@
+package com.seckill.common.api.cache;
+
+import com.seckill.common.api.cache.vo.KeyPrefix;
+import com.seckill.common.api.cache.vo.RedisBatch;
+import com.seckill.common.api.cache.vo.RedisBatchResult;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * redis 服务的异步接口，语义与 RedisServiceApi 中的同名方法一致
+ * <p>
+ * 1. 方法立即返回，命令在一个多路复用的连接上发送，不占用连接池中的连接，也不阻塞调用线程
+ * 2. 调用方可以同时发起多个操作，再按需组合/等待结果
+ * 3. 通过dubbo远程调用时，服务端同样异步执行，不占用dubbo的业务线程
+ */
+public interface RedisServiceAsyncApi {
+
+    /**
+     * 异步的get操作
+     *
+     * @param prefix key的前缀
+     * @param key    业务层传入的key
+     * @param clazz  存储在redis中的对象类型
+     * @param <T>    指定对象对应的类型
+     * @return 存储于redis中的对象，key不存在时为null
+     */
+    <T> CompletableFuture<T> get(KeyPrefix prefix, String key, Class<T> clazz);
+
+    /**
+     * 异步的set操作，过期时间取前缀中的设置
+     *
+     * @param prefix 键的前缀
+     * @param key    键
+     * @param value  值
+     * @return 操作成功为true
+     */
+    <T> CompletableFuture<Boolean> set(KeyPrefix prefix, String key, T value);
+
+    /**
+     * 判断key是否存在于redis中
+     *
+     * @param keyPrefix key的前缀
+     * @param key       key
+     * @return 存在为true
+     */
+    CompletableFuture<Boolean> exists(KeyPrefix keyPrefix, String key);
+
+    /**
+     * 自增
+     *
+     * @param keyPrefix key的前缀
+     * @param key       key
+     * @return 自增之后的值
+     */
+    CompletableFuture<Long> incr(KeyPrefix keyPrefix, String key);
+
+    /**
+     * 自减
+     *
+     * @param keyPrefix key的前缀
+     * @param key       key
+     * @return 自减之后的值
+     */
+    CompletableFuture<Long> decr(KeyPrefix keyPrefix, String key);
+
+    /**
+     * 删除key
+     *
+     * @param prefix key的前缀
+     * @param key    key
+     * @return key存在并被删除为true
+     */
+    CompletableFuture<Boolean> delete(KeyPrefix prefix, String key);
+
+    /**
+     * key 不存在时才设置值，过期时间取前缀中的设置
+     *
+     * @param prefix key的前缀
+     * @param key    key
+     * @param value  值
+     * @return 设置成功返回 true，key 已存在返回 false
+     */
+    <T> CompletableFuture<Boolean> setIfAbsent(KeyPrefix prefix, String key, T value);
+
+    /**
+     * 批量执行一组操作，各命令连续写入连接、不等待前一个命令的响应
+     *
+     * @param batch 操作列表，可以跨不同的前缀
+     * @return 按操作顺序排列的结果，结果类型与 RedisServiceApi.executeBatch 一致
+     */
+    CompletableFuture<RedisBatchResult> executeBatch(RedisBatch batch);
+}
@@ -0,0 +1,24 @@
+package com.seckill.common.api.cache.vo;
+
+/**
+ * 秒杀资格判定结果
+ *
+ * @author noodle
+ */
+public enum AdmissionResult {
+
+    /**
+     * 获得秒杀资格：已扣减库存并记录了用户的购买标记
+     */
+    ADMITTED,
+
+    /**
+     * 库存不足，秒杀结束
+     */
+    SOLD_OUT,
+
+    /**
+     * 用户已经秒杀过该商品
+     */
+    DUPLICATE
+}
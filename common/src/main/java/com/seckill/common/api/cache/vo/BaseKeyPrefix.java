@@ -1,5 +1,7 @@
 package com.seckill.common.api.cache.vo;
 
+import com.seckill.common.codec.ValueCodecs;
+
 
 /**
  * 模板方法的基本类
@@ -18,6 +20,16 @@ public abstract class BaseKeyPrefix implements KeyPrefix {
      */
     String prefix;
 
+    /**
+     * 缓存值的编解码器
+     */
+    String codec;
+
+    /**
+     * 近端缓存的容量，0为不启用
+     */
+    int nearCacheSize;
+
 
     /**
      * 默认过期时间为0，即不过期，过期时间受到redis的缓存策略影响
@@ -30,8 +42,13 @@ public abstract class BaseKeyPrefix implements KeyPrefix {
 
 
     public BaseKeyPrefix(int expireSeconds, String prefix) {
+        this(expireSeconds, prefix, ValueCodecs.JSON);
+    }
+
+    public BaseKeyPrefix(int expireSeconds, String prefix, String codec) {
         this.expireSeconds = expireSeconds;
         this.prefix = prefix;
+        this.codec = codec;
     }
 
     /**
@@ -54,4 +71,26 @@ public abstract class BaseKeyPrefix implements KeyPrefix {
         String simpleName = getClass().getSimpleName();
         return simpleName + ":" + prefix;
     }
+
+    @Override
+    public String codec() {
+        return codec;
+    }
+
+    @Override
+    public int nearCacheSize() {
+        return nearCacheSize;
+    }
+
+    /**
+     * 为该前缀启用近端缓存（在定义前缀常量时调用）
+     *
+     * @param maxSize 最多缓存的key数量
+     * @return 当前前缀
+     */
+    @SuppressWarnings("unchecked")
+    public <P extends BaseKeyPrefix> P withNearCache(int maxSize) {
+        this.nearCacheSize = maxSize;
+        return (P) this;
+    }
 }
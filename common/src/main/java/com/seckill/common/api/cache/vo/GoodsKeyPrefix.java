@@ -15,7 +15,7 @@ public class GoodsKeyPrefix extends BaseKeyPrefix  implements Serializable {
 
     // 缓存在redis中的商品列表页面的key的前缀
     public static GoodsKeyPrefix goodsListKeyPrefix = new GoodsKeyPrefix(60, "goodsList");
-    public static GoodsKeyPrefix GOODS_LIST_HTML = new GoodsKeyPrefix(60, "goodsListHtml");
+    public static GoodsKeyPrefix GOODS_LIST_HTML = new GoodsKeyPrefix(60, "goodsListHtml").withNearCache(4);
 
     // 缓存在redis中的商品详情页面的key的前缀
     public static GoodsKeyPrefix goodsDetailKeyPrefix = new GoodsKeyPrefix(60, "goodsDetail");
@@ -23,7 +23,29 @@ public class GoodsKeyPrefix extends BaseKeyPrefix  implements Serializable {
     // 缓存在redis中的商品库存的前缀(缓存过期时间为永久)
     public static GoodsKeyPrefix seckillGoodsStockPrefix = new GoodsKeyPrefix(0, "goodsStock");
     /**
-     * 缓存在redis中的商品库存的前缀(缓存过期时间为永久)
+     * 缓存在redis中的商品库存的前缀(缓存过期时间为永久)，key 见 stockKey
      */
     public static GoodsKeyPrefix GOODS_STOCK = new GoodsKeyPrefix(0, "goodsStock");
+
+    /**
+     * 商品库存的key，以商品id为 hash tag，与该商品的用户购买标记位于同一个分片；
+     * 分段库存（seckill.stock.mode=striped）下不使用，库存只在 stripeKey 中
+     */
+    public static String stockKey(long goodsId) {
+        return HashTag.of(goodsId);
+    }
+
+    /**
+     * 分段库存中某一段的key，每一段使用不同的 hash tag，分布在不同的分片上
+     */
+    public static String stripeKey(long goodsId, int stripe) {
+        return HashTag.of(goodsId + ":" + stripe);
+    }
+
+    /**
+     * 分段库存下用户所属的段：网关在该段上扣减库存、写入购买标记，其他服务退回库存时也按此找到同一段
+     */
+    public static int stripeOf(long userId, int stripes) {
+        return Math.floorMod(Long.hashCode(userId * 0x9e3779b97f4a7c15L), stripes);
+    }
 }
@@ -0,0 +1,40 @@
+package com.seckill.common.api.cache.vo;
+
+/**
+ * redis key 的 hash tag（与 redis cluster 的规则一致）
+ * <p>
+ * key 中第一对 {} 之间的内容不为空时，只按这部分内容选择分片，
+ * 这样同一商品的库存和用户购买标记等相关的key落在同一个分片上，可以在一个lua脚本中同时操作
+ *
+ * @author noodle
+ */
+public final class HashTag {
+
+    private HashTag() {
+    }
+
+    /**
+     * @return {tag}
+     */
+    public static String of(Object tag) {
+        return "{" + tag + "}";
+    }
+
+    /**
+     * 用于选择分片的部分
+     *
+     * @param key 带前缀的真实key
+     * @return key 中的 hash tag，没有（或为空）时返回整个key
+     */
+    public static String routingKey(String key) {
+        int start = key.indexOf('{');
+        if (start < 0) {
+            return key;
+        }
+        int end = key.indexOf('}', start + 1);
+        if (end <= start + 1) {
+            return key;
+        }
+        return key.substring(start + 1, end);
+    }
+}
@@ -1,5 +1,7 @@
 package com.seckill.common.api.cache.vo;
 
+import com.seckill.common.codec.ValueCodecs;
+
 /**
  * redis 键的前缀
  * 之所以在key前面设置一个前缀，是因为如果出现设置相同的key情形，可以通过前缀加以区分
@@ -21,4 +23,22 @@ public interface KeyPrefix {
      * @return 前缀
      */
     String getPrefix();
+
+    /**
+     * 缓存值使用的编解码器名称，见 ValueCodecs
+     *
+     * @return 默认为 json
+     */
+    default String codec() {
+        return ValueCodecs.JSON;
+    }
+
+    /**
+     * 网关进程内近端缓存的容量，写入/删除时通过redis频道通知各节点失效
+     *
+     * @return 大于0时启用近端缓存，默认为0（不启用）
+     */
+    default int nearCacheSize() {
+        return 0;
+    }
 }
@@ -0,0 +1,25 @@
+package com.seckill.common.api.cache.vo;
+
+import java.io.Serializable;
+
+/**
+ * 租约的key前缀：短时间内只允许一个持有者执行某项工作，到期自动释放
+ *
+ * @author noodle
+ */
+public class LeaseKeyPrefix extends BaseKeyPrefix implements Serializable {
+
+    public LeaseKeyPrefix(int expireSeconds, String prefix) {
+        super(expireSeconds, prefix);
+    }
+
+    /**
+     * 缓存未命中时的加载租约，key 为被加载的缓存的真实key，见 SingleFlightLoader
+     */
+    public static LeaseKeyPrefix CACHE_LOAD = new LeaseKeyPrefix(3, "cacheLoad");
+
+    /**
+     * 启动时把已注册手机号写入 redis 布隆过滤器的租约，只由一个节点写入
+     */
+    public static LeaseKeyPrefix PHONE_BLOOM_LOAD = new LeaseKeyPrefix(10 * 60, "phoneBloomLoad");
+}
@@ -1,5 +1,7 @@
 package com.seckill.common.api.cache.vo;
 
+import com.seckill.common.codec.ValueCodecs;
+
 import java.io.Serializable;
 
 /**
@@ -17,11 +19,15 @@ public class OrderKeyPrefix extends BaseKeyPrefix  implements Serializable {
         super(prefix);
     }
 
+    public OrderKeyPrefix(int expireSeconds, String prefix, String codec) {
+        super(expireSeconds, prefix, codec);
+    }
+
     /**
      * 秒杀订单信息的前缀
      */
     public static OrderKeyPrefix getSeckillOrderByUidGid = new OrderKeyPrefix("getSeckillOrderByUidGid");
-    public static OrderKeyPrefix SK_ORDER = new OrderKeyPrefix("SK_ORDER");
+    public static OrderKeyPrefix SK_ORDER = new OrderKeyPrefix(0, "SK_ORDER", ValueCodecs.BINARY);
 
 
 }
@@ -0,0 +1,135 @@
+package com.seckill.common.api.cache.vo;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 一批redis操作，由 RedisServiceApi.executeBatch 在一次往返中执行（pipeline，全部为GET/SET时使用 MGET/MSET）
+ * <p>
+ * 结果按添加顺序保存在 RedisBatchResult 中：
+ * get -> 值（不存在为 null），set/setIfAbsent/exists/delete/expire -> Boolean，incr/decr -> Long
+ * <p>
+ * 批量操作不是事务，各操作之间不保证原子性
+ *
+ * @author noodle
+ */
+public class RedisBatch implements Serializable {
+
+    public enum Type {
+        GET, SET, SET_IF_ABSENT, EXISTS, INCR, DECR, DELETE, EXPIRE
+    }
+
+    /**
+     * 单个操作
+     */
+    public static class Operation implements Serializable {
+        private final Type type;
+        private final KeyPrefix prefix;
+        private final String key;
+        private final Object value;
+        private final Class<?> valueClass;
+
+        Operation(Type type, KeyPrefix prefix, String key, Object value, Class<?> valueClass) {
+            this.type = type;
+            this.prefix = prefix;
+            this.key = key;
+            this.value = value;
+            this.valueClass = valueClass;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public KeyPrefix getPrefix() {
+            return prefix;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public Object getValue() {
+            return value;
+        }
+
+        public Class<?> getValueClass() {
+            return valueClass;
+        }
+
+        public String getRealKey() {
+            return prefix.getPrefix() + key;
+        }
+    }
+
+    private final List<Operation> operations = new ArrayList<>();
+
+    public <T> RedisBatch get(KeyPrefix prefix, String key, Class<T> clazz) {
+        return add(new Operation(Type.GET, prefix, key, null, clazz));
+    }
+
+    public <T> RedisBatch set(KeyPrefix prefix, String key, T value) {
+        return add(new Operation(Type.SET, prefix, key, value, null));
+    }
+
+    public <T> RedisBatch setIfAbsent(KeyPrefix prefix, String key, T value) {
+        return add(new Operation(Type.SET_IF_ABSENT, prefix, key, value, null));
+    }
+
+    public RedisBatch exists(KeyPrefix prefix, String key) {
+        return add(new Operation(Type.EXISTS, prefix, key, null, null));
+    }
+
+    public RedisBatch incr(KeyPrefix prefix, String key) {
+        return add(new Operation(Type.INCR, prefix, key, null, null));
+    }
+
+    public RedisBatch decr(KeyPrefix prefix, String key) {
+        return add(new Operation(Type.DECR, prefix, key, null, null));
+    }
+
+    public RedisBatch delete(KeyPrefix prefix, String key) {
+        return add(new Operation(Type.DELETE, prefix, key, null, null));
+    }
+
+    /**
+     * 按前缀的过期时间重新设置key的有效期
+     */
+    public RedisBatch expire(KeyPrefix prefix, String key) {
+        return add(new Operation(Type.EXPIRE, prefix, key, null, null));
+    }
+
+    /**
+     * 添加一个已有的操作，用于按分片拆分批量操作
+     */
+    public RedisBatch add(Operation operation) {
+        operations.add(operation);
+        return this;
+    }
+
+    public List<Operation> getOperations() {
+        return Collections.unmodifiableList(operations);
+    }
+
+    public int size() {
+        return operations.size();
+    }
+
+    public boolean isEmpty() {
+        return operations.isEmpty();
+    }
+
+    /**
+     * 是否所有操作都是同一类型
+     */
+    public boolean allOf(Type type) {
+        for (Operation operation : operations) {
+            if (operation.getType() != type) {
+                return false;
+            }
+        }
+        return !operations.isEmpty();
+    }
+}
@@ -0,0 +1,32 @@
+package com.seckill.common.api.cache.vo;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * RedisBatch 的执行结果，与操作的添加顺序一一对应
+ *
+ * @author noodle
+ */
+public class RedisBatchResult implements Serializable {
+
+    private final List<Object> results;
+
+    public RedisBatchResult(List<Object> results) {
+        this.results = results;
+    }
+
+    /**
+     * 第 index 个操作的结果
+     *
+     * @param <T> 结果类型，由操作类型决定（见 RedisBatch）
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(int index) {
+        return (T) results.get(index);
+    }
+
+    public int size() {
+        return results.size();
+    }
+}
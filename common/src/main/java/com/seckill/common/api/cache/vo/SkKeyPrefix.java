@@ -19,7 +19,57 @@ public class SkKeyPrefix extends BaseKeyPrefix implements Serializable {
     /**
      * 库存为0的商品的前缀
      */
-    public static SkKeyPrefix GOODS_SK_OVER = new SkKeyPrefix("goodsSkOver");
+    public static SkKeyPrefix GOODS_SK_OVER = new SkKeyPrefix("goodsSkOver").withNearCache(1024);
+
+    /**
+     * 用户购买标记，获得秒杀资格时写入，用于判断重复秒杀，key 见 buyerKey；
+     * 写入时使用 buyer(endTime) 带上过期时间，查询、删除时使用本前缀
+     */
+    public static SkKeyPrefix SK_BUYER = new SkKeyPrefix("skBuyer");
+
+    /**
+     * 购买标记在秒杀结束之后保留的时间（秒），覆盖消息积压的处理时间；
+     * 标记过期之后由秒杀订单（OrderKeyPrefix.SK_ORDER、seckill_order 的唯一索引）判断重复秒杀
+     */
+    public static final int BUYER_RETAIN_SECONDS = 24 * 3600;
+
+    /**
+     * 写入购买标记时使用的前缀，标记在秒杀结束 BUYER_RETAIN_SECONDS 秒之后过期
+     *
+     * @param endTime 秒杀结束时间（毫秒），Long.MAX_VALUE 为不过期
+     */
+    public static SkKeyPrefix buyer(long endTime) {
+        if (endTime == Long.MAX_VALUE)
+            return SK_BUYER;
+        long remaining = Math.max(0, endTime - System.currentTimeMillis()) / 1000;
+        return new SkKeyPrefix((int) Math.min(Integer.MAX_VALUE, remaining + BUYER_RETAIN_SECONDS), "skBuyer");
+    }
+
+    /**
+     * 用户购买标记的key，以商品id为 hash tag，与商品库存位于同一个分片
+     */
+    public static String buyerKey(long userId, long goodsId) {
+        return userId + "_" + HashTag.of(goodsId);
+    }
+
+    /**
+     * 分段库存下用户购买标记的key，与用户所属的库存段位于同一个分片，见 GoodsKeyPrefix.stripeKey
+     */
+    public static String stripedBuyerKey(long userId, long goodsId, int stripe) {
+        return userId + "_" + HashTag.of(goodsId + ":" + stripe);
+    }
+
+    /**
+     * 已处理的秒杀消息id的前缀，mq 消费端用于丢弃重新投递的消息，key 见 messageKey；
+     * 过期时间即去重窗口，由消费端按配置创建
+     */
+    public static SkKeyPrefix consumedMessage(int windowSeconds) {
+        return new SkKeyPrefix(windowSeconds, "skConsumed");
+    }
+
+    public static String messageKey(long messageId) {
+        return Long.toHexString(messageId);
+    }
 
     /**
      * 秒杀接口随机地址
@@ -1,5 +1,7 @@
 package com.seckill.common.api.cache.vo;
 
+import com.seckill.common.codec.ValueCodecs;
+
 import java.io.Serializable;
 
 /**
@@ -14,15 +16,23 @@ public class SkUserKeyPrefix extends BaseKeyPrefix  implements Serializable {
         super(expireSeconds, prefix);
     }
 
+    public SkUserKeyPrefix(int expireSeconds, String prefix, String codec) {
+        super(expireSeconds, prefix, codec);
+    }
+
     public static SkUserKeyPrefix token = new SkUserKeyPrefix(TOKEN_EXPIRE, "token");
     /**
      * 用户cookie
      */
-    public static SkUserKeyPrefix TOKEN = new SkUserKeyPrefix(TOKEN_EXPIRE, "token");
+    public static SkUserKeyPrefix TOKEN = new SkUserKeyPrefix(TOKEN_EXPIRE, "token", ValueCodecs.BINARY);
     /**
      * 用于存储用户对象到redis的key前缀
      */
     public static SkUserKeyPrefix getSeckillUserById = new SkUserKeyPrefix(0, "id");
-    public static SkUserKeyPrefix SK_USER_PHONE = new SkUserKeyPrefix(0, "id");
+    public static SkUserKeyPrefix SK_USER_PHONE = new SkUserKeyPrefix(0, "id", ValueCodecs.BINARY);
+    /**
+     * 已注册手机号的布隆过滤器（位图、插入计数、加载完成标记）
+     */
+    public static SkUserKeyPrefix PHONE_BLOOM = new SkUserKeyPrefix(0, "phoneBloom");
 
 }
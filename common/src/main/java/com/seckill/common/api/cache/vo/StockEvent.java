@@ -0,0 +1,86 @@
+package com.seckill.common.api.cache.vo;
+
+import java.io.Serializable;
+
+/**
+ * 库存状态变更事件，通过redis的发布订阅广播给所有网关节点
+ * <p>
+ * 消息格式：类型:商品id，如 SOLD_OUT:1
+ *
+ * @author noodle
+ */
+public class StockEvent implements Serializable {
+
+    /**
+     * 库存事件的频道
+     */
+    public static final String CHANNEL = "seckill:stock";
+
+    public enum Type {
+        /**
+         * 商品已售罄
+         */
+        SOLD_OUT,
+
+        /**
+         * 商品重新有库存
+         */
+        RESTOCK
+    }
+
+    private final Type type;
+
+    private final long goodsId;
+
+    public StockEvent(Type type, long goodsId) {
+        this.type = type;
+        this.goodsId = goodsId;
+    }
+
+    public static StockEvent soldOut(long goodsId) {
+        return new StockEvent(Type.SOLD_OUT, goodsId);
+    }
+
+    public static StockEvent restock(long goodsId) {
+        return new StockEvent(Type.RESTOCK, goodsId);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getGoodsId() {
+        return goodsId;
+    }
+
+    public String encode() {
+        return type.name() + ":" + goodsId;
+    }
+
+    /**
+     * 解析消息
+     *
+     * @return 格式不正确时返回 null
+     */
+    public static StockEvent decode(String message) {
+        if (message == null) {
+            return null;
+        }
+        int split = message.indexOf(':');
+        if (split <= 0) {
+            return null;
+        }
+        try {
+            Type type = Type.valueOf(message.substring(0, split));
+            long goodsId = Long.parseLong(message.substring(split + 1));
+            return new StockEvent(type, goodsId);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return encode();
+    }
+}
@@ -41,4 +41,13 @@ public interface GoodsServiceApi {
      * @param goods
      */
     boolean reduceStock(GoodsVo goods);
+
+    /**
+     * order表批量减库存，库存不足时扣减剩余的全部库存
+     *
+     * @param goods 商品
+     * @param count 期望扣减的数量
+     * @return 实际扣减的数量
+     */
+    int reduceStock(GoodsVo goods, int count);
 }
@@ -3,6 +3,8 @@ package com.seckill.common.api.mq;
 
 import com.seckill.common.api.mq.vo.SkMessage;
 
+import java.util.List;
+
 /**
  * 消息队列服务
  *
@@ -12,8 +14,16 @@ public interface MqProviderApi {
 
     /**
      * 将用户秒杀信息投递到MQ中（使用direct模式的exchange）
+     * 消息放入发布队列后即返回，不等待broker确认；调用方可以配置为单向调用（sendSkMessage.return=false）
      *
      * @param message
      */
     void sendSkMessage(SkMessage message);
+
+    /**
+     * 批量投递秒杀信息，一次调用放入多条
+     *
+     * @param messages
+     */
+    void sendSkMessages(List<SkMessage> messages);
 }
@@ -7,7 +7,7 @@ import java.io.Serializable;
 
 /**
  * 在MQ中传递的秒杀信息
- * 包含参与秒杀的用户和商品的id
+ * 包含参与秒杀的用户和商品的id，以及用于消费端去重的消息id
  *
  * @author noodle
  */
@@ -17,6 +17,10 @@ public class SkMessage implements Serializable{
 
     private long goodsId;
 
+    /**
+     * 消息id，由网关生成的非0随机数，同一条消息重新投递时不变；0 表示没有id（旧格式的消息）
+     */
+    private long messageId;
 
     public UserVo getUser() {
         return user;
@@ -34,11 +38,20 @@ public class SkMessage implements Serializable{
         this.goodsId = goodsId;
     }
 
+    public long getMessageId() {
+        return messageId;
+    }
+
+    public void setMessageId(long messageId) {
+        this.messageId = messageId;
+    }
+
     @Override
     public String toString() {
         return "SeckillMessage{" +
                 "user=" + user +
                 ", goodsId=" + goodsId +
+                ", messageId=" + messageId +
                 '}';
     }
 }
@@ -0,0 +1,23 @@
+package com.seckill.common.api.mq.vo;
+
+/**
+ * 以 redis stream 传递秒杀消息时（seckill.mq.transport=stream）网关与 mq 服务共用的约定
+ * <p>
+ * 1. 每个redis节点上都有一条名为 STREAM_KEY 的 stream，消息追加到该商品库存所在节点的 stream 上，
+ *    因此可以与库存扣减在同一个lua脚本中完成；消费者读取所有节点上的 stream
+ * 2. 每条消息只有一个字段 MESSAGE_FIELD，值为 SkMessageCodec 编码后的字节
+ * 3. 所有 mq 节点属于同一个消费组 CONSUMER_GROUP，每条消息只会交给其中一个节点
+ *
+ * @author noodle
+ */
+public final class SkStream {
+
+    public static final String STREAM_KEY = "seckill:stream";
+
+    public static final String MESSAGE_FIELD = "m";
+
+    public static final String CONSUMER_GROUP = "seckill-mq";
+
+    private SkStream() {
+    }
+}
@@ -6,6 +6,8 @@ import com.seckill.common.api.user.vo.UserVo;
 import com.seckill.common.domain.OrderInfo;
 import com.seckill.common.domain.SeckillOrder;
 
+import java.util.List;
+
 /**
  * 订单服务接口
  *
@@ -29,6 +31,15 @@ public interface OrderServiceApi {
      */
     SeckillOrder getSeckillOrderByUserIdAndGoodsId(long userId, long goodsId);
 
+    /**
+     * 批量查询一个商品下若干用户的秒杀订单
+     *
+     * @param goodsId
+     * @param userIds
+     * @return 已存在的秒杀订单，不保证顺序
+     */
+    List<SeckillOrder> getSeckillOrdersByGoodsId(long goodsId, List<Long> userIds);
+
     /**
      * 创建订单
      *
@@ -37,4 +48,13 @@ public interface OrderServiceApi {
      * @return
      */
     OrderInfo createOrder(UserVo user, GoodsVo goods);
+
+    /**
+     * 为同一商品的多个用户批量创建订单，订单id预先分配，两张订单表各用一条多行 INSERT 写入，在同一事务中完成
+     *
+     * @param goods
+     * @param users
+     * @return 与 users 一一对应的订单信息
+     */
+    List<OrderInfo> createOrders(GoodsVo goods, List<UserVo> users);
 }
@@ -2,9 +2,12 @@ package com.seckill.common.api.seckill;
 
 
 import com.seckill.common.api.goods.vo.GoodsVo;
+import com.seckill.common.api.mq.vo.SkMessage;
 import com.seckill.common.api.user.vo.UserVo;
 import com.seckill.common.domain.OrderInfo;
 
+import java.util.List;
+
 /**
  * 秒杀服务接口
  *
@@ -31,6 +34,15 @@ public interface SeckillServiceApi {
      */
     OrderInfo seckill(UserVo user, GoodsVo goods);
 
+    /**
+     * 批量执行秒杀操作：同一商品只减一次库存，订单批量写入
+     * 库存不足时按 messages 中的顺序分配剩余库存
+     *
+     * @param messages 秒杀消息，同一用户同一商品只能出现一次
+     * @return 与 messages 一一对应的订单信息，没有抢到库存的为 null
+     */
+    List<OrderInfo> seckillBatch(List<SkMessage> messages);
+
     /**
      * 获取秒杀结果
      *
@@ -0,0 +1,103 @@
+package com.seckill.common.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+/**
+ * 紧凑二进制格式的读取，与 BinaryWriter 对应
+ *
+ * @author noodle
+ */
+public class BinaryReader {
+
+    private final byte[] buffer;
+
+    private int position;
+
+    private long presence;
+
+    private int field;
+
+    public BinaryReader(byte[] buffer, int offset) {
+        this.buffer = buffer;
+        this.position = offset;
+    }
+
+    /**
+     * 读取 presence 位图，之后按字段顺序调用 readOptionalXxx
+     */
+    public void readPresence() {
+        presence = readVarLong();
+        field = 0;
+    }
+
+    public int readByte() {
+        check(1);
+        return buffer[position++] & 0xFF;
+    }
+
+    public long readVarLong() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            check(1);
+            byte b = buffer[position++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("malformed varint");
+    }
+
+    public long readLong() {
+        long raw = readVarLong();
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    public double readDouble() {
+        check(8);
+        long bits = 0;
+        for (int i = 0; i < 8; i++) {
+            bits |= (long) (buffer[position++] & 0xFF) << (8 * i);
+        }
+        return Double.longBitsToDouble(bits);
+    }
+
+    public String readString() {
+        long length = readVarLong();
+        if (length == 0) {
+            return null;
+        }
+        int size = (int) (length - 1);
+        check(size);
+        String value = new String(buffer, position, size, StandardCharsets.UTF_8);
+        position += size;
+        return value;
+    }
+
+    public Long readOptionalLong() {
+        return nextPresent() ? readLong() : null;
+    }
+
+    public Integer readOptionalInteger() {
+        return nextPresent() ? (int) readLong() : null;
+    }
+
+    public Double readOptionalDouble() {
+        return nextPresent() ? readDouble() : null;
+    }
+
+    public Date readOptionalDate() {
+        return nextPresent() ? new Date(readLong()) : null;
+    }
+
+    private boolean nextPresent() {
+        return (presence & (1L << field++)) != 0;
+    }
+
+    private void check(int size) {
+        if (size < 0 || position + size > buffer.length) {
+            throw new IllegalArgumentException("truncated binary value");
+        }
+    }
+}
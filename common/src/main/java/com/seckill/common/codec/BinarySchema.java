@@ -0,0 +1,15 @@
+package com.seckill.common.codec;
+
+/**
+ * 某个类型在 BinaryValueCodec 中的字段布局
+ * <p>
+ * 字段按固定顺序读写，不保存字段名；布局变化时需要注册新的 schema id
+ *
+ * @author noodle
+ */
+public interface BinarySchema<T> {
+
+    void write(T value, BinaryWriter out);
+
+    T read(BinaryReader in);
+}
@@ -0,0 +1,125 @@
+package com.seckill.common.codec;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 紧凑二进制编解码
+ * <p>
+ * 注册了 schema 的类型编码为：MAGIC(1字节) + schema id(1字节) + 按 schema 顺序写入的字段；
+ * Integer、Long、String 仍编码为文本；其他未注册的类型交给 json 编解码。
+ * 解码注册类型时，如果缓存中的值不是以 MAGIC 开头（如切换编解码器之前写入的json），同样交给 json 解码，
+ * 因此已有的缓存不需要清空。
+ * 以 MAGIC 开头的值按其中的 schema id 解码：布局变化后，旧布局通过 registerLegacy 注册即可继续读取已有的缓存；
+ * id 未注册、或不属于要解码的类型时返回 null，按缓存未命中处理。
+ * <p>
+ * 注册需要在使用之前完成，见 ValueCodecs
+ *
+ * @author noodle
+ */
+public class BinaryValueCodec implements ValueCodec {
+
+    /**
+     * json 不会以该字节开头
+     */
+    static final byte MAGIC = (byte) 0xB1;
+
+    private final ValueCodec fallback;
+
+    private final Map<Class<?>, Registration<?>> byClass = new HashMap<>();
+
+    private final Registration<?>[] byId = new Registration<?>[256];
+
+    public BinaryValueCodec(ValueCodec fallback) {
+        this.fallback = fallback;
+    }
+
+    /**
+     * 注册类型的字段布局
+     *
+     * @param id     schema id（1-255），布局变化时使用新的id
+     * @param clazz  类型，按精确类型匹配（不包括子类）
+     * @param schema 字段布局
+     */
+    public <T> BinaryValueCodec register(int id, Class<T> clazz, BinarySchema<T> schema) {
+        if (id <= 0 || id > 255) {
+            throw new IllegalArgumentException("schema id out of range: " + id);
+        }
+        if (byId[id] != null || byClass.containsKey(clazz)) {
+            throw new IllegalArgumentException("schema already registered: " + id + ", " + clazz.getName());
+        }
+        Registration<T> registration = new Registration<>(id, clazz, schema);
+        byId[id] = registration;
+        byClass.put(clazz, registration);
+        return this;
+    }
+
+    /**
+     * 注册类型的旧布局，只用于解码按旧布局写入的缓存，编码始终使用 register 注册的布局
+     *
+     * @param id     旧布局的 schema id
+     * @param clazz  类型
+     * @param schema 旧的字段布局
+     */
+    public <T> BinaryValueCodec registerLegacy(int id, Class<T> clazz, BinarySchema<T> schema) {
+        if (id <= 0 || id > 255) {
+            throw new IllegalArgumentException("schema id out of range: " + id);
+        }
+        if (byId[id] != null) {
+            throw new IllegalArgumentException("schema already registered: " + id + ", " + clazz.getName());
+        }
+        byId[id] = new Registration<>(id, clazz, schema);
+        return this;
+    }
+
+    @Override
+    public String name() {
+        return ValueCodecs.BINARY;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public byte[] encode(Object value) {
+        if (value == null) {
+            return null;
+        }
+        Registration<Object> registration = (Registration<Object>) byClass.get(value.getClass());
+        if (registration == null) {
+            return fallback.encode(value);
+        }
+        BinaryWriter out = new BinaryWriter(64);
+        out.writeByte(MAGIC);
+        out.writeByte(registration.id);
+        registration.schema.write(value, out);
+        return out.toByteArray();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T decode(byte[] bytes, Class<T> clazz) {
+        if (bytes == null || bytes.length == 0 || clazz == null) {
+            return null;
+        }
+        if (!byClass.containsKey(clazz) || bytes[0] != MAGIC) {
+            return fallback.decode(bytes, clazz);
+        }
+        Registration<?> registration = bytes.length < 2 ? null : byId[bytes[1] & 0xFF];
+        if (registration == null || registration.clazz != clazz) {
+            // 未知的布局（如回滚之后读到新版本写入的值），按缓存未命中处理
+            return null;
+        }
+        return (T) registration.schema.read(new BinaryReader(bytes, 2));
+    }
+
+    private static class Registration<T> {
+        final int id;
+        final Class<T> clazz;
+        final BinarySchema<T> schema;
+
+        Registration(int id, Class<T> clazz, BinarySchema<T> schema) {
+            this.id = id;
+            this.clazz = clazz;
+            this.schema = schema;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.seckill.common.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * 紧凑二进制格式的写入
+ * <p>
+ * 整数使用 zigzag + varint，字符串为 (长度+1) + UTF-8 字节（长度为0表示 null），
+ * 可为空的数值字段由对象开头的 presence 位图标记
+ *
+ * @author noodle
+ */
+public class BinaryWriter {
+
+    private byte[] buffer;
+
+    private int position;
+
+    public BinaryWriter(int initialCapacity) {
+        this.buffer = new byte[Math.max(16, initialCapacity)];
+    }
+
+    /**
+     * 计算 presence 位图：第 i 个值不为 null 时第 i 位为1
+     */
+    public static long presence(Object... values) {
+        long mask = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                mask |= 1L << i;
+            }
+        }
+        return mask;
+    }
+
+    public void writeByte(int value) {
+        ensureCapacity(1);
+        buffer[position++] = (byte) value;
+    }
+
+    public void writeVarLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    /**
+     * zigzag 编码的有符号整数，绝对值小的负数也只占少量字节
+     */
+    public void writeLong(long value) {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    public void writeDouble(double value) {
+        long bits = Double.doubleToLongBits(value);
+        ensureCapacity(8);
+        for (int i = 0; i < 8; i++) {
+            buffer[position++] = (byte) (bits >>> (8 * i));
+        }
+    }
+
+    public void writeString(String value) {
+        if (value == null) {
+            writeVarLong(0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(bytes.length + 1L);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    /**
+     * 以下可为空的字段只在 presence 位图中对应位为1时写入
+     */
+    public void writeOptional(Long value) {
+        if (value != null) {
+            writeLong(value);
+        }
+    }
+
+    public void writeOptional(Integer value) {
+        if (value != null) {
+            writeLong(value);
+        }
+    }
+
+    public void writeOptional(Double value) {
+        if (value != null) {
+            writeDouble(value);
+        }
+    }
+
+    public void writeOptional(Date value) {
+        if (value != null) {
+            writeLong(value.getTime());
+        }
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, position);
+    }
+
+    private void ensureCapacity(int extra) {
+        if (position + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + extra));
+        }
+    }
+}
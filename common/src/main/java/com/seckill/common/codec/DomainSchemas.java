@@ -0,0 +1,162 @@
+package com.seckill.common.codec;
+
+import com.seckill.common.api.goods.vo.GoodsVo;
+import com.seckill.common.api.user.vo.UserVo;
+import com.seckill.common.domain.OrderInfo;
+import com.seckill.common.domain.SeckillOrder;
+
+/**
+ * 常用领域对象的二进制字段布局
+ * <p>
+ * 可为空的数值/日期字段先写 presence 位图，再按顺序写入非空的字段，最后写字符串字段。
+ * 修改字段布局时需要使用新的 schema id，旧id保留，避免读到错误的布局
+ *
+ * @author noodle
+ */
+public final class DomainSchemas {
+
+    public static final int USER_VO = 1;
+    public static final int SECKILL_ORDER = 2;
+    public static final int GOODS_VO = 3;
+    public static final int ORDER_INFO = 4;
+
+    private DomainSchemas() {
+    }
+
+    public static BinaryValueCodec registerAll(BinaryValueCodec codec) {
+        return codec.register(USER_VO, UserVo.class, new UserVoSchema())
+                .register(SECKILL_ORDER, SeckillOrder.class, new SeckillOrderSchema())
+                .register(GOODS_VO, GoodsVo.class, new GoodsVoSchema())
+                .register(ORDER_INFO, OrderInfo.class, new OrderInfoSchema());
+    }
+
+    static class UserVoSchema implements BinarySchema<UserVo> {
+        @Override
+        public void write(UserVo user, BinaryWriter out) {
+            out.writeVarLong(BinaryWriter.presence(user.getUuid(), user.getPhone(), user.getRegisterDate(),
+                    user.getLastLoginDate(), user.getLoginCount()));
+            out.writeOptional(user.getUuid());
+            out.writeOptional(user.getPhone());
+            out.writeOptional(user.getRegisterDate());
+            out.writeOptional(user.getLastLoginDate());
+            out.writeOptional(user.getLoginCount());
+            out.writeString(user.getNickname());
+            out.writeString(user.getPassword());
+            out.writeString(user.getSalt());
+            out.writeString(user.getHead());
+        }
+
+        @Override
+        public UserVo read(BinaryReader in) {
+            UserVo user = new UserVo();
+            in.readPresence();
+            user.setUuid(in.readOptionalLong());
+            user.setPhone(in.readOptionalLong());
+            user.setRegisterDate(in.readOptionalDate());
+            user.setLastLoginDate(in.readOptionalDate());
+            user.setLoginCount(in.readOptionalInteger());
+            user.setNickname(in.readString());
+            user.setPassword(in.readString());
+            user.setSalt(in.readString());
+            user.setHead(in.readString());
+            return user;
+        }
+    }
+
+    static class SeckillOrderSchema implements BinarySchema<SeckillOrder> {
+        @Override
+        public void write(SeckillOrder order, BinaryWriter out) {
+            out.writeVarLong(BinaryWriter.presence(order.getId(), order.getUserId(), order.getOrderId(), order.getGoodsId()));
+            out.writeOptional(order.getId());
+            out.writeOptional(order.getUserId());
+            out.writeOptional(order.getOrderId());
+            out.writeOptional(order.getGoodsId());
+        }
+
+        @Override
+        public SeckillOrder read(BinaryReader in) {
+            SeckillOrder order = new SeckillOrder();
+            in.readPresence();
+            order.setId(in.readOptionalLong());
+            order.setUserId(in.readOptionalLong());
+            order.setOrderId(in.readOptionalLong());
+            order.setGoodsId(in.readOptionalLong());
+            return order;
+        }
+    }
+
+    static class GoodsVoSchema implements BinarySchema<GoodsVo> {
+        @Override
+        public void write(GoodsVo goods, BinaryWriter out) {
+            out.writeVarLong(BinaryWriter.presence(goods.getId(), goods.getGoodsPrice(), goods.getGoodsStock(),
+                    goods.getSeckillPrice(), goods.getStockCount(), goods.getStartDate(), goods.getEndDate()));
+            out.writeOptional(goods.getId());
+            out.writeOptional(goods.getGoodsPrice());
+            out.writeOptional(goods.getGoodsStock());
+            out.writeOptional(goods.getSeckillPrice());
+            out.writeOptional(goods.getStockCount());
+            out.writeOptional(goods.getStartDate());
+            out.writeOptional(goods.getEndDate());
+            out.writeString(goods.getGoodsName());
+            out.writeString(goods.getGoodsTitle());
+            out.writeString(goods.getGoodsImg());
+            out.writeString(goods.getGoodsDetail());
+        }
+
+        @Override
+        public GoodsVo read(BinaryReader in) {
+            GoodsVo goods = new GoodsVo();
+            in.readPresence();
+            goods.setId(in.readOptionalLong());
+            goods.setGoodsPrice(in.readOptionalDouble());
+            goods.setGoodsStock(in.readOptionalLong());
+            goods.setSeckillPrice(in.readOptionalDouble());
+            goods.setStockCount(in.readOptionalInteger());
+            goods.setStartDate(in.readOptionalDate());
+            goods.setEndDate(in.readOptionalDate());
+            goods.setGoodsName(in.readString());
+            goods.setGoodsTitle(in.readString());
+            goods.setGoodsImg(in.readString());
+            goods.setGoodsDetail(in.readString());
+            return goods;
+        }
+    }
+
+    static class OrderInfoSchema implements BinarySchema<OrderInfo> {
+        @Override
+        public void write(OrderInfo order, BinaryWriter out) {
+            out.writeVarLong(BinaryWriter.presence(order.getId(), order.getUserId(), order.getGoodsId(),
+                    order.getDeliveryAddrId(), order.getGoodsCount(), order.getGoodsPrice(), order.getOrderChannel(),
+                    order.getStatus(), order.getCreateDate(), order.getPayDate()));
+            out.writeOptional(order.getId());
+            out.writeOptional(order.getUserId());
+            out.writeOptional(order.getGoodsId());
+            out.writeOptional(order.getDeliveryAddrId());
+            out.writeOptional(order.getGoodsCount());
+            out.writeOptional(order.getGoodsPrice());
+            out.writeOptional(order.getOrderChannel());
+            out.writeOptional(order.getStatus());
+            out.writeOptional(order.getCreateDate());
+            out.writeOptional(order.getPayDate());
+            out.writeString(order.getGoodsName());
+        }
+
+        @Override
+        public OrderInfo read(BinaryReader in) {
+            OrderInfo order = new OrderInfo();
+            in.readPresence();
+            order.setId(in.readOptionalLong());
+            order.setUserId(in.readOptionalLong());
+            order.setGoodsId(in.readOptionalLong());
+            order.setDeliveryAddrId(in.readOptionalLong());
+            order.setGoodsCount(in.readOptionalInteger());
+            order.setGoodsPrice(in.readOptionalDouble());
+            order.setOrderChannel(in.readOptionalInteger());
+            order.setStatus(in.readOptionalInteger());
+            order.setCreateDate(in.readOptionalDate());
+            order.setPayDate(in.readOptionalDate());
+            order.setGoodsName(in.readString());
+            return order;
+        }
+    }
+}
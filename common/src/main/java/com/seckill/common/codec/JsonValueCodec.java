@@ -0,0 +1,49 @@
+package com.seckill.common.codec;
+
+import com.alibaba.fastjson.JSON;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * json 编解码（fastjson），Integer、Long、String 直接保存为文本
+ *
+ * @author noodle
+ */
+public class JsonValueCodec implements ValueCodec {
+
+    public static final JsonValueCodec INSTANCE = new JsonValueCodec();
+
+    @Override
+    public String name() {
+        return ValueCodecs.JSON;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        if (value == null) {
+            return null;
+        }
+        Class<?> clazz = value.getClass();
+        if (clazz == Integer.class || clazz == Long.class || clazz == String.class) {
+            return value.toString().getBytes(StandardCharsets.UTF_8);
+        }
+        return JSON.toJSONBytes(value);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T decode(byte[] bytes, Class<T> clazz) {
+        if (bytes == null || bytes.length == 0 || clazz == null) {
+            return null;
+        }
+        if (clazz == int.class || clazz == Integer.class) {
+            return (T) Integer.valueOf(new String(bytes, StandardCharsets.US_ASCII));
+        } else if (clazz == long.class || clazz == Long.class) {
+            return (T) Long.valueOf(new String(bytes, StandardCharsets.US_ASCII));
+        } else if (clazz == String.class) {
+            return (T) new String(bytes, StandardCharsets.UTF_8);
+        }
+        // 直接解析为目标类型，不再经过 JSONObject 中转
+        return JSON.parseObject(bytes, clazz);
+    }
+}
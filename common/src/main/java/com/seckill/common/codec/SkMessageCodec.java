@@ -0,0 +1,94 @@
+package com.seckill.common.codec;
+
+import com.seckill.common.api.mq.vo.SkMessage;
+import com.seckill.common.api.user.vo.UserVo;
+
+/**
+ * 秒杀消息在 MQ 中的定长二进制格式
+ * <p>
+ * 消费者只需要用户id和商品id，不再传输完整的 UserVo（密码、盐、日期等）。
+ * 版本1的布局为 17 字节（大端序）：
+ * <pre>
+ * 0       版本号
+ * 1..8    用户id
+ * 9..16   商品id
+ * </pre>
+ * 版本2在末尾追加消息id，共 25 字节：
+ * <pre>
+ * 17..24  消息id
+ * </pre>
+ * 增加字段时使用新的版本号并追加在末尾，解码时按版本号读取，不认识的版本直接拒绝；
+ * 编码总是使用最新版本，升级期间仍在队列中的版本1消息解码后消息id为0
+ *
+ * @author noodle
+ */
+public final class SkMessageCodec {
+
+    public static final byte VERSION = 2;
+
+    /**
+     * 版本1的长度
+     */
+    static final int LENGTH_V1 = 1 + 8 + 8;
+
+    /**
+     * 当前版本的长度
+     */
+    public static final int LENGTH = LENGTH_V1 + 8;
+
+    private SkMessageCodec() {
+    }
+
+    public static byte[] encode(SkMessage message) {
+        UserVo user = message.getUser();
+        if (user == null || user.getUuid() == null) {
+            throw new IllegalArgumentException("SkMessage without user id: " + message);
+        }
+        byte[] bytes = new byte[LENGTH];
+        bytes[0] = VERSION;
+        putLong(bytes, 1, user.getUuid());
+        putLong(bytes, 9, message.getGoodsId());
+        putLong(bytes, 17, message.getMessageId());
+        return bytes;
+    }
+
+    /**
+     * @return 用户只含有 uuid 的秒杀消息
+     * @throws IllegalArgumentException 版本号不认识或长度不足
+     */
+    public static SkMessage decode(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            throw new IllegalArgumentException("empty SkMessage");
+        }
+        if (bytes[0] != 1 && bytes[0] != VERSION) {
+            throw new IllegalArgumentException("unsupported SkMessage version: " + bytes[0]);
+        }
+        if (bytes.length < (bytes[0] == 1 ? LENGTH_V1 : LENGTH)) {
+            throw new IllegalArgumentException("truncated SkMessage: " + bytes.length + " bytes");
+        }
+        UserVo user = new UserVo();
+        user.setUuid(getLong(bytes, 1));
+        SkMessage message = new SkMessage();
+        message.setUser(user);
+        message.setGoodsId(getLong(bytes, 9));
+        if (bytes[0] >= 2) {
+            message.setMessageId(getLong(bytes, 17));
+        }
+        return message;
+    }
+
+    private static void putLong(byte[] bytes, int offset, long value) {
+        for (int i = 7; i >= 0; i--) {
+            bytes[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private static long getLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,34 @@
+package com.seckill.common.codec;
+
+/**
+ * 缓存值的编解码器
+ * <p>
+ * 通过 KeyPrefix.codec() 按key前缀选择，见 ValueCodecs。
+ * 约定：Integer、Long、String 编码为文本，使 INCR/DECR 等命令可以直接作用于缓存值
+ *
+ * @author noodle
+ */
+public interface ValueCodec {
+
+    /**
+     * 编解码器名称，KeyPrefix.codec() 返回该名称
+     */
+    String name();
+
+    /**
+     * 编码
+     *
+     * @param value 值
+     * @return value 为 null 时返回 null
+     */
+    byte[] encode(Object value);
+
+    /**
+     * 解码
+     *
+     * @param bytes 缓存中的值
+     * @param clazz 值的类型
+     * @return bytes 为空时返回 null
+     */
+    <T> T decode(byte[] bytes, Class<T> clazz);
+}
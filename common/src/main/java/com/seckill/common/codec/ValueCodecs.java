@@ -0,0 +1,54 @@
+package com.seckill.common.codec;
+
+import com.seckill.common.api.cache.vo.KeyPrefix;
+
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 编解码器注册表
+ * <p>
+ * 内置 json 和 binary 两种，其他实现可以通过 register 注册，
+ * 或者在 META-INF/services/com.seckill.common.codec.ValueCodec 中声明（ServiceLoader）
+ *
+ * @author noodle
+ */
+public final class ValueCodecs {
+
+    public static final String JSON = "json";
+
+    public static final String BINARY = "binary";
+
+    private static final Map<String, ValueCodec> CODECS = new ConcurrentHashMap<>();
+
+    static {
+        register(JsonValueCodec.INSTANCE);
+        register(DomainSchemas.registerAll(new BinaryValueCodec(JsonValueCodec.INSTANCE)));
+        for (ValueCodec codec : ServiceLoader.load(ValueCodec.class)) {
+            register(codec);
+        }
+    }
+
+    private ValueCodecs() {
+    }
+
+    public static void register(ValueCodec codec) {
+        CODECS.put(codec.name(), codec);
+    }
+
+    public static ValueCodec get(String name) {
+        ValueCodec codec = CODECS.get(name);
+        if (codec == null) {
+            throw new IllegalArgumentException("unknown value codec: " + name);
+        }
+        return codec;
+    }
+
+    /**
+     * key前缀选择的编解码器
+     */
+    public static ValueCodec of(KeyPrefix prefix) {
+        return get(prefix.codec());
+    }
+}
@@ -51,6 +51,7 @@ public class CodeMsg implements Serializable {
     public static CodeMsg REPEATE_SECKILL = new CodeMsg(500501, "不能重复秒杀");
     public static CodeMsg SECKILL_FAIL = new CodeMsg(500502, "秒杀失败");
     public static CodeMsg SECKILL_PARM_ILLEGAL = new CodeMsg(500503, "秒杀请求参数异常：%s");
+    public static CodeMsg SECKILL_BUSY = new CodeMsg(500504, "秒杀排队失败，请稍后重试");
 
     /**
      * 构造器定义为private是为了防止controller直接new
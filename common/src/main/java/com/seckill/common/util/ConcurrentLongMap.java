@@ -0,0 +1,171 @@
+package com.seckill.common.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * long -> long 的无锁并发哈希表（开放寻址，线性探测），用于按商品id保存的热点状态，如售罄标记
+ * <p>
+ * 1. 键值都保存在 AtomicLongArray 中，读操作不装箱、不分配对象
+ * 2. 容量在创建时确定，不扩容，也不支持删除（把值置回0即可）
+ * 3. 值为0表示未设置：刚插入的key在值写入之前会短暂地读到0
+ * 4. 0 不能作为键（查询时视为不存在，插入时抛出 IllegalArgumentException）
+ *
+ * @author noodle
+ */
+public class ConcurrentLongMap {
+
+    /**
+     * 空槽位
+     */
+    private static final long EMPTY = 0L;
+
+    private final AtomicLongArray keys;
+
+    private final AtomicLongArray values;
+
+    private final int mask;
+
+    /**
+     * @param expectedSize 预计的键数量，实际容量为不小于其两倍的2的幂
+     */
+    public ConcurrentLongMap(int expectedSize) {
+        if (expectedSize < 0 || expectedSize > (1 << 29)) {
+            throw new IllegalArgumentException("expectedSize out of range: " + expectedSize);
+        }
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2) - 1) << 1;
+        this.keys = new AtomicLongArray(capacity);
+        this.values = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * 获取key对应的值
+     *
+     * @return key不存在时返回 defaultValue
+     */
+    public long get(long key, long defaultValue) {
+        int index = indexOf(key);
+        return index < 0 ? defaultValue : values.get(index);
+    }
+
+    public boolean containsKey(long key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * 插入或更新
+     *
+     * @return 表已满、无法插入新key时返回 false
+     */
+    public boolean put(long key, long value) {
+        checkKey(key);
+        int index = hash(key) & mask;
+        for (int i = 0; i <= mask; i++) {
+            long current = keys.get(index);
+            if (current == EMPTY) {
+                if (keys.compareAndSet(index, EMPTY, key)) {
+                    values.set(index, value);
+                    return true;
+                }
+                // 槽位被其他线程占用，重新读取该槽位（可能正是同一个key）
+                current = keys.get(index);
+            }
+            if (current == key) {
+                values.set(index, value);
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * 只更新已经存在的key，不会插入新的key
+     *
+     * @return key不存在时返回 false
+     */
+    public boolean replace(long key, long value) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return false;
+        }
+        values.set(index, value);
+        return true;
+    }
+
+    /**
+     * 原子地更新已经存在的key的值
+     *
+     * @return key不存在或当前值不等于 expect 时返回 false
+     */
+    public boolean compareAndSet(long key, long expect, long update) {
+        int index = indexOf(key);
+        return index >= 0 && values.compareAndSet(index, expect, update);
+    }
+
+    /**
+     * 原子地增加已经存在的key的值
+     *
+     * @return 增加后的值，key不存在时抛出 IllegalStateException
+     */
+    public long addAndGet(long key, long delta) {
+        int index = indexOf(key);
+        if (index < 0) {
+            throw new IllegalStateException("key not present: " + key);
+        }
+        return values.addAndGet(index, delta);
+    }
+
+    /**
+     * 当前的键数量（遍历计数，只用于监控）
+     */
+    public int size() {
+        int size = 0;
+        for (int i = 0; i <= mask; i++) {
+            if (keys.get(i) != EMPTY) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    private int indexOf(long key) {
+        if (key == EMPTY) {
+            return -1;
+        }
+        int index = hash(key) & mask;
+        for (int i = 0; i <= mask; i++) {
+            long current = keys.get(index);
+            if (current == key) {
+                return index;
+            }
+            if (current == EMPTY) {
+                return -1;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private static void checkKey(long key) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("key must not be 0");
+        }
+    }
+
+    /**
+     * murmur3 的 64 位混合函数，打散连续的自增id
+     */
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
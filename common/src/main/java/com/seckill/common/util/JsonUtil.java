@@ -31,9 +31,9 @@ public class JsonUtil {
             // String
         else if (clazz == String.class)
             return (T) strValue;
-            // 对象类型
+            // 对象类型，直接解析为目标类型，不再经过 JSONObject 中转
         else
-            return JSON.toJavaObject(JSON.parseObject(strValue), clazz);
+            return JSON.parseObject(strValue, clazz);
     }
 
     /**
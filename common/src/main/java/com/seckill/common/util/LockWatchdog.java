@@ -0,0 +1,109 @@
+package com.seckill.common.util;
+
+import com.seckill.common.api.cache.DLockApi;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分布式锁的看门狗：持有者存活期间，每隔租期的 1/3 调用 DLockApi.renew 续期
+ * <p>
+ * 这样加锁时可以使用几秒钟的短租期：持有者正常运行时锁不会提前过期，
+ * 持有者所在进程退出后续期停止，锁在一个租期内自动释放，不会被长时间占用。
+ * 运行在调用方进程中（续期必须由持有者发起），使用一个后台守护线程。
+ *
+ * @author noodle
+ */
+public class LockWatchdog implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(LockWatchdog.class);
+
+    private final ScheduledExecutorService scheduler;
+
+    public LockWatchdog() {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "lock-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 开始为已经获取的锁续期，释放锁之前需要先调用 Renewal.cancel()
+     *
+     * @param lock        分布式锁
+     * @param lockKey     锁
+     * @param uniqueValue 持有者的唯一标识
+     * @param leaseMillis 加锁时使用的租期
+     * @return 续期任务
+     */
+    public Renewal watch(DLockApi lock, String lockKey, String uniqueValue, long leaseMillis) {
+        Renewal renewal = new Renewal(lockKey);
+        long interval = Math.max(1, leaseMillis / 3);
+        renewal.future = scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                if (!lock.renew(lockKey, uniqueValue, leaseMillis)) {
+                    logger.warn("锁已经不再由当前持有者持有，停止续期: {}", lockKey);
+                    renewal.lost = true;
+                    renewal.cancel();
+                }
+            } catch (RuntimeException e) {
+                // 单次续期失败（如网络抖动）不停止，下一次继续尝试
+                logger.warn("锁续期失败: " + lockKey, e);
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+        return renewal;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 单个锁的续期任务
+     */
+    public static class Renewal implements AutoCloseable {
+
+        private final String lockKey;
+
+        private volatile ScheduledFuture<?> future;
+
+        private volatile boolean lost;
+
+        Renewal(String lockKey) {
+            this.lockKey = lockKey;
+        }
+
+        public String getLockKey() {
+            return lockKey;
+        }
+
+        /**
+         * @return 续期时发现锁已经过期或被其他持有者占用
+         */
+        public boolean isLost() {
+            return lost;
+        }
+
+        /**
+         * 停止续期
+         */
+        public void cancel() {
+            ScheduledFuture<?> current = future;
+            if (current != null) {
+                current.cancel(false);
+            }
+        }
+
+        @Override
+        public void close() {
+            cancel();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.seckill.common.util;
+
+import java.util.function.LongSupplier;
+
+/**
+ * 订单id生成器，写入前预先分配订单id，批量写入 order_info 时不需要再读回自增id
+ * <p>
+ * 1. id 由 32 位秒级时间戳（自 2019-01-01 起）、5 位节点号、16 位序号组成，共 53 位，
+ *    不超过 2^53，前端 js 的 Number 可以精确表示
+ * 2. 每个节点每秒可分配 65536 个id；本秒的序号用完、或时钟回拨时，继续使用上一个时间戳之后的秒，
+ *    保证同一节点内单调递增、不重复
+ * 3. 多个订单服务实例必须配置不同的节点号；实例重启前若借用了未来的秒，需等时钟追上后再启动
+ * 4. 只使用 order_info 自增id范围之外的大数值，与已有订单id不冲突
+ *
+ * @author noodle
+ */
+public class OrderIdGenerator {
+
+    public static final int WORKER_BITS = 5;
+
+    public static final int SEQUENCE_BITS = 16;
+
+    public static final int MAX_WORKER_ID = (1 << WORKER_BITS) - 1;
+
+    private static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+
+    private static final long MAX_SECONDS = (1L << 32) - 1;
+
+    /**
+     * 2019-01-01 00:00:00 UTC
+     */
+    private static final long EPOCH_SECONDS = 1546300800L;
+
+    private final long workerId;
+
+    private final LongSupplier clock;
+
+    private long second = -1;
+
+    private long sequence;
+
+    /**
+     * @param workerId 节点号，0 ~ MAX_WORKER_ID
+     */
+    public OrderIdGenerator(int workerId) {
+        this(workerId, System::currentTimeMillis);
+    }
+
+    OrderIdGenerator(int workerId, LongSupplier clock) {
+        if (workerId < 0 || workerId > MAX_WORKER_ID) {
+            throw new IllegalArgumentException("workerId out of range: " + workerId);
+        }
+        this.workerId = workerId;
+        this.clock = clock;
+    }
+
+    public synchronized long nextId() {
+        long now = clock.getAsLong() / 1000 - EPOCH_SECONDS;
+        if (now > second) {
+            second = now;
+            sequence = 0;
+        } else if (++sequence > MAX_SEQUENCE) {
+            // 本秒的序号用完或时钟回拨，借用下一秒
+            second++;
+            sequence = 0;
+        }
+        if (second < 0 || second > MAX_SECONDS) {
+            throw new IllegalStateException("clock out of range: " + clock.getAsLong());
+        }
+        return (second << (WORKER_BITS + SEQUENCE_BITS)) | (workerId << SEQUENCE_BITS) | sequence;
+    }
+
+    /**
+     * 一次分配 n 个id，批量创建订单时使用
+     */
+    public synchronized long[] nextIds(int n) {
+        long[] ids = new long[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = nextId();
+        }
+        return ids;
+    }
+
+    /**
+     * @return id 中的节点号
+     */
+    public static int workerId(long id) {
+        return (int) ((id >>> SEQUENCE_BITS) & MAX_WORKER_ID);
+    }
+}
@@ -0,0 +1,142 @@
+package com.seckill.common.util;
+
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+/**
+ * 最近出现过的 long id 的集合，按时间窗口淘汰，用于消费端丢弃重复投递的消息
+ * <p>
+ * 1. 由两代定长的开放寻址 long 数组组成：新id写入当前代，查询时两代都查；
+ *    当前代存在超过 windowMillis 或写满 capacity 个id时，清空上一代并把它作为新的当前代
+ * 2. 容量足够时一个id至少保留 windowMillis，最多保留两倍；写入过快时提前淘汰，调用方需要有其他兜底（如redis、数据库）
+ * 3. 不装箱，占用的内存固定为 2 * 2 * capacity 个 long
+ * 4. 0 不能作为id：查询时视为不存在，写入时忽略
+ * 5. 方法都是同步的，适用于消费线程不多的场景
+ *
+ * @author noodle
+ */
+public class RecentIdSet {
+
+    private static final long EMPTY = 0L;
+
+    private final long[][] generations = new long[2][];
+
+    private final int[] sizes = new int[2];
+
+    private final int capacity;
+
+    private final int mask;
+
+    private final long windowMillis;
+
+    private final LongSupplier clock;
+
+    private int current;
+
+    private long currentStart;
+
+    /**
+     * @param capacity     每一代最多保存的id数量
+     * @param windowMillis 每一代的时间跨度（毫秒）
+     */
+    public RecentIdSet(int capacity, long windowMillis) {
+        this(capacity, windowMillis, System::currentTimeMillis);
+    }
+
+    RecentIdSet(int capacity, long windowMillis, LongSupplier clock) {
+        if (capacity <= 0 || capacity > (1 << 28)) {
+            throw new IllegalArgumentException("capacity out of range: " + capacity);
+        }
+        if (windowMillis <= 0) {
+            throw new IllegalArgumentException("windowMillis must be positive");
+        }
+        int length = Integer.highestOneBit(Math.max(16, capacity * 2) - 1) << 1;
+        this.generations[0] = new long[length];
+        this.generations[1] = new long[length];
+        this.capacity = capacity;
+        this.mask = length - 1;
+        this.windowMillis = windowMillis;
+        this.clock = clock;
+        this.currentStart = clock.getAsLong();
+    }
+
+    public synchronized boolean contains(long id) {
+        if (id == EMPTY) {
+            return false;
+        }
+        rotateIfExpired();
+        return indexOf(generations[0], id) >= 0 || indexOf(generations[1], id) >= 0;
+    }
+
+    /**
+     * @return id 不在集合中、本次新写入时返回 true
+     */
+    public synchronized boolean add(long id) {
+        if (id == EMPTY) {
+            return false;
+        }
+        rotateIfExpired();
+        if (indexOf(generations[0], id) >= 0 || indexOf(generations[1], id) >= 0) {
+            return false;
+        }
+        if (sizes[current] >= capacity) {
+            rotate(clock.getAsLong());
+        }
+        long[] table = generations[current];
+        int index = hash(id) & mask;
+        while (table[index] != EMPTY) {
+            index = (index + 1) & mask;
+        }
+        table[index] = id;
+        sizes[current]++;
+        return true;
+    }
+
+    /**
+     * @return 两代中id的总数
+     */
+    public synchronized int size() {
+        rotateIfExpired();
+        return sizes[0] + sizes[1];
+    }
+
+    private void rotateIfExpired() {
+        long now = clock.getAsLong();
+        if (now - currentStart >= windowMillis) {
+            // 两代都已过期时直接全部清空
+            if (now - currentStart >= windowMillis * 2) {
+                rotate(now);
+            }
+            rotate(now);
+        }
+    }
+
+    private void rotate(long now) {
+        current ^= 1;
+        Arrays.fill(generations[current], EMPTY);
+        sizes[current] = 0;
+        currentStart = now;
+    }
+
+    /**
+     * 每一代最多写入 capacity 个id，表长至少为其两倍，探测总能遇到空槽位
+     */
+    private int indexOf(long[] table, long id) {
+        int index = hash(id) & mask;
+        while (true) {
+            long current = table[index];
+            if (current == id) {
+                return index;
+            }
+            if (current == EMPTY) {
+                return -1;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,217 @@
+package com.seckill.common.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 可扩展的布隆过滤器（Scalable Bloom Filter）
+ * <p>
+ * 1. 由若干级组成，第 i 级的容量为 initialCapacity * 2^i，误判率为 fpp * 0.5^(i+1)，
+ *    各级误判率之和不超过 fpp；元素按插入序号写入对应的级，查询时任意一级命中即认为可能存在
+ * 2. 所有级共用一个位空间，第 i 级占用 [base(i), base(i) + bits(i)) 区间，
+ *    因此可以整体保存在一个 redis 位图中，offsets() 给出的下标在本地和 redis 中通用
+ * 3. 本地位图按级延迟分配，只有写入过的级才占用内存；只能插入，不能删除
+ *
+ * @author noodle
+ */
+public class ScalableBloomFilter {
+
+    private final long initialCapacity;
+
+    private final int maxStages;
+
+    /**
+     * 每一级的起始下标，bases[maxStages] 为位空间的总长度
+     */
+    private final long[] bases;
+
+    /**
+     * 每一级的哈希函数个数
+     */
+    private final int[] hashes;
+
+    private final AtomicReferenceArray<AtomicLongArray> words;
+
+    /**
+     * @param initialCapacity 第一级的容量
+     * @param fpp             总的误判率上限
+     * @param maxStages       最多的级数，超过总容量后继续写入最后一级（误判率随之升高）
+     */
+    public ScalableBloomFilter(long initialCapacity, double fpp, int maxStages) {
+        if (initialCapacity <= 0 || fpp <= 0 || fpp >= 1 || maxStages <= 0) {
+            throw new IllegalArgumentException("invalid bloom filter parameters");
+        }
+        this.initialCapacity = initialCapacity;
+        this.maxStages = maxStages;
+        this.bases = new long[maxStages + 1];
+        this.hashes = new int[maxStages];
+        this.words = new AtomicReferenceArray<>(maxStages);
+
+        for (int stage = 0; stage < maxStages; stage++) {
+            long capacity = initialCapacity << stage;
+            double stageFpp = fpp / (2L << stage);
+            long bits = (long) Math.ceil(-capacity * Math.log(stageFpp) / (Math.log(2) * Math.log(2)));
+            hashes[stage] = Math.max(1, (int) Math.round((double) bits / capacity * Math.log(2)));
+            bases[stage + 1] = bases[stage] + bits;
+        }
+    }
+
+    /**
+     * @param index 元素的插入序号（从0开始）
+     * @return 元素所在的级
+     */
+    public int stageOf(long index) {
+        // 前 n 级的总容量为 initialCapacity * (2^n - 1)
+        int stage = 63 - Long.numberOfLeadingZeros(index / initialCapacity + 1);
+        return Math.min(stage, maxStages - 1);
+    }
+
+    /**
+     * @return 元素在某一级中对应的位下标
+     */
+    public long[] offsets(String value, int stage) {
+        long h1 = hash(value, 0x9e3779b97f4a7c15L);
+        long h2 = hash(value, 0xc2b2ae3d27d4eb4fL) | 1;
+        long bits = bases[stage + 1] - bases[stage];
+        long[] offsets = new long[hashes[stage]];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = bases[stage] + Math.floorMod(h1 + i * h2, bits);
+        }
+        return offsets;
+    }
+
+    /**
+     * @return 元素在所有级中对应的位下标，按级依次排列，每一级的长度为 hashes(stage)
+     */
+    public long[] offsets(String value) {
+        long[] all = new long[totalHashes()];
+        int position = 0;
+        for (int stage = 0; stage < maxStages; stage++) {
+            long[] offsets = offsets(value, stage);
+            System.arraycopy(offsets, 0, all, position, offsets.length);
+            position += offsets.length;
+        }
+        return all;
+    }
+
+    /**
+     * 判断 offsets(value) 对应的位中是否有一级全部为1
+     *
+     * @param bits 与 offsets(value) 一一对应的位
+     * @return 有一级全部为1时返回该级，否则返回 -1
+     */
+    public int matchedStage(boolean[] bits) {
+        int position = 0;
+        for (int stage = 0; stage < maxStages; stage++) {
+            boolean all = true;
+            for (int i = 0; i < hashes[stage]; i++) {
+                all &= bits[position + i];
+            }
+            if (all) {
+                return stage;
+            }
+            position += hashes[stage];
+        }
+        return -1;
+    }
+
+    /**
+     * 在本地位图中把元素写入某一级
+     */
+    public void put(String value, int stage) {
+        set(offsets(value, stage));
+    }
+
+    /**
+     * 在本地位图中将若干位置为1
+     */
+    public void set(long[] offsets) {
+        for (long offset : offsets) {
+            int stage = stageAt(offset);
+            long local = offset - bases[stage];
+            stageWords(stage).getAndAccumulate((int) (local >>> 6), 1L << (local & 63), (a, b) -> a | b);
+        }
+    }
+
+    /**
+     * @return 本地位图中任意一级命中时返回 true（可能存在），否则元素一定不在本地位图中
+     */
+    public boolean mightContain(String value) {
+        for (int stage = 0; stage < maxStages; stage++) {
+            AtomicLongArray stageWords = words.get(stage);
+            if (stageWords == null) {
+                continue;
+            }
+            boolean all = true;
+            for (long offset : offsets(value, stage)) {
+                long local = offset - bases[stage];
+                if ((stageWords.get((int) (local >>> 6)) & (1L << (local & 63))) == 0) {
+                    all = false;
+                    break;
+                }
+            }
+            if (all) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int getMaxStages() {
+        return maxStages;
+    }
+
+    /**
+     * @return 某一级的哈希函数个数
+     */
+    public int hashes(int stage) {
+        return hashes[stage];
+    }
+
+    private int totalHashes() {
+        int total = 0;
+        for (int stage = 0; stage < maxStages; stage++) {
+            total += hashes[stage];
+        }
+        return total;
+    }
+
+    private int stageAt(long offset) {
+        if (offset < 0 || offset >= bases[maxStages]) {
+            throw new IllegalArgumentException("offset out of range: " + offset);
+        }
+        int stage = 0;
+        while (offset >= bases[stage + 1]) {
+            stage++;
+        }
+        return stage;
+    }
+
+    private AtomicLongArray stageWords(int stage) {
+        AtomicLongArray stageWords = words.get(stage);
+        if (stageWords == null) {
+            long bits = bases[stage + 1] - bases[stage];
+            words.compareAndSet(stage, null, new AtomicLongArray((int) ((bits + 63) >>> 6)));
+            stageWords = words.get(stage);
+        }
+        return stageWords;
+    }
+
+    /**
+     * 64 位 FNV-1a，再经过 murmur3 的混合函数打散
+     */
+    private static long hash(String value, long seed) {
+        long hash = 0xcbf29ce484222325L ^ seed;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,260 @@
+package com.seckill.common.util;
+
+import com.seckill.common.api.cache.RedisServiceApi;
+import com.seckill.common.api.cache.vo.KeyPrefix;
+import com.seckill.common.api.cache.vo.LeaseKeyPrefix;
+import com.seckill.common.api.cache.vo.RedisBatch;
+import com.seckill.common.api.cache.vo.RedisBatchResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * 合并并发的缓存加载请求，避免缓存失效瞬间大量请求同时回源（缓存击穿）
+ * <p>
+ * 1. 进程内：同一个key同时只有一个调用方执行加载，其他调用方等待同一个 future
+ * 2. 跨节点：执行加载前先获取 redis 中的短租约（LeaseKeyPrefix.CACHE_LOAD），没有拿到租约的节点轮询缓存，
+ *    直到持有者写入缓存或释放租约；最多等待 maxWaitMillis（小于 dubbo 调用的超时时间，不超过租期），
+ *    之后自行加载，调用方不会因为等待其他节点而超时
+ * 3. 提前刷新：对于有过期时间的前缀，记录本节点加载时的耗时和过期时间，命中时按概率提前重建
+ *    （越接近过期、加载越慢，提前重建的概率越大），热点key在过期之前就已经被重建，其他请求继续使用旧值
+ * <p>
+ * 加载结果为 null 时不写入缓存；加载抛出的异常传递给所有等待的调用方
+ *
+ * @author noodle
+ */
+public class SingleFlightLoader {
+
+    private static final Logger logger = LoggerFactory.getLogger(SingleFlightLoader.class);
+
+    /**
+     * 等待其他节点加载时轮询缓存的间隔
+     */
+    private static final long POLL_MILLIS = 20;
+
+    /**
+     * 最多记录多少个key的提前刷新信息，超过后先清理已过期的记录，仍然超过则不再记录
+     */
+    private static final int MAX_TRACKED_KEYS = 10000;
+
+    /**
+     * 提前刷新的系数，越大越早刷新，1.0 为推荐值
+     */
+    private static final double EARLY_REFRESH_BETA = 1.0;
+
+    /**
+     * 默认最多等待其他节点加载的时间，小于 dubbo 调用默认的超时时间（1秒），留出自行加载的时间
+     */
+    public static final long DEFAULT_MAX_WAIT_MILLIS = 500;
+
+    private final Supplier<RedisServiceApi> redis;
+
+    private final long maxWaitMillis;
+
+    /**
+     * 未命中时正在进行的加载
+     */
+    private final Map<String, CompletableFuture<Object>> loading = new ConcurrentHashMap<>();
+
+    /**
+     * 正在进行的提前刷新，与 loading 分开：提前刷新没有拿到租约时结果为 null，不能交给未命中的调用方
+     */
+    private final Map<String, CompletableFuture<Object>> refreshing = new ConcurrentHashMap<>();
+
+    private final Map<String, Expiry> expiries = new ConcurrentHashMap<>();
+
+    /**
+     * @param redis redis 服务；服务通常在构造之后才由 dubbo/spring 注入，因此在使用时才获取
+     */
+    public SingleFlightLoader(Supplier<RedisServiceApi> redis) {
+        this(redis, DEFAULT_MAX_WAIT_MILLIS);
+    }
+
+    /**
+     * @param redis         redis 服务
+     * @param maxWaitMillis 最多等待其他节点加载的时间，应小于调用方的 rpc 超时时间，超过租期时按租期等待
+     */
+    public SingleFlightLoader(Supplier<RedisServiceApi> redis, long maxWaitMillis) {
+        this.redis = redis;
+        this.maxWaitMillis = Math.min(maxWaitMillis, LeaseKeyPrefix.CACHE_LOAD.expireSeconds() * 1000L);
+    }
+
+    /**
+     * 从缓存中获取值，未命中时由一个调用方执行 loader 并写入缓存
+     *
+     * @param prefix key的前缀
+     * @param key    key
+     * @param clazz  值的类型
+     * @param loader 回源加载，返回 null 表示不存在（不写入缓存）
+     * @return 缓存中的值或加载的值
+     */
+    public <T> T get(KeyPrefix prefix, String key, Class<T> clazz, Supplier<T> loader) {
+        String realKey = prefix.getPrefix() + key;
+        T value = redis.get().get(prefix, key, clazz);
+        if (value == null) {
+            return coalesce(loading, realKey, () -> loadAcrossNodes(prefix, key, clazz, loader, false));
+        }
+        if (shouldRefreshEarly(realKey) && !refreshing.containsKey(realKey)) {
+            // 只有拿到租约的调用方重建，其他调用方（包括其他节点）继续使用当前的值
+            T refreshed = coalesce(refreshing, realKey, () -> loadAcrossNodes(prefix, key, clazz, loader, true));
+            if (refreshed != null) {
+                return refreshed;
+            }
+        }
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T coalesce(Map<String, CompletableFuture<Object>> inFlight, String realKey, Supplier<T> load) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(realKey, future);
+        if (existing != null) {
+            try {
+                return (T) existing.join();
+            } catch (CompletionException e) {
+                throw propagate(e.getCause());
+            }
+        }
+
+        try {
+            T value = load.get();
+            future.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(realKey, future);
+        }
+    }
+
+    /**
+     * @param refresh 为 true 时是提前刷新：没有拿到租约直接返回 null，由调用方继续使用当前的值
+     */
+    private <T> T loadAcrossNodes(KeyPrefix prefix, String key, Class<T> clazz, Supplier<T> loader, boolean refresh) {
+        RedisServiceApi redisService = redis.get();
+        String realKey = prefix.getPrefix() + key;
+        String owner = UUIDUtil.uuid();
+        long deadline = System.currentTimeMillis() + maxWaitMillis;
+
+        while (!redisService.setIfAbsent(LeaseKeyPrefix.CACHE_LOAD, realKey, owner)) {
+            if (refresh) {
+                return null;
+            }
+            // 其他节点正在加载：等待其写入缓存；租约已被释放但缓存中仍然没有值（加载结果为 null）时重新竞争租约
+            RedisBatchResult result = redisService.executeBatch(new RedisBatch()
+                    .get(prefix, key, clazz)
+                    .exists(LeaseKeyPrefix.CACHE_LOAD, realKey));
+            T value = result.get(0);
+            if (value != null) {
+                return value;
+            }
+            Boolean leased = result.get(1);
+            if (Boolean.TRUE.equals(leased)) {
+                if (System.currentTimeMillis() >= deadline) {
+                    logger.warn("等待其他节点加载缓存超过{}ms，直接加载: {}", maxWaitMillis, realKey);
+                    return load(redisService, prefix, key, loader);
+                }
+                sleep(POLL_MILLIS);
+            }
+        }
+
+        try {
+            if (!refresh) {
+                // 拿到租约之前，上一个持有者可能刚刚写入了缓存
+                T value = redisService.get(prefix, key, clazz);
+                if (value != null) {
+                    return value;
+                }
+            }
+            return load(redisService, prefix, key, loader);
+        } finally {
+            // 加载超过租期时租约可能已经被其他节点获取，此时删除只会让多一个节点加载，不影响正确性
+            redisService.delete(LeaseKeyPrefix.CACHE_LOAD, realKey);
+        }
+    }
+
+    private <T> T load(RedisServiceApi redisService, KeyPrefix prefix, String key, Supplier<T> loader) {
+        long start = System.currentTimeMillis();
+        T value = loader.get();
+        if (value == null) {
+            return null;
+        }
+        redisService.set(prefix, key, value);
+
+        if (prefix.expireSeconds() > 0) {
+            long now = System.currentTimeMillis();
+            track(prefix.getPrefix() + key, new Expiry(now + prefix.expireSeconds() * 1000L, now - start));
+        }
+        return value;
+    }
+
+    /**
+     * 概率提前刷新：now - delta * beta * ln(rand) >= expireAt 时重建，其中 delta 为上一次加载的耗时
+     */
+    private boolean shouldRefreshEarly(String realKey) {
+        Expiry expiry = expiries.get(realKey);
+        if (expiry == null) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        if (now >= expiry.expireAt) {
+            expiries.remove(realKey, expiry);
+            return false;
+        }
+        double random = 1.0 - ThreadLocalRandom.current().nextDouble();
+        double gap = -expiry.loadMillis * EARLY_REFRESH_BETA * Math.log(random);
+        return now + gap >= expiry.expireAt;
+    }
+
+    private void track(String realKey, Expiry expiry) {
+        if (expiries.size() >= MAX_TRACKED_KEYS) {
+            long now = System.currentTimeMillis();
+            expiries.values().removeIf(e -> now >= e.expireAt);
+            if (expiries.size() >= MAX_TRACKED_KEYS) {
+                return;
+            }
+        }
+        expiries.put(realKey, expiry);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for cache load", e);
+        }
+    }
+
+    private static RuntimeException propagate(Throwable cause) {
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IllegalStateException(cause);
+    }
+
+    /**
+     * 本节点最近一次加载的过期时间和耗时
+     */
+    private static final class Expiry {
+
+        final long expireAt;
+
+        final long loadMillis;
+
+        Expiry(long expireAt, long loadMillis) {
+            this.expireAt = expireAt;
+            this.loadMillis = Math.max(1, loadMillis);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.seckill.common.util;
 
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
 
 /**
@@ -12,4 +13,15 @@ public class UUIDUtil {
     public static String uuid() {
         return UUID.randomUUID().toString().replace("-", "");
     }
+
+    /**
+     * 秒杀消息id：非0的64位随机数，在去重窗口内碰撞的概率可以忽略
+     */
+    public static long messageId() {
+        long id;
+        do {
+            id = ThreadLocalRandom.current().nextLong();
+        } while (id == 0);
+        return id;
+    }
 }
@@ -0,0 +1,82 @@
+package com.seckill.common.codec;
+
+import com.seckill.common.domain.SeckillOrder;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 二进制编解码：按值中的 schema id 解码，旧布局可以继续读取，未知布局按缓存未命中处理
+ */
+public class BinaryValueCodecTest {
+
+    /**
+     * 旧布局：userId、goodsId
+     */
+    private static final BinarySchema<SeckillOrder> V1 = new BinarySchema<SeckillOrder>() {
+        @Override
+        public void write(SeckillOrder value, BinaryWriter out) {
+            out.writeVarLong(value.getUserId());
+            out.writeVarLong(value.getGoodsId());
+        }
+
+        @Override
+        public SeckillOrder read(BinaryReader in) {
+            SeckillOrder order = new SeckillOrder();
+            order.setUserId(in.readVarLong());
+            order.setGoodsId(in.readVarLong());
+            return order;
+        }
+    };
+
+    /**
+     * 新布局：userId、goodsId、orderId
+     */
+    private static final BinarySchema<SeckillOrder> V2 = new BinarySchema<SeckillOrder>() {
+        @Override
+        public void write(SeckillOrder value, BinaryWriter out) {
+            V1.write(value, out);
+            out.writeVarLong(value.getOrderId());
+        }
+
+        @Override
+        public SeckillOrder read(BinaryReader in) {
+            SeckillOrder order = V1.read(in);
+            order.setOrderId(in.readVarLong());
+            return order;
+        }
+    };
+
+    @Test
+    public void legacyLayoutStillDecodes() {
+        byte[] old = new BinaryValueCodec(JsonValueCodec.INSTANCE).register(1, SeckillOrder.class, V1).encode(order());
+
+        BinaryValueCodec codec = new BinaryValueCodec(JsonValueCodec.INSTANCE)
+                .register(2, SeckillOrder.class, V2)
+                .registerLegacy(1, SeckillOrder.class, V1);
+        SeckillOrder decoded = codec.decode(old, SeckillOrder.class);
+        assertEquals(Long.valueOf(7), decoded.getUserId());
+        assertEquals(Long.valueOf(8), decoded.getGoodsId());
+        assertNull(decoded.getOrderId());
+
+        SeckillOrder current = codec.decode(codec.encode(order()), SeckillOrder.class);
+        assertEquals(Long.valueOf(9), current.getOrderId());
+    }
+
+    @Test
+    public void unknownLayoutIsACacheMiss() {
+        byte[] newer = new BinaryValueCodec(JsonValueCodec.INSTANCE).register(2, SeckillOrder.class, V2).encode(order());
+
+        BinaryValueCodec codec = new BinaryValueCodec(JsonValueCodec.INSTANCE).register(1, SeckillOrder.class, V1);
+        assertNull(codec.decode(newer, SeckillOrder.class));
+        assertNull(codec.decode(new byte[]{BinaryValueCodec.MAGIC}, SeckillOrder.class));
+    }
+
+    private static SeckillOrder order() {
+        SeckillOrder order = new SeckillOrder();
+        order.setUserId(7L);
+        order.setGoodsId(8L);
+        order.setOrderId(9L);
+        return order;
+    }
+}
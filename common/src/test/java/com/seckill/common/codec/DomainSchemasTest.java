@@ -0,0 +1,159 @@
+package com.seckill.common.codec;
+
+import com.seckill.common.api.goods.vo.GoodsVo;
+import com.seckill.common.api.user.vo.UserVo;
+import com.seckill.common.domain.OrderInfo;
+import com.seckill.common.domain.SeckillOrder;
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+/**
+ * 写入redis的领域对象（DomainSchemas）：所有字段、可为空的字段为空时都能原样读回，切换编解码器之前写入的json仍然可以读取
+ */
+public class DomainSchemasTest {
+
+    private final BinaryValueCodec codec = DomainSchemas.registerAll(new BinaryValueCodec(JsonValueCodec.INSTANCE));
+
+    @Test
+    public void userVoRoundTrip() {
+        assertUser(user(), roundTrip(user(), UserVo.class));
+        assertUser(new UserVo(), roundTrip(new UserVo(), UserVo.class));
+    }
+
+    @Test
+    public void seckillOrderRoundTrip() {
+        assertSeckillOrder(seckillOrder(), roundTrip(seckillOrder(), SeckillOrder.class));
+        assertSeckillOrder(new SeckillOrder(), roundTrip(new SeckillOrder(), SeckillOrder.class));
+    }
+
+    @Test
+    public void goodsVoRoundTrip() {
+        assertGoods(goods(), roundTrip(goods(), GoodsVo.class));
+        assertGoods(new GoodsVo(), roundTrip(new GoodsVo(), GoodsVo.class));
+    }
+
+    @Test
+    public void orderInfoRoundTrip() {
+        assertOrderInfo(orderInfo(), roundTrip(orderInfo(), OrderInfo.class));
+        assertOrderInfo(new OrderInfo(), roundTrip(new OrderInfo(), OrderInfo.class));
+    }
+
+    @Test
+    public void jsonWrittenBeforeTheSwitchStillDecodes() {
+        assertUser(user(), codec.decode(JsonValueCodec.INSTANCE.encode(user()), UserVo.class));
+        assertSeckillOrder(seckillOrder(), codec.decode(JsonValueCodec.INSTANCE.encode(seckillOrder()), SeckillOrder.class));
+        assertGoods(goods(), codec.decode(JsonValueCodec.INSTANCE.encode(goods()), GoodsVo.class));
+        assertOrderInfo(orderInfo(), codec.decode(JsonValueCodec.INSTANCE.encode(orderInfo()), OrderInfo.class));
+    }
+
+    private <T> T roundTrip(T value, Class<T> clazz) {
+        byte[] bytes = codec.encode(value);
+        assertEquals(BinaryValueCodec.MAGIC, bytes[0]);
+        return codec.decode(bytes, clazz);
+    }
+
+    private static UserVo user() {
+        UserVo user = new UserVo();
+        user.setUuid(18912341234L);
+        user.setPhone(18912341234L);
+        user.setNickname("秒杀用户");
+        user.setPassword("b7797cce01b4b131b433b6acf4add449");
+        user.setSalt("1a2b3c4d");
+        user.setHead("http://img/head.png");
+        user.setRegisterDate(new Date(1546300800000L));
+        user.setLastLoginDate(new Date(1546387200000L));
+        user.setLoginCount(3);
+        return user;
+    }
+
+    private static SeckillOrder seckillOrder() {
+        SeckillOrder order = new SeckillOrder();
+        order.setId(1L);
+        order.setUserId(18912341234L);
+        order.setOrderId(1101893021696L);
+        order.setGoodsId(2L);
+        return order;
+    }
+
+    private static GoodsVo goods() {
+        GoodsVo goods = new GoodsVo();
+        goods.setId(2L);
+        goods.setGoodsName("iphoneX");
+        goods.setGoodsTitle("Apple iPhone X (A1865) 64GB");
+        goods.setGoodsImg("/img/iphonex.png");
+        goods.setGoodsDetail("全面屏");
+        goods.setGoodsPrice(8765.0);
+        goods.setGoodsStock(10000L);
+        goods.setSeckillPrice(0.01);
+        goods.setStockCount(10);
+        goods.setStartDate(new Date(1546300800000L));
+        goods.setEndDate(new Date(1546387200000L));
+        return goods;
+    }
+
+    private static OrderInfo orderInfo() {
+        OrderInfo order = new OrderInfo();
+        order.setId(1101893021696L);
+        order.setUserId(18912341234L);
+        order.setGoodsId(2L);
+        order.setDeliveryAddrId(0L);
+        order.setGoodsName("iphoneX");
+        order.setGoodsCount(1);
+        order.setGoodsPrice(0.01);
+        order.setOrderChannel(1);
+        order.setStatus(0);
+        order.setCreateDate(new Date(1546300800000L));
+        order.setPayDate(new Date(1546300860000L));
+        return order;
+    }
+
+    private static void assertUser(UserVo expected, UserVo actual) {
+        assertEquals(expected.getUuid(), actual.getUuid());
+        assertEquals(expected.getPhone(), actual.getPhone());
+        assertEquals(expected.getNickname(), actual.getNickname());
+        assertEquals(expected.getPassword(), actual.getPassword());
+        assertEquals(expected.getSalt(), actual.getSalt());
+        assertEquals(expected.getHead(), actual.getHead());
+        assertEquals(expected.getRegisterDate(), actual.getRegisterDate());
+        assertEquals(expected.getLastLoginDate(), actual.getLastLoginDate());
+        assertEquals(expected.getLoginCount(), actual.getLoginCount());
+    }
+
+    private static void assertSeckillOrder(SeckillOrder expected, SeckillOrder actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getUserId(), actual.getUserId());
+        assertEquals(expected.getOrderId(), actual.getOrderId());
+        assertEquals(expected.getGoodsId(), actual.getGoodsId());
+    }
+
+    private static void assertGoods(GoodsVo expected, GoodsVo actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getGoodsName(), actual.getGoodsName());
+        assertEquals(expected.getGoodsTitle(), actual.getGoodsTitle());
+        assertEquals(expected.getGoodsImg(), actual.getGoodsImg());
+        assertEquals(expected.getGoodsDetail(), actual.getGoodsDetail());
+        assertEquals(expected.getGoodsPrice(), actual.getGoodsPrice());
+        assertEquals(expected.getGoodsStock(), actual.getGoodsStock());
+        assertEquals(expected.getSeckillPrice(), actual.getSeckillPrice());
+        assertEquals(expected.getStockCount(), actual.getStockCount());
+        assertEquals(expected.getStartDate(), actual.getStartDate());
+        assertEquals(expected.getEndDate(), actual.getEndDate());
+    }
+
+    private static void assertOrderInfo(OrderInfo expected, OrderInfo actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getUserId(), actual.getUserId());
+        assertEquals(expected.getGoodsId(), actual.getGoodsId());
+        assertEquals(expected.getDeliveryAddrId(), actual.getDeliveryAddrId());
+        assertEquals(expected.getGoodsName(), actual.getGoodsName());
+        assertEquals(expected.getGoodsCount(), actual.getGoodsCount());
+        assertEquals(expected.getGoodsPrice(), actual.getGoodsPrice());
+        assertEquals(expected.getOrderChannel(), actual.getOrderChannel());
+        assertEquals(expected.getStatus(), actual.getStatus());
+        assertEquals(expected.getCreateDate(), actual.getCreateDate());
+        assertEquals(expected.getPayDate(), actual.getPayDate());
+    }
+}
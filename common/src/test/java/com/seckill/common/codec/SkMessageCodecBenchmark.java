@@ -0,0 +1,104 @@
+package com.seckill.common.codec;
+
+import com.seckill.common.api.mq.vo.SkMessage;
+import com.seckill.common.api.user.vo.UserVo;
+import com.seckill.common.util.UUIDUtil;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 秒杀消息编解码对比：原来的 java 序列化（SimpleMessageConverter 的做法）与 SkMessageCodec
+ * <p>
+ * 运行：mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.seckill.common.codec.SkMessageCodecBenchmark
+ * 运行前会先打印两种编码的字节数
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SkMessageCodecBenchmark {
+
+    private SkMessage message;
+
+    private byte[] serializedBytes;
+
+    private byte[] binaryBytes;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        message = sample();
+        serializedBytes = serialize(message);
+        binaryBytes = SkMessageCodec.encode(message);
+    }
+
+    /**
+     * gateway 发送的消息带有从缓存中取出的完整用户信息
+     */
+    static SkMessage sample() {
+        SkMessage message = new SkMessage();
+        message.setUser((UserVo) ValueCodecBenchmark.sample("UserVo"));
+        message.setGoodsId(3L);
+        message.setMessageId(UUIDUtil.messageId());
+        return message;
+    }
+
+    static byte[] serialize(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        }
+        return bytes.toByteArray();
+    }
+
+    static Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        }
+    }
+
+    /**
+     * 改造前：java 序列化
+     */
+    @Benchmark
+    public byte[] serializableEncode() throws IOException {
+        return serialize(message);
+    }
+
+    /**
+     * 改造前：java 反序列化
+     */
+    @Benchmark
+    public Object serializableDecode() throws IOException, ClassNotFoundException {
+        return deserialize(serializedBytes);
+    }
+
+    @Benchmark
+    public byte[] binaryEncode() {
+        return SkMessageCodec.encode(message);
+    }
+
+    @Benchmark
+    public Object binaryDecode() {
+        return SkMessageCodec.decode(binaryBytes);
+    }
+
+    public static void main(String[] args) throws IOException, RunnerException {
+        SkMessage message = sample();
+        System.out.printf("SkMessage serializable: %4d bytes, binary: %4d bytes%n",
+                serialize(message).length, SkMessageCodec.encode(message).length);
+
+        Options options = new OptionsBuilder()
+                .include(SkMessageCodecBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,147 @@
+package com.seckill.common.codec;
+
+import com.alibaba.fastjson.JSON;
+import com.seckill.common.api.goods.vo.GoodsVo;
+import com.seckill.common.api.user.vo.UserVo;
+import com.seckill.common.domain.SeckillOrder;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存值编解码对比：原来的 fastjson 文本（两次解析）、json 编解码、binary 编解码
+ * <p>
+ * 运行：mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.seckill.common.codec.ValueCodecBenchmark
+ * 运行前会先打印每种编码的字节数
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValueCodecBenchmark {
+
+    @Param({"UserVo", "SeckillOrder", "GoodsVo"})
+    public String type;
+
+    private Object value;
+
+    private Class<?> clazz;
+
+    private String legacyText;
+
+    private byte[] jsonBytes;
+
+    private byte[] binaryBytes;
+
+    private final ValueCodec json = ValueCodecs.get(ValueCodecs.JSON);
+
+    private final ValueCodec binary = ValueCodecs.get(ValueCodecs.BINARY);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        value = sample(type);
+        clazz = value.getClass();
+        legacyText = JSON.toJSONString(value);
+        jsonBytes = json.encode(value);
+        binaryBytes = binary.encode(value);
+    }
+
+    static Object sample(String type) {
+        Date now = new Date();
+        switch (type) {
+            case "UserVo":
+                UserVo user = new UserVo();
+                user.setUuid(18912341234L);
+                user.setPhone(18912341234L);
+                user.setNickname("noodle");
+                user.setPassword("b7797cce01b4b131b433b6acf4add449");
+                user.setSalt("1a2b3c4d");
+                user.setHead("/img/head.png");
+                user.setRegisterDate(now);
+                user.setLastLoginDate(now);
+                user.setLoginCount(12);
+                return user;
+            case "SeckillOrder":
+                SeckillOrder order = new SeckillOrder();
+                order.setId(1024L);
+                order.setUserId(18912341234L);
+                order.setOrderId(2048L);
+                order.setGoodsId(3L);
+                return order;
+            case "GoodsVo":
+                GoodsVo goods = new GoodsVo();
+                goods.setId(3L);
+                goods.setGoodsName("iphoneX");
+                goods.setGoodsTitle("Apple iPhone X (A1865) 64GB 银色 移动联通电信4G手机");
+                goods.setGoodsImg("/img/iphonex.png");
+                goods.setGoodsDetail("Apple iPhone X (A1865) 64GB 银色 移动联通电信4G手机");
+                goods.setGoodsPrice(8765.0);
+                goods.setGoodsStock(10000L);
+                goods.setSeckillPrice(0.01);
+                goods.setStockCount(10);
+                goods.setStartDate(now);
+                goods.setEndDate(new Date(now.getTime() + 3600_000L));
+                return goods;
+            default:
+                throw new IllegalArgumentException(type);
+        }
+    }
+
+    /**
+     * 改造前：JSON.toJSONString
+     */
+    @Benchmark
+    public String legacyEncode() {
+        return JSON.toJSONString(value);
+    }
+
+    /**
+     * 改造前：JSON.parseObject + toJavaObject，两次解析
+     */
+    @Benchmark
+    public Object legacyDecode() {
+        return JSON.toJavaObject(JSON.parseObject(legacyText), clazz);
+    }
+
+    @Benchmark
+    public byte[] jsonEncode() {
+        return json.encode(value);
+    }
+
+    @Benchmark
+    public Object jsonDecode() {
+        return json.decode(jsonBytes, clazz);
+    }
+
+    @Benchmark
+    public byte[] binaryEncode() {
+        return binary.encode(value);
+    }
+
+    @Benchmark
+    public Object binaryDecode() {
+        return binary.decode(binaryBytes, clazz);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (String type : new String[]{"UserVo", "SeckillOrder", "GoodsVo"}) {
+            Object value = sample(type);
+            System.out.printf("%-12s json: %4d bytes, binary: %4d bytes%n", type,
+                    ValueCodecs.get(ValueCodecs.JSON).encode(value).length,
+                    ValueCodecs.get(ValueCodecs.BINARY).encode(value).length);
+        }
+
+        Options options = new OptionsBuilder()
+                .include(ValueCodecBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
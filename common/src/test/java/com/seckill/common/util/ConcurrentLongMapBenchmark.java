@@ -0,0 +1,103 @@
+package com.seckill.common.util;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 售罄标记的查询/翻转：ConcurrentLongMap 与网关原来的 HashMap<Long, Boolean> 对比（64线程）
+ * <p>
+ * HashMap 在并发写时不安全，只测查询；ConcurrentHashMap 作为线程安全的装箱实现参照
+ * <p>
+ * 运行：mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.seckill.common.util.ConcurrentLongMapBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(64)
+@State(Scope.Benchmark)
+public class ConcurrentLongMapBenchmark {
+
+    /**
+     * 秒杀商品数量
+     */
+    @Param({"16", "1024"})
+    public int goodsCount;
+
+    private Map<Long, Boolean> hashMap;
+
+    private Map<Long, Boolean> concurrentHashMap;
+
+    private ConcurrentLongMap longMap;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        hashMap = new HashMap<>();
+        concurrentHashMap = new ConcurrentHashMap<>();
+        longMap = new ConcurrentLongMap(goodsCount);
+        for (long goodsId = 1; goodsId <= goodsCount; goodsId++) {
+            hashMap.put(goodsId, false);
+            concurrentHashMap.put(goodsId, false);
+            longMap.put(goodsId, 0);
+        }
+    }
+
+    private long randomGoodsId() {
+        return ThreadLocalRandom.current().nextInt(goodsCount) + 1;
+    }
+
+    @Benchmark
+    public boolean hashMapGet() {
+        return hashMap.get(randomGoodsId());
+    }
+
+    @Benchmark
+    public boolean concurrentHashMapGet() {
+        return concurrentHashMap.get(randomGoodsId());
+    }
+
+    @Benchmark
+    public boolean longMapGet() {
+        return longMap.get(randomGoodsId(), 0) == 1;
+    }
+
+    /**
+     * 查询为主，约 1% 的请求翻转标记
+     */
+    @Benchmark
+    public boolean concurrentHashMapGetOrFlip() {
+        long goodsId = randomGoodsId();
+        if (ThreadLocalRandom.current().nextInt(100) == 0) {
+            concurrentHashMap.put(goodsId, !concurrentHashMap.get(goodsId));
+            return true;
+        }
+        return concurrentHashMap.get(goodsId);
+    }
+
+    @Benchmark
+    public boolean longMapGetOrFlip() {
+        long goodsId = randomGoodsId();
+        if (ThreadLocalRandom.current().nextInt(100) == 0) {
+            return longMap.replace(goodsId, 1 - longMap.get(goodsId, 0));
+        }
+        return longMap.get(goodsId, 0) == 1;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ConcurrentLongMapBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,65 @@
+package com.seckill.common.util;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * 订单id的唯一性、单调性、节点号，以及序号用完和时钟回拨时的处理
+ */
+public class OrderIdGeneratorTest {
+
+    private static final long JS_MAX_SAFE_INTEGER = (1L << 53) - 1;
+
+    private final AtomicLong now = new AtomicLong(1600000000000L);
+
+    @Test
+    public void idsAreIncreasingAndCarryTheWorkerId() {
+        OrderIdGenerator generator = new OrderIdGenerator(7, now::get);
+        long last = 0;
+        for (long id : generator.nextIds(1000)) {
+            assertTrue(id > last);
+            assertTrue(id <= JS_MAX_SAFE_INTEGER);
+            assertEquals(7, OrderIdGenerator.workerId(id));
+            last = id;
+        }
+    }
+
+    @Test
+    public void workersDoNotCollide() {
+        OrderIdGenerator a = new OrderIdGenerator(0, now::get);
+        OrderIdGenerator b = new OrderIdGenerator(1, now::get);
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(ids.add(a.nextId()));
+            assertTrue(ids.add(b.nextId()));
+        }
+    }
+
+    @Test
+    public void exhaustedSecondBorrowsTheNextOne() {
+        OrderIdGenerator generator = new OrderIdGenerator(3, now::get);
+        long[] ids = generator.nextIds(65536 + 1);
+        assertEquals(65536, ids.length - 1);
+        long first = ids[0] >>> 21;
+        assertEquals(first, ids[65535] >>> 21);
+        assertEquals(first + 1, ids[65536] >>> 21);
+
+        // 时钟追上借用的秒之前仍在借用的秒内递增
+        now.addAndGet(1000);
+        assertTrue(generator.nextId() > ids[65536]);
+    }
+
+    @Test
+    public void clockGoingBackwardsKeepsIdsIncreasing() {
+        OrderIdGenerator generator = new OrderIdGenerator(0, now::get);
+        long before = generator.nextId();
+        now.addAndGet(-60_000);
+        long after = generator.nextId();
+        assertTrue(after > before);
+    }
+}
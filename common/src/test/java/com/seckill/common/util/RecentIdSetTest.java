@@ -0,0 +1,80 @@
+package com.seckill.common.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * 消息去重集合：窗口内去重、按时间和容量淘汰
+ */
+public class RecentIdSetTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000L);
+
+    @Test
+    public void addReturnsFalseForRepeatedIds() {
+        RecentIdSet set = new RecentIdSet(100, 1000, now::get);
+
+        assertTrue(set.add(42));
+        assertFalse(set.add(42));
+        assertTrue(set.contains(42));
+        assertFalse(set.contains(43));
+        assertFalse(set.add(0));
+        assertFalse(set.contains(0));
+        assertEquals(1, set.size());
+    }
+
+    @Test
+    public void idsAreKeptForAtLeastOneWindow() {
+        RecentIdSet set = new RecentIdSet(100, 1000, now::get);
+        set.add(1);
+        now.addAndGet(999);
+        set.add(2);
+
+        // 1 所在的代已经切换为上一代，仍然可以查到
+        now.addAndGet(1);
+        assertTrue(set.contains(1));
+        assertTrue(set.contains(2));
+
+        now.addAndGet(999);
+        assertTrue(set.contains(2));
+
+        // 再切换一次，两个id都已超过一个窗口
+        now.addAndGet(1);
+        assertFalse(set.contains(1));
+        assertFalse(set.contains(2));
+        assertEquals(0, set.size());
+    }
+
+    @Test
+    public void idleLongerThanTwoWindowsClearsEverything() {
+        RecentIdSet set = new RecentIdSet(100, 1000, now::get);
+        set.add(1);
+        now.addAndGet(500);
+        set.add(2);
+
+        now.addAndGet(2500);
+        assertFalse(set.contains(1));
+        assertFalse(set.contains(2));
+    }
+
+    @Test
+    public void fullGenerationRotatesEarly() {
+        RecentIdSet set = new RecentIdSet(4, 60_000, now::get);
+        for (long id = 1; id <= 8; id++) {
+            assertTrue(set.add(id));
+        }
+        assertEquals(8, set.size());
+
+        // 第三代写入时淘汰最早的一代
+        assertTrue(set.add(9));
+        for (long id = 1; id <= 4; id++) {
+            assertFalse(set.contains(id));
+        }
+        for (long id = 5; id <= 9; id++) {
+            assertTrue(set.contains(id));
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.seckill.gateway.config;
+
+import com.seckill.common.api.cache.RedisServiceApi;
+import com.seckill.common.api.cache.RedisServiceAsyncApi;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.dubbo.config.annotation.Reference;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 缓存服务配置
+ * <p>
+ * seckill.cache.mode=remote（默认）：通过dubbo调用cache模块；
+ * seckill.cache.mode=local：由 cache-client 的自动配置提供直连redis的实现；
+ * seckill.cache.mode=memory：由 cache-client 提供进程内存储的实现，不需要redis（memory profile）
+ * <p>
+ * RedisServiceAsyncApi 同样按上述两种方式提供，返回 CompletableFuture，等待期间不阻塞调用线程
+ */
+@Configuration
+@Slf4j
+public class CacheConfig
+{
+    @Configuration
+    @ConditionalOnProperty(name = "seckill.cache.mode", havingValue = "remote", matchIfMissing = true)
+    static class RemoteCacheConfig
+    {
+        @Reference(interfaceClass = RedisServiceApi.class)
+        RedisServiceApi redisService;
+
+        @Reference(interfaceClass = RedisServiceAsyncApi.class)
+        RedisServiceAsyncApi redisServiceAsync;
+
+        @Bean
+        public RedisServiceApi redisServiceApi()
+        {
+            log.info("缓存服务使用dubbo远程调用");
+            return redisService;
+        }
+
+        @Bean
+        public RedisServiceAsyncApi redisServiceAsyncApi()
+        {
+            return redisServiceAsync;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.seckill.gateway.config;
+
+import com.seckill.cache.client.NearCacheRedisService;
+import com.seckill.common.api.cache.RedisServiceApi;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/**
+ * 近端缓存配置
+ * <p>
+ * seckill.nearCache.enabled=true 时，用 NearCacheRedisService 包装 redisServiceApi（remote/local 两种模式都适用），
+ * 启用了近端缓存的前缀见 KeyPrefix.nearCacheSize()
+ */
+@Configuration
+@ConditionalOnProperty(name = "seckill.nearCache.enabled", havingValue = "true")
+@Slf4j
+public class NearCacheConfig
+{
+    private static final String REDIS_SERVICE_BEAN = "redisServiceApi";
+
+    @Bean
+    public static BeanPostProcessor nearCacheBeanPostProcessor(Environment environment)
+    {
+        return new BeanPostProcessor()
+        {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName)
+            {
+                if (!REDIS_SERVICE_BEAN.equals(beanName) || !(bean instanceof RedisServiceApi)
+                        || bean instanceof NearCacheRedisService)
+                    return bean;
+
+                long ttlSeconds = environment.getProperty("seckill.nearCache.ttlSeconds", Long.class, 5L);
+                NearCacheRedisService nearCache = new NearCacheRedisService((RedisServiceApi) bean, ttlSeconds * 1000);
+                nearCache.subscribe(environment.getRequiredProperty("redis.host"),
+                        environment.getRequiredProperty("redis.port", Integer.class),
+                        environment.getRequiredProperty("redis.timeout", Integer.class));
+                log.info("缓存服务启用近端缓存, ttlSeconds-{}", ttlSeconds);
+                return nearCache;
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder nearCacheMetrics(RedisServiceApi redisServiceApi)
+    {
+        return registry -> {
+            if (redisServiceApi instanceof NearCacheRedisService)
+                ((NearCacheRedisService) redisServiceApi).bindTo(registry);
+        };
+    }
+}
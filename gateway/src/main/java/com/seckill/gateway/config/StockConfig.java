@@ -0,0 +1,52 @@
+package com.seckill.gateway.config;
+
+import com.seckill.common.api.cache.RedisServiceApi;
+import com.seckill.gateway.stock.LeasedStockCounter;
+import com.seckill.gateway.stock.RedisStockCounter;
+import com.seckill.gateway.stock.StockCounter;
+import com.seckill.gateway.stock.StripedStockCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 秒杀库存计数配置
+ * <p>
+ * seckill.stock.mode=redis（默认）：每个秒杀请求都在redis中扣减库存；
+ * seckill.stock.mode=lease：每个网关节点从redis批量租借库存，在本地分发；
+ * seckill.stock.mode=striped：每个商品的库存分成多段，分布在不同的redis分片上
+ */
+@Configuration
+@Slf4j
+public class StockConfig
+{
+    @Bean
+    @ConditionalOnProperty(name = "seckill.stock.mode", havingValue = "redis", matchIfMissing = true)
+    public StockCounter redisStockCounter(RedisServiceApi redisService)
+    {
+        log.info("库存计数: redis");
+        return new RedisStockCounter(redisService);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "seckill.stock.mode", havingValue = "lease")
+    public StockCounter leasedStockCounter(RedisServiceApi redisService, MeterRegistry meterRegistry,
+                                           @Value("${seckill.stock.lease.size:50}") int leaseSize,
+                                           @Value("${seckill.stock.lease.returnIntervalMillis:1000}") long returnIntervalMillis)
+    {
+        log.info("库存计数: lease, leaseSize-{}", leaseSize);
+        return new LeasedStockCounter(redisService, leaseSize, returnIntervalMillis, meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "seckill.stock.mode", havingValue = "striped")
+    public StockCounter stripedStockCounter(RedisServiceApi redisService,
+                                            @Value("${seckill.stock.stripes:8}") int stripes)
+    {
+        log.info("库存计数: striped, stripes-{}", stripes);
+        return new StripedStockCounter(redisService, stripes);
+    }
+}
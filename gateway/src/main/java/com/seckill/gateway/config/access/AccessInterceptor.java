@@ -1,8 +1,10 @@
 package com.seckill.gateway.config.access;
 
 import com.alibaba.fastjson.JSON;
-import com.seckill.common.api.cache.RedisServiceApi;
+import com.seckill.common.api.cache.RedisServiceAsyncApi;
 import com.seckill.common.api.cache.vo.AccessKeyPrefix;
+import com.seckill.common.api.cache.vo.RedisBatch;
+import com.seckill.common.api.cache.vo.RedisBatchResult;
 import com.seckill.common.api.cache.vo.SkUserKeyPrefix;
 import com.seckill.common.api.user.UserServiceApi;
 import com.seckill.common.api.user.vo.UserVo;
@@ -10,6 +12,7 @@ import com.seckill.common.result.CodeMsg;
 import com.seckill.common.result.Result;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.dubbo.config.annotation.Reference;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import org.springframework.web.method.HandlerMethod;
@@ -20,6 +23,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 @Slf4j
@@ -27,8 +31,8 @@ public class AccessInterceptor extends HandlerInterceptorAdapter
 {
 
 
-    @Reference(interfaceClass = RedisServiceApi.class)
-    RedisServiceApi redisService;
+    @Autowired
+    RedisServiceAsyncApi redisServiceAsync;
 
     @Reference(interfaceClass = UserServiceApi.class)
     UserServiceApi userService;
@@ -42,22 +46,30 @@ public class AccessInterceptor extends HandlerInterceptorAdapter
         if (handler instanceof HandlerMethod)
         {
             log.info("HandlerMethod:{}", ((HandlerMethod) handler).getMethod().getName());
-            //获取用户对象
-            UserVo user = this.getUser(request, response);
-            //保存用户
-            UserContext.setUser(user);
 
-            //获取有注解@Accesslimit的方法  没有直接返回true
+            //获取有注解@Accesslimit的方法
             HandlerMethod method= (HandlerMethod) handler;
             AccessLimit accessLimit=method.getMethodAnnotation(AccessLimit.class);
 
+            //获取用户对象；不需要登录的接口按uri计数，与用户查询同时发起
+            String token = this.getToken(request);
+            CompletableFuture<UserVo> userFuture = this.getUser(token);
+            CompletableFuture<Long> countFuture = null;
+            if (accessLimit != null && !accessLimit.needLogin())
+                countFuture = this.countAccess(accessLimit, request.getRequestURI());
+
+            UserVo user = userFuture.join();
+            if (user != null)
+                addCookie(response, token);
+            //保存用户
+            UserContext.setUser(user);
+
+            //没有注解直接返回true
             if(accessLimit==null)
                 return true;
 
-            int seconds = accessLimit.seconds();
             int maxCount = accessLimit.maxAccessCount();
             boolean needLogin = accessLimit.needLogin();
-            String key=request.getRequestURI();
 
             if(needLogin)
             {
@@ -66,20 +78,12 @@ public class AccessInterceptor extends HandlerInterceptorAdapter
                     this.render(response, CodeMsg.SESSION_ERROR);
                     return false;
                 }
-                key="_"+user.getPhone();
-
-            }else{
-
+                countFuture = this.countAccess(accessLimit, "_"+user.getPhone());
             }
-            //设置缓存过期时间
-            AccessKeyPrefix accessKeyPrefix=AccessKeyPrefix.withExpire(seconds);
-            Integer count=redisService.get(accessKeyPrefix,key,Integer.class);
-
-            if(count ==null)
-                redisService.set(accessKeyPrefix,key,1);
-            else if(count<maxCount)
-                redisService.incr(accessKeyPrefix,key);
-            else {
+
+            Long count=countFuture.join();
+            if(count>maxCount)
+            {
                 this.render(response,CodeMsg.ACCESS_LIMIT_REACHED);
                 return false;
             }
@@ -89,6 +93,13 @@ public class AccessInterceptor extends HandlerInterceptorAdapter
         return true;
     }
 
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex)
+    {
+        //tomcat线程会被复用，请求结束时清除保存的用户
+        UserContext.removeUser();
+    }
+
     private void render(HttpServletResponse response, CodeMsg codeMsg) throws IOException
     {
         response.setContentType("application/json charset=UTF-8");
@@ -100,29 +111,38 @@ public class AccessInterceptor extends HandlerInterceptorAdapter
         out.close();
     }
 
-    private UserVo getUser(HttpServletRequest request, HttpServletResponse response)
+    /**
+     * 访问计数：计数不存在时先以0创建（带过期时间），再自增，一次往返完成
+     */
+    private CompletableFuture<Long> countAccess(AccessLimit accessLimit, String key)
     {
-        log.info(request.getRequestURL() + " 获取UserVo对象");
+        //设置缓存过期时间
+        AccessKeyPrefix accessKeyPrefix=AccessKeyPrefix.withExpire(accessLimit.seconds());
+        return redisServiceAsync.executeBatch(new RedisBatch()
+                .setIfAbsent(accessKeyPrefix,key,0)
+                .incr(accessKeyPrefix,key))
+                .thenApply(result -> result.<Long>get(1));
+    }
 
+    private String getToken(HttpServletRequest request)
+    {
         String paramToken = request.getParameter(UserServiceApi.COOKIE_NAME_TOKEN);
         String cookieToken = this.getCookieValue(request, UserServiceApi.COOKIE_NAME_TOKEN);
 
-        if (StringUtils.isEmpty(paramToken) && StringUtils.isEmpty(cookieToken))
-            return null;
-
-        String token = StringUtils.isEmpty(paramToken) ? cookieToken : paramToken;
+        return StringUtils.isEmpty(paramToken) ? cookieToken : paramToken;
+    }
 
+    private CompletableFuture<UserVo> getUser(String token)
+    {
         if (StringUtils.isEmpty(token))
-            return null;
-
-        UserVo userVo = redisService.get(SkUserKeyPrefix.TOKEN,token,UserVo.class);
-
-        if(userVo!=null)
-            addCookie(response,token,userVo);
-
-        return userVo;
-
-
+            return CompletableFuture.completedFuture(null);
+
+        log.info("获取UserVo对象, token:{}", token);
+        //读取用户信息的同时刷新token在redis中的有效期，一次往返完成
+        return redisServiceAsync.executeBatch(new RedisBatch()
+                .get(SkUserKeyPrefix.TOKEN, token, UserVo.class)
+                .expire(SkUserKeyPrefix.TOKEN, token))
+                .thenApply(result -> result.<UserVo>get(0));
     }
 
     private String getCookieValue(HttpServletRequest request, String cookieName)
@@ -139,9 +159,7 @@ public class AccessInterceptor extends HandlerInterceptorAdapter
         return null;
     }
 
-    private void addCookie(HttpServletResponse response, String token, UserVo user) {
-
-        redisService.set(SkUserKeyPrefix.TOKEN, token, user);
+    private void addCookie(HttpServletResponse response, String token) {
 
         Cookie cookie = new Cookie(UserServiceApi.COOKIE_NAME_TOKEN, token);
         // 客户端cookie的有限期和缓存中的cookie有效期一致
@@ -22,4 +22,9 @@ public class UserContext
 
         userHolder.set(user);
     }
+
+    public static void removeUser()
+    {
+        userHolder.remove();
+    }
 }
@@ -1,12 +1,14 @@
 package com.seckill.gateway.config.resolver;
 
-import com.seckill.common.api.cache.RedisServiceApi;
+import com.seckill.common.api.cache.RedisServiceAsyncApi;
+import com.seckill.common.api.cache.vo.RedisBatch;
 import com.seckill.common.api.cache.vo.SkUserKeyPrefix;
 import com.seckill.common.api.user.UserServiceApi;
 import com.seckill.common.api.user.vo.UserVo;
+import com.seckill.gateway.config.access.UserContext;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.catalina.User;
-import org.apache.dubbo.config.annotation.Reference;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.MethodParameter;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
@@ -28,8 +30,8 @@ import javax.servlet.http.HttpServletResponse;
 public class UserArgumentResovler implements HandlerMethodArgumentResolver
 {
 
-    @Reference(interfaceClass = RedisServiceApi.class)
-    RedisServiceApi redisService;
+    @Autowired
+    RedisServiceAsyncApi redisServiceAsync;
 
 
     /**
@@ -48,7 +50,7 @@ public class UserArgumentResovler implements HandlerMethodArgumentResolver
     }
 
     /**
-     * 从session拿到UserVo
+     * 拿到UserVo：优先使用 AccessInterceptor 已经查询到的用户，否则根据令牌查询
      *
      * @param parameter
      * @param mavContainer
@@ -64,6 +66,10 @@ public class UserArgumentResovler implements HandlerMethodArgumentResolver
         HttpServletResponse response = webRequest.getNativeResponse(HttpServletResponse.class);
 
         log.info(request.getRequestURL() + " resolveArgument");
+        UserVo user = UserContext.getUser();
+        if (user != null)
+            return user;
+
         String paramToken = request.getParameter(UserServiceApi.COOKIE_NAME_TOKEN);
         String cookieToken = getCookie(request,UserServiceApi.COOKIE_NAME_TOKEN);
 
@@ -76,8 +82,12 @@ public class UserArgumentResovler implements HandlerMethodArgumentResolver
             return null;
         log.info("获取token：{}",token);
 
-        //根据令牌返回用户
-        UserVo userVo=redisService.get(SkUserKeyPrefix.TOKEN,token,UserVo.class);
+        //根据令牌返回用户，同时刷新令牌的有效期
+        UserVo userVo=redisServiceAsync.executeBatch(new RedisBatch()
+                .get(SkUserKeyPrefix.TOKEN,token,UserVo.class)
+                .expire(SkUserKeyPrefix.TOKEN,token))
+                .thenApply(result->result.<UserVo>get(0))
+                .join();
         log.info("获取userVo:{}",userVo);
 
         if(userVo!=null)
@@ -87,15 +97,13 @@ public class UserArgumentResovler implements HandlerMethodArgumentResolver
     }
 
     /**
-     * 将cookie写入redid中
+     * 刷新客户端cookie的有效期（redis中的有效期在查询时已经刷新）
      * @param response
      * @param token
      * @param user
      */
     public void addCookie(HttpServletResponse response,String token,UserVo user)
     {
-        redisService.set(SkUserKeyPrefix.TOKEN,token,user);
-
         Cookie cookie=new Cookie(UserServiceApi.COOKIE_NAME_TOKEN,token);
 
         cookie.setMaxAge(SkUserKeyPrefix.TOKEN_EXPIRE);
@@ -7,8 +7,11 @@ import com.seckill.common.api.goods.vo.GoodsDetailVo;
 import com.seckill.common.api.goods.vo.GoodsVo;
 import com.seckill.common.api.user.vo.UserVo;
 import com.seckill.common.result.Result;
+import com.seckill.common.util.SingleFlightLoader;
+import com.seckill.gateway.stock.SoldOutRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.dubbo.config.annotation.Reference;
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -28,43 +31,47 @@ import java.util.List;
 @RequestMapping("/goods")
 public class GoodsController
 {
-    @Reference(interfaceClass = RedisServiceApi.class)
+    @Autowired
     RedisServiceApi redisService;
 
     @Reference(interfaceClass = GoodsServiceApi.class)
     GoodsServiceApi goodsService;
 
+    @Autowired
+    SoldOutRegistry soldOutRegistry;
+
     /**
      * redis中不存在页面缓存  添加一个视图解析器，自定义手动渲染
      */
     @Autowired
     ThymeleafViewResolver thymeleafViewResolver;
 
+    /**
+     * 商品列表页面缓存过期时只有一个请求渲染，并在过期前按概率提前重建
+     */
+    private final SingleFlightLoader cacheLoader = new SingleFlightLoader(() -> redisService);
+
     @RequestMapping(value = "/goodsList", produces = "text/html")
     @ResponseBody
     public String goodsList(HttpServletRequest request, HttpServletResponse response, Model model, UserVo userVo)
     {
         log.info("获取商品列表");
 
-        String html = redisService.get(GoodsKeyPrefix.GOODS_LIST_HTML, "", String.class);
-        if (!StringUtils.isEmpty(html))
-            return html;
-
-        //redis中没有该页面的缓存  手动渲染
-        //查询商品列表  渲染页面
-
-        List<GoodsVo> goodsVoList = goodsService.listGoodsVo();
-        model.addAttribute("goodsList", goodsVoList);
-        model.addAttribute("user", userVo);
+        return cacheLoader.get(GoodsKeyPrefix.GOODS_LIST_HTML, "", String.class, () -> {
+            //redis中没有该页面的缓存  手动渲染
+            //查询商品列表  渲染页面
 
-        //进行渲染html
-        WebContext webContext = new WebContext(request, response, request.getServletContext(), response.getLocale(), model.asMap());
-        html = thymeleafViewResolver.getTemplateEngine().process("goods_list", webContext);
+            List<GoodsVo> goodsVoList = goodsService.listGoodsVo();
+            model.addAttribute("goodsList", goodsVoList);
+            model.addAttribute("user", userVo);
 
-        if (!StringUtils.isEmpty(html))
-            redisService.set(GoodsKeyPrefix.GOODS_LIST_HTML, "", html);
+            //进行渲染html
+            WebContext webContext = new WebContext(request, response, request.getServletContext(), response.getLocale(), model.asMap());
+            String html = thymeleafViewResolver.getTemplateEngine().process("goods_list", webContext);
 
-        return html;
+            // 渲染结果为空时不写入缓存
+            return StringUtils.isEmpty(html) ? null : html;
+        });
     }
 
     @RequestMapping("/getDetails/{goodsId}")
@@ -73,6 +80,14 @@ public class GoodsController
     {
         log.info("获取商品详细信息");
 
+        // 已经售罄的商品直接由启动时的商品快照返回，不再调用goods服务
+        if (soldOutRegistry.isSoldOut(goodsId))
+        {
+            GoodsVo snapshot = soldOutRegistry.getSnapshot(goodsId);
+            if (snapshot != null)
+                return Result.success(soldOutDetail(userVo, snapshot));
+        }
+
         GoodsVo goodsVo = goodsService.getGoodsVoByGoodsId(goodsId);
         long startDate = goodsVo.getStartDate().getTime();
         long endDate = goodsVo.getEndDate().getTime();
@@ -108,5 +123,22 @@ public class GoodsController
 
     }
 
+    /**
+     * 售罄商品的详情：库存为0，秒杀已结束
+     */
+    private GoodsDetailVo soldOutDetail(UserVo userVo, GoodsVo snapshot)
+    {
+        GoodsVo goodsVo = new GoodsVo();
+        BeanUtils.copyProperties(snapshot, goodsVo);
+        goodsVo.setStockCount(0);
+
+        GoodsDetailVo goodsDetailVo = new GoodsDetailVo();
+        goodsDetailVo.setGoods(goodsVo);
+        goodsDetailVo.setUser(userVo);
+        goodsDetailVo.setRemainSeconds(-1);
+        goodsDetailVo.setSeckillStatus(2);
+        return goodsDetailVo;
+    }
+
 
 }
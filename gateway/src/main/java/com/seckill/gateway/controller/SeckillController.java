@@ -2,28 +2,31 @@ package com.seckill.gateway.controller;
 
 
 import com.seckill.common.api.cache.RedisServiceApi;
-import com.seckill.common.api.cache.vo.GoodsKeyPrefix;
-import com.seckill.common.api.cache.vo.OrderKeyPrefix;
+import com.seckill.common.api.cache.vo.AdmissionResult;
 import com.seckill.common.api.cache.vo.SkKeyPrefix;
 import com.seckill.common.api.goods.GoodsServiceApi;
 import com.seckill.common.api.goods.vo.GoodsVo;
 import com.seckill.common.api.mq.MqProviderApi;
 import com.seckill.common.api.mq.vo.SkMessage;
-import com.seckill.common.api.order.OrderServiceApi;
 import com.seckill.common.api.seckill.SeckillServiceApi;
 import com.seckill.common.api.seckill.vo.VerifyCodeVo;
 import com.seckill.common.api.user.vo.UserVo;
-import com.seckill.common.domain.SeckillOrder;
+import com.seckill.common.codec.SkMessageCodec;
 import com.seckill.common.result.CodeMsg;
 import com.seckill.common.result.Result;
 import com.seckill.common.util.MD5Util;
 import com.seckill.common.util.UUIDUtil;
 import com.seckill.common.util.VerifyCodeUtil;
 import com.seckill.gateway.config.access.AccessLimit;
+import com.seckill.gateway.stock.EnqueuingStockCounter;
+import com.seckill.gateway.stock.SoldOutRegistry;
+import com.seckill.gateway.stock.StockCounter;
 import org.apache.dubbo.config.annotation.Reference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
@@ -31,9 +34,7 @@ import org.springframework.web.bind.annotation.*;
 import javax.imageio.ImageIO;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 
 /**
@@ -47,7 +48,7 @@ public class SeckillController implements InitializingBean {
 
     private static Logger logger = LoggerFactory.getLogger(SeckillController.class);
 
-    @Reference(interfaceClass = RedisServiceApi.class)
+    @Autowired
     RedisServiceApi redisService;
 
     @Reference(interfaceClass = GoodsServiceApi.class)
@@ -56,16 +57,36 @@ public class SeckillController implements InitializingBean {
     @Reference(interfaceClass = SeckillServiceApi.class)
     SeckillServiceApi seckillService;
 
-    @Reference(interfaceClass = OrderServiceApi.class)
-    OrderServiceApi orderService;
-
     @Reference(interfaceClass = MqProviderApi.class)
     MqProviderApi sender;
 
     /**
-     * 用于内存标记，标记库存是否为空，从而减少对redis的访问
+     * 单向调用的 sendSkMessage：请求发出即返回，不等待 mq 服务的响应
+     */
+    @Reference(interfaceClass = MqProviderApi.class, parameters = {"sendSkMessage.return", "false"})
+    MqProviderApi onewaySender;
+
+    /**
+     * 是否以单向调用投递秒杀消息；单向调用时投递失败（如发布队列已满）不会返回给用户
+     */
+    @Value("${seckill.mq.oneway:false}")
+    boolean oneway;
+
+    /**
+     * 秒杀消息的传输方式，为 stream 且库存计数为 EnqueuingStockCounter 时，消息在资格判定的lua脚本中直接写入redis stream；
+     * 其他库存计数（lease、striped）仍通过 MqProviderApi 投递
+     */
+    @Value("${seckill.mq.transport:rabbit}")
+    String transport;
+
+    @Autowired
+    StockCounter stockCounter;
+
+    /**
+     * 用于内存标记，标记库存是否为空，从而减少对redis的访问（售罄时在所有网关节点间广播）
      */
-    private Map<Long, Boolean> localOverMap = new HashMap<>();
+    @Autowired
+    SoldOutRegistry soldOutRegistry;
 
     /**
      * 获取秒杀接口地址
@@ -93,6 +114,10 @@ public class SeckillController implements InitializingBean {
             return Result.error(CodeMsg.SECKILL_PARM_ILLEGAL.fillArgs("商品id小于0"));
         }
 
+        // 已经售罄的商品不再校验验证码、生成秒杀地址
+        if (soldOutRegistry.isSoldOut(goodsId))
+            return Result.error(CodeMsg.SECKILL_OVER);
+
         // 校验验证码
         boolean check = this.checkVerifyCode(user, goodsId, verifyCode);
 
@@ -116,8 +141,8 @@ public class SeckillController implements InitializingBean {
      * <p>
      * 通过随机的path，客户端隐藏秒杀接口
      * <p>
-     * 优化: 不同于每次都去数据库中读取秒杀订单信息，而是在第一次生成秒杀订单成功后，
-     * 将订单存储在redis中，再次读取订单信息的时候就直接从redis中读取
+     * 优化: 判断重复秒杀、预减库存和记录购买标记通过redis中的lua脚本一次原子完成，
+     * 重复秒杀的用户不会再占用库存，也不需要再查询订单缓存或数据库
      *
      * @param model
      * @param user
@@ -141,41 +166,62 @@ public class SeckillController implements InitializingBean {
             return Result.error(CodeMsg.REQUEST_ILLEGAL);// 请求非法
 
         // 通过内存标记，减少对redis的访问，秒杀未结束才继续访问redis
-        Boolean over = localOverMap.get(goodsId);
-        if (over)
+        if (soldOutRegistry.isSoldOut(goodsId))
             return Result.error(CodeMsg.SECKILL_OVER);
 
-        // 预减库存，同时在库存为0时标记该商品已经结束秒杀
-        Long stock = redisService.decr(GoodsKeyPrefix.GOODS_STOCK, "" + goodsId);
-        if (stock < 0) {
-            localOverMap.put(goodsId, true);// 秒杀结束。标记该商品已经秒杀结束
+        // 秒杀消息：参与秒杀的用户和商品id；消息id供 mq 消费端丢弃重新投递的消息
+        SkMessage message = new SkMessage();
+        message.setUser(user);
+        message.setGoodsId(goodsId);
+        message.setMessageId(UUIDUtil.messageId());
+
+        // 判断重复秒杀 + 预减库存 + 记录购买标记（一次redis往返，原子完成）；stream 模式下消息在同一个脚本中入队
+        boolean enqueue = "stream".equals(transport) && stockCounter instanceof EnqueuingStockCounter;
+        AdmissionResult admission = enqueue
+                ? ((EnqueuingStockCounter) stockCounter).admitAndEnqueue(goodsId, user.getUuid(), SkMessageCodec.encode(message))
+                : stockCounter.admit(goodsId, user.getUuid());
+        if (admission == AdmissionResult.SOLD_OUT) {
+            soldOutRegistry.markSoldOut(goodsId);// 秒杀结束。标记该商品已经秒杀结束，并通知其他网关节点
             return Result.error(CodeMsg.SECKILL_OVER);
         }
-
-        // 判断是否重复秒杀
-        // 从redis中取缓存，减少数据库的访问
-        SeckillOrder order = redisService.get(OrderKeyPrefix.SK_ORDER, ":" + user.getUuid() + "_" + goodsId, SeckillOrder.class);
-        // 如果缓存中不存该数据，则从数据库中取
-        if (order == null) {
-            order = orderService.getSeckillOrderByUserIdAndGoodsId(user.getUuid(), goodsId);
-        }
-
-        if (order != null) {
+        if (admission == AdmissionResult.DUPLICATE) {
             return Result.error(CodeMsg.REPEATE_SECKILL);
         }
 
-        // 商品有库存且用户为秒杀商品，则将秒杀请求放入MQ
-        SkMessage message = new SkMessage();
-        message.setUser(user);
-        message.setGoodsId(goodsId);
-
-        // 放入MQ(对秒杀请求异步处理，直接返回)
-        sender.sendSkMessage(message);
+        // 放入MQ(对秒杀请求异步处理，直接返回)；stream 模式下已经随资格判定入队
+        if (!enqueue) {
+            try {
+                if (oneway)
+                    onewaySender.sendSkMessage(message);
+                else
+                    sender.sendSkMessage(message);
+            } catch (RuntimeException e) {
+                // 投递失败（发布队列已满、mq 服务不可用等）：撤销秒杀资格，用户可以重新秒杀
+                logger.warn("秒杀消息投递失败，撤销秒杀资格: userId-{}, goodsId-{}", user.getUuid(), goodsId, e);
+                releaseAdmission(goodsId, user.getUuid());
+                return Result.error(CodeMsg.SECKILL_BUSY);
+            }
+        }
 
         // 排队中
         return Result.success(0);
     }
 
+    /**
+     * 删除购买标记并退回库存；期间商品已被标记为售罄时清除售罄标记，退回的库存可以再被秒杀
+     *
+     * @param goodsId
+     * @param userId
+     */
+    private void releaseAdmission(long goodsId, long userId) {
+        try {
+            if (stockCounter.release(goodsId, userId) && soldOutRegistry.isSoldOut(goodsId))
+                soldOutRegistry.restocked(goodsId);
+        } catch (RuntimeException e) {
+            logger.error("撤销秒杀资格失败: userId-{}, goodsId-{}", userId, goodsId, e);
+        }
+    }
+
     /**
      * 用于返回用户秒杀的结果
      *
@@ -214,6 +260,11 @@ public class SeckillController implements InitializingBean {
             return Result.error(CodeMsg.SESSION_ERROR);
         }
 
+        // 已经售罄的商品不再生成验证码
+        if (soldOutRegistry.isSoldOut(goodsId)) {
+            return Result.error(CodeMsg.SECKILL_OVER);
+        }
+
         // 刷新验证码的时候置缓存中的随机地址无效
         String path = redisService.get(SkKeyPrefix.SK_PATH, "" + user.getUuid() + "_" + goodsId, String.class);
         if (path != null)
@@ -312,12 +363,10 @@ public class SeckillController implements InitializingBean {
             return;
         }
 
-        // 将商品的库存信息存储在redis中
-        for (GoodsVo good : goods) {
-            redisService.set(GoodsKeyPrefix.GOODS_STOCK, "" + good.getId(), good.getStockCount());
-            // 在系统启动时，标记库存不为空
-            localOverMap.put(good.getId(), false);
-        }
+        // 将商品的库存信息存储在redis中（批量写入，一次往返）
+        stockCounter.reset(goods);
+        // 在系统启动时，按数据库中的库存重置本节点的售罄标记
+        soldOutRegistry.reset(goods);
     }
 }
 
@@ -0,0 +1,33 @@
+package com.seckill.gateway.stock;
+
+import com.seckill.common.api.cache.vo.SkKeyPrefix;
+import com.seckill.common.api.goods.vo.GoodsVo;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 写入购买标记时使用的前缀：按商品的秒杀结束时间设置过期时间，见 SkKeyPrefix.buyer
+ */
+class BuyerMarks
+{
+    /**
+     * 商品id -> 秒杀结束时间（毫秒）
+     */
+    private final Map<Long, Long> endTimes = new ConcurrentHashMap<>();
+
+    void reset(List<GoodsVo> goods)
+    {
+        for (GoodsVo good : goods)
+            endTimes.put(good.getId(), good.getEndDate() == null ? Long.MAX_VALUE : good.getEndDate().getTime());
+    }
+
+    /**
+     * @param goodsId 商品id，未知的商品不过期
+     */
+    SkKeyPrefix prefix(long goodsId)
+    {
+        return SkKeyPrefix.buyer(endTimes.getOrDefault(goodsId, Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,21 @@
+package com.seckill.gateway.stock;
+
+import com.seckill.common.api.cache.vo.AdmissionResult;
+
+/**
+ * 资格判定与秒杀消息入队在同一次原子操作中完成的库存计数（seckill.mq.transport=stream）
+ * <p>
+ * 库存计数不是该类型时，网关在 admit 之后通过 MqProviderApi 投递秒杀消息
+ */
+public interface EnqueuingStockCounter extends StockCounter
+{
+    /**
+     * 与 admit 相同，获得资格时在同一次原子操作中把秒杀消息追加到redis stream
+     *
+     * @param goodsId 商品id
+     * @param userId  用户id
+     * @param message SkMessageCodec 编码后的秒杀消息
+     * @return 判定结果
+     */
+    AdmissionResult admitAndEnqueue(long goodsId, long userId, byte[] message);
+}
@@ -0,0 +1,298 @@
+package com.seckill.gateway.stock;
+
+import com.seckill.common.api.cache.RedisServiceApi;
+import com.seckill.common.api.cache.vo.AdmissionResult;
+import com.seckill.common.api.cache.vo.GoodsKeyPrefix;
+import com.seckill.common.api.cache.vo.SkKeyPrefix;
+import com.seckill.common.api.goods.vo.GoodsVo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地库存租约
+ * <p>
+ * 每个网关节点一次从redis的库存中租借 leaseSize 个单位（一次lua脚本调用，扣减后不小于0），
+ * 再由进程内的无锁计数器分发给秒杀请求，本地租约用完后才再次访问库存key，
+ * 库存key上的redis操作次数降为原来的 1/leaseSize。
+ * 购买标记仍然写在redis中（key按用户区分，不是热点），重复秒杀时把已经取出的单位退回本地租约；
+ * 租约在此期间已经归还时，单位直接退回redis。
+ * <p>
+ * 秒杀结束或节点关闭时，把未分发的单位归还redis。
+ * 只有共享的库存池也已经扣完时才返回库存不足；此时其他节点可能仍持有未分发的租约，
+ * 这些节点在分发完自己的租约之前不接受售罄广播（见 hasLocalStock），未分发的库存由
+ * seckill.stock.lease.stranded 指标给出。
+ */
+@Slf4j
+public class LeasedStockCounter implements StockCounter, DisposableBean
+{
+    private final RedisServiceApi redisService;
+
+    private final int leaseSize;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<Long, Lease> leases = new ConcurrentHashMap<>();
+
+    private final BuyerMarks buyerMarks = new BuyerMarks();
+
+    private final Counter leasedCounter;
+
+    private final Counter returnedCounter;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "stock-lease-return");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public LeasedStockCounter(RedisServiceApi redisService, int leaseSize, long returnIntervalMillis, MeterRegistry meterRegistry)
+    {
+        if (leaseSize <= 0)
+            throw new IllegalArgumentException("leaseSize must be positive: " + leaseSize);
+        this.redisService = redisService;
+        this.leaseSize = leaseSize;
+        this.meterRegistry = meterRegistry;
+        this.leasedCounter = Counter.builder("seckill.stock.lease.leased")
+                .description("从redis租借到本地的库存数量")
+                .register(meterRegistry);
+        this.returnedCounter = Counter.builder("seckill.stock.lease.returned")
+                .description("归还redis的未分发库存数量")
+                .register(meterRegistry);
+
+        scheduler.scheduleWithFixedDelay(this::returnEndedLeases, returnIntervalMillis, returnIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void reset(List<GoodsVo> goods)
+    {
+        // 先换上新租约并归还旧租约（等待正在进行的租借完成），再重置redis中的库存：
+        // 重置之后租借到的单位都在新租约中，不会留在已经替换掉的租约里
+        for (GoodsVo good : goods)
+        {
+            long endTime = good.getEndDate() == null ? Long.MAX_VALUE : good.getEndDate().getTime();
+            Lease old = leases.put(good.getId(), newLease(good.getId(), endTime));
+            if (old != null)
+                returnLease(good.getId(), old);
+        }
+        redisService.executeBatch(RedisStockCounter.stockBatch(goods));
+        buyerMarks.reset(goods);
+    }
+
+    @Override
+    public AdmissionResult admit(long goodsId, long userId)
+    {
+        Lease lease = leases.computeIfAbsent(goodsId, id -> newLease(id, Long.MAX_VALUE));
+
+        if (!lease.tryTake() && !refill(goodsId, lease))
+            return AdmissionResult.SOLD_OUT;
+
+        if (!redisService.setIfAbsent(buyerMarks.prefix(goodsId), SkKeyPrefix.buyerKey(userId, goodsId), 1))
+        {
+            // 重复秒杀，退回取出的单位
+            giveBack(goodsId, lease);
+            return AdmissionResult.DUPLICATE;
+        }
+        return AdmissionResult.ADMITTED;
+    }
+
+    /**
+     * 删除购买标记并把单位退回redis（一次lua脚本调用，与 RedisStockCounter 相同），之后由租借取回
+     */
+    @Override
+    public boolean release(long goodsId, long userId)
+    {
+        return redisService.release(GoodsKeyPrefix.GOODS_STOCK, GoodsKeyPrefix.stockKey(goodsId),
+                SkKeyPrefix.SK_BUYER, SkKeyPrefix.buyerKey(userId, goodsId));
+    }
+
+    @Override
+    public boolean hasLocalStock(long goodsId)
+    {
+        Lease lease = leases.get(goodsId);
+        return lease != null && lease.remaining.get() > 0;
+    }
+
+    /**
+     * 创建租约，并按商品注册滞留库存指标（重复注册时返回已有的指标）
+     */
+    private Lease newLease(long goodsId, long endTime)
+    {
+        Gauge.builder("seckill.stock.lease.stranded", leases, m -> {
+            Lease lease = m.get(goodsId);
+            return lease == null ? 0 : Math.max(0, lease.remaining.get());
+        })
+                .tag("goodsId", "" + goodsId)
+                .description("已从redis租借但尚未分发的库存数量")
+                .register(meterRegistry);
+        return new Lease(endTime);
+    }
+
+    /**
+     * 本地租约用完时从redis再租借一批，同一商品同一时刻只有一个线程访问redis
+     *
+     * @return 是否为当前请求取到了一个单位
+     */
+    private boolean refill(long goodsId, Lease lease)
+    {
+        synchronized (lease)
+        {
+            // 等待锁的过程中其他线程可能已经补充了租约
+            if (lease.tryTake())
+                return true;
+            if (lease.isRetired())
+                return false;
+
+            long granted = redisService.decrAtMost(GoodsKeyPrefix.GOODS_STOCK, GoodsKeyPrefix.stockKey(goodsId), leaseSize);
+            if (granted <= 0)
+                return false;
+
+            leasedCounter.increment(granted);
+            lease.remaining.addAndGet(granted - 1);
+            log.debug("租借库存: goodsId-{}, granted-{}", goodsId, granted);
+            return true;
+        }
+    }
+
+    /**
+     * 把取出的单位退回租约；租约已经归还时退回redis，不能留在已归还的租约中
+     */
+    private void giveBack(long goodsId, Lease lease)
+    {
+        if (!lease.giveBack())
+            redisService.incrBy(GoodsKeyPrefix.GOODS_STOCK, GoodsKeyPrefix.stockKey(goodsId), 1);
+    }
+
+    /**
+     * 秒杀结束的商品，归还未分发的租约
+     */
+    private void returnEndedLeases()
+    {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Long, Lease> entry : leases.entrySet())
+        {
+            Lease lease = entry.getValue();
+            if (!lease.isRetired() && lease.endTime <= now)
+            {
+                try
+                {
+                    returnLease(entry.getKey(), lease);
+                } catch (Exception e)
+                {
+                    log.error("归还库存租约失败: goodsId-{}", entry.getKey(), e);
+                }
+            }
+        }
+    }
+
+    private void returnLease(long goodsId, Lease lease)
+    {
+        synchronized (lease)
+        {
+            long unused = lease.retire();
+            if (unused > 0)
+            {
+                redisService.incrBy(GoodsKeyPrefix.GOODS_STOCK, GoodsKeyPrefix.stockKey(goodsId), unused);
+                returnedCounter.increment(unused);
+                log.info("归还库存租约: goodsId-{}, unused-{}", goodsId, unused);
+            }
+        }
+    }
+
+    /**
+     * 节点关闭时归还所有租约
+     */
+    @Override
+    public void destroy()
+    {
+        scheduler.shutdownNow();
+        for (Map.Entry<Long, Lease> entry : leases.entrySet())
+        {
+            try
+            {
+                returnLease(entry.getKey(), entry.getValue());
+            } catch (Exception e)
+            {
+                log.error("归还库存租约失败: goodsId-{}", entry.getKey(), e);
+            }
+        }
+    }
+
+    private static class Lease
+    {
+        /**
+         * remaining 为该值时租约已归还，不再分发、不再从redis租借，也不再接受退回的单位
+         */
+        static final long RETIRED = Long.MIN_VALUE;
+
+        /**
+         * 本地还可以分发的库存
+         */
+        final AtomicLong remaining = new AtomicLong();
+
+        /**
+         * 秒杀结束时间
+         */
+        final long endTime;
+
+        Lease(long endTime)
+        {
+            this.endTime = endTime;
+        }
+
+        boolean tryTake()
+        {
+            for (; ; )
+            {
+                long current = remaining.get();
+                if (current <= 0)
+                    return false;
+                if (remaining.compareAndSet(current, current - 1))
+                    return true;
+            }
+        }
+
+        /**
+         * 退回一个单位
+         *
+         * @return 租约已归还时返回 false，由调用方退回redis
+         */
+        boolean giveBack()
+        {
+            for (; ; )
+            {
+                long current = remaining.get();
+                if (current == RETIRED)
+                    return false;
+                if (remaining.compareAndSet(current, current + 1))
+                    return true;
+            }
+        }
+
+        /**
+         * 归还租约
+         *
+         * @return 未分发的单位数量，已经归还过时返回0
+         */
+        long retire()
+        {
+            long unused = remaining.getAndSet(RETIRED);
+            return unused == RETIRED ? 0 : unused;
+        }
+
+        boolean isRetired()
+        {
+            return remaining.get() == RETIRED;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.seckill.gateway.stock;
+
+import com.seckill.common.api.cache.RedisServiceApi;
+import com.seckill.common.api.cache.vo.AdmissionResult;
+import com.seckill.common.api.cache.vo.GoodsKeyPrefix;
+import com.seckill.common.api.cache.vo.RedisBatch;
+import com.seckill.common.api.cache.vo.SkKeyPrefix;
+import com.seckill.common.api.goods.vo.GoodsVo;
+import com.seckill.common.api.mq.vo.SkStream;
+
+import java.util.List;
+
+/**
+ * 每次秒杀请求都直接在redis中扣减库存（一次lua脚本调用）
+ */
+public class RedisStockCounter implements EnqueuingStockCounter
+{
+    private final RedisServiceApi redisService;
+
+    private final BuyerMarks buyerMarks = new BuyerMarks();
+
+    public RedisStockCounter(RedisServiceApi redisService)
+    {
+        this.redisService = redisService;
+    }
+
+    @Override
+    public void reset(List<GoodsVo> goods)
+    {
+        redisService.executeBatch(stockBatch(goods));
+        buyerMarks.reset(goods);
+    }
+
+    /**
+     * 所有商品的库存一次写入redis（MSET）
+     */
+    static RedisBatch stockBatch(List<GoodsVo> goods)
+    {
+        RedisBatch batch = new RedisBatch();
+        for (GoodsVo good : goods)
+            batch.set(GoodsKeyPrefix.GOODS_STOCK, GoodsKeyPrefix.stockKey(good.getId()), good.getStockCount());
+        return batch;
+    }
+
+    @Override
+    public AdmissionResult admit(long goodsId, long userId)
+    {
+        return redisService.admit(GoodsKeyPrefix.GOODS_STOCK, GoodsKeyPrefix.stockKey(goodsId),
+                buyerMarks.prefix(goodsId), SkKeyPrefix.buyerKey(userId, goodsId));
+    }
+
+    @Override
+    public boolean release(long goodsId, long userId)
+    {
+        return redisService.release(GoodsKeyPrefix.GOODS_STOCK, GoodsKeyPrefix.stockKey(goodsId),
+                SkKeyPrefix.SK_BUYER, SkKeyPrefix.buyerKey(userId, goodsId));
+    }
+
+    /**
+     * 消息追加到库存所在节点上的 stream（SkStream.STREAM_KEY）
+     */
+    @Override
+    public AdmissionResult admitAndEnqueue(long goodsId, long userId, byte[] message)
+    {
+        return redisService.admitAndEnqueue(GoodsKeyPrefix.GOODS_STOCK, GoodsKeyPrefix.stockKey(goodsId),
+                buyerMarks.prefix(goodsId), SkKeyPrefix.buyerKey(userId, goodsId),
+                SkStream.STREAM_KEY, SkStream.MESSAGE_FIELD, message);
+    }
+}
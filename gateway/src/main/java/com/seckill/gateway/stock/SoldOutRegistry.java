@@ -0,0 +1,217 @@
+package com.seckill.gateway.stock;
+
+import com.seckill.cache.client.RedisChannelSubscriber;
+import com.seckill.common.api.cache.RedisServiceApi;
+import com.seckill.common.api.cache.vo.RedisBatch;
+import com.seckill.common.api.cache.vo.RedisBatchResult;
+import com.seckill.common.api.cache.vo.SkKeyPrefix;
+import com.seckill.common.api.cache.vo.StockEvent;
+import com.seckill.common.api.goods.vo.GoodsVo;
+import com.seckill.common.util.ConcurrentLongMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 商品售罄标记（内存标记，减少对redis的访问）
+ * <p>
+ * 任一网关节点发现商品售罄（redis中共享的库存已经扣完）、或 goods 模块在数据库减库存失败时，通过 redis 频道
+ * StockEvent.CHANNEL 广播 SOLD_OUT 事件，其他网关节点立即翻转本地标记，不需要各自再去redis扣减一次库存才发现售罄；
+ * 本地还持有库存（租约模式下未分发完的租约）的节点不接受该事件，分发完之后自己发现售罄。
+ * <p>
+ * 有库存退回redis、或网关启动时发现数据库中重新初始化了库存时，删除 goods 模块写入的售罄标记（GOODS_SK_OVER），
+ * 并广播 RESTOCK 事件清除本地标记；单纯的重启、扩容只重置本节点的标记，不会重新开放其他节点上已售罄的商品。
+ * 只记录启动时加载的商品，未知的商品id不会写入。
+ */
+@Component
+@Slf4j
+public class SoldOutRegistry implements InitializingBean, DisposableBean
+{
+    private static final long SOLD_OUT = 1;
+
+    private static final long ON_SALE = 0;
+
+    @Autowired
+    RedisServiceApi redisService;
+
+    @Autowired
+    StockCounter stockCounter;
+
+    @Value("${redis.host}")
+    String host;
+
+    @Value("${redis.port}")
+    int port;
+
+    @Value("${redis.timeout}")
+    int timeout;
+
+    @Value("${seckill.stock.broadcast.enabled:true}")
+    boolean broadcastEnabled;
+
+    /**
+     * 商品id -> 1：已售罄
+     */
+    private volatile ConcurrentLongMap flags = new ConcurrentLongMap(0);
+
+    /**
+     * 启动时加载的商品信息快照，售罄后的商品详情直接由快照返回
+     */
+    private volatile Map<Long, GoodsVo> snapshots = Collections.emptyMap();
+
+    private RedisChannelSubscriber subscriber;
+
+    @Override
+    public void afterPropertiesSet()
+    {
+        if (!broadcastEnabled)
+            return;
+        subscriber = new RedisChannelSubscriber(host, port, timeout, StockEvent.CHANNEL, this::onMessage);
+        // 订阅断开期间可能错过了售罄事件，重新订阅后按 goods 模块写入的售罄标记补偿
+        subscriber.setOnSubscribed(this::syncSoldOut);
+        subscriber.start();
+    }
+
+    @Override
+    public void destroy()
+    {
+        if (subscriber != null)
+            subscriber.close();
+    }
+
+    /**
+     * 加载商品列表：数据库中已经没有库存的商品标记为售罄，其余标记为未售罄，只修改本节点的标记
+     * <p>
+     * goods 模块只在数据库减库存失败（库存为0）时写入售罄标记，标记仍在而数据库中又有库存，说明库存被重新初始化：
+     * 只有这些商品删除售罄标记并通知其他节点
+     */
+    public void reset(List<GoodsVo> goods)
+    {
+        ConcurrentLongMap newFlags = new ConcurrentLongMap(goods.size());
+        Map<Long, GoodsVo> newSnapshots = new HashMap<>();
+        RedisBatch batch = new RedisBatch();
+        for (GoodsVo good : goods)
+        {
+            newFlags.put(good.getId(), inStock(good) ? ON_SALE : SOLD_OUT);
+            newSnapshots.put(good.getId(), good);
+            batch.exists(SkKeyPrefix.GOODS_SK_OVER, "" + good.getId());
+        }
+        flags = newFlags;
+        snapshots = newSnapshots;
+        if (batch.isEmpty())
+            return;
+
+        RedisBatchResult over = redisService.executeBatch(batch);
+        for (int i = 0; i < goods.size(); i++)
+        {
+            GoodsVo good = goods.get(i);
+            if (Boolean.TRUE.equals(over.get(i)) && inStock(good))
+            {
+                log.info("商品库存已重新初始化，清除售罄标记: goodsId-{}", good.getId());
+                restocked(good.getId());
+            }
+        }
+    }
+
+    private static boolean inStock(GoodsVo good)
+    {
+        return good.getStockCount() != null && good.getStockCount() > 0;
+    }
+
+    /**
+     * 有库存退回了redis（如撤销秒杀资格），清除售罄标记，并通知其他节点
+     */
+    public void restocked(long goodsId)
+    {
+        redisService.delete(SkKeyPrefix.GOODS_SK_OVER, "" + goodsId);
+        onRestock(goodsId);
+        publish(StockEvent.restock(goodsId));
+    }
+
+    public boolean isSoldOut(long goodsId)
+    {
+        return flags.get(goodsId, ON_SALE) == SOLD_OUT;
+    }
+
+    /**
+     * 标记商品售罄，只有本节点首次发现时才广播
+     */
+    public void markSoldOut(long goodsId)
+    {
+        if (flags.compareAndSet(goodsId, ON_SALE, SOLD_OUT))
+            publish(StockEvent.soldOut(goodsId));
+    }
+
+    /**
+     * @return 启动时加载的商品信息，未知的商品返回 null
+     */
+    public GoodsVo getSnapshot(long goodsId)
+    {
+        return snapshots.get(goodsId);
+    }
+
+    private void onMessage(String message)
+    {
+        StockEvent event = StockEvent.decode(message);
+        if (event == null)
+        {
+            log.warn("无法解析的库存事件: {}", message);
+            return;
+        }
+        log.debug("收到库存事件: {}", event);
+        if (event.getType() == StockEvent.Type.SOLD_OUT)
+            onSoldOut(event.getGoodsId());
+        else
+            onRestock(event.getGoodsId());
+    }
+
+    /**
+     * 其他节点或 goods 模块报告售罄；本地还有库存时先分发完，之后由本节点自己发现售罄
+     */
+    private void onSoldOut(long goodsId)
+    {
+        if (stockCounter.hasLocalStock(goodsId))
+        {
+            log.debug("本地仍有库存，暂不标记售罄: goodsId-{}", goodsId);
+            return;
+        }
+        flags.replace(goodsId, SOLD_OUT);
+    }
+
+    private void onRestock(long goodsId)
+    {
+        stockCounter.restocked(goodsId);
+        flags.replace(goodsId, ON_SALE);
+    }
+
+    private void syncSoldOut()
+    {
+        for (Long goodsId : snapshots.keySet())
+        {
+            if (redisService.exists(SkKeyPrefix.GOODS_SK_OVER, "" + goodsId))
+                onSoldOut(goodsId);
+        }
+    }
+
+    private void publish(StockEvent event)
+    {
+        if (!broadcastEnabled)
+            return;
+        try
+        {
+            redisService.publish(StockEvent.CHANNEL, event.encode());
+        } catch (Exception e)
+        {
+            // 广播失败不影响秒杀流程，其他节点会在扣减库存时自行发现售罄
+            log.warn("广播库存事件失败: {}", event, e);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.seckill.gateway.stock;
+
+import com.seckill.common.api.cache.vo.AdmissionResult;
+import com.seckill.common.api.goods.vo.GoodsVo;
+
+import java.util.List;
+
+/**
+ * 秒杀库存计数
+ * <p>
+ * 由 seckill.stock.mode 选择实现，见 StockConfig；能在资格判定时直接把秒杀消息入队的实现见 EnqueuingStockCounter
+ */
+public interface StockCounter
+{
+    /**
+     * 初始化商品的秒杀库存（系统启动时调用）
+     *
+     * @param goods 秒杀商品列表
+     */
+    void reset(List<GoodsVo> goods);
+
+    /**
+     * 判定用户的秒杀资格，获得资格时扣减一个单位的库存并记录购买标记
+     *
+     * @param goodsId 商品id
+     * @param userId  用户id
+     * @return 判定结果
+     */
+    AdmissionResult admit(long goodsId, long userId);
+
+    /**
+     * 撤销 admit 授予的秒杀资格（如秒杀消息投递失败）：删除购买标记并退回一个单位的库存，
+     * 购买标记已经不存在时不退回
+     *
+     * @param goodsId 商品id
+     * @param userId  用户id
+     * @return 是否退回了库存
+     */
+    boolean release(long goodsId, long userId);
+
+    /**
+     * 本节点是否还持有可以分发的库存（如未分发完的租约）；为 true 时其他节点广播的售罄不适用于本节点
+     *
+     * @param goodsId 商品id
+     */
+    default boolean hasLocalStock(long goodsId)
+    {
+        return false;
+    }
+
+    /**
+     * 商品重新有了库存（收到 RESTOCK 事件），清除本地记录的售罄状态
+     *
+     * @param goodsId 商品id
+     */
+    default void restocked(long goodsId)
+    {
+    }
+}
@@ -0,0 +1,135 @@
+package com.seckill.gateway.stock;
+
+import com.seckill.common.api.cache.RedisServiceApi;
+import com.seckill.common.api.cache.vo.AdmissionResult;
+import com.seckill.common.api.cache.vo.GoodsKeyPrefix;
+import com.seckill.common.api.cache.vo.RedisBatch;
+import com.seckill.common.api.cache.vo.SkKeyPrefix;
+import com.seckill.common.api.goods.vo.GoodsVo;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * 分段库存
+ * <p>
+ * 每个商品的库存平均分成 stripes 段，每一段是一个独立的key（不同的 hash tag），分布在不同的分片上，
+ * 热点商品的扣减不再集中在一个key、一个redis线程上。
+ * <p>
+ * 1. 用户按 id 的哈希固定属于其中一段，购买标记与该段位于同一分片，先在该段上执行原子的资格判定（一次lua脚本调用）
+ * 2. 该段已经扣完时，先占用购买标记，再依次向后面的段各扣减一个单位，扣减后不小于0；
+ *    所有段都扣完时删除购买标记，返回库存不足
+ * 3. 每个单位只会从某一段中被扣减一次，各段的总和就是商品的库存，因此不会超卖
+ * 4. 本地记录已经扣完的段，之后不再访问这些段；重置库存、或收到 RESTOCK 事件（有单位退回了某一段）时清空
+ */
+@Slf4j
+public class StripedStockCounter implements StockCounter
+{
+    private final RedisServiceApi redisService;
+
+    private final int stripes;
+
+    /**
+     * 商品id -> 各段是否已经扣完（1为已扣完）
+     */
+    private final Map<Long, AtomicIntegerArray> drained = new ConcurrentHashMap<>();
+
+    private final BuyerMarks buyerMarks = new BuyerMarks();
+
+    public StripedStockCounter(RedisServiceApi redisService, int stripes)
+    {
+        if (stripes <= 0)
+            throw new IllegalArgumentException("stripes must be positive: " + stripes);
+        this.redisService = redisService;
+        this.stripes = stripes;
+    }
+
+    @Override
+    public void reset(List<GoodsVo> goods)
+    {
+        RedisBatch batch = new RedisBatch();
+        for (GoodsVo good : goods)
+        {
+            int stock = good.getStockCount();
+            for (int stripe = 0; stripe < stripes; stripe++)
+                batch.set(GoodsKeyPrefix.GOODS_STOCK, GoodsKeyPrefix.stripeKey(good.getId(), stripe), stripeStock(stock, stripe));
+            drained.put(good.getId(), new AtomicIntegerArray(stripes));
+        }
+        redisService.executeBatch(batch);
+        buyerMarks.reset(goods);
+    }
+
+    @Override
+    public void restocked(long goodsId)
+    {
+        drained.computeIfPresent(goodsId, (id, current) -> new AtomicIntegerArray(stripes));
+    }
+
+    /**
+     * 第 stripe 段的初始库存：平均分配，余数分给前面的段
+     */
+    int stripeStock(int stock, int stripe)
+    {
+        return stock / stripes + (stripe < stock % stripes ? 1 : 0);
+    }
+
+    @Override
+    public AdmissionResult admit(long goodsId, long userId)
+    {
+        AtomicIntegerArray goodsDrained = drained.computeIfAbsent(goodsId, id -> new AtomicIntegerArray(stripes));
+        int home = stripeOf(userId);
+        String buyerKey = SkKeyPrefix.stripedBuyerKey(userId, goodsId, home);
+
+        if (goodsDrained.get(home) == 0)
+        {
+            AdmissionResult result = redisService.admit(GoodsKeyPrefix.GOODS_STOCK, GoodsKeyPrefix.stripeKey(goodsId, home),
+                    buyerMarks.prefix(goodsId), buyerKey);
+            if (result != AdmissionResult.SOLD_OUT)
+                return result;
+            goodsDrained.set(home, 1);
+        }
+
+        // 所属的段已经扣完，占用购买标记后向其他段借一个单位
+        if (!redisService.setIfAbsent(buyerMarks.prefix(goodsId), buyerKey, 1))
+            return AdmissionResult.DUPLICATE;
+        for (int i = 1; i < stripes; i++)
+        {
+            int stripe = (home + i) % stripes;
+            if (goodsDrained.get(stripe) != 0)
+                continue;
+            if (redisService.decrAtMost(GoodsKeyPrefix.GOODS_STOCK, GoodsKeyPrefix.stripeKey(goodsId, stripe), 1) == 1)
+                return AdmissionResult.ADMITTED;
+            goodsDrained.set(stripe, 1);
+        }
+
+        redisService.delete(SkKeyPrefix.SK_BUYER, buyerKey);
+        log.debug("所有库存段都已扣完: goodsId-{}", goodsId);
+        return AdmissionResult.SOLD_OUT;
+    }
+
+    /**
+     * 单位退回用户所属的段（借自其他段时也退回所属的段，各段的总和不变），该段不再记为已扣完
+     */
+    @Override
+    public boolean release(long goodsId, long userId)
+    {
+        int home = stripeOf(userId);
+        boolean released = redisService.release(GoodsKeyPrefix.GOODS_STOCK, GoodsKeyPrefix.stripeKey(goodsId, home),
+                SkKeyPrefix.SK_BUYER, SkKeyPrefix.stripedBuyerKey(userId, goodsId, home));
+        AtomicIntegerArray goodsDrained = drained.get(goodsId);
+        if (released && goodsDrained != null)
+            goodsDrained.set(home, 0);
+        return released;
+    }
+
+    /**
+     * 用户所属的段
+     */
+    int stripeOf(long userId)
+    {
+        return GoodsKeyPrefix.stripeOf(userId, stripes);
+    }
+}
@@ -0,0 +1,183 @@
+package com.seckill.gateway.stock;
+
+import com.seckill.cache.client.InMemoryRedisClient;
+import com.seckill.common.api.cache.vo.AdmissionResult;
+import com.seckill.common.api.cache.vo.GoodsKeyPrefix;
+import com.seckill.common.api.goods.vo.GoodsVo;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * 分段库存在并发下不超卖，且只有所有段都扣完时才返回库存不足
+ */
+public class StripedStockCounterTest
+{
+    private static final long GOODS_ID = 1;
+
+    private static final int STRIPES = 8;
+
+    private InMemoryRedisClient redisService;
+
+    private StripedStockCounter counter;
+
+    @Before
+    public void setUp()
+    {
+        redisService = new InMemoryRedisClient();
+        counter = new StripedStockCounter(redisService, STRIPES);
+    }
+
+    @Test
+    public void stripesAddUpToTheStock()
+    {
+        for (int stock : new int[]{0, 3, 8, 1001})
+        {
+            int sum = 0;
+            for (int stripe = 0; stripe < STRIPES; stripe++)
+                sum += counter.stripeStock(stock, stripe);
+            assertEquals(stock, sum);
+        }
+    }
+
+    @Test
+    public void neverOversellsUnderContention() throws Exception
+    {
+        int stock = 1000;
+        int users = 5000;
+        counter.reset(Collections.singletonList(goods(stock)));
+
+        Set<Long> buyers = ConcurrentHashMap.newKeySet();
+        AtomicInteger admitted = new AtomicInteger();
+        // 每个用户请求两次
+        run(64, users * 2, request -> {
+            long userId = request % users;
+            AdmissionResult result = counter.admit(GOODS_ID, userId);
+            if (result == AdmissionResult.ADMITTED)
+            {
+                admitted.incrementAndGet();
+                assertTrue("user admitted twice: " + userId, buyers.add(userId));
+            }
+        });
+
+        assertEquals(stock, admitted.get());
+        assertEquals(stock, buyers.size());
+        assertEquals(0, remaining());
+    }
+
+    @Test
+    public void usersOfOneStripeDrainAllStripes() throws Exception
+    {
+        int stock = 100;
+        counter.reset(Collections.singletonList(goods(stock)));
+
+        // 所有用户都属于同一段，其余各段的库存只能通过向后借取获得
+        List<Long> users = new ArrayList<>();
+        for (long userId = 0; users.size() < 500; userId++)
+        {
+            if (counter.stripeOf(userId) == 0)
+                users.add(userId);
+        }
+
+        AtomicInteger admitted = new AtomicInteger();
+        AtomicInteger soldOut = new AtomicInteger();
+        run(32, users.size(), request -> {
+            AdmissionResult result = counter.admit(GOODS_ID, users.get(request));
+            if (result == AdmissionResult.ADMITTED)
+                admitted.incrementAndGet();
+            else if (result == AdmissionResult.SOLD_OUT)
+                soldOut.incrementAndGet();
+        });
+
+        assertEquals(stock, admitted.get());
+        assertEquals(users.size() - stock, soldOut.get());
+        assertEquals(0, remaining());
+    }
+
+    @Test
+    public void soldOutUserMayRetryAfterReset()
+    {
+        counter.reset(Collections.singletonList(goods(1)));
+        assertEquals(AdmissionResult.ADMITTED, counter.admit(GOODS_ID, 1));
+        // 库存不足时不保留购买标记
+        assertEquals(AdmissionResult.SOLD_OUT, counter.admit(GOODS_ID, 2));
+
+        counter.reset(Collections.singletonList(goods(1)));
+        assertEquals(AdmissionResult.ADMITTED, counter.admit(GOODS_ID, 2));
+    }
+
+    @Test
+    public void releasedUnitCanBeSoldAgain()
+    {
+        counter.reset(Collections.singletonList(goods(1)));
+        assertEquals(AdmissionResult.ADMITTED, counter.admit(GOODS_ID, 1));
+        assertEquals(AdmissionResult.SOLD_OUT, counter.admit(GOODS_ID, 2));
+
+        assertTrue(counter.release(GOODS_ID, 1));
+        // 购买标记已经删除，不会退回第二次
+        assertFalse(counter.release(GOODS_ID, 1));
+        assertEquals(1, remaining());
+
+        assertEquals(AdmissionResult.ADMITTED, counter.admit(GOODS_ID, 2));
+        assertEquals(0, remaining());
+    }
+
+    private long remaining()
+    {
+        long remaining = 0;
+        for (int stripe = 0; stripe < STRIPES; stripe++)
+        {
+            Integer stock = redisService.get(GoodsKeyPrefix.GOODS_STOCK, GoodsKeyPrefix.stripeKey(GOODS_ID, stripe), Integer.class);
+            assertTrue("stripe below zero: " + stripe, stock >= 0);
+            remaining += stock;
+        }
+        return remaining;
+    }
+
+    private static GoodsVo goods(int stock)
+    {
+        GoodsVo goods = new GoodsVo();
+        goods.setId(GOODS_ID);
+        goods.setStockCount(stock);
+        return goods;
+    }
+
+    private static void run(int threads, int requests, Request request) throws Exception
+    {
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        AtomicInteger next = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++)
+        {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int n = next.getAndIncrement(); n < requests; n = next.getAndIncrement())
+                    request.run(n);
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures)
+            future.get(30, TimeUnit.SECONDS);
+        executor.shutdown();
+    }
+
+    private interface Request
+    {
+        void run(int request);
+    }
+}
@@ -40,4 +40,23 @@ public interface GoodsMapper {
      */
     @Update("UPDATE seckill_goods SET stock_count = stock_count-1 WHERE goods_id=#{goodsId} AND stock_count > 0")
     Integer reduceStack(SeckillGoods seckillGoods);
+
+    /**
+     * 读取秒杀库存并锁定该行，直到事务结束
+     *
+     * @param goodsId
+     * @return
+     */
+    @Select("SELECT stock_count FROM seckill_goods WHERE goods_id=#{goodsId} FOR UPDATE")
+    Integer getStockCountForUpdate(@Param("goodsId") long goodsId);
+
+    /**
+     * 一次减少 count 个库存，库存不足时不扣减
+     *
+     * @param goodsId
+     * @param count
+     * @return
+     */
+    @Update("UPDATE seckill_goods SET stock_count = stock_count-#{count} WHERE goods_id=#{goodsId} AND stock_count >= #{count}")
+    Integer reduceStackBy(@Param("goodsId") long goodsId, @Param("count") int count);
 }
\ No newline at end of file
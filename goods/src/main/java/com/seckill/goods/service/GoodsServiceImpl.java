@@ -7,6 +7,7 @@ import com.seckill.goods.dao.GoodsMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.dubbo.config.annotation.Service;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
@@ -46,4 +47,20 @@ public class GoodsServiceImpl implements GoodsServiceApi
         log.info("GoodsServiceImpl 减少GoodsVo:{} 结果：{}",goods,ret);
         return ret > 0;
     }
+
+    /**
+     * 先锁定库存行再扣减，同一商品的批量扣减在事务内串行，不会卖超
+     */
+    @Transactional
+    @Override
+    public int reduceStock(GoodsVo goods, int count)
+    {
+        Integer stock = goodsMapper.getStockCountForUpdate(goods.getId());
+        int granted = stock == null ? 0 : Math.max(0, Math.min(stock, count));
+        if (granted > 0 && goodsMapper.reduceStackBy(goods.getId(), granted) == 0)
+            granted = 0;
+
+        log.info("GoodsServiceImpl 批量减少GoodsVo:{} 期望：{} 结果：{}",goods.getId(),count,granted);
+        return granted;
+    }
 }
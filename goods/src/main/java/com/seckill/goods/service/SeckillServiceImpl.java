@@ -3,10 +3,11 @@ package com.seckill.goods.service;
 
 import com.alibaba.fastjson.JSONObject;
 import com.seckill.common.api.cache.RedisServiceApi;
-import com.seckill.common.api.cache.vo.GoodsKeyPrefix;
 import com.seckill.common.api.cache.vo.SkKeyPrefix;
+import com.seckill.common.api.cache.vo.StockEvent;
 import com.seckill.common.api.goods.GoodsServiceApi;
 import com.seckill.common.api.goods.vo.GoodsVo;
+import com.seckill.common.api.mq.vo.SkMessage;
 import com.seckill.common.api.order.OrderServiceApi;
 import com.seckill.common.api.seckill.SeckillServiceApi;
 import com.seckill.common.api.seckill.vo.VerifyCodeVo;
@@ -23,6 +24,12 @@ import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
 /**
@@ -51,6 +58,9 @@ public class SeckillServiceImpl implements SeckillServiceApi {
     /**
      * 减库存，生成订单，实现秒杀操作核心业务
      * 秒杀操作由两步构成，不可分割，为一个事务
+     * 用户已有该商品的秒杀订单时（消息重新投递、重试）直接返回已有订单，不再减库存
+     * <p>
+     * redis中的库存由网关的 StockCounter 维护（租约、分段），这里不再用数据库中的库存覆盖
      *
      * @param user  秒杀商品的用户
      * @param goods 所秒杀的商品
@@ -60,6 +70,12 @@ public class SeckillServiceImpl implements SeckillServiceApi {
     @Override
     public OrderInfo seckill(UserVo user, GoodsVo goods) {
 
+        // 0. 已有订单时直接返回
+        SeckillOrder existing = orderService.getSeckillOrderByUserIdAndGoodsId(user.getUuid(), goods.getId());
+        if (existing != null) {
+            return orderService.getOrderById(existing.getOrderId());
+        }
+
         // 1. 减库存
         boolean success = goodsService.reduceStock(goods);
         log.info("SeckillServiceImpl user:{}进行秒杀 商品：{} 结果：{}",user,goods,success);
@@ -68,21 +84,97 @@ public class SeckillServiceImpl implements SeckillServiceApi {
             return null;
         }
         // 2. 生成订单；向 order_info 表和 seckill_order 表中写入订单信息
-        OrderInfo order = orderService.createOrder(user, goods);
-        // 3. 更新缓存中的库存信息
-        GoodsVo good = goodsService.getGoodsVoByGoodsId(goods.getId());
-        redisService.set(GoodsKeyPrefix.GOODS_STOCK, "" + good.getId(), good.getStockCount());
+        return orderService.createOrder(user, goods);
+    }
 
-        return order;
+    /**
+     * 批量秒杀：按商品分组，每个商品减一次库存、写一次订单
+     * 与 seckill 一样在一个事务中完成，批量写订单失败时库存一起回滚；已有订单的用户直接返回已有订单，不再减库存
+     *
+     * @param messages 秒杀消息，同一用户同一商品只能出现一次
+     * @return
+     */
+    @Transactional
+    @Override
+    public List<OrderInfo> seckillBatch(List<SkMessage> messages) {
+        // 商品id -> 该商品的消息在 messages 中的下标
+        Map<Long, List<Integer>> byGoods = new LinkedHashMap<>();
+        for (int i = 0; i < messages.size(); i++) {
+            byGoods.computeIfAbsent(messages.get(i).getGoodsId(), k -> new ArrayList<>()).add(i);
+        }
+
+        OrderInfo[] orders = new OrderInfo[messages.size()];
+        for (Map.Entry<Long, List<Integer>> entry : byGoods.entrySet()) {
+            GoodsVo goods = goodsService.getGoodsVoByGoodsId(entry.getKey());
+            if (goods == null) {
+                continue;
+            }
+            List<Integer> indexes = existingOrders(goods.getId(), messages, entry.getValue(), orders);
+            if (indexes.isEmpty()) {
+                continue;
+            }
+
+            // 1. 一次扣减该商品的库存，库存不足时只有前 granted 个用户成功
+            int granted = goodsService.reduceStock(goods, indexes.size());
+            log.info("SeckillServiceImpl 批量秒杀 商品：{} 请求：{} 成功：{}", goods.getId(), indexes.size(), granted);
+            if (granted < indexes.size()) {
+                setGoodsOver(goods.getId());
+            }
+            if (granted == 0) {
+                continue;
+            }
+
+            // 2. 批量生成订单
+            List<UserVo> users = new ArrayList<>(granted);
+            for (int i = 0; i < granted; i++) {
+                users.add(messages.get(indexes.get(i)).getUser());
+            }
+            List<OrderInfo> created = orderService.createOrders(goods, users);
+            for (int i = 0; i < granted; i++) {
+                orders[indexes.get(i)] = created.get(i);
+            }
+        }
+        return new ArrayList<>(Arrays.asList(orders));
+    }
+
+    /**
+     * 查询一个商品下已有秒杀订单的用户，把已有订单填入 orders
+     *
+     * @return 还没有订单的消息下标
+     */
+    private List<Integer> existingOrders(long goodsId, List<SkMessage> messages, List<Integer> indexes, OrderInfo[] orders) {
+        List<Long> userIds = new ArrayList<>(indexes.size());
+        for (int index : indexes) {
+            userIds.add(messages.get(index).getUser().getUuid());
+        }
+        Map<Long, Long> ordered = new HashMap<>();
+        for (SeckillOrder order : orderService.getSeckillOrdersByGoodsId(goodsId, userIds)) {
+            ordered.put(order.getUserId(), order.getOrderId());
+        }
+        if (ordered.isEmpty()) {
+            return indexes;
+        }
+
+        List<Integer> remaining = new ArrayList<>(indexes.size());
+        for (int index : indexes) {
+            Long orderId = ordered.get(messages.get(index).getUser().getUuid());
+            if (orderId == null) {
+                remaining.add(index);
+            } else {
+                orders[index] = orderService.getOrderById(orderId);
+            }
+        }
+        return remaining;
     }
 
     /**
-     * 设置秒杀商品数量为0
+     * 设置秒杀商品数量为0，并通知所有网关节点该商品已售罄
      *
      * @param goodsId
      */
     private void setGoodsOver(long goodsId) {
         redisService.set(SkKeyPrefix.GOODS_SK_OVER, "" + goodsId, true);
+        redisService.publish(StockEvent.CHANNEL, StockEvent.soldOut(goodsId).encode());
     }
 
     private boolean getGoodsOver(long goodsId) {
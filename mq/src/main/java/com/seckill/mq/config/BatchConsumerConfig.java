@@ -0,0 +1,59 @@
+package com.seckill.mq.config;
+
+import com.seckill.mq.receiver.BatchSkMessageListener;
+import com.seckill.mq.receiver.MqConsumer;
+import org.springframework.amqp.core.AcknowledgeMode;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.amqp.support.converter.SimpleMessageConverter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 批量消费秒杀消息
+ * <p>
+ * seckill.mq.batch.enabled=true 时启用，MqConsumer 上的单条监听不再启动；
+ * 消费者数量沿用 spring.rabbitmq.listener.simple.concurrency，prefetch 取批次大小。
+ * 本地模式（seckill.mq.transport=local）下不从 RabbitMQ 消费，批量处理由 LocalQueueReceiver 完成
+ */
+@Configuration
+@ConditionalOnExpression("${seckill.mq.batch.enabled:false} && '${seckill.mq.transport:rabbit}' == 'rabbit'")
+public class BatchConsumerConfig
+{
+    /**
+     * 每批最多处理的消息数量
+     */
+    @Value("${seckill.mq.batch.size:100}")
+    private int batchSize;
+
+    /**
+     * 批次中第一条消息最多等待的时间（毫秒），超时后不足一批也会处理
+     */
+    @Value("${seckill.mq.batch.maxWaitMillis:50}")
+    private long maxWaitMillis;
+
+    @Value("${spring.rabbitmq.listener.simple.concurrency:1}")
+    private int concurrency;
+
+    @Bean(destroyMethod = "close")
+    public BatchSkMessageListener batchSkMessageListener(MqConsumer consumer, ObjectProvider<MessageConverter> converter)
+    {
+        return new BatchSkMessageListener(consumer, converter.getIfAvailable(SimpleMessageConverter::new), batchSize, maxWaitMillis);
+    }
+
+    @Bean
+    public SimpleMessageListenerContainer batchSkListenerContainer(ConnectionFactory connectionFactory, BatchSkMessageListener listener)
+    {
+        SimpleMessageListenerContainer container = new SimpleMessageListenerContainer(connectionFactory);
+        container.setQueueNames(MQConfig.SECKILL_QUEUE);
+        container.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        container.setPrefetchCount(batchSize);
+        container.setConcurrentConsumers(concurrency);
+        container.setMessageListener(listener);
+        return container;
+    }
+}
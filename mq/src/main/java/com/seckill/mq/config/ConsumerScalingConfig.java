@@ -0,0 +1,96 @@
+package com.seckill.mq.config;
+
+import com.seckill.mq.receiver.MqConsumer;
+import com.seckill.mq.scaling.ConsumerAutoScaler;
+import com.seckill.mq.scaling.ConsumerScalingPolicy;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.function.Supplier;
+
+/**
+ * 秒杀队列（seckill.queue）消费者的自动伸缩
+ * <p>
+ * 1. seckill.mq.scaling.enabled=true 且 transport=rabbit 时启用，spring.rabbitmq.listener.simple 的
+ *    concurrency、prefetch 只作为初始值，之后在 seckill.mq.scaling 配置的上下限之间调整
+ * 2. 单条消费时调整 MqConsumer 上 @RabbitListener 的容器；批量消费时调整 batchSkListenerContainer，
+ *    prefetch 固定为批次大小
+ * 3. 分区队列（PartitionConfig）每个分区只有一个消费者，不参与伸缩
+ */
+@Configuration
+@ConditionalOnExpression("${seckill.mq.scaling.enabled:false} && '${seckill.mq.transport:rabbit}' == 'rabbit'")
+public class ConsumerScalingConfig
+{
+    @Value("${seckill.mq.scaling.intervalMillis:5000}")
+    private long intervalMillis;
+
+    @Value("${seckill.mq.scaling.minConsumers:2}")
+    private int minConsumers;
+
+    @Value("${seckill.mq.scaling.maxConsumers:20}")
+    private int maxConsumers;
+
+    @Value("${seckill.mq.scaling.minPrefetch:1}")
+    private int minPrefetch;
+
+    @Value("${seckill.mq.scaling.maxPrefetch:20}")
+    private int maxPrefetch;
+
+    /**
+     * 写订单耗时超过基线的多少倍时认为数据库过载
+     */
+    @Value("${seckill.mq.scaling.tolerance:3.0}")
+    private double tolerance;
+
+    /**
+     * 过载时消费者数量乘以的系数
+     */
+    @Value("${seckill.mq.scaling.decreaseFactor:0.75}")
+    private double decreaseFactor;
+
+    @Value("${spring.rabbitmq.listener.simple.concurrency:1}")
+    private int concurrency;
+
+    @Value("${spring.rabbitmq.listener.simple.prefetch:1}")
+    private int prefetch;
+
+    @Value("${seckill.mq.batch.enabled:false}")
+    private boolean batchEnabled;
+
+    @Value("${seckill.mq.batch.size:100}")
+    private int batchSize;
+
+    @Bean(destroyMethod = "close")
+    public ConsumerAutoScaler consumerAutoScaler(RabbitListenerEndpointRegistry registry,
+                                                 ObjectProvider<SimpleMessageListenerContainer> batchContainer,
+                                                 AmqpAdmin amqpAdmin, MqConsumer consumer, MeterRegistry meterRegistry)
+    {
+        Supplier<SimpleMessageListenerContainer> container;
+        ConsumerScalingPolicy policy;
+        int initialPrefetch;
+        if (batchEnabled)
+        {
+            container = batchContainer::getIfAvailable;
+            policy = new ConsumerScalingPolicy(minConsumers, maxConsumers, batchSize, batchSize, tolerance, decreaseFactor, intervalMillis);
+            initialPrefetch = batchSize;
+        } else
+        {
+            container = () -> {
+                MessageListenerContainer listener = registry.getListenerContainer(MqConsumer.LISTENER_ID);
+                return listener instanceof SimpleMessageListenerContainer ? (SimpleMessageListenerContainer) listener : null;
+            };
+            policy = new ConsumerScalingPolicy(minConsumers, maxConsumers, minPrefetch, maxPrefetch, tolerance, decreaseFactor, intervalMillis);
+            initialPrefetch = prefetch;
+        }
+        return new ConsumerAutoScaler(container, amqpAdmin, MQConfig.SECKILL_QUEUE, policy,
+                consumer.getProcessingLatency(), consumer.getOrderLatency(), concurrency, initialPrefetch, intervalMillis, meterRegistry);
+    }
+}
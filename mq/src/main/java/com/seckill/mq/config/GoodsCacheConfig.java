@@ -0,0 +1,53 @@
+package com.seckill.mq.config;
+
+import com.seckill.cache.client.RedisChannelSubscriber;
+import com.seckill.common.api.cache.vo.StockEvent;
+import com.seckill.common.api.goods.GoodsServiceApi;
+import com.seckill.mq.receiver.GoodsSnapshotCache;
+import org.apache.dubbo.config.annotation.Reference;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 消费端的秒杀商品信息快照
+ * <p>
+ * 快照在 seckill.mq.goodsCache.ttlMillis 毫秒后过期；seckill.mq.goodsCache.subscribe=true 时订阅
+ * redis（redis.host/redis.port，与网关的售罄广播相同）上的库存事件，事件到达时对应商品的快照立即失效
+ */
+@Configuration
+public class GoodsCacheConfig
+{
+    @Reference(interfaceClass = GoodsServiceApi.class)
+    GoodsServiceApi goodsService;
+
+    @Value("${seckill.mq.goodsCache.ttlMillis:5000}")
+    private long ttlMillis;
+
+    @Value("${redis.host:127.0.0.1}")
+    private String host;
+
+    @Value("${redis.port:6379}")
+    private int port;
+
+    @Value("${redis.timeout:1000}")
+    private int timeout;
+
+    @Bean
+    public GoodsSnapshotCache goodsSnapshotCache()
+    {
+        return new GoodsSnapshotCache(goodsId -> goodsService.getGoodsVoByGoodsId(goodsId), ttlMillis);
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnExpression("${seckill.mq.goodsCache.subscribe:true}")
+    public RedisChannelSubscriber goodsEventSubscriber(GoodsSnapshotCache cache)
+    {
+        RedisChannelSubscriber subscriber = new RedisChannelSubscriber(host, port, timeout, StockEvent.CHANNEL, cache::onMessage);
+        // 订阅断开期间可能错过了事件
+        subscriber.setOnSubscribed(cache::invalidateAll);
+        subscriber.start();
+        return subscriber;
+    }
+}
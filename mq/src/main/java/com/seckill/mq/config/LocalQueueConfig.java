@@ -0,0 +1,146 @@
+package com.seckill.mq.config;
+
+import com.seckill.common.codec.SkMessageCodec;
+import com.seckill.mq.journal.JournalConsumer;
+import com.seckill.mq.journal.JournalRecord;
+import com.seckill.mq.journal.LocalJournal;
+import com.seckill.mq.receiver.LocalQueueReceiver;
+import com.seckill.mq.receiver.MqConsumer;
+import com.seckill.mq.service.SkMessagePublisher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 本地消息日志
+ * <p>
+ * 1. seckill.mq.transport=local：不经过 RabbitMQ，MqProviderImpl 把消息追加到本地日志，
+ *    由本节点的消费线程交给 MqConsumer，Rabbit 上的消费者都不启动；只适用于单节点部署
+ * 2. seckill.mq.transport=rabbit 且 seckill.mq.spill.enabled=true：broker 不可用或发布队列已满时，
+ *    消息先追加到本地日志，由转发线程在 broker 恢复后重新发布，网关的调用不再等待 broker；
+ *    broker 确认之后才提交转发的偏移，发布多次仍未被确认的消息重新追加到日志
+ * <p>
+ * 两种用法的日志放在 seckill.mq.journal.dir 下不同的子目录，切换后互不影响各自的消费进度
+ */
+@Configuration
+@ConditionalOnExpression("'${seckill.mq.transport:rabbit}' == 'local' || ('${seckill.mq.transport:rabbit}' == 'rabbit' && ${seckill.mq.spill.enabled:false})")
+public class LocalQueueConfig
+{
+    public static final String LOCAL_CONSUMER="local-consumer";
+
+    public static final String SPILL_CONSUMER="spill";
+
+    @Value("${seckill.mq.transport:rabbit}")
+    private String transport;
+
+    @Value("${seckill.mq.journal.dir:data/journal}")
+    private String dir;
+
+    /**
+     * 每个日志段的字节数
+     */
+    @Value("${seckill.mq.journal.segmentBytes:67108864}")
+    private int segmentBytes;
+
+    /**
+     * 定期刷盘的间隔（毫秒），不大于0时只依赖操作系统回写
+     */
+    @Value("${seckill.mq.journal.flushIntervalMillis:100}")
+    private long flushIntervalMillis;
+
+    @Value("${seckill.mq.batch.enabled:false}")
+    private boolean batchEnabled;
+
+    @Value("${seckill.mq.batch.size:100}")
+    private int batchSize;
+
+    /**
+     * 本地模式下一条消息连续处理失败多少次后跳过
+     */
+    @Value("${seckill.mq.journal.maxAttempts:3}")
+    private int maxAttempts;
+
+    /**
+     * 转发时等待 broker 确认的时间（毫秒），超时的记录稍后重新转发
+     */
+    @Value("${seckill.mq.spill.confirmTimeoutMillis:10000}")
+    private long confirmTimeoutMillis;
+
+    @Bean(destroyMethod = "close")
+    public LocalJournal localJournal() throws IOException
+    {
+        return new LocalJournal(new File(dir, isLocal() ? "queue" : "spill"), segmentBytes, flushIntervalMillis);
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnExpression("'${seckill.mq.transport:rabbit}' == 'local'")
+    public JournalConsumer localQueueConsumer(LocalJournal journal, MqConsumer consumer)
+    {
+        return new JournalConsumer(journal, LOCAL_CONSUMER, batchEnabled ? batchSize : 1,
+                new LocalQueueReceiver(consumer, batchEnabled, maxAttempts));
+    }
+
+    /**
+     * 把溢出到本地日志的消息重新交给发布器，broker 不可用或发布队列已满时停在原处
+     * <p>
+     * 只有 broker 确认了的前 n 条才算处理完、提交偏移；等待超时或放弃的记录及其之后的记录稍后重新转发（至少一次）。
+     * 发布器放弃的消息（发布 maxAttempts 次均未被确认）重新追加到日志末尾，不会丢失
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnExpression("'${seckill.mq.transport:rabbit}' == 'rabbit' && ${seckill.mq.spill.enabled:false}")
+    public JournalConsumer spillDrainer(LocalJournal journal, SkMessagePublisher publisher)
+    {
+        publisher.setGiveUpHandler(message -> {
+            try
+            {
+                journal.append(SkMessageCodec.encode(message));
+            } catch (IOException e)
+            {
+                throw new UncheckedIOException("append seckill message to local journal failed", e);
+            }
+        });
+        return new JournalConsumer(journal, SPILL_CONSUMER, batchSize, records -> {
+            List<CompletableFuture<Void>> confirms = new ArrayList<>(records.size());
+            for (JournalRecord record : records)
+            {
+                if (!publisher.isAvailable())
+                    break;
+                CompletableFuture<Void> confirmed = publisher.tryPublishConfirmed(SkMessageCodec.decode(record.getPayload()));
+                if (confirmed == null)
+                    break;
+                confirms.add(confirmed);
+            }
+
+            long deadline = System.currentTimeMillis() + confirmTimeoutMillis;
+            int confirmed = 0;
+            for (CompletableFuture<Void> confirm : confirms)
+            {
+                try
+                {
+                    confirm.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                } catch (ExecutionException | TimeoutException e)
+                {
+                    break;
+                }
+                confirmed++;
+            }
+            return confirmed;
+        });
+    }
+
+    private boolean isLocal()
+    {
+        return "local".equals(transport);
+    }
+}
@@ -1,11 +1,12 @@
 package com.seckill.mq.config;
 
+import com.seckill.mq.service.SkMessagePublisher;
 import org.springframework.amqp.core.Queue;
-import org.springframework.amqp.rabbit.connection.ConnectionFactory;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.context.annotation.Scope;
 
 @Configuration
 public class MQConfig
@@ -14,17 +15,75 @@ public class MQConfig
 
     public static final String SK_ROUTING_KEY="routing.sk";
 
+    /**
+     * 分区时使用的一致性哈希交换机（需要 rabbitmq_consistent_hash_exchange 插件），按商品id路由到分区队列
+     */
+    public static final String SECKILL_PARTITION_EXCHANGE="seckill.partition.exchange";
+
+    /**
+     * 秒杀队列的分区数，大于1时消息按商品id发往 seckill.queue.0 ~ seckill.queue.(N-1)，见 PartitionConfig
+     */
+    @Value("${seckill.mq.partitions:1}")
+    private int partitions;
+
+    /**
+     * 等待发布的消息数量上限，队列满时调用方最多等待 enqueueTimeoutMillis
+     */
+    @Value("${seckill.mq.publish.queueCapacity:10000}")
+    private int publishQueueCapacity;
+
+    @Value("${seckill.mq.publish.enqueueTimeoutMillis:100}")
+    private long publishEnqueueTimeoutMillis;
+
+    /**
+     * 发布线程每次最多连续发出的消息数量
+     */
+    @Value("${seckill.mq.publish.batchSize:100}")
+    private int publishBatchSize;
+
+    /**
+     * 已发出、未被broker确认的消息数量上限
+     */
+    @Value("${seckill.mq.publish.window:1000}")
+    private int publishWindow;
+
+    @Value("${seckill.mq.publish.maxAttempts:3}")
+    private int publishMaxAttempts;
+
+    /**
+     * 第 partition 个分区队列的名称
+     */
+    public static String partitionQueue(int partition)
+    {
+        return SECKILL_QUEUE+"."+partition;
+    }
+
     @Bean
     public Queue seckillQueue()
     {
         return new Queue(SECKILL_QUEUE,true);
     }
 
+    /**
+     * 秒杀消息使用定长二进制格式；spring boot 会把它同时用于 @RabbitListener 的容器
+     */
     @Bean
-    @Scope("prototype")
-    public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory)
+    public MessageConverter messageConverter()
+    {
+        return new SkMessageConverter();
+    }
+
+    /**
+     * 秒杀消息的发布器，使用独立的连接，不占用 spring 的缓存连接
+     * 分区时发往一致性哈希交换机，以商品id为 routing key；否则直接发往秒杀队列
+     */
+    @Bean(destroyMethod = "close")
+    public SkMessagePublisher skMessagePublisher(CachingConnectionFactory connectionFactory,MessageConverter messageConverter)
     {
-        RabbitTemplate template=new RabbitTemplate(connectionFactory);
-        return template;
+        boolean partitioned=partitions>1;
+        return new SkMessagePublisher(connectionFactory.getRabbitConnectionFactory(),messageConverter,
+                partitioned?SECKILL_PARTITION_EXCHANGE:"",
+                message -> partitioned?String.valueOf(message.getGoodsId()):SECKILL_QUEUE,
+                publishQueueCapacity,publishBatchSize,publishWindow,publishMaxAttempts,publishEnqueueTimeoutMillis);
     }
 }
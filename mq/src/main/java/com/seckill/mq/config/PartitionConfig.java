@@ -0,0 +1,123 @@
+package com.seckill.mq.config;
+
+import com.seckill.mq.receiver.BatchSkMessageListener;
+import com.seckill.mq.receiver.MqConsumer;
+import com.seckill.mq.receiver.PartitionMonitor;
+import org.springframework.amqp.core.AcknowledgeMode;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.CustomExchange;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.listener.DirectMessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.adapter.MessageListenerAdapter;
+import org.springframework.amqp.rabbit.listener.api.ChannelAwareMessageListener;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 按商品分区的秒杀队列
+ * <p>
+ * 1. seckill.mq.partitions 大于1时启用：声明 N 个分区队列，以相同的权重绑定到一致性哈希交换机，
+ *    发布时以商品id为 routing key，同一商品的消息总是进入同一个分区
+ * 2. 每个分区队列只有一个消费者，同一商品的减库存在一个消费者上串行执行，不再争抢 seckill_goods 的行锁，
+ *    不同商品在不同分区上并行；分区队列声明为 single active consumer（x-single-active-consumer），
+ *    多个 mq 节点同时订阅时 broker 只向其中一个投递，其余作为备用，单消费者的保证不只依赖本节点的配置
+ * 3. 开启了批量消费时分区消费者使用 BatchSkMessageListener，否则逐条交给 MqConsumer.receiverSkInfo
+ * 4. 原来的 seckill.queue 仍然有消费者，用于处理切换前留在队列中的消息
+ * 5. 本地模式（seckill.mq.transport=local）下不启用
+ * <p>
+ * 分区数在 broker 上已有队列之后只能增加：减少分区时多出的队列不再有绑定，但其中的消息需要另行处理；
+ * 队列参数不能修改，broker 上已有的不带 x-single-active-consumer 的分区队列需要先清空删除，再由本配置重新声明
+ */
+@Configuration
+@ConditionalOnExpression("${seckill.mq.partitions:1} > 1 && '${seckill.mq.transport:rabbit}' == 'rabbit'")
+public class PartitionConfig
+{
+    @Value("${seckill.mq.partitions}")
+    private int partitions;
+
+    @Value("${spring.rabbitmq.listener.simple.prefetch:1}")
+    private int prefetch;
+
+    @Value("${seckill.mq.batch.size:100}")
+    private int batchSize;
+
+    /**
+     * 打印分区积压和延迟的间隔（秒），不大于0时不打印
+     */
+    @Value("${seckill.mq.partition.reportIntervalSeconds:10}")
+    private int reportIntervalSeconds;
+
+    @Bean
+    public Declarables seckillPartitionQueues()
+    {
+        CustomExchange exchange = new CustomExchange(MQConfig.SECKILL_PARTITION_EXCHANGE, "x-consistent-hash", true, false);
+        List<Declarable> declarables = new ArrayList<>();
+        declarables.add(exchange);
+        for (String name : partitionQueues())
+        {
+            Queue queue = new Queue(name, true, false, false, Collections.singletonMap("x-single-active-consumer", true));
+            declarables.add(queue);
+            // 一致性哈希交换机的绑定键是权重
+            declarables.add(BindingBuilder.bind(queue).to(exchange).with("1").noargs());
+        }
+        return new Declarables(declarables);
+    }
+
+    @Bean(destroyMethod = "close")
+    public PartitionMonitor partitionMonitor(AmqpAdmin amqpAdmin)
+    {
+        return new PartitionMonitor(amqpAdmin, partitionQueues(), reportIntervalSeconds);
+    }
+
+    @Bean
+    public DirectMessageListenerContainer seckillPartitionContainer(ConnectionFactory connectionFactory,
+                                                                   MqConsumer consumer,
+                                                                   MessageConverter messageConverter,
+                                                                   ObjectProvider<BatchSkMessageListener> batchListener,
+                                                                   PartitionMonitor monitor)
+    {
+        DirectMessageListenerContainer container = new DirectMessageListenerContainer(connectionFactory);
+        container.setQueueNames(partitionQueues().toArray(new String[0]));
+        container.setConsumersPerQueue(1);
+
+        ChannelAwareMessageListener delegate;
+        BatchSkMessageListener batch = batchListener.getIfAvailable();
+        if (batch != null)
+        {
+            container.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+            container.setPrefetchCount(batchSize);
+            delegate = batch;
+        } else
+        {
+            MessageListenerAdapter adapter = new MessageListenerAdapter(consumer, "receiverSkInfo");
+            adapter.setMessageConverter(messageConverter);
+            container.setPrefetchCount(prefetch);
+            delegate = adapter;
+        }
+        container.setMessageListener((ChannelAwareMessageListener) (message, channel) -> {
+            monitor.received(message);
+            delegate.onMessage(message, channel);
+        });
+        return container;
+    }
+
+    private List<String> partitionQueues()
+    {
+        List<String> queues = new ArrayList<>(partitions);
+        for (int i = 0; i < partitions; i++)
+            queues.add(MQConfig.partitionQueue(i));
+        return queues;
+    }
+}
@@ -0,0 +1,56 @@
+package com.seckill.mq.config;
+
+import com.seckill.common.api.mq.vo.SkMessage;
+import com.seckill.common.codec.SkMessageCodec;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.amqp.support.converter.SimpleMessageConverter;
+
+/**
+ * 秒杀消息的转换器
+ * <p>
+ * 1. SkMessage 使用 SkMessageCodec 的定长二进制格式，content-type 为 CONTENT_TYPE
+ * 2. 其他类型，以及 content-type 不是 CONTENT_TYPE 的消息（如升级前用java序列化发送、仍在队列中的消息）交给 SimpleMessageConverter
+ */
+public class SkMessageConverter implements MessageConverter
+{
+    public static final String CONTENT_TYPE = "application/x-seckill-message";
+
+    private final MessageConverter fallback = new SimpleMessageConverter();
+
+    @Override
+    public Message toMessage(Object object, MessageProperties messageProperties) throws MessageConversionException
+    {
+        if (!(object instanceof SkMessage))
+            return fallback.toMessage(object, messageProperties);
+
+        byte[] body;
+        try
+        {
+            body = SkMessageCodec.encode((SkMessage) object);
+        } catch (IllegalArgumentException e)
+        {
+            throw new MessageConversionException("cannot encode " + object, e);
+        }
+        messageProperties.setContentType(CONTENT_TYPE);
+        messageProperties.setContentLength(body.length);
+        return new Message(body, messageProperties);
+    }
+
+    @Override
+    public Object fromMessage(Message message) throws MessageConversionException
+    {
+        if (!CONTENT_TYPE.equals(message.getMessageProperties().getContentType()))
+            return fallback.fromMessage(message);
+
+        try
+        {
+            return SkMessageCodec.decode(message.getBody());
+        } catch (IllegalArgumentException e)
+        {
+            throw new MessageConversionException("cannot decode seckill message", e);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.seckill.mq.config;
+
+import com.seckill.cache.client.ConsistentHashRouter;
+import com.seckill.cache.client.RedisShards;
+import com.seckill.cache.client.RedisStreamClient;
+import com.seckill.mq.receiver.MqConsumer;
+import com.seckill.mq.receiver.RedisStreamReceiver;
+import com.seckill.mq.service.StreamSkPublisher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import redis.clients.jedis.HostAndPort;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 以redis stream 传递秒杀消息（seckill.mq.transport=stream）
+ * <p>
+ * 1. 网关在 seckill.stock.mode=redis 时通过 admitAndEnqueue 在扣减库存的lua脚本中直接入队，不再调用 MqProviderApi；
+ *    其他情况下 MqProviderImpl 把消息追加到商品库存所在节点的 stream
+ * 2. 节点列表与网关、cache 模块相同（redis.nodes，未配置时为 redis.host/redis.port），每个节点一条 stream，
+ *    本服务读取所有节点上的 stream；Rabbit 上的消费者都不启动
+ * 3. 所有 mq 节点属于同一个消费组，consumer 名称需要在节点之间唯一，默认取 进程号@主机名
+ */
+@Configuration
+@ConditionalOnExpression("'${seckill.mq.transport:rabbit}' == 'stream'")
+public class StreamConfig
+{
+    @Value("${redis.nodes:}")
+    private String nodes;
+
+    @Value("${redis.host:127.0.0.1}")
+    private String host;
+
+    @Value("${redis.port:6379}")
+    private int port;
+
+    @Value("${redis.timeout:1000}")
+    private int timeout;
+
+    @Value("${seckill.mq.stream.consumer:}")
+    private String consumerName;
+
+    /**
+     * 每次读取的最大消息数量
+     */
+    @Value("${seckill.mq.stream.batchSize:100}")
+    private int batchSize;
+
+    /**
+     * 没有消息时 XREADGROUP 阻塞的时间（毫秒）
+     */
+    @Value("${seckill.mq.stream.blockMillis:1000}")
+    private long blockMillis;
+
+    /**
+     * 检查待确认消息的间隔（毫秒）
+     */
+    @Value("${seckill.mq.stream.reclaimIntervalMillis:5000}")
+    private long reclaimIntervalMillis;
+
+    /**
+     * 待确认消息空闲多久之后由其他消费者接管（毫秒）
+     */
+    @Value("${seckill.mq.stream.minIdleMillis:30000}")
+    private long minIdleMillis;
+
+    /**
+     * 一条消息最多投递的次数，之后丢弃
+     */
+    @Value("${seckill.mq.stream.maxDeliveries:5}")
+    private int maxDeliveries;
+
+    @Value("${seckill.mq.batch.enabled:false}")
+    private boolean batchEnabled;
+
+    @Bean(destroyMethod = "close")
+    public RedisStreamReceiver redisStreamReceiver(MqConsumer consumer)
+    {
+        // 阻塞读取占住连接，每个消费线程使用自己的连接
+        List<RedisStreamClient> clients = new ArrayList<>();
+        for (HostAndPort node : nodes())
+            clients.add(new RedisStreamClient(node.getHost(), node.getPort(), timeout + (int) blockMillis));
+        String name = consumerName.isEmpty() ? ManagementFactory.getRuntimeMXBean().getName() : consumerName;
+        RedisStreamReceiver receiver = new RedisStreamReceiver(clients, consumer, name, batchEnabled, batchSize,
+                blockMillis, reclaimIntervalMillis, minIdleMillis, maxDeliveries);
+        receiver.start();
+        return receiver;
+    }
+
+    @Bean(destroyMethod = "close")
+    public StreamSkPublisher streamSkPublisher()
+    {
+        List<String> names = new ArrayList<>();
+        List<RedisStreamClient> clients = new ArrayList<>();
+        for (HostAndPort node : nodes())
+        {
+            names.add(node.toString());
+            clients.add(new RedisStreamClient(node.getHost(), node.getPort(), timeout));
+        }
+        return new StreamSkPublisher(new ConsistentHashRouter<>(names, clients));
+    }
+
+    private List<HostAndPort> nodes()
+    {
+        return RedisShards.parse(nodes, host, port);
+    }
+}
@@ -0,0 +1,120 @@
+package com.seckill.mq.journal;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.util.List;
+
+/**
+ * 在专门的线程上按顺序消费 LocalJournal
+ * <p>
+ * 1. 从已提交的偏移开始，每次读取至多 batchSize 条记录交给 Handler
+ * 2. Handler 返回处理完的条数 n（前 n 条），提交第 n 条之后的偏移；没有全部处理完时等待一段时间后从第 n+1 条重新读取
+ * 3. Handler 抛出异常视为一条都没有处理
+ * 4. 提交之前崩溃的记录在重启后再次交给 Handler（至少一次）
+ */
+@Slf4j
+public class JournalConsumer implements Closeable
+{
+    /**
+     * 处理一批记录
+     */
+    public interface Handler
+    {
+        /**
+         * @return 按顺序处理完的记录条数
+         */
+        int handle(List<JournalRecord> records) throws Exception;
+    }
+
+    private static final long MAX_BACKOFF_MILLIS = 1000;
+
+    private final LocalJournal journal;
+
+    private final String name;
+
+    private final int batchSize;
+
+    private final Handler handler;
+
+    private final Thread thread;
+
+    private volatile boolean running = true;
+
+    /**
+     * @param name 消费者名称，已提交的偏移按名称保存
+     */
+    public JournalConsumer(LocalJournal journal, String name, int batchSize, Handler handler)
+    {
+        if (batchSize <= 0)
+            throw new IllegalArgumentException("batchSize must be positive");
+        this.journal = journal;
+        this.name = name;
+        this.batchSize = batchSize;
+        this.handler = handler;
+        this.thread = new Thread(this::run, "journal-consumer-" + name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    private void run()
+    {
+        long backoff = 0;
+        try
+        {
+            long offset = journal.committed(name);
+            while (running)
+            {
+                List<JournalRecord> records = journal.read(offset, batchSize);
+                if (records.isEmpty())
+                {
+                    journal.awaitData(offset, 200);
+                    continue;
+                }
+
+                int handled;
+                try
+                {
+                    handled = handler.handle(records);
+                } catch (Exception e)
+                {
+                    log.warn("本地消息日志 {} 处理失败，稍后重试：{}", name, e.toString());
+                    handled = 0;
+                }
+                if (handled > 0)
+                {
+                    offset = records.get(handled - 1).getNextOffset();
+                    journal.commit(name, offset);
+                }
+                if (handled < records.size())
+                {
+                    backoff = backoff == 0 ? 50 : Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+                    Thread.sleep(backoff);
+                } else
+                {
+                    backoff = 0;
+                }
+            }
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        } catch (Exception e)
+        {
+            log.error("本地消息日志 {} 的消费线程退出", name, e);
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        running = false;
+        thread.interrupt();
+        try
+        {
+            thread.join(5000);
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.seckill.mq.journal;
+
+/**
+ * LocalJournal 中的一条记录
+ */
+public class JournalRecord
+{
+    private final long offset;
+
+    private final long nextOffset;
+
+    private final byte[] payload;
+
+    JournalRecord(long offset, long nextOffset, byte[] payload)
+    {
+        this.offset = offset;
+        this.nextOffset = nextOffset;
+        this.payload = payload;
+    }
+
+    public long getOffset()
+    {
+        return offset;
+    }
+
+    /**
+     * @return 下一条记录的偏移，处理完这条记录后提交该偏移
+     */
+    public long getNextOffset()
+    {
+        return nextOffset;
+    }
+
+    public byte[] getPayload()
+    {
+        return payload;
+    }
+}
@@ -0,0 +1,423 @@
+package com.seckill.mq.journal;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * 本地磁盘上只追加写的日志，作为不依赖 broker 的消息队列
+ * <p>
+ * 1. 日志由若干段文件（{起始偏移}.log）组成，每段预分配 segmentBytes 字节并通过内存映射读写，
+ *    当前段写不下一条记录时滚动到新的段，新段的起始偏移为上一段的起始偏移加上段长度
+ * 2. 每条记录为：长度（4字节） + CRC32（4字节） + 内容，记录的偏移为全局的字节偏移；段中长度为0的位置表示该段已经结束
+ * 3. 每个消费者的已提交偏移保存在 {消费者}.offset 中（同样内存映射），重启后从已提交的偏移继续读取，
+ *    处理完但尚未提交的记录会再次读到（至少一次）
+ * 4. 所有消费者都已提交越过的段会被删除
+ * 5. 写入内存映射后进程崩溃不会丢失数据；flushIntervalMillis 大于0时定期刷盘，减少操作系统崩溃时丢失的数据
+ * 6. 打开时检查最后一段：从头校验记录，遇到长度或 CRC 不正确的记录（写了一半时崩溃）就从这里继续写入，
+ *    之后残留的内容在读到之前就会被新的记录覆盖
+ * <p>
+ * 写入串行执行，读取可以和写入并发
+ */
+@Slf4j
+public class LocalJournal implements Closeable
+{
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final String OFFSET_SUFFIX = ".offset";
+
+    /**
+     * 长度 + CRC32
+     */
+    static final int HEADER_BYTES = 8;
+
+    private final File dir;
+
+    private final int segmentBytes;
+
+    /**
+     * 起始偏移 -> 段
+     */
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+
+    /**
+     * 消费者 -> 已提交偏移
+     */
+    private final Map<String, MappedByteBuffer> offsets = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService flusher;
+
+    private Segment active;
+
+    /**
+     * 当前段中的写入位置
+     */
+    private int writePosition;
+
+    /**
+     * 已写入数据的末尾（全局偏移），读取不会越过这里
+     */
+    private volatile long endOffset;
+
+    /**
+     * @param dir                 日志目录，不存在时创建
+     * @param segmentBytes        每段的字节数，单条记录不能超过这个长度
+     * @param flushIntervalMillis 定期刷盘的间隔，不大于0时只依赖操作系统回写
+     */
+    public LocalJournal(File dir, int segmentBytes, long flushIntervalMillis) throws IOException
+    {
+        if (segmentBytes <= HEADER_BYTES)
+            throw new IllegalArgumentException("segmentBytes is too small: " + segmentBytes);
+        if (!dir.isDirectory() && !dir.mkdirs())
+            throw new IOException("cannot create journal directory: " + dir);
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+
+        openSegments();
+        openOffsets();
+        log.info("本地消息日志 {}：{}个段，末尾偏移 {}", dir, segments.size(), endOffset);
+
+        if (flushIntervalMillis > 0)
+        {
+            this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "journal-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        } else
+        {
+            this.flusher = null;
+        }
+    }
+
+    private void openSegments() throws IOException
+    {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(SEGMENT_SUFFIX));
+        long[] bases = new long[files == null ? 0 : files.length];
+        for (int i = 0; i < bases.length; i++)
+        {
+            String name = files[i].getName();
+            bases[i] = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+        }
+        Arrays.sort(bases);
+        for (long base : bases)
+            segments.put(base, Segment.open(segmentFile(base), base, 0));
+
+        if (segments.isEmpty())
+        {
+            active = Segment.open(segmentFile(0), 0, segmentBytes);
+            segments.put(0L, active);
+            writePosition = 0;
+        } else
+        {
+            active = segments.lastEntry().getValue();
+            writePosition = recover(active);
+        }
+        endOffset = active.base + writePosition;
+    }
+
+    /**
+     * 校验最后一段的记录，返回第一条无效记录的位置
+     */
+    private static int recover(Segment segment)
+    {
+        ByteBuffer buffer = segment.buffer;
+        int position = 0;
+        while (position + HEADER_BYTES <= segment.size)
+        {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + HEADER_BYTES + length > segment.size)
+                break;
+            if (crc(segment.read(position + HEADER_BYTES, length)) != buffer.getInt(position + 4))
+                break;
+            position += HEADER_BYTES + length;
+        }
+        if (position + HEADER_BYTES <= segment.size && buffer.getInt(position) != 0)
+            log.warn("本地消息日志 {} 在位置 {} 的记录不完整，从这里继续写入", segment.file, position);
+        return position;
+    }
+
+    private void openOffsets() throws IOException
+    {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(OFFSET_SUFFIX));
+        if (files == null)
+            return;
+        for (File file : files)
+        {
+            String name = file.getName();
+            offsets.put(name.substring(0, name.length() - OFFSET_SUFFIX.length()), map(file, 8));
+        }
+    }
+
+    /**
+     * 追加一条记录
+     *
+     * @return 记录的偏移
+     */
+    public synchronized long append(byte[] payload) throws IOException
+    {
+        int size = HEADER_BYTES + payload.length;
+        if (size > segmentBytes)
+            throw new IllegalArgumentException("record of " + payload.length + " bytes does not fit in a segment");
+        if (writePosition + size > active.size)
+            roll();
+
+        long offset = active.base + writePosition;
+        ByteBuffer buffer = active.buffer;
+        // 先写内容和CRC，最后写长度：崩溃时长度为0或CRC不匹配的记录都会在打开时被丢弃
+        ByteBuffer target = buffer.duplicate();
+        target.position(writePosition + HEADER_BYTES);
+        target.put(payload);
+        buffer.putInt(writePosition + 4, crc(payload));
+        buffer.putInt(writePosition, payload.length);
+
+        writePosition += size;
+        endOffset = active.base + writePosition;
+        notifyAll();
+        return offset;
+    }
+
+    private void roll() throws IOException
+    {
+        long base = active.base + active.size;
+        // 标记该段结束，覆盖打开时丢弃的不完整记录
+        if (writePosition + 4 <= active.size)
+            active.buffer.putInt(writePosition, 0);
+        active.buffer.force();
+        active = Segment.open(segmentFile(base), base, segmentBytes);
+        segments.put(base, active);
+        writePosition = 0;
+        log.info("本地消息日志滚动到新段：{}", active.file.getName());
+    }
+
+    /**
+     * 从 offset 开始读取至多 max 条记录，没有新记录时返回空列表
+     * offset 所在的段已被删除时从最早的段开始
+     */
+    public List<JournalRecord> read(long offset, int max)
+    {
+        List<JournalRecord> records = new ArrayList<>(Math.min(max, 256));
+        long end = endOffset;
+        while (records.size() < max && offset < end)
+        {
+            Map.Entry<Long, Segment> entry = segments.floorEntry(offset);
+            if (entry == null)
+            {
+                offset = segments.firstKey();
+                continue;
+            }
+            Segment segment = entry.getValue();
+            int position = (int) (offset - segment.base);
+            if (position + HEADER_BYTES > segment.size || segment.buffer.getInt(position) == 0)
+            {
+                // 该段剩余的部分没有使用，转到下一段
+                offset = segment.base + segment.size;
+                continue;
+            }
+            int length = segment.buffer.getInt(position);
+            byte[] payload = segment.read(position + HEADER_BYTES, length);
+            if (crc(payload) != segment.buffer.getInt(position + 4))
+                throw new IllegalStateException("corrupted journal record at offset " + offset);
+            long next = offset + HEADER_BYTES + length;
+            records.add(new JournalRecord(offset, next, payload));
+            offset = next;
+        }
+        return records;
+    }
+
+    /**
+     * 等待 offset 之后有新的记录
+     *
+     * @return 有新记录返回 true，超时返回 false
+     */
+    public synchronized boolean awaitData(long offset, long timeoutMillis) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (endOffset <= offset)
+        {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0)
+                return false;
+            wait(remaining);
+        }
+        return true;
+    }
+
+    /**
+     * 消费者已提交的偏移，新的消费者从最早的段开始
+     */
+    public long committed(String consumer) throws IOException
+    {
+        MappedByteBuffer buffer = offsetBuffer(consumer);
+        return Math.max(buffer.getLong(0), segments.firstKey());
+    }
+
+    /**
+     * 提交消费者的偏移：offset 之前的记录都已处理，重启后从 offset 开始读取
+     * 所有消费者都已越过的段会被删除
+     */
+    public void commit(String consumer, long offset) throws IOException
+    {
+        offsetBuffer(consumer).putLong(0, offset);
+        deleteConsumedSegments();
+    }
+
+    /**
+     * @return 该消费者还没有提交的字节数（含记录头），用于观察积压
+     */
+    public long lag(String consumer) throws IOException
+    {
+        return Math.max(0, endOffset - committed(consumer));
+    }
+
+    public long endOffset()
+    {
+        return endOffset;
+    }
+
+    /**
+     * @return 现有段的起始偏移，按顺序
+     */
+    List<Long> segmentBases()
+    {
+        return Collections.unmodifiableList(new ArrayList<>(segments.keySet()));
+    }
+
+    private MappedByteBuffer offsetBuffer(String consumer) throws IOException
+    {
+        MappedByteBuffer buffer = offsets.get(consumer);
+        if (buffer != null)
+            return buffer;
+        synchronized (offsets)
+        {
+            buffer = offsets.get(consumer);
+            if (buffer == null)
+            {
+                buffer = map(new File(dir, consumer + OFFSET_SUFFIX), 8);
+                offsets.put(consumer, buffer);
+            }
+            return buffer;
+        }
+    }
+
+    private synchronized void deleteConsumedSegments()
+    {
+        long min = Long.MAX_VALUE;
+        for (MappedByteBuffer buffer : offsets.values())
+            min = Math.min(min, buffer.getLong(0));
+
+        Map.Entry<Long, Segment> first;
+        while ((first = segments.firstEntry()) != null && first.getValue() != active
+                && first.getKey() + first.getValue().size <= min)
+        {
+            segments.remove(first.getKey());
+            first.getValue().delete();
+        }
+    }
+
+    private void flush()
+    {
+        try
+        {
+            Segment segment = active;
+            segment.buffer.force();
+            for (MappedByteBuffer buffer : offsets.values())
+                buffer.force();
+        } catch (RuntimeException e)
+        {
+            log.warn("本地消息日志刷盘失败：{}", e.toString());
+        }
+    }
+
+    private File segmentFile(long base)
+    {
+        return new File(dir, String.format("%020d%s", base, SEGMENT_SUFFIX));
+    }
+
+    private static MappedByteBuffer map(File file, int size) throws IOException
+    {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel())
+        {
+            long length = Math.max(raf.length(), size);
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+        }
+    }
+
+    static int crc(byte[] payload)
+    {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+
+    @Override
+    public void close()
+    {
+        if (flusher != null)
+            flusher.shutdownNow();
+        flush();
+    }
+
+    /**
+     * 一个段文件；内存映射在 FileChannel 关闭后仍然有效
+     */
+    private static final class Segment
+    {
+        final File file;
+
+        final long base;
+
+        final int size;
+
+        final MappedByteBuffer buffer;
+
+        private Segment(File file, long base, MappedByteBuffer buffer)
+        {
+            this.file = file;
+            this.base = base;
+            this.size = buffer.capacity();
+            this.buffer = buffer;
+        }
+
+        /**
+         * @param size 新建文件的长度，已有文件保持原来的长度
+         */
+        static Segment open(File file, long base, int size) throws IOException
+        {
+            return new Segment(file, base, map(file, size));
+        }
+
+        byte[] read(int position, int length)
+        {
+            byte[] bytes = new byte[length];
+            ByteBuffer source = buffer.duplicate();
+            source.position(position);
+            source.get(bytes);
+            return bytes;
+        }
+
+        void delete()
+        {
+            if (!file.delete())
+                log.warn("删除本地消息日志段失败：{}", file);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.seckill.mq.receiver;
+
+import com.rabbitmq.client.Channel;
+import com.seckill.common.api.mq.vo.SkMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.listener.api.ChannelAwareMessageListener;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 批量消费秒杀消息（手动确认）
+ * <p>
+ * 1. 每个消费者的 channel 各有一个缓冲，攒够 batchSize 条，或最早的一条已等待 maxWaitMillis 时，整批交给 MqConsumer.receiverSkBatch
+ * 2. 整批成功后逐条 ack；整批失败时逐条交给 receiverSkInfo 重新处理，成功的 ack，失败的 nack 并重新入队，
+ *    一条有问题的消息不会拖累同批的其他消息
+ * 3. 无法反序列化的消息直接拒绝且不重新入队，与单条消费时的处理一致
+ * 4. 只有 broker 推送了足够多的未确认消息才能攒满一批，容器的 prefetch 不能小于 batchSize
+ */
+@Slf4j
+public class BatchSkMessageListener implements ChannelAwareMessageListener, Closeable
+{
+    private final MqConsumer consumer;
+
+    private final MessageConverter converter;
+
+    private final int batchSize;
+
+    private final long maxWaitMillis;
+
+    private final Map<Channel, Batch> batches = new ConcurrentHashMap<>();
+
+    /**
+     * 按时间触发的批次在这个线程上处理
+     */
+    private final ScheduledExecutorService timer;
+
+    public BatchSkMessageListener(MqConsumer consumer, MessageConverter converter, int batchSize, long maxWaitMillis)
+    {
+        if (batchSize <= 0 || maxWaitMillis <= 0)
+            throw new IllegalArgumentException("batchSize and maxWaitMillis must be positive");
+        this.consumer = consumer;
+        this.converter = converter;
+        this.batchSize = batchSize;
+        this.maxWaitMillis = maxWaitMillis;
+
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sk-batch-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, maxWaitMillis / 2);
+        timer.scheduleWithFixedDelay(this::flushExpired, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void onMessage(Message message, Channel channel)
+    {
+        Batch batch = batches.computeIfAbsent(channel, Batch::new);
+        synchronized (batch)
+        {
+            batch.add(message);
+            if (batch.messages.size() >= batchSize)
+                flush(batch);
+        }
+    }
+
+    /**
+     * 处理等待超时的批次，移除已关闭 channel 的缓冲
+     */
+    private void flushExpired()
+    {
+        long now = System.currentTimeMillis();
+        for (Batch batch : batches.values())
+        {
+            try
+            {
+                synchronized (batch)
+                {
+                    if (!batch.messages.isEmpty() && now - batch.firstArrival >= maxWaitMillis)
+                        flush(batch);
+                }
+                if (!batch.channel.isOpen())
+                    batches.remove(batch.channel, batch);
+            } catch (RuntimeException e)
+            {
+                log.error("批量处理秒杀消息失败", e);
+            }
+        }
+    }
+
+    /**
+     * 处理并确认一批消息，调用时持有 batch 的锁，同一 channel 上的确认不会并发
+     */
+    private void flush(Batch batch)
+    {
+        List<Message> messages = new ArrayList<>(batch.messages);
+        batch.messages.clear();
+
+        // channel 已关闭时未确认的消息会由 broker 重新投递，这里直接丢弃
+        Channel channel = batch.channel;
+        if (!channel.isOpen())
+            return;
+
+        List<Message> accepted = new ArrayList<>(messages.size());
+        List<SkMessage> payloads = new ArrayList<>(messages.size());
+        for (Message message : messages)
+        {
+            try
+            {
+                payloads.add((SkMessage) converter.fromMessage(message));
+                accepted.add(message);
+            } catch (RuntimeException e)
+            {
+                log.error("无法解析的秒杀消息，丢弃：{}", message, e);
+                nack(channel, message, false);
+            }
+        }
+        if (payloads.isEmpty())
+            return;
+
+        try
+        {
+            consumer.receiverSkBatch(payloads);
+            for (Message message : accepted)
+                ack(channel, message);
+            return;
+        } catch (RuntimeException e)
+        {
+            log.warn("批量处理{}条秒杀消息失败，逐条重新处理：{}", payloads.size(), e.toString());
+        }
+
+        for (int i = 0; i < payloads.size(); i++)
+        {
+            try
+            {
+                consumer.receiverSkInfo(payloads.get(i));
+                ack(channel, accepted.get(i));
+            } catch (RuntimeException e)
+            {
+                log.error("处理秒杀消息失败，重新入队：{}", payloads.get(i), e);
+                nack(channel, accepted.get(i), true);
+            }
+        }
+    }
+
+    private static void ack(Channel channel, Message message)
+    {
+        try
+        {
+            channel.basicAck(message.getMessageProperties().getDeliveryTag(), false);
+        } catch (IOException e)
+        {
+            log.warn("确认秒杀消息失败，将由broker重新投递：{}", e.toString());
+        }
+    }
+
+    private static void nack(Channel channel, Message message, boolean requeue)
+    {
+        try
+        {
+            channel.basicNack(message.getMessageProperties().getDeliveryTag(), false, requeue);
+        } catch (IOException e)
+        {
+            log.warn("拒绝秒杀消息失败，将由broker重新投递：{}", e.toString());
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        timer.shutdownNow();
+    }
+
+    /**
+     * 一个 channel 上已收到、尚未处理的消息
+     */
+    private static final class Batch
+    {
+        final Channel channel;
+
+        final List<Message> messages = new ArrayList<>();
+
+        /**
+         * 批次中第一条消息的到达时间
+         */
+        long firstArrival;
+
+        Batch(Channel channel)
+        {
+            this.channel = channel;
+        }
+
+        void add(Message message)
+        {
+            if (messages.isEmpty())
+                firstArrival = System.currentTimeMillis();
+            messages.add(message);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.seckill.mq.receiver;
+
+import com.seckill.common.api.cache.vo.StockEvent;
+import com.seckill.common.api.goods.vo.GoodsVo;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongFunction;
+import java.util.function.LongSupplier;
+
+/**
+ * mq 消费端的秒杀商品信息快照
+ * <p>
+ * 1. 按商品id缓存 GoodsVo（名称、秒杀价格、库存），超过 ttlMillis 后下次访问时重新向商品服务加载，
+ *    不再每条消息都经过一次 Dubbo 调用和 seckill_goods 与 goods 的联表查询
+ * 2. 加载到的库存不大于0、或秒杀服务减库存失败（markSoldOut）时，快照标记为售罄，有效期内该商品的消息直接丢弃
+ * 3. 库存事件（StockEvent.CHANNEL）到达时快照失效，下次访问时重新加载：网关在redis库存耗尽时也会广播 SOLD_OUT，
+ *    而队列中已获得资格的消息仍需写订单，因此售罄只以数据库中的库存为准，不直接采用事件；
+ *    重新订阅后（可能错过了事件）所有快照失效
+ * 4. 每个快照带有版本号，失效时版本号加一；加载期间发生了失效时，加载的结果不写回，避免用旧数据覆盖失效
+ * <p>
+ * 快照中的库存只用于判断售罄，真实的扣减仍以数据库为准；未知的商品不缓存
+ */
+@Slf4j
+public class GoodsSnapshotCache
+{
+    private final LongFunction<GoodsVo> loader;
+
+    private final long ttlMillis;
+
+    private final LongSupplier clock;
+
+    private final ConcurrentHashMap<Long, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    /**
+     * @param loader    从商品服务加载商品信息，商品不存在时返回 null
+     * @param ttlMillis 快照的有效期（毫秒）
+     */
+    public GoodsSnapshotCache(LongFunction<GoodsVo> loader, long ttlMillis)
+    {
+        this(loader, ttlMillis, System::currentTimeMillis);
+    }
+
+    GoodsSnapshotCache(LongFunction<GoodsVo> loader, long ttlMillis, LongSupplier clock)
+    {
+        if (ttlMillis <= 0)
+            throw new IllegalArgumentException("ttlMillis must be positive");
+        this.loader = loader;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * @return 商品信息，快照有效时不访问商品服务；商品不存在时返回 null
+     */
+    public GoodsVo get(long goodsId)
+    {
+        Snapshot current = snapshots.get(goodsId);
+        if (current != null && current.isValid(clock.getAsLong()))
+            return current.goods;
+
+        long version = current == null ? 0 : current.version;
+        GoodsVo goods = loader.apply(goodsId);
+        if (goods == null)
+            return null;
+        boolean soldOut = goods.getStockCount() == null || goods.getStockCount() <= 0;
+        Snapshot loaded = new Snapshot(goods, version, clock.getAsLong() + ttlMillis, soldOut);
+        snapshots.compute(goodsId, (id, latest) -> (latest == null ? 0 : latest.version) == version ? loaded : latest);
+        return goods;
+    }
+
+    /**
+     * @return 有效期内的快照已知该商品售罄；不会为此访问商品服务
+     */
+    public boolean isSoldOut(long goodsId)
+    {
+        Snapshot current = snapshots.get(goodsId);
+        return current != null && current.soldOut && current.isValid(clock.getAsLong());
+    }
+
+    /**
+     * 秒杀服务在数据库中减库存失败时调用
+     */
+    public void markSoldOut(long goodsId)
+    {
+        snapshots.computeIfPresent(goodsId, (id, current) -> current.goods == null || current.soldOut
+                ? current : new Snapshot(current.goods, current.version, current.expireAt, true));
+    }
+
+    public void invalidate(long goodsId)
+    {
+        snapshots.compute(goodsId, (id, current) -> new Snapshot(null, current == null ? 1 : current.version + 1, 0, false));
+    }
+
+    public void invalidateAll()
+    {
+        for (Long goodsId : snapshots.keySet())
+            invalidate(goodsId);
+    }
+
+    /**
+     * 库存事件的回调
+     */
+    public void onMessage(String message)
+    {
+        StockEvent event = StockEvent.decode(message);
+        if (event == null)
+        {
+            log.warn("无法解析的库存事件: {}", message);
+            return;
+        }
+        log.debug("收到库存事件，商品快照失效: {}", event);
+        invalidate(event.getGoodsId());
+    }
+
+    private static final class Snapshot
+    {
+        /**
+         * 已失效时为 null
+         */
+        final GoodsVo goods;
+
+        final long version;
+
+        final long expireAt;
+
+        final boolean soldOut;
+
+        Snapshot(GoodsVo goods, long version, long expireAt, boolean soldOut)
+        {
+            this.goods = goods;
+            this.version = version;
+            this.expireAt = expireAt;
+            this.soldOut = soldOut;
+        }
+
+        boolean isValid(long now)
+        {
+            return goods != null && now < expireAt;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.seckill.mq.receiver;
+
+import com.seckill.common.api.mq.vo.SkMessage;
+import com.seckill.common.codec.SkMessageCodec;
+import com.seckill.mq.journal.JournalConsumer;
+import com.seckill.mq.journal.JournalRecord;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 消费本地消息日志中的秒杀消息（seckill.mq.transport=local）
+ * <p>
+ * 1. 开启批量消费时整批交给 MqConsumer.receiverSkBatch，失败后逐条交给 receiverSkInfo；否则直接逐条处理
+ * 2. 逐条处理时遇到失败的消息即停止，之前的消息提交，失败的消息稍后重试，保持日志中的顺序
+ * 3. 同一条消息连续失败 maxAttempts 次后记录日志并跳过，不阻塞之后的消息
+ * 4. 无法解码的消息直接跳过
+ */
+@Slf4j
+public class LocalQueueReceiver implements JournalConsumer.Handler
+{
+    private final MqConsumer consumer;
+
+    private final boolean batch;
+
+    private final int maxAttempts;
+
+    /**
+     * 最近一次失败的消息的偏移及其连续失败次数
+     */
+    private long failedOffset = -1;
+
+    private int failures;
+
+    public LocalQueueReceiver(MqConsumer consumer, boolean batch, int maxAttempts)
+    {
+        this.consumer = consumer;
+        this.batch = batch;
+        this.maxAttempts = maxAttempts;
+    }
+
+    @Override
+    public int handle(List<JournalRecord> records)
+    {
+        List<SkMessage> messages = new ArrayList<>(records.size());
+        for (JournalRecord record : records)
+            messages.add(decode(record));
+
+        if (batch && records.size() > 1)
+        {
+            List<SkMessage> decoded = new ArrayList<>(messages.size());
+            for (SkMessage message : messages)
+                if (message != null)
+                    decoded.add(message);
+            try
+            {
+                if (!decoded.isEmpty())
+                    consumer.receiverSkBatch(decoded);
+                return records.size();
+            } catch (RuntimeException e)
+            {
+                log.warn("批量处理本地秒杀消息失败，逐条重试：{}", e.toString());
+            }
+        }
+
+        for (int i = 0; i < records.size(); i++)
+        {
+            SkMessage message = messages.get(i);
+            if (message == null)
+                continue;
+            try
+            {
+                consumer.receiverSkInfo(message);
+            } catch (RuntimeException e)
+            {
+                long offset = records.get(i).getOffset();
+                if (!giveUp(offset))
+                {
+                    log.warn("处理本地秒杀消息失败，稍后重试：{} {}", message, e.toString());
+                    return i;
+                }
+                log.error("本地秒杀消息连续处理失败{}次，跳过：{}", maxAttempts, message, e);
+            }
+        }
+        return records.size();
+    }
+
+    private boolean giveUp(long offset)
+    {
+        if (offset != failedOffset)
+        {
+            failedOffset = offset;
+            failures = 0;
+        }
+        return ++failures >= maxAttempts;
+    }
+
+    private SkMessage decode(JournalRecord record)
+    {
+        try
+        {
+            return SkMessageCodec.decode(record.getPayload());
+        } catch (IllegalArgumentException e)
+        {
+            log.error("无法解码本地秒杀消息，跳过偏移{}：{}", record.getOffset(), e.getMessage());
+            return null;
+        }
+    }
+}
@@ -1,30 +1,68 @@
 package com.seckill.mq.receiver;
 
 import com.seckill.common.api.cache.RedisServiceApi;
+import com.seckill.common.api.cache.vo.KeyPrefix;
 import com.seckill.common.api.cache.vo.OrderKeyPrefix;
-import com.seckill.common.api.goods.GoodsServiceApi;
+import com.seckill.common.api.cache.vo.RedisBatch;
+import com.seckill.common.api.cache.vo.RedisBatchResult;
+import com.seckill.common.api.cache.vo.SkKeyPrefix;
 import com.seckill.common.api.goods.vo.GoodsVo;
 import com.seckill.common.api.mq.vo.SkMessage;
 import com.seckill.common.api.order.OrderServiceApi;
 import com.seckill.common.api.seckill.SeckillServiceApi;
 
 import com.seckill.common.api.user.vo.UserVo;
+import com.seckill.common.domain.OrderInfo;
 import com.seckill.common.domain.SeckillOrder;
+import com.seckill.common.util.RecentIdSet;
+import com.seckill.common.util.SingleFlightLoader;
 import com.seckill.mq.config.MQConfig;
+import com.seckill.mq.scaling.LatencyRecorder;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.dubbo.config.annotation.Reference;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * MQ 消费者
+ * <p>
+ * 重新投递的消息（消费失败后重新入队、发布重试、stream 接管等）按消息id去重：
+ * 处理完成的消息id记录在本地的 RecentIdSet 和redis（过期时间为去重窗口）中，
+ * 收到消息时先查本地、再查redis，已处理过的直接丢弃，不再调用商品、订单、秒杀服务
+ * <p>
+ * 商品信息取自本地的 GoodsSnapshotCache，已知售罄的商品的消息直接丢弃
+ * <p>
+ * 没有生成订单的消息由 StockReleaser 撤销秒杀资格（删除购买标记、退回库存）：
+ * 数据库中已经没有库存时商品保持售罄；调用秒杀服务失败时先确认用户没有订单，再撤销资格并广播补货，消息不再重试
+ * <p>
+ * 重复投递的消息即使没有被去重拦下，也不会重复下单：并发写入的重复订单被 seckill_order 的 (user_id, goods_id) 唯一索引拒绝，
+ * 秒杀服务的事务回滚（库存一起回滚），按调用失败处理，已有订单的用户不会被撤销秒杀资格
  */
 @Service
 @Slf4j
-public class MqConsumer
+public class MqConsumer implements InitializingBean
 {
-    @Reference(interfaceClass = GoodsServiceApi.class)
-    GoodsServiceApi goodsService;
+    /**
+     * 单条消费的监听容器的id，见 ConsumerScalingConfig
+     */
+    public static final String LISTENER_ID="seckillListener";
+
+    @Autowired
+    GoodsSnapshotCache goodsCache;
+
+    @Autowired
+    StockReleaser stockReleaser;
 
     @Reference(interfaceClass = OrderServiceApi.class)
     OrderServiceApi orderService;
@@ -35,23 +73,98 @@ public class MqConsumer
     @Reference(interfaceClass = SeckillServiceApi.class)
     SeckillServiceApi seckillService;
 
+    /**
+     * 合并同一用户同一商品并发的订单查询
+     */
+    private final SingleFlightLoader cacheLoader=new SingleFlightLoader(() -> redisService);
+
+    /**
+     * 去重窗口（秒）：已处理的消息id在本地至少保留、在redis中保留的时间
+     */
+    @Value("${seckill.mq.dedup.windowSeconds:600}")
+    private int dedupWindowSeconds;
+
+    /**
+     * 本地去重集合每一代最多保存的消息id数量，写满后提前淘汰，由redis兜底
+     */
+    @Value("${seckill.mq.dedup.localCapacity:65536}")
+    private int dedupLocalCapacity;
+
+    /**
+     * 本节点最近处理完成的消息id
+     */
+    private RecentIdSet consumed;
+
+    private KeyPrefix consumedPrefix;
+
+    /**
+     * 每条消息的消费耗时、每次秒杀服务调用（减库存、写订单）的耗时，供 ConsumerAutoScaler 判断是否需要调整消费者
+     */
+    private final LatencyRecorder processingLatency=new LatencyRecorder();
+
+    private final LatencyRecorder orderLatency=new LatencyRecorder();
+
+    @Override
+    public void afterPropertiesSet()
+    {
+        consumed=new RecentIdSet(dedupLocalCapacity,dedupWindowSeconds*1000L);
+        consumedPrefix=SkKeyPrefix.consumedMessage(dedupWindowSeconds);
+    }
+
     /**
      * 处理秒杀业务
+     * 开启批量消费（seckill.mq.batch.enabled）时不启动，消息由 BatchSkMessageListener 交给 receiverSkBatch；
+     * 本地模式（seckill.mq.transport=local）时也不启动，消息由 LocalQueueReceiver 从本地消息日志交给本方法；
+     * stream 模式（seckill.mq.transport=stream）时由 RedisStreamReceiver 交给本方法
      * @param message
      */
-    @RabbitListener(queues = MQConfig.SECKILL_QUEUE)
+    @RabbitListener(id = LISTENER_ID, queues = MQConfig.SECKILL_QUEUE, autoStartup = "#{!${seckill.mq.batch.enabled:false} && '${seckill.mq.transport:rabbit}' == 'rabbit'}")
     public void receiverSkInfo(SkMessage message)
     {
         log.info("MQ receiver message:{}",message);
+        long messageId=message.getMessageId();
+        if(consumed.contains(messageId))
+        {
+            log.info("丢弃重复的秒杀消息:{}",message);
+            return;
+        }
+        if(goodsCache.isSoldOut(message.getGoodsId()))
+        {
+            log.info("商品已售罄，丢弃秒杀消息:{}",message);
+            return;
+        }
+        if(messageId!=0&&redisService.exists(consumedPrefix,SkKeyPrefix.messageKey(messageId)))
+        {
+            consumed.add(messageId);
+            log.info("丢弃重复的秒杀消息:{}",message);
+            return;
+        }
+
+        long start=System.nanoTime();
+        try
+        {
+            handle(message);
+        } finally
+        {
+            processingLatency.record(System.nanoTime()-start,1);
+        }
+        markConsumed(Collections.singletonList(message));
+    }
+
+    private void handle(SkMessage message)
+    {
         //获取秒杀用户  商品id
         UserVo user = message.getUser();
         long goodsId = message.getGoodsId();
 
-        //获取商品以及信息
-        GoodsVo goodsVo = goodsService.getGoodsVoByGoodsId(goodsId);
-        Integer stockCount=goodsVo.getStockCount();
-
-        if(stockCount<=0)
+        //获取商品以及信息：本地快照过期或收到库存事件后才重新查询商品服务
+        GoodsVo goodsVo = goodsCache.get(goodsId);
+        if(goodsVo==null)
+        {
+            log.warn("商品不存在，丢弃秒杀消息:{}",message);
+            return;
+        }
+        if(goodsCache.isSoldOut(goodsId))
             return;
 
         //是否进行过秒杀
@@ -60,24 +173,219 @@ public class MqConsumer
             return;
 
         //进行秒杀  1减库存 2写入订单 3 写入秒杀订单
-        seckillService.seckill(user,goodsVo);
+        long start=System.nanoTime();
+        OrderInfo created;
+        try
+        {
+            created=seckillService.seckill(user,goodsVo);
+        } catch(RuntimeException e)
+        {
+            releaseUnordered(Collections.singletonList(message),e);
+            return;
+        } finally
+        {
+            orderLatency.record(System.nanoTime()-start,1);
+        }
+        //数据库中减库存失败，撤销秒杀资格，之后该商品的消息直接丢弃
+        if(created==null)
+        {
+            goodsCache.markSoldOut(goodsId);
+            stockReleaser.release(user.getUuid(),goodsId,false);
+        }
+    }
+
+    /**
+     * 批量处理秒杀业务
+     * 1 已处理过的消息id先按本地去重集合丢弃，已知售罄的商品的消息也直接丢弃；同一用户同一商品的消息只处理一次
+     * 2 已处理过的消息id、已秒杀过的用户通过一次redis批量查询过滤，剩下的按商品批量查询订单服务
+     * 3 交给秒杀服务批量秒杀：同一商品只减一次库存，订单批量写入
+     * 秒杀服务调用失败时整批都没有生效（秒杀服务在一个事务中完成），确认没有订单的消息撤销秒杀资格；
+     * 确认时失败则抛出异常，由调用方决定如何重试
+     * @param messages
+     */
+    public void receiverSkBatch(List<SkMessage> messages)
+    {
+        log.info("MQ receiver batch:{}",messages.size());
+        long start=System.nanoTime();
+        try
+        {
+            handleBatch(messages);
+        } finally
+        {
+            processingLatency.record(System.nanoTime()-start,messages.size());
+        }
+    }
+
+    private void handleBatch(List<SkMessage> messages)
+    {
+        Map<String,SkMessage> distinct=new LinkedHashMap<>();
+        for(SkMessage message:messages)
+        {
+            if(consumed.contains(message.getMessageId())||goodsCache.isSoldOut(message.getGoodsId()))
+                continue;
+            distinct.putIfAbsent(orderKey(message.getUser().getUuid(),message.getGoodsId()),message);
+        }
+        if(distinct.isEmpty())
+        {
+            log.info("丢弃重复或商品已售罄的秒杀消息:{}条",messages.size());
+            return;
+        }
+
+        //redis中已处理过该消息、已有秒杀订单的直接跳过；每条消息查询 SK_ORDER，有消息id的再查询一次去重记录
+        List<String> keys=new ArrayList<>(distinct.keySet());
+        RedisBatch batch=new RedisBatch();
+        int[] consumedIndex=new int[keys.size()];
+        for(int i=0;i<keys.size();i++)
+        {
+            batch.exists(OrderKeyPrefix.SK_ORDER,keys.get(i));
+            long messageId=distinct.get(keys.get(i)).getMessageId();
+            consumedIndex[i]=messageId==0?-1:batch.size();
+            if(messageId!=0)
+                batch.exists(consumedPrefix,SkKeyPrefix.messageKey(messageId));
+        }
+        RedisBatchResult exists=redisService.executeBatch(batch);
+
+        Map<Long,List<SkMessage>> byGoods=new LinkedHashMap<>();
+        int index=0;
+        for(int i=0;i<keys.size();i++)
+        {
+            Boolean ordered=exists.get(index++);
+            Boolean done=consumedIndex[i]<0?null:exists.get(index++);
+            if(Boolean.TRUE.equals(ordered)||Boolean.TRUE.equals(done))
+                continue;
+            SkMessage message=distinct.get(keys.get(i));
+            byGoods.computeIfAbsent(message.getGoodsId(),k -> new ArrayList<>()).add(message);
+        }
+
+        //redis中没有的再按商品查询订单服务
+        List<SkMessage> pending=new ArrayList<>();
+        for(Map.Entry<Long,List<SkMessage>> entry:byGoods.entrySet())
+        {
+            List<Long> userIds=new ArrayList<>(entry.getValue().size());
+            for(SkMessage message:entry.getValue())
+                userIds.add(message.getUser().getUuid());
+            Set<Long> ordered=new HashSet<>();
+            for(SeckillOrder order:orderService.getSeckillOrdersByGoodsId(entry.getKey(),userIds))
+                ordered.add(order.getUserId());
+            for(SkMessage message:entry.getValue())
+                if(!ordered.contains(message.getUser().getUuid()))
+                    pending.add(message);
+        }
+
+        //进行批量秒杀  1每个商品减一次库存 2批量写入订单 3 批量写入秒杀订单
+        if(!pending.isEmpty())
+        {
+            long start=System.nanoTime();
+            List<OrderInfo> created;
+            try
+            {
+                created=seckillService.seckillBatch(pending);
+            } catch(RuntimeException e)
+            {
+                releaseUnordered(pending,e);
+                created=null;
+            } finally
+            {
+                orderLatency.record(System.nanoTime()-start,1);
+            }
+            //没有生成订单的消息说明该商品在数据库中已经没有库存，撤销秒杀资格
+            for(int i=0;created!=null&&i<pending.size();i++)
+            {
+                if(created.get(i)==null)
+                {
+                    SkMessage message=pending.get(i);
+                    goodsCache.markSoldOut(message.getGoodsId());
+                    stockReleaser.release(message.getUser().getUuid(),message.getGoodsId(),false);
+                }
+            }
+        }
+        markConsumed(messages);
+    }
+
+    /**
+     * 调用秒杀服务失败（如 Dubbo 调用超时），订单可能已经写入：按商品查询订单服务，没有订单的用户撤销秒杀资格，
+     * 数据库中的库存没有扣减，退回的库存可以再次被秒杀
+     * 查询订单失败时抛出异常，消息按原来的方式重新投递
+     * @param messages
+     * @param cause 调用秒杀服务时的异常
+     */
+    private void releaseUnordered(List<SkMessage> messages,RuntimeException cause)
+    {
+        log.warn("秒杀服务调用失败，撤销没有订单的秒杀资格:{}条, {}",messages.size(),cause.toString());
+        Map<Long,List<SkMessage>> byGoods=new LinkedHashMap<>();
+        for(SkMessage message:messages)
+            byGoods.computeIfAbsent(message.getGoodsId(),k -> new ArrayList<>()).add(message);
 
+        for(Map.Entry<Long,List<SkMessage>> entry:byGoods.entrySet())
+        {
+            List<Long> userIds=new ArrayList<>(entry.getValue().size());
+            for(SkMessage message:entry.getValue())
+                userIds.add(message.getUser().getUuid());
+            Set<Long> ordered=new HashSet<>();
+            try
+            {
+                for(SeckillOrder order:orderService.getSeckillOrdersByGoodsId(entry.getKey(),userIds))
+                    ordered.add(order.getUserId());
+            } catch(RuntimeException e)
+            {
+                e.addSuppressed(cause);
+                throw e;
+            }
+            for(SkMessage message:entry.getValue())
+                if(!ordered.contains(message.getUser().getUuid()))
+                    stockReleaser.release(message.getUser().getUuid(),entry.getKey(),true);
+        }
+    }
+
+    /**
+     * 记录处理完成的消息id：本地集合，以及一次redis批量写入
+     * 写入redis失败时只记录日志，消息已经处理完成，重新投递时由订单检查兜底
+     * @param messages
+     */
+    private void markConsumed(List<SkMessage> messages)
+    {
+        RedisBatch batch=new RedisBatch();
+        for(SkMessage message:messages)
+        {
+            if(consumed.add(message.getMessageId()))
+                batch.set(consumedPrefix,SkKeyPrefix.messageKey(message.getMessageId()),true);
+        }
+        if(batch.isEmpty())
+            return;
+        try
+        {
+            redisService.executeBatch(batch);
+        } catch(RuntimeException e)
+        {
+            log.warn("记录已处理的秒杀消息失败:{}",e.toString());
+        }
+    }
+
+    public LatencyRecorder getProcessingLatency()
+    {
+        return processingLatency;
+    }
+
+    public LatencyRecorder getOrderLatency()
+    {
+        return orderLatency;
     }
 
     /**
      * 获取用户与商品的秒杀订单
-     * 秒杀成功后  写入redis 以后直接从redis从读取
+     * 秒杀成功后  写入redis 以后直接从redis从读取；redis中没有时查询订单服务并写入redis
      * @param userId
      * @param goodsId
      * @return
      */
     private SeckillOrder getSkOrderByUserIdAndGoodsId(Long userId,Long goodsId)
     {
-        SeckillOrder order=redisService.get(OrderKeyPrefix.SK_ORDER,":"+userId+"_"+goodsId,SeckillOrder.class);
-
-        if(order!=null)
-            return order;
+        return cacheLoader.get(OrderKeyPrefix.SK_ORDER,orderKey(userId,goodsId),SeckillOrder.class,
+                () -> orderService.getSeckillOrderByUserIdAndGoodsId(userId,goodsId));
+    }
 
-        return orderService.getSeckillOrderByUserIdAndGoodsId(userId,goodsId);
+    private static String orderKey(long userId,long goodsId)
+    {
+        return ":"+userId+"_"+goodsId;
     }
 }
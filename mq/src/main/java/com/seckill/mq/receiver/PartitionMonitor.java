@@ -0,0 +1,200 @@
+package com.seckill.mq.receiver;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.core.RabbitAdmin;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 秒杀分区队列的积压与延迟
+ * <p>
+ * 1. 积压（depth）为队列中待投递的消息数，每次统计时向 broker 查询
+ * 2. 延迟（lag）为最近取出的一条消息从放入发布队列到被消费者取出经过的时间，依赖发布时写入的时间戳；
+ *    队列没有积压时延迟记为0
+ * 3. 每隔 reportIntervalSeconds 秒打印一次各分区的统计，不大于0时不打印
+ */
+@Slf4j
+public class PartitionMonitor implements Closeable
+{
+    private final AmqpAdmin amqpAdmin;
+
+    /**
+     * 队列名称 -> 该分区的消费统计，按分区顺序
+     */
+    private final Map<String, Partition> partitions = new LinkedHashMap<>();
+
+    private final ScheduledExecutorService reporter;
+
+    public PartitionMonitor(AmqpAdmin amqpAdmin, List<String> queues, int reportIntervalSeconds)
+    {
+        this.amqpAdmin = amqpAdmin;
+        for (String queue : queues)
+            partitions.put(queue, new Partition());
+
+        if (reportIntervalSeconds > 0)
+        {
+            this.reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "sk-partition-monitor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reporter.scheduleWithFixedDelay(this::report, reportIntervalSeconds, reportIntervalSeconds, TimeUnit.SECONDS);
+        } else
+        {
+            this.reporter = null;
+        }
+    }
+
+    /**
+     * 消费者取出一条消息时调用
+     */
+    public void received(Message message)
+    {
+        Partition partition = partitions.get(message.getMessageProperties().getConsumerQueue());
+        if (partition == null)
+            return;
+        partition.consumed.incrementAndGet();
+        Date timestamp = message.getMessageProperties().getTimestamp();
+        if (timestamp != null)
+            partition.lagMillis.set(Math.max(0, System.currentTimeMillis() - timestamp.getTime()));
+    }
+
+    /**
+     * @return 各分区当前的统计，按分区顺序
+     */
+    public List<PartitionStats> snapshot()
+    {
+        List<PartitionStats> stats = new ArrayList<>(partitions.size());
+        for (Map.Entry<String, Partition> entry : partitions.entrySet())
+        {
+            int depth = -1;
+            int consumers = -1;
+            try
+            {
+                Properties properties = amqpAdmin.getQueueProperties(entry.getKey());
+                if (properties != null)
+                {
+                    depth = (Integer) properties.get(RabbitAdmin.QUEUE_MESSAGE_COUNT);
+                    consumers = (Integer) properties.get(RabbitAdmin.QUEUE_CONSUMER_COUNT);
+                }
+            } catch (RuntimeException e)
+            {
+                log.debug("查询队列{}失败：{}", entry.getKey(), e.toString());
+            }
+            Partition partition = entry.getValue();
+            long lag = depth == 0 ? 0 : partition.lagMillis.get();
+            stats.add(new PartitionStats(entry.getKey(), depth, consumers, partition.consumed.get(), lag));
+        }
+        return Collections.unmodifiableList(stats);
+    }
+
+    private void report()
+    {
+        try
+        {
+            for (PartitionStats stats : snapshot())
+                log.info("{}", stats);
+        } catch (RuntimeException e)
+        {
+            log.warn("统计分区队列失败：{}", e.toString());
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        if (reporter != null)
+            reporter.shutdownNow();
+    }
+
+    private static final class Partition
+    {
+        final AtomicLong consumed = new AtomicLong();
+
+        final AtomicLong lagMillis = new AtomicLong();
+    }
+
+    /**
+     * 一个分区的统计
+     */
+    public static final class PartitionStats
+    {
+        private final String queue;
+
+        private final int depth;
+
+        private final int consumers;
+
+        private final long consumed;
+
+        private final long lagMillis;
+
+        PartitionStats(String queue, int depth, int consumers, long consumed, long lagMillis)
+        {
+            this.queue = queue;
+            this.depth = depth;
+            this.consumers = consumers;
+            this.consumed = consumed;
+            this.lagMillis = lagMillis;
+        }
+
+        public String getQueue()
+        {
+            return queue;
+        }
+
+        /**
+         * @return 待投递的消息数，查询失败时为 -1
+         */
+        public int getDepth()
+        {
+            return depth;
+        }
+
+        /**
+         * @return 队列上的消费者数量，查询失败时为 -1
+         */
+        public int getConsumers()
+        {
+            return consumers;
+        }
+
+        /**
+         * @return 本节点从该分区取出的消息总数
+         */
+        public long getConsumed()
+        {
+            return consumed;
+        }
+
+        public long getLagMillis()
+        {
+            return lagMillis;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "PartitionStats{" +
+                    "queue=" + queue +
+                    ", depth=" + depth +
+                    ", consumers=" + consumers +
+                    ", consumed=" + consumed +
+                    ", lagMillis=" + lagMillis +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.seckill.mq.receiver;
+
+import com.seckill.cache.client.RedisStreamClient;
+import com.seckill.common.api.mq.vo.SkMessage;
+import com.seckill.common.api.mq.vo.SkStream;
+import com.seckill.common.codec.SkMessageCodec;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 从redis stream 消费秒杀消息（seckill.mq.transport=stream）
+ * <p>
+ * 1. 每个redis节点一个消费线程，以消费组 SkStream.CONSUMER_GROUP 中的 consumer 身份读取该节点上的 stream，
+ *    每次最多 batchSize 条，没有消息时阻塞 blockMillis
+ * 2. 开启批量消费时整批交给 MqConsumer.receiverSkBatch，失败后逐条交给 receiverSkInfo；否则直接逐条处理。
+ *    处理成功的消息确认并删除，失败的消息留在待确认列表中
+ * 3. 每隔 reclaimIntervalMillis 检查一次待确认列表：空闲超过 minIdleMillis 的消息（所属的消费者已崩溃或处理失败）
+ *    转给自己重新处理；已经投递了 maxDeliveries 次的消息记录日志后丢弃
+ * 4. 无法解码的消息直接确认丢弃
+ */
+@Slf4j
+public class RedisStreamReceiver implements Closeable
+{
+    private final List<RedisStreamClient> clients;
+
+    private final MqConsumer consumer;
+
+    private final String consumerName;
+
+    private final boolean batch;
+
+    private final int batchSize;
+
+    private final long blockMillis;
+
+    private final long reclaimIntervalMillis;
+
+    private final long minIdleMillis;
+
+    private final int maxDeliveries;
+
+    private final List<Thread> threads = new ArrayList<>();
+
+    private volatile boolean running = true;
+
+    public RedisStreamReceiver(List<RedisStreamClient> clients, MqConsumer consumer, String consumerName, boolean batch,
+                               int batchSize, long blockMillis, long reclaimIntervalMillis, long minIdleMillis, int maxDeliveries)
+    {
+        if (batchSize <= 0)
+            throw new IllegalArgumentException("batchSize must be positive");
+        this.clients = clients;
+        this.consumer = consumer;
+        this.consumerName = consumerName;
+        this.batch = batch;
+        this.batchSize = batchSize;
+        this.blockMillis = blockMillis;
+        this.reclaimIntervalMillis = reclaimIntervalMillis;
+        this.minIdleMillis = minIdleMillis;
+        this.maxDeliveries = maxDeliveries;
+        for (RedisStreamClient client : clients)
+        {
+            Thread thread = new Thread(() -> run(client), "sk-stream-" + client.getNode());
+            thread.setDaemon(true);
+            threads.add(thread);
+        }
+        log.info("redis stream 消费者 {}：{}个节点", consumerName, clients.size());
+    }
+
+    public void start()
+    {
+        for (Thread thread : threads)
+            thread.start();
+    }
+
+    private void run(RedisStreamClient client)
+    {
+        boolean groupCreated = false;
+        long nextReclaim = 0;
+        while (running)
+        {
+            try
+            {
+                if (!groupCreated)
+                {
+                    client.createGroup(SkStream.STREAM_KEY, SkStream.CONSUMER_GROUP);
+                    groupCreated = true;
+                }
+                if (System.currentTimeMillis() >= nextReclaim)
+                {
+                    reclaim(client);
+                    nextReclaim = System.currentTimeMillis() + reclaimIntervalMillis;
+                }
+                List<RedisStreamClient.Entry> entries = client.read(SkStream.STREAM_KEY, SkStream.CONSUMER_GROUP,
+                        consumerName, batchSize, blockMillis, SkStream.MESSAGE_FIELD);
+                if (!entries.isEmpty())
+                    process(client, entries);
+            } catch (RuntimeException e)
+            {
+                if (!running)
+                    break;
+                log.warn("消费 redis stream 失败（{}），稍后重试：{}", client.getNode(), e.toString());
+                pause();
+            }
+        }
+    }
+
+    /**
+     * 接管空闲的待确认消息
+     */
+    private void reclaim(RedisStreamClient client)
+    {
+        List<RedisStreamClient.Pending> pending = client.idle(SkStream.STREAM_KEY, SkStream.CONSUMER_GROUP, batchSize, minIdleMillis);
+        if (pending.isEmpty())
+            return;
+
+        List<String> dead = new ArrayList<>();
+        List<String> retry = new ArrayList<>();
+        for (RedisStreamClient.Pending entry : pending)
+        {
+            if (entry.getDeliveries() >= maxDeliveries)
+                dead.add(entry.getId());
+            else retry.add(entry.getId());
+        }
+        if (!dead.isEmpty())
+        {
+            log.error("秒杀消息已投递{}次仍未处理成功，丢弃（{}）：{}", maxDeliveries, client.getNode(), dead);
+            client.acknowledge(SkStream.STREAM_KEY, SkStream.CONSUMER_GROUP, dead);
+        }
+
+        List<RedisStreamClient.Entry> claimed = client.claim(SkStream.STREAM_KEY, SkStream.CONSUMER_GROUP, consumerName,
+                minIdleMillis, retry, SkStream.MESSAGE_FIELD);
+        if (!claimed.isEmpty())
+        {
+            log.info("接管{}条空闲的秒杀消息（{}）", claimed.size(), client.getNode());
+            process(client, claimed);
+        }
+    }
+
+    private void process(RedisStreamClient client, List<RedisStreamClient.Entry> entries)
+    {
+        List<String> done = new ArrayList<>(entries.size());
+        List<String> ids = new ArrayList<>(entries.size());
+        List<SkMessage> messages = new ArrayList<>(entries.size());
+        for (RedisStreamClient.Entry entry : entries)
+        {
+            SkMessage message = decode(entry);
+            if (message == null)
+            {
+                done.add(entry.getId());
+                continue;
+            }
+            ids.add(entry.getId());
+            messages.add(message);
+        }
+
+        boolean handled = false;
+        if (batch && messages.size() > 1)
+        {
+            try
+            {
+                consumer.receiverSkBatch(messages);
+                done.addAll(ids);
+                handled = true;
+            } catch (RuntimeException e)
+            {
+                log.warn("批量处理 redis stream 中的秒杀消息失败，逐条重试：{}", e.toString());
+            }
+        }
+        if (!handled)
+        {
+            for (int i = 0; i < messages.size(); i++)
+            {
+                try
+                {
+                    consumer.receiverSkInfo(messages.get(i));
+                    done.add(ids.get(i));
+                } catch (RuntimeException e)
+                {
+                    // 不确认，空闲超过 minIdleMillis 后重新处理
+                    log.warn("处理秒杀消息失败，稍后重试：{} {}", messages.get(i), e.toString());
+                }
+            }
+        }
+        client.acknowledge(SkStream.STREAM_KEY, SkStream.CONSUMER_GROUP, done);
+    }
+
+    private static SkMessage decode(RedisStreamClient.Entry entry)
+    {
+        if (entry.getPayload() == null)
+        {
+            log.error("redis stream 中的消息{}没有内容，丢弃", entry.getId());
+            return null;
+        }
+        try
+        {
+            return SkMessageCodec.decode(entry.getPayload());
+        } catch (IllegalArgumentException e)
+        {
+            log.error("无法解码 redis stream 中的消息{}，丢弃：{}", entry.getId(), e.getMessage());
+            return null;
+        }
+    }
+
+    private void pause()
+    {
+        try
+        {
+            Thread.sleep(1000);
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 停止读取；正在处理的一批处理完后线程退出，未确认的消息由其他节点接管或重启后重新读取
+     */
+    @Override
+    public void close()
+    {
+        running = false;
+        for (Thread thread : threads)
+        {
+            try
+            {
+                thread.join(blockMillis + 5000);
+            } catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        for (RedisStreamClient client : clients)
+            client.close();
+    }
+}
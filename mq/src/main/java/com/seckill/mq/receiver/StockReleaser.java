@@ -0,0 +1,67 @@
+package com.seckill.mq.receiver;
+
+import com.seckill.common.api.cache.RedisServiceApi;
+import com.seckill.common.api.cache.vo.GoodsKeyPrefix;
+import com.seckill.common.api.cache.vo.SkKeyPrefix;
+import com.seckill.common.api.cache.vo.StockEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.dubbo.config.annotation.Reference;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * 撤销秒杀资格：消息没有生成订单时，删除网关写入的购买标记并把库存退回redis（一次lua脚本调用，同一资格只退回一次），
+ * 用户可以重新秒杀
+ * <p>
+ * 库存与购买标记的key与网关的 StockCounter 一致，由 seckill.stock.mode、seckill.stock.stripes 决定：
+ * striped 模式下退回用户所属的库存段，其他模式退回商品的库存key（lease 模式下由网关节点重新租借）
+ */
+@Component
+@Slf4j
+public class StockReleaser
+{
+    @Reference(interfaceClass = RedisServiceApi.class)
+    RedisServiceApi redisService;
+
+    @Value("${seckill.stock.mode:redis}")
+    private String mode;
+
+    @Value("${seckill.stock.stripes:8}")
+    private int stripes;
+
+    /**
+     * @param userId  用户id
+     * @param goodsId 商品id
+     * @param restock 是否清除售罄标记（GOODS_SK_OVER）并广播 RESTOCK 事件：数据库中仍有库存时为 true，退回的库存可以再次被秒杀；
+     *                数据库中已经没有库存时为 false，商品保持售罄
+     * @return 是否退回了库存（购买标记已经不存在时返回 false）
+     */
+    public boolean release(long userId, long goodsId, boolean restock)
+    {
+        boolean released;
+        if ("striped".equals(mode))
+        {
+            int stripe = GoodsKeyPrefix.stripeOf(userId, stripes);
+            released = redisService.release(GoodsKeyPrefix.GOODS_STOCK, GoodsKeyPrefix.stripeKey(goodsId, stripe),
+                    SkKeyPrefix.SK_BUYER, SkKeyPrefix.stripedBuyerKey(userId, goodsId, stripe));
+        } else
+        {
+            released = redisService.release(GoodsKeyPrefix.GOODS_STOCK, GoodsKeyPrefix.stockKey(goodsId),
+                    SkKeyPrefix.SK_BUYER, SkKeyPrefix.buyerKey(userId, goodsId));
+        }
+        log.info("撤销秒杀资格: userId-{}, goodsId-{}, released-{}", userId, goodsId, released);
+
+        if (released && restock)
+        {
+            try
+            {
+                redisService.delete(SkKeyPrefix.GOODS_SK_OVER, "" + goodsId);
+                redisService.publish(StockEvent.CHANNEL, StockEvent.restock(goodsId).encode());
+            } catch (RuntimeException e)
+            {
+                log.warn("广播补货事件失败: goodsId-{}, {}", goodsId, e.toString());
+            }
+        }
+        return released;
+    }
+}
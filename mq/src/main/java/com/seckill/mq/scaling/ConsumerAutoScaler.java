@@ -0,0 +1,190 @@
+package com.seckill.mq.scaling;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.rabbit.core.RabbitAdmin;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+
+import java.io.Closeable;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 按队列积压、消费耗时和写订单耗时调整秒杀队列消费者的数量和 prefetch，规则见 ConsumerScalingPolicy
+ * <p>
+ * 1. 每隔 intervalMillis 查询一次队列积压，取出 MqConsumer 记录的两个平均耗时，按规则调整容器
+ * 2. 容器的 maxConcurrentConsumers 与 concurrentConsumers 一起设置，关闭容器自带的按忙闲增减消费者，只由这里调整
+ * 3. spring-amqp 不能修改运行中消费者的 basicQos，新的 prefetch 只对之后启动的消费者生效；
+ *    批量消费时 prefetch 固定为批次大小，不做调整
+ * 4. 每次的判断结果作为指标输出：seckill.mq.scaler.decisions（按 action、reason 计数），
+ *    以及消费者数量、prefetch、积压、两个耗时和基线的当前值；发生调整时同时打印日志
+ */
+@Slf4j
+public class ConsumerAutoScaler implements Closeable
+{
+    private static final String METRIC_PREFIX = "seckill.mq.scaler.";
+
+    private final Supplier<SimpleMessageListenerContainer> container;
+
+    private final AmqpAdmin amqpAdmin;
+
+    private final String queue;
+
+    private final ConsumerScalingPolicy policy;
+
+    private final LatencyRecorder processing;
+
+    private final LatencyRecorder orderWrite;
+
+    private final MeterRegistry meterRegistry;
+
+    private final ScheduledExecutorService scheduler;
+
+    private volatile int consumers;
+
+    private volatile int prefetch;
+
+    private volatile int depth = -1;
+
+    private volatile double processMillis = -1;
+
+    private volatile double orderMillis = -1;
+
+    private volatile double baselineMillis = -1;
+
+    /**
+     * 上下限是否已经设置到容器上（容器在应用启动完成后才可用）
+     */
+    private boolean applied;
+
+    /**
+     * @param container        秒杀队列的监听容器，还没有创建时返回 null
+     * @param initialConsumers 容器当前的消费者数量（spring.rabbitmq.listener.simple.concurrency）
+     * @param initialPrefetch  容器当前的 prefetch
+     */
+    public ConsumerAutoScaler(Supplier<SimpleMessageListenerContainer> container, AmqpAdmin amqpAdmin, String queue,
+                              ConsumerScalingPolicy policy, LatencyRecorder processing, LatencyRecorder orderWrite,
+                              int initialConsumers, int initialPrefetch, long intervalMillis, MeterRegistry meterRegistry)
+    {
+        this.container = container;
+        this.amqpAdmin = amqpAdmin;
+        this.queue = queue;
+        this.policy = policy;
+        this.processing = processing;
+        this.orderWrite = orderWrite;
+        this.meterRegistry = meterRegistry;
+        this.consumers = initialConsumers;
+        this.prefetch = initialPrefetch;
+
+        gauge("consumers", "秒杀队列的消费者数量", s -> s.consumers);
+        gauge("prefetch", "新启动的消费者使用的 prefetch", s -> s.prefetch);
+        gauge("queue.depth", "秒杀队列中待投递的消息数，查询失败时为 -1", s -> s.depth);
+        gauge("latency.process", "上个周期每条消息的平均消费耗时（毫秒）", s -> s.processMillis);
+        gauge("latency.order", "上个周期写订单的平均耗时（毫秒）", s -> s.orderMillis);
+        gauge("latency.baseline", "写订单耗时的基线（毫秒）", s -> s.baselineMillis);
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sk-consumer-scaler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::adjust, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        log.info("秒杀队列消费者自动伸缩：初始消费者{}，prefetch {}，每{}毫秒调整一次", consumers, prefetch, intervalMillis);
+    }
+
+    private void gauge(String name, String description, ToDoubleFunction<ConsumerAutoScaler> value)
+    {
+        Gauge.builder(METRIC_PREFIX + name, this, value)
+                .description(description)
+                .tag("queue", queue)
+                .register(meterRegistry);
+    }
+
+    private void adjust()
+    {
+        try
+        {
+            SimpleMessageListenerContainer target = container.get();
+            if (target == null || !target.isRunning())
+                return;
+            if (!applied)
+            {
+                apply(target, policy.clampConsumers(consumers), policy.clampPrefetch(prefetch));
+                applied = true;
+            }
+
+            depth = queryDepth();
+            processMillis = processing.sampleMillis();
+            orderMillis = orderWrite.sampleMillis();
+            ConsumerScalingPolicy.Decision decision = policy.decide(consumers, prefetch, depth, processMillis, orderMillis);
+            baselineMillis = decision.getBaselineMillis();
+            Counter.builder(METRIC_PREFIX + "decisions")
+                    .description("自动伸缩的判断次数，按动作和原因区分")
+                    .tag("queue", queue)
+                    .tag("action", decision.getAction().name().toLowerCase(Locale.ROOT))
+                    .tag("reason", decision.getReason().name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry)
+                    .increment();
+            if (decision.getAction() == ConsumerScalingPolicy.Action.HOLD)
+                return;
+
+            log.info("调整秒杀队列消费者（{}）：消费者 {} -> {}，prefetch {} -> {}；积压{}，消费耗时{}ms，写订单耗时{}ms，基线{}ms",
+                    decision.getReason(), consumers, decision.getConsumers(), prefetch, decision.getPrefetch(),
+                    depth, format(processMillis), format(orderMillis), format(baselineMillis));
+            apply(target, decision.getConsumers(), decision.getPrefetch());
+        } catch (RuntimeException e)
+        {
+            log.warn("调整秒杀队列消费者失败：{}", e.toString());
+        }
+    }
+
+    private void apply(SimpleMessageListenerContainer target, int newConsumers, int newPrefetch)
+    {
+        target.setPrefetchCount(newPrefetch);
+        prefetch = newPrefetch;
+        // concurrentConsumers 不能超过 maxConcurrentConsumers：增加时先放宽上限，减少时后收紧
+        if (newConsumers >= consumers)
+        {
+            target.setMaxConcurrentConsumers(newConsumers);
+            target.setConcurrentConsumers(newConsumers);
+        } else
+        {
+            target.setConcurrentConsumers(newConsumers);
+            target.setMaxConcurrentConsumers(newConsumers);
+        }
+        consumers = newConsumers;
+    }
+
+    private int queryDepth()
+    {
+        try
+        {
+            Properties properties = amqpAdmin.getQueueProperties(queue);
+            if (properties != null)
+                return (Integer) properties.get(RabbitAdmin.QUEUE_MESSAGE_COUNT);
+        } catch (RuntimeException e)
+        {
+            log.debug("查询队列{}失败：{}", queue, e.toString());
+        }
+        return -1;
+    }
+
+    private static String format(double millis)
+    {
+        return millis < 0 ? "-" : String.format(Locale.ROOT, "%.1f", millis);
+    }
+
+    @Override
+    public void close()
+    {
+        scheduler.shutdownNow();
+    }
+}
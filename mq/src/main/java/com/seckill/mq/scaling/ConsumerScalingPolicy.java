@@ -0,0 +1,207 @@
+package com.seckill.mq.scaling;
+
+/**
+ * 秒杀队列消费者数量和 prefetch 的调整规则（AIMD，以写订单耗时的梯度判断数据库是否过载）
+ * <p>
+ * 1. 写订单耗时超过基线的 tolerance 倍：数据库已经过载，消费者数量乘以 decreaseFactor，prefetch 减半（乘性减）
+ * 2. 否则队列有积压、且按当前的消费耗时一个周期内消费不完：消费者加一，已经到上限时 prefetch 加倍（加性增）；
+ *    还没有消费耗时的统计时，积压超过所有消费者 prefetch 之和即视为消费不完
+ * 3. 否则队列为空：消费者减一，prefetch 减半，空闲时逐步释放连接和数据库压力
+ * 4. 其他情况保持不变
+ * <p>
+ * 基线为写订单耗时的历史最小值，每个周期最多上浮 BASELINE_DRIFT，数据库整体变慢之后基线会跟上，不会一直判定为过载。
+ * 数量都限制在配置的上下限之内；队列积压查询失败（-1）时只按耗时判断
+ */
+public class ConsumerScalingPolicy
+{
+    /**
+     * 基线每个周期最多上浮的比例
+     */
+    static final double BASELINE_DRIFT = 0.02;
+
+    public enum Action
+    {
+        UP, DOWN, HOLD
+    }
+
+    public enum Reason
+    {
+        /**
+         * 写订单耗时超过基线的 tolerance 倍
+         */
+        LATENCY,
+        /**
+         * 队列积压，当前的消费者一个周期内消费不完
+         */
+        BACKLOG,
+        /**
+         * 队列为空
+         */
+        IDLE,
+        /**
+         * 有积压但消费得过来，或者没有统计数据
+         */
+        STEADY
+    }
+
+    private final int minConsumers;
+
+    private final int maxConsumers;
+
+    private final int minPrefetch;
+
+    private final int maxPrefetch;
+
+    private final double tolerance;
+
+    private final double decreaseFactor;
+
+    private final long intervalMillis;
+
+    private double baselineMillis = -1;
+
+    public ConsumerScalingPolicy(int minConsumers, int maxConsumers, int minPrefetch, int maxPrefetch,
+                                 double tolerance, double decreaseFactor, long intervalMillis)
+    {
+        if (minConsumers <= 0 || maxConsumers < minConsumers)
+            throw new IllegalArgumentException("invalid consumer bounds: " + minConsumers + "~" + maxConsumers);
+        if (minPrefetch <= 0 || maxPrefetch < minPrefetch)
+            throw new IllegalArgumentException("invalid prefetch bounds: " + minPrefetch + "~" + maxPrefetch);
+        if (tolerance <= 1 || decreaseFactor <= 0 || decreaseFactor >= 1)
+            throw new IllegalArgumentException("tolerance must be > 1 and decreaseFactor in (0, 1)");
+        this.minConsumers = minConsumers;
+        this.maxConsumers = maxConsumers;
+        this.minPrefetch = minPrefetch;
+        this.maxPrefetch = maxPrefetch;
+        this.tolerance = tolerance;
+        this.decreaseFactor = decreaseFactor;
+        this.intervalMillis = intervalMillis;
+    }
+
+    public int clampConsumers(int consumers)
+    {
+        return Math.max(minConsumers, Math.min(maxConsumers, consumers));
+    }
+
+    public int clampPrefetch(int prefetch)
+    {
+        return Math.max(minPrefetch, Math.min(maxPrefetch, prefetch));
+    }
+
+    /**
+     * @param consumers     当前的消费者数量
+     * @param prefetch      当前的 prefetch
+     * @param depth         队列中待投递的消息数，未知时为 -1
+     * @param processMillis 本周期每条消息的平均消费耗时，没有数据时为 -1
+     * @param orderMillis   本周期写订单（秒杀服务调用）的平均耗时，没有数据时为 -1
+     */
+    public Decision decide(int consumers, int prefetch, int depth, double processMillis, double orderMillis)
+    {
+        if (orderMillis > 0)
+            baselineMillis = baselineMillis <= 0 ? orderMillis : Math.min(orderMillis, baselineMillis * (1 + BASELINE_DRIFT));
+
+        int newConsumers = consumers;
+        int newPrefetch = prefetch;
+        Reason reason;
+        if (orderMillis > 0 && orderMillis > baselineMillis * tolerance)
+        {
+            reason = Reason.LATENCY;
+            newConsumers = clampConsumers((int) (consumers * decreaseFactor));
+            newPrefetch = clampPrefetch(prefetch / 2);
+        } else if (depth > 0 && backlogged(consumers, prefetch, depth, processMillis))
+        {
+            reason = Reason.BACKLOG;
+            if (consumers < maxConsumers)
+                newConsumers = clampConsumers(consumers + 1);
+            else newPrefetch = clampPrefetch(prefetch * 2);
+        } else if (depth == 0)
+        {
+            reason = Reason.IDLE;
+            newConsumers = clampConsumers(consumers - 1);
+            newPrefetch = clampPrefetch(prefetch / 2);
+        } else
+        {
+            reason = Reason.STEADY;
+        }
+
+        Action action;
+        if (newConsumers > consumers || (newConsumers == consumers && newPrefetch > prefetch))
+            action = Action.UP;
+        else if (newConsumers < consumers || newPrefetch < prefetch)
+            action = Action.DOWN;
+        else action = Action.HOLD;
+        return new Decision(action, reason, newConsumers, newPrefetch, baselineMillis);
+    }
+
+    private boolean backlogged(int consumers, int prefetch, int depth, double processMillis)
+    {
+        if (processMillis <= 0)
+            return depth > (long) consumers * prefetch;
+        return depth * processMillis / consumers > intervalMillis;
+    }
+
+    /**
+     * 一次调整的结果
+     */
+    public static final class Decision
+    {
+        private final Action action;
+
+        private final Reason reason;
+
+        private final int consumers;
+
+        private final int prefetch;
+
+        private final double baselineMillis;
+
+        Decision(Action action, Reason reason, int consumers, int prefetch, double baselineMillis)
+        {
+            this.action = action;
+            this.reason = reason;
+            this.consumers = consumers;
+            this.prefetch = prefetch;
+            this.baselineMillis = baselineMillis;
+        }
+
+        public Action getAction()
+        {
+            return action;
+        }
+
+        public Reason getReason()
+        {
+            return reason;
+        }
+
+        public int getConsumers()
+        {
+            return consumers;
+        }
+
+        public int getPrefetch()
+        {
+            return prefetch;
+        }
+
+        /**
+         * @return 写订单耗时的基线（毫秒），还没有数据时为 -1
+         */
+        public double getBaselineMillis()
+        {
+            return baselineMillis;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Decision{" +
+                    "action=" + action +
+                    ", reason=" + reason +
+                    ", consumers=" + consumers +
+                    ", prefetch=" + prefetch +
+                    ", baselineMillis=" + baselineMillis +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.seckill.mq.scaling;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 统计一段时间内的平均耗时，由 ConsumerAutoScaler 定期取出并清零
+ * <p>
+ * 记录不加锁；取出时两个计数分别清零，与并发的记录之间可能错开一次，对平均值的影响可以忽略
+ */
+public class LatencyRecorder
+{
+    private final LongAdder totalNanos = new LongAdder();
+
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * @param nanos 本次耗时（纳秒）
+     * @param n     本次处理的数量，平均值按数量计算
+     */
+    public void record(long nanos, int n)
+    {
+        totalNanos.add(nanos);
+        count.add(n);
+    }
+
+    /**
+     * @return 上次调用以来的平均耗时（毫秒），没有记录时返回 -1
+     */
+    public double sampleMillis()
+    {
+        long n = count.sumThenReset();
+        long nanos = totalNanos.sumThenReset();
+        if (n <= 0)
+            return -1;
+        return (double) nanos / n / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
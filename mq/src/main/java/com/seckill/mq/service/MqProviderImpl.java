@@ -2,51 +2,97 @@ package com.seckill.mq.service;
 
 import com.seckill.common.api.mq.MqProviderApi;
 import com.seckill.common.api.mq.vo.SkMessage;
-import com.seckill.mq.config.MQConfig;
+import com.seckill.common.codec.SkMessageCodec;
+import com.seckill.common.util.UUIDUtil;
+import com.seckill.mq.journal.LocalJournal;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.dubbo.config.annotation.Service;
-import org.springframework.amqp.rabbit.connection.CorrelationData;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 
-import java.util.UUID;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
 
+/**
+ * 消息只放入 SkMessagePublisher 的发布队列，由发布线程批量发出并处理 broker 的确认
+ * <p>
+ * 1. seckill.mq.transport=local 时消息只追加到本地消息日志，不经过 RabbitMQ
+ * 2. 开启了溢出（seckill.mq.spill.enabled）时，broker 不可用或发布队列已满的消息追加到本地消息日志，稍后重新发布
+ * 3. seckill.mq.transport=stream 时消息追加到redis stream，见 StreamConfig
+ * 4. 没有消息id的消息（旧版本网关发出的）在这里补上，之后的重发、溢出重新发布都沿用同一个id
+ */
 @Service(interfaceClass = MqProviderApi.class)
 @Slf4j
-public class MqProviderImpl implements MqProviderApi, RabbitTemplate.ConfirmCallback
+public class MqProviderImpl implements MqProviderApi
 {
-
     @Autowired
-    private RabbitTemplate rabbitTemplate;
-    public MqProviderImpl(RabbitTemplate rabbitTemplate)
-    {
-        this.rabbitTemplate=rabbitTemplate;
-        rabbitTemplate.setConfirmCallback(this);
-    }
+    private SkMessagePublisher publisher;
 
     /**
-     * ack机制
-     * @param correlationData
-     * @param ack
-     * @param cause
+     * 本地模式和开启溢出时才有
      */
+    @Autowired(required = false)
+    private LocalJournal journal;
+
+    /**
+     * 只在 stream 模式下有
+     */
+    @Autowired(required = false)
+    private StreamSkPublisher streamPublisher;
+
+    @Value("${seckill.mq.transport:rabbit}")
+    private String transport;
+
     @Override
-    public void confirm(CorrelationData correlationData, boolean ack, String cause)
+    public void sendSkMessage(SkMessage message)
     {
-        log.info("SkMessage UUID:{}",correlationData.getId());
-        if(ack)
-            log.info("消息消费成功");
-        else log.debug("消息消费失败");
-
-        if(cause!=null)
-            log.info("CallBackConfig Cause:{}",cause);
+        log.debug("MQ send message:{}",message);
+        send(message);
     }
 
     @Override
-    public void sendSkMessage(SkMessage message)
+    public void sendSkMessages(List<SkMessage> messages)
+    {
+        log.debug("MQ send messages:{}",messages.size());
+        for (SkMessage message : messages)
+            assignId(message);
+        if (journal == null && streamPublisher == null)
+        {
+            publisher.publishAll(messages);
+            return;
+        }
+        for (SkMessage message : messages)
+            send(message);
+    }
+
+    private void send(SkMessage message)
+    {
+        assignId(message);
+        if (streamPublisher != null)
+        {
+            streamPublisher.publish(message);
+            return;
+        }
+        if (journal == null)
+        {
+            publisher.publish(message);
+            return;
+        }
+        if (!"local".equals(transport) && publisher.isAvailable() && publisher.tryPublish(message))
+            return;
+        try
+        {
+            journal.append(SkMessageCodec.encode(message));
+        } catch (IOException e)
+        {
+            throw new UncheckedIOException("append seckill message to local journal failed", e);
+        }
+    }
+
+    private static void assignId(SkMessage message)
     {
-        log.info("MQ send message:{}"+message);
-        CorrelationData correlationData=new CorrelationData(UUID.randomUUID().toString());
-        rabbitTemplate.convertAndSend(MQConfig.SECKILL_QUEUE,message,correlationData);
+        if (message.getMessageId() == 0)
+            message.setMessageId(UUIDUtil.messageId());
     }
 }
@@ -0,0 +1,484 @@
+package com.seckill.mq.service;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmListener;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+import com.seckill.common.api.mq.vo.SkMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.support.DefaultMessagePropertiesConverter;
+import org.springframework.amqp.rabbit.support.MessagePropertiesConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 秒杀消息的异步批量发布
+ * <p>
+ * 1. 调用方只把消息放入有界队列，不等待 broker；队列满时等待 enqueueTimeoutMillis 后拒绝
+ * 2. 专门的发布线程在独立的连接和 channel 上工作（publisher confirms），每次取出至多 batchSize 条连续发出
+ * 3. 已发出未确认的消息按 delivery tag 记录在滑动窗口中，窗口满（window 条）时发布线程等待确认，不会无限堆积
+ * 4. broker nack 的消息，以及连接断开时未确认的消息，重新发布，超过 maxAttempts 次后交给 giveUpHandler
+ *    （开启溢出时重新写入本地消息日志），没有 giveUpHandler 时放弃并记录日志；
+ *    重新发布可能产生重复消息，由消费者按用户和商品去重
+ * 5. tryPublishConfirmed 返回的 future 在 broker 确认后完成，调用方据此决定何时提交自己的进度
+ * 6. 消息带有放入队列时的时间戳，消费端据此计算延迟
+ */
+@Slf4j
+public class SkMessagePublisher implements Closeable
+{
+    private final ConnectionFactory connectionFactory;
+
+    private final MessageConverter messageConverter;
+
+    private final MessagePropertiesConverter propertiesConverter = new DefaultMessagePropertiesConverter();
+
+    private final String exchange;
+
+    private final Function<SkMessage, String> router;
+
+    private final int batchSize;
+
+    private final int maxAttempts;
+
+    private final long enqueueTimeoutMillis;
+
+    private final BlockingQueue<Pending> queue;
+
+    /**
+     * 需要重新发布的消息，优先于 queue 发布；由 confirm 回调放入，不能阻塞，因此不设上限（不超过窗口大小）
+     */
+    private final Queue<Pending> retries = new ConcurrentLinkedQueue<>();
+
+    /**
+     * delivery tag -> 已发出、未确认的消息
+     */
+    private final ConcurrentNavigableMap<Long, Pending> outstanding = new ConcurrentSkipListMap<>();
+
+    private final Semaphore window;
+
+    private final Thread publisher;
+
+    private volatile boolean running = true;
+
+    /**
+     * 最近一次发布是否成功；发布失败（如 broker 不可达）后为 false，直到重新连接并发出消息
+     */
+    private volatile boolean available = true;
+
+    /**
+     * 发布 maxAttempts 次均未被确认的消息交给它处理，为 null 时放弃
+     */
+    private volatile Consumer<SkMessage> giveUpHandler;
+
+    private Connection connection;
+
+    private Channel channel;
+
+    /**
+     * @param connectionFactory    用于创建发布专用的连接
+     * @param messageConverter     消息转换器，与消费端使用的一致
+     * @param exchange             交换机，默认交换机为空字符串
+     * @param router               消息的 routing key
+     * @param queueCapacity        等待发布的消息数量上限
+     * @param batchSize            发布线程每次最多连续发出的消息数量
+     * @param window               已发出未确认的消息数量上限
+     * @param maxAttempts          每条消息最多发布的次数
+     * @param enqueueTimeoutMillis 队列满时调用方最多等待的时间
+     */
+    public SkMessagePublisher(ConnectionFactory connectionFactory, MessageConverter messageConverter,
+                              String exchange, Function<SkMessage, String> router,
+                              int queueCapacity, int batchSize, int window, int maxAttempts, long enqueueTimeoutMillis)
+    {
+        if (queueCapacity <= 0 || batchSize <= 0 || window <= 0 || maxAttempts <= 0)
+            throw new IllegalArgumentException("queueCapacity, batchSize, window and maxAttempts must be positive");
+        this.connectionFactory = connectionFactory;
+        this.messageConverter = messageConverter;
+        this.exchange = exchange;
+        this.router = router;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.enqueueTimeoutMillis = enqueueTimeoutMillis;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.window = new Semaphore(window);
+
+        this.publisher = new Thread(this::run, "sk-message-publisher");
+        this.publisher.setDaemon(true);
+        this.publisher.start();
+    }
+
+    /**
+     * 在调用线程上完成转换，然后放入发布队列
+     *
+     * @throws IllegalStateException 队列已满或发布器已关闭
+     * @throws org.springframework.amqp.support.converter.MessageConversionException 消息无法转换
+     */
+    public void publish(SkMessage message)
+    {
+        if (!running)
+            throw new IllegalStateException("publisher is closed");
+        Pending pending = pending(message, null);
+        try
+        {
+            if (!queue.offer(pending, enqueueTimeoutMillis, TimeUnit.MILLISECONDS))
+                throw new IllegalStateException("seckill message queue is full");
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while enqueuing seckill message", e);
+        }
+    }
+
+    /**
+     * 与 publish 相同，但队列已满时不等待
+     *
+     * @return 放入队列返回 true，队列已满或发布器已关闭返回 false
+     */
+    public boolean tryPublish(SkMessage message)
+    {
+        return running && queue.offer(pending(message, null));
+    }
+
+    /**
+     * 与 tryPublish 相同，并跟踪 broker 的确认
+     *
+     * @return 在 broker 确认该消息、或发布 maxAttempts 次后已交给 giveUpHandler 时完成的 future，
+     * 放弃时异常完成；队列已满或发布器已关闭返回 null
+     */
+    public CompletableFuture<Void> tryPublishConfirmed(SkMessage message)
+    {
+        CompletableFuture<Void> confirmed = new CompletableFuture<>();
+        return running && queue.offer(pending(message, confirmed)) ? confirmed : null;
+    }
+
+    /**
+     * @param giveUpHandler 处理发布 maxAttempts 次均未被确认的消息，在确认回调的线程上调用
+     */
+    public void setGiveUpHandler(Consumer<SkMessage> giveUpHandler)
+    {
+        this.giveUpHandler = giveUpHandler;
+    }
+
+    private Pending pending(SkMessage message, CompletableFuture<Void> confirmed)
+    {
+        MessageProperties messageProperties = new MessageProperties();
+        messageProperties.setTimestamp(new Date());
+        Message converted = messageConverter.toMessage(message, messageProperties);
+        AMQP.BasicProperties properties = propertiesConverter.fromMessageProperties(converted.getMessageProperties(), "UTF-8");
+        return new Pending(message, router.apply(message), converted.getBody(), properties, confirmed);
+    }
+
+    /**
+     * @return broker 当前是否可用：最近一次发布没有失败
+     */
+    public boolean isAvailable()
+    {
+        return available;
+    }
+
+    /**
+     * 依次放入发布队列，某一条失败时之前的消息已经放入
+     *
+     * @throws IllegalStateException 队列已满或发布器已关闭
+     */
+    public void publishAll(List<SkMessage> messages)
+    {
+        for (SkMessage message : messages)
+            publish(message);
+    }
+
+    /**
+     * @return 等待发布和已发出未确认的消息数量
+     */
+    public int backlog()
+    {
+        return queue.size() + retries.size() + outstanding.size();
+    }
+
+    private void run()
+    {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty() || !retries.isEmpty())
+        {
+            int sent = 0;
+            try
+            {
+                nextBatch(batch);
+                if (batch.isEmpty())
+                    continue;
+                Channel current = openChannel();
+                for (Pending pending : batch)
+                {
+                    send(current, pending);
+                    sent++;
+                }
+                available = true;
+            } catch (InterruptedException e)
+            {
+                for (int i = sent; i < batch.size(); i++)
+                    retry(batch.get(i), false);
+                if (!running)
+                    break;
+            } catch (Exception e)
+            {
+                log.warn("发布秒杀消息失败，稍后重试：{}", e.toString());
+                available = false;
+                // 尚未发出的消息，以及连接上未确认的消息，都重新发布
+                for (int i = sent; i < batch.size(); i++)
+                    retry(batch.get(i), false);
+                resetChannel();
+                pause();
+            } finally
+            {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 先取需要重新发布的消息，再从队列中取，没有消息时最多等待 100ms
+     */
+    private void nextBatch(List<Pending> batch) throws InterruptedException
+    {
+        Pending pending;
+        while (batch.size() < batchSize && (pending = retries.poll()) != null)
+            batch.add(pending);
+        if (batch.isEmpty())
+        {
+            pending = queue.poll(100, TimeUnit.MILLISECONDS);
+            if (pending == null)
+                return;
+            batch.add(pending);
+        }
+        queue.drainTo(batch, batchSize - batch.size());
+    }
+
+    private void send(Channel current, Pending pending) throws Exception
+    {
+        // 窗口满时等待确认；通道断开后不会再有确认，需要重建通道
+        while (!window.tryAcquire(100, TimeUnit.MILLISECONDS))
+        {
+            if (!current.isOpen())
+                throw new IOException("publish channel is closed");
+        }
+        long deliveryTag = current.getNextPublishSeqNo();
+        pending.attempts++;
+        outstanding.put(deliveryTag, pending);
+        try
+        {
+            current.basicPublish(exchange, pending.routingKey, pending.properties, pending.body);
+        } catch (Exception e)
+        {
+            // 没有发出去，不计入重试次数
+            if (outstanding.remove(deliveryTag) != null)
+            {
+                window.release();
+                pending.attempts--;
+            }
+            throw e;
+        }
+    }
+
+    private synchronized Channel openChannel() throws Exception
+    {
+        if (channel != null && channel.isOpen())
+            return channel;
+        resetChannel();
+        connection = connectionFactory.newConnection("seckill-publisher");
+        channel = connection.createChannel();
+        channel.confirmSelect();
+        channel.addConfirmListener(new ConfirmListener()
+        {
+            @Override
+            public void handleAck(long deliveryTag, boolean multiple)
+            {
+                settle(deliveryTag, multiple, true);
+            }
+
+            @Override
+            public void handleNack(long deliveryTag, boolean multiple)
+            {
+                settle(deliveryTag, multiple, false);
+            }
+        });
+        log.info("秒杀消息发布通道已打开");
+        return channel;
+    }
+
+    /**
+     * 关闭当前的连接，未确认的消息全部重新发布（新通道的 delivery tag 从1重新开始）
+     */
+    private synchronized void resetChannel()
+    {
+        Map.Entry<Long, Pending> entry;
+        while ((entry = outstanding.pollFirstEntry()) != null)
+        {
+            window.release();
+            retry(entry.getValue(), true);
+        }
+        if (connection != null)
+        {
+            try
+            {
+                connection.close();
+            } catch (Exception e)
+            {
+                log.debug("关闭发布连接失败：{}", e.toString());
+            }
+        }
+        connection = null;
+        channel = null;
+    }
+
+    /**
+     * 处理 broker 的确认，multiple 为 true 时确认 deliveryTag 及之前的所有消息
+     */
+    private void settle(long deliveryTag, boolean multiple, boolean ack)
+    {
+        if (!multiple)
+        {
+            Pending pending = outstanding.remove(deliveryTag);
+            if (pending != null)
+                settled(pending, ack);
+            return;
+        }
+        Map.Entry<Long, Pending> entry;
+        while ((entry = outstanding.firstEntry()) != null && entry.getKey() <= deliveryTag)
+        {
+            if (outstanding.remove(entry.getKey(), entry.getValue()))
+                settled(entry.getValue(), ack);
+        }
+    }
+
+    private void settled(Pending pending, boolean ack)
+    {
+        window.release();
+        if (!ack)
+            retry(pending, true);
+        else if (pending.confirmed != null)
+            pending.confirmed.complete(null);
+    }
+
+    /**
+     * @param sent 是否已经发出过（计入了发布次数）
+     */
+    private void retry(Pending pending, boolean sent)
+    {
+        if (sent && pending.attempts >= maxAttempts)
+        {
+            giveUp(pending);
+            return;
+        }
+        retries.add(pending);
+    }
+
+    /**
+     * 交给 giveUpHandler，没有 giveUpHandler 或处理失败时放弃
+     */
+    private void giveUp(Pending pending)
+    {
+        Consumer<SkMessage> handler = giveUpHandler;
+        if (handler == null)
+        {
+            log.error("秒杀消息发布{}次均未被确认，放弃：{}", pending.attempts, pending.message);
+            if (pending.confirmed != null)
+                pending.confirmed.completeExceptionally(new IllegalStateException("not confirmed after " + pending.attempts + " attempts"));
+            return;
+        }
+        try
+        {
+            handler.accept(pending.message);
+            log.warn("秒杀消息发布{}次均未被确认，已交给 giveUpHandler：{}", pending.attempts, pending.message);
+            if (pending.confirmed != null)
+                pending.confirmed.complete(null);
+        } catch (RuntimeException e)
+        {
+            log.error("秒杀消息发布{}次均未被确认，giveUpHandler 处理失败，放弃：{}", pending.attempts, pending.message, e);
+            if (pending.confirmed != null)
+                pending.confirmed.completeExceptionally(e);
+        }
+    }
+
+    private void pause()
+    {
+        try
+        {
+            Thread.sleep(1000);
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 停止接收新消息，等待已接收的消息发出并确认，最多等待 10 秒
+     */
+    @Override
+    public void close()
+    {
+        running = false;
+        try
+        {
+            publisher.join(10_000);
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (!outstanding.isEmpty() && System.currentTimeMillis() < deadline)
+                Thread.sleep(10);
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        publisher.interrupt();
+        if (backlog() > 0)
+            log.warn("关闭时仍有{}条秒杀消息没有确认", backlog());
+        resetChannel();
+    }
+
+    private static final class Pending
+    {
+        final SkMessage message;
+
+        final String routingKey;
+
+        final byte[] body;
+
+        final AMQP.BasicProperties properties;
+
+        /**
+         * broker 确认时完成，不需要跟踪确认时为 null
+         */
+        final CompletableFuture<Void> confirmed;
+
+        /**
+         * 已发布的次数
+         */
+        int attempts;
+
+        Pending(SkMessage message, String routingKey, byte[] body, AMQP.BasicProperties properties, CompletableFuture<Void> confirmed)
+        {
+            this.message = message;
+            this.routingKey = routingKey;
+            this.body = body;
+            this.properties = properties;
+            this.confirmed = confirmed;
+        }
+    }
+}
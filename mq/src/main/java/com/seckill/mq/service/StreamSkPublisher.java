@@ -0,0 +1,41 @@
+package com.seckill.mq.service;
+
+import com.seckill.cache.client.ConsistentHashRouter;
+import com.seckill.cache.client.RedisStreamClient;
+import com.seckill.common.api.cache.vo.GoodsKeyPrefix;
+import com.seckill.common.api.mq.vo.SkMessage;
+import com.seckill.common.api.mq.vo.SkStream;
+import com.seckill.common.codec.SkMessageCodec;
+
+import java.io.Closeable;
+
+/**
+ * 把秒杀消息追加到redis stream（seckill.mq.transport=stream）
+ * <p>
+ * 消息追加到该商品库存所在节点上的 stream，与网关通过 admitAndEnqueue 入队的消息在同一条 stream 中
+ */
+public class StreamSkPublisher implements Closeable
+{
+    private final ConsistentHashRouter<RedisStreamClient> router;
+
+    public StreamSkPublisher(ConsistentHashRouter<RedisStreamClient> router)
+    {
+        this.router = router;
+    }
+
+    /**
+     * @return 消息id
+     */
+    public String publish(SkMessage message)
+    {
+        String stockKey = GoodsKeyPrefix.GOODS_STOCK.getPrefix() + GoodsKeyPrefix.stockKey(message.getGoodsId());
+        return router.route(stockKey).add(SkStream.STREAM_KEY, SkStream.MESSAGE_FIELD, SkMessageCodec.encode(message));
+    }
+
+    @Override
+    public void close()
+    {
+        for (RedisStreamClient client : router.getNodes())
+            client.close();
+    }
+}
@@ -0,0 +1,145 @@
+package com.seckill.mq.journal;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 本地消息日志的读写、滚动、重启后的恢复以及段的删除
+ */
+public class LocalJournalTest
+{
+    private static final int SEGMENT_BYTES = 64;
+
+    private File dir;
+
+    private LocalJournal journal;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        dir = Files.createTempDirectory("journal").toFile();
+        journal = new LocalJournal(dir, SEGMENT_BYTES, 0);
+    }
+
+    @After
+    public void tearDown()
+    {
+        journal.close();
+        File[] files = dir.listFiles();
+        if (files != null)
+            for (File file : files)
+                file.delete();
+        dir.delete();
+    }
+
+    @Test
+    public void readsRecordsInOrder() throws IOException
+    {
+        long first = journal.append(bytes("a"));
+        long second = journal.append(bytes("bb"));
+
+        List<JournalRecord> records = journal.read(first, 10);
+        assertEquals(2, records.size());
+        assertEquals("a", text(records.get(0)));
+        assertEquals(second, records.get(0).getNextOffset());
+        assertEquals("bb", text(records.get(1)));
+        assertEquals(journal.endOffset(), records.get(1).getNextOffset());
+
+        assertEquals(1, journal.read(first, 1).size());
+        assertTrue(journal.read(journal.endOffset(), 10).isEmpty());
+    }
+
+    @Test
+    public void rollsToNewSegment() throws IOException
+    {
+        // 每条记录 8 + 20 字节，一段放得下两条
+        for (int i = 0; i < 5; i++)
+            journal.append(bytes(String.format("%020d", i)));
+
+        assertEquals(3, journal.segmentBases().size());
+        List<JournalRecord> records = journal.read(0, 10);
+        assertEquals(5, records.size());
+        for (int i = 0; i < 5; i++)
+            assertEquals(String.format("%020d", i), text(records.get(i)));
+    }
+
+    @Test
+    public void resumesFromCommittedOffsetAfterReopen() throws IOException
+    {
+        for (int i = 0; i < 3; i++)
+            journal.append(bytes("m" + i));
+        List<JournalRecord> records = journal.read(journal.committed("c"), 10);
+        journal.commit("c", records.get(0).getNextOffset());
+        journal.close();
+
+        journal = new LocalJournal(dir, SEGMENT_BYTES, 0);
+        records = journal.read(journal.committed("c"), 10);
+        assertEquals(2, records.size());
+        assertEquals("m1", text(records.get(0)));
+        assertEquals("m2", text(records.get(1)));
+
+        journal.append(bytes("m3"));
+        assertEquals(3, journal.read(journal.committed("c"), 10).size());
+    }
+
+    @Test
+    public void discardsTornRecordOnReopen() throws IOException
+    {
+        journal.append(bytes("ok"));
+        long torn = journal.append(bytes("torn"));
+        journal.close();
+
+        // 模拟写入内容后、CRC 写完前崩溃
+        try (RandomAccessFile file = new RandomAccessFile(new File(dir, String.format("%020d.log", 0)), "rw"))
+        {
+            file.seek(torn + 4);
+            file.writeInt(0);
+        }
+
+        journal = new LocalJournal(dir, SEGMENT_BYTES, 0);
+        assertEquals(torn, journal.endOffset());
+        journal.append(bytes("next"));
+        List<JournalRecord> records = journal.read(0, 10);
+        assertEquals(2, records.size());
+        assertEquals("ok", text(records.get(0)));
+        assertEquals("next", text(records.get(1)));
+    }
+
+    @Test
+    public void deletesSegmentsConsumedByAllConsumers() throws IOException
+    {
+        for (int i = 0; i < 5; i++)
+            journal.append(bytes(String.format("%020d", i)));
+        List<JournalRecord> records = journal.read(0, 10);
+        journal.committed("b");
+
+        // b 还没有消费，不删除
+        journal.commit("a", records.get(4).getNextOffset());
+        assertEquals(3, journal.segmentBases().size());
+
+        journal.commit("b", records.get(2).getOffset());
+        assertEquals(2, journal.segmentBases().size());
+        assertEquals(3, journal.read(journal.committed("b"), 10).size());
+        assertEquals(0, journal.lag("a"));
+    }
+
+    private static byte[] bytes(String text)
+    {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(JournalRecord record)
+    {
+        return new String(record.getPayload(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,123 @@
+package com.seckill.mq.receiver;
+
+import com.seckill.common.api.cache.vo.StockEvent;
+import com.seckill.common.api.goods.vo.GoodsVo;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+
+import static org.junit.Assert.*;
+
+/**
+ * 商品快照：有效期内不访问商品服务、过期和库存事件后重新加载、售罄判断，以及加载与失效并发时的版本检查
+ */
+public class GoodsSnapshotCacheTest
+{
+    private final AtomicLong now = new AtomicLong(1_000_000L);
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private volatile int stock = 10;
+
+    private final LongFunction<GoodsVo> loader = goodsId -> {
+        loads.incrementAndGet();
+        return goodsId == 404 ? null : goods(goodsId, stock);
+    };
+
+    private final GoodsSnapshotCache cache = new GoodsSnapshotCache(loader, 1000, now::get);
+
+    @Test
+    public void snapshotIsReusedUntilItExpires()
+    {
+        assertEquals(10, (int) cache.get(1).getStockCount());
+        stock = 7;
+        now.addAndGet(999);
+        assertEquals(10, (int) cache.get(1).getStockCount());
+        assertEquals(1, loads.get());
+
+        now.addAndGet(1);
+        assertEquals(7, (int) cache.get(1).getStockCount());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void unknownGoodsAreNotCached()
+    {
+        assertNull(cache.get(404));
+        assertNull(cache.get(404));
+        assertEquals(2, loads.get());
+        assertFalse(cache.isSoldOut(404));
+    }
+
+    @Test
+    public void soldOutComesFromLoadedStockOrMarkSoldOut()
+    {
+        assertFalse(cache.isSoldOut(1));
+        cache.get(1);
+        assertFalse(cache.isSoldOut(1));
+        cache.markSoldOut(1);
+        assertTrue(cache.isSoldOut(1));
+
+        stock = 0;
+        cache.get(2);
+        assertTrue(cache.isSoldOut(2));
+
+        // 过期之后不再认为售罄，由下一次加载决定
+        now.addAndGet(1000);
+        assertFalse(cache.isSoldOut(1));
+        assertFalse(cache.isSoldOut(2));
+    }
+
+    @Test
+    public void stockEventInvalidatesTheSnapshot()
+    {
+        cache.get(1);
+        cache.markSoldOut(1);
+        stock = 5;
+
+        // 网关的 SOLD_OUT 只使快照失效，是否售罄以重新加载的库存为准
+        cache.onMessage(StockEvent.soldOut(1).encode());
+        assertFalse(cache.isSoldOut(1));
+        assertEquals(5, (int) cache.get(1).getStockCount());
+        assertEquals(2, loads.get());
+
+        cache.onMessage("garbage");
+        cache.get(1);
+        assertEquals(2, loads.get());
+
+        cache.invalidateAll();
+        cache.get(1);
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    public void loadRacingWithInvalidationIsNotStored()
+    {
+        GoodsSnapshotCache[] holder = new GoodsSnapshotCache[1];
+        holder[0] = new GoodsSnapshotCache(goodsId -> {
+            loads.incrementAndGet();
+            GoodsVo goods = goods(goodsId, 10);
+            // 加载期间收到库存事件
+            if (loads.get() == 1)
+                holder[0].invalidate(goodsId);
+            return goods;
+        }, 1000, now::get);
+        GoodsSnapshotCache racing = holder[0];
+
+        assertEquals(10, (int) racing.get(1).getStockCount());
+        racing.get(1);
+        assertEquals(2, loads.get());
+        racing.get(1);
+        assertEquals(2, loads.get());
+    }
+
+    private static GoodsVo goods(long goodsId, int stock)
+    {
+        GoodsVo goods = new GoodsVo();
+        goods.setId(goodsId);
+        goods.setStockCount(stock);
+        return goods;
+    }
+}
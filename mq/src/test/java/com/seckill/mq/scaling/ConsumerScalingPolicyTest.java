@@ -0,0 +1,103 @@
+package com.seckill.mq.scaling;
+
+import com.seckill.mq.scaling.ConsumerScalingPolicy.Action;
+import com.seckill.mq.scaling.ConsumerScalingPolicy.Decision;
+import com.seckill.mq.scaling.ConsumerScalingPolicy.Reason;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 消费者伸缩规则：积压时加性增、写订单变慢时乘性减、空闲时收缩，以及上下限
+ */
+public class ConsumerScalingPolicyTest
+{
+    private final ConsumerScalingPolicy policy = new ConsumerScalingPolicy(2, 10, 1, 8, 3.0, 0.5, 1000);
+
+    @Test
+    public void backlogAddsOneConsumerThenRaisesPrefetchAtTheLimit()
+    {
+        // 1000 条 * 10ms / 4 个消费者 = 2.5s，一个周期消费不完
+        Decision decision = policy.decide(4, 1, 1000, 10, 5);
+        assertEquals(Action.UP, decision.getAction());
+        assertEquals(Reason.BACKLOG, decision.getReason());
+        assertEquals(5, decision.getConsumers());
+        assertEquals(1, decision.getPrefetch());
+
+        decision = policy.decide(10, 4, 2000, 10, 5);
+        assertEquals(Action.UP, decision.getAction());
+        assertEquals(10, decision.getConsumers());
+        assertEquals(8, decision.getPrefetch());
+
+        decision = policy.decide(10, 8, 2000, 10, 5);
+        assertEquals(Action.HOLD, decision.getAction());
+        assertEquals(Reason.BACKLOG, decision.getReason());
+    }
+
+    @Test
+    public void smallBacklogThatDrainsWithinAnIntervalHolds()
+    {
+        // 100 条 * 10ms / 4 个消费者 = 250ms
+        Decision decision = policy.decide(4, 2, 100, 10, 5);
+        assertEquals(Action.HOLD, decision.getAction());
+        assertEquals(Reason.STEADY, decision.getReason());
+    }
+
+    @Test
+    public void withoutProcessingTimeBacklogIsComparedWithPrefetch()
+    {
+        assertEquals(Action.UP, policy.decide(4, 2, 9, -1, -1).getAction());
+        assertEquals(Action.HOLD, policy.decide(4, 2, 8, -1, -1).getAction());
+    }
+
+    @Test
+    public void slowOrderWritesCutConsumersMultiplicatively()
+    {
+        policy.decide(8, 4, 1000, 10, 5);
+
+        // 写订单耗时 20ms，超过基线 5ms 的 3 倍，即使有积压也收缩
+        Decision decision = policy.decide(8, 4, 1000, 10, 20);
+        assertEquals(Action.DOWN, decision.getAction());
+        assertEquals(Reason.LATENCY, decision.getReason());
+        assertEquals(4, decision.getConsumers());
+        assertEquals(2, decision.getPrefetch());
+        assertEquals(5.0 * (1 + ConsumerScalingPolicy.BASELINE_DRIFT), decision.getBaselineMillis(), 1e-9);
+
+        // 不低于下限
+        decision = policy.decide(3, 1, 1000, 10, 30);
+        assertEquals(2, decision.getConsumers());
+        assertEquals(1, decision.getPrefetch());
+    }
+
+    @Test
+    public void baselineFollowsASustainedSlowdown()
+    {
+        policy.decide(4, 1, 0, -1, 5);
+        Decision decision = null;
+        for (int i = 0; i < 100; i++)
+            decision = policy.decide(4, 1, 1000, 10, 14);
+        assertEquals(Reason.BACKLOG, decision.getReason());
+        assertEquals(14, decision.getBaselineMillis(), 1e-9);
+    }
+
+    @Test
+    public void emptyQueueReleasesConsumers()
+    {
+        Decision decision = policy.decide(5, 4, 0, 10, 5);
+        assertEquals(Action.DOWN, decision.getAction());
+        assertEquals(Reason.IDLE, decision.getReason());
+        assertEquals(4, decision.getConsumers());
+        assertEquals(2, decision.getPrefetch());
+
+        decision = policy.decide(2, 1, 0, -1, -1);
+        assertEquals(Action.HOLD, decision.getAction());
+        assertEquals(Reason.IDLE, decision.getReason());
+    }
+
+    @Test
+    public void unknownDepthOnlyReactsToLatency()
+    {
+        assertEquals(Action.HOLD, policy.decide(4, 2, -1, 10, 5).getAction());
+        assertEquals(Action.DOWN, policy.decide(4, 2, -1, 10, 50).getAction());
+    }
+}
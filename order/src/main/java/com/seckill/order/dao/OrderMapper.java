@@ -4,6 +4,8 @@ import com.seckill.common.domain.OrderInfo;
 import com.seckill.common.domain.SeckillOrder;
 import org.apache.ibatis.annotations.*;
 
+import java.util.List;
+
 @Mapper
 public interface OrderMapper
 {
@@ -18,16 +20,25 @@ public interface OrderMapper
     SeckillOrder getSeckillOrderByUserIdAndGoodsId(@Param("userId") long userId, @Param("goodsId") long goodsId);
 
     /**
-     * 将订单信息插入 order_info 表中
+     * 批量查询一个商品下若干用户的秒杀订单
+     *
+     * @param goodsId 商品id
+     * @param userIds 用户id，不能为空
+     * @return 已存在的秒杀订单
+     */
+    @Select("<script>SELECT * FROM seckill_order WHERE goods_id=#{goodsId} AND user_id IN "
+            + "<foreach collection='userIds' item='userId' open='(' separator=',' close=')'>#{userId}</foreach></script>")
+    List<SeckillOrder> listSeckillOrdersByGoodsId(@Param("goodsId") long goodsId, @Param("userIds") List<Long> userIds);
+
+    /**
+     * 将订单信息插入 order_info 表中，订单id由 OrderIdGenerator 预先分配
      *
      * @param orderInfo 订单信息
-     * @return 插入成功的订单信息id
+     * @return 插入的行数
      */
-    @Insert("INSERT INTO order_info (user_id, goods_id, goods_name, goods_count, goods_price, order_channel, status, create_date)"
-            + "VALUES (#{userId}, #{goodsId}, #{goodsName}, #{goodsCount}, #{goodsPrice}, #{orderChannel}, #{status}, #{createDate})")
-    // 查询出插入订单信息的表id，并返回
-    @SelectKey(keyColumn = "id", keyProperty = "id", resultType = long.class, before = false, statement = "SELECT last_insert_id()")
-    long insert(OrderInfo orderInfo);
+    @Insert("INSERT INTO order_info (id, user_id, goods_id, goods_name, goods_count, goods_price, order_channel, status, create_date)"
+            + "VALUES (#{id}, #{userId}, #{goodsId}, #{goodsName}, #{goodsCount}, #{goodsPrice}, #{orderChannel}, #{status}, #{createDate})")
+    int insert(OrderInfo orderInfo);
 
     /**
      * 将秒杀订单信息插入到 seckill_order 中
@@ -37,6 +48,28 @@ public interface OrderMapper
     @Insert("INSERT INTO seckill_order(user_id, order_id, goods_id) VALUES (#{userId}, #{orderId}, #{goodsId})")
     void insertSeckillOrder(SeckillOrder seckillOrder);
 
+    /**
+     * 多行 INSERT 批量写入 order_info，订单id由 OrderIdGenerator 预先分配，不需要读回自增id
+     *
+     * @param orders 订单信息，不能为空
+     * @return 插入的行数
+     */
+    @Insert("<script>INSERT INTO order_info (id, user_id, goods_id, goods_name, goods_count, goods_price, order_channel, status, create_date) VALUES "
+            + "<foreach collection='list' item='o' separator=','>"
+            + "(#{o.id}, #{o.userId}, #{o.goodsId}, #{o.goodsName}, #{o.goodsCount}, #{o.goodsPrice}, #{o.orderChannel}, #{o.status}, #{o.createDate})"
+            + "</foreach></script>")
+    int insertBatch(List<OrderInfo> orders);
+
+    /**
+     * 多行 INSERT 批量写入 seckill_order
+     *
+     * @param seckillOrders 秒杀订单，不能为空
+     * @return 插入的行数
+     */
+    @Insert("<script>INSERT INTO seckill_order(user_id, order_id, goods_id) VALUES "
+            + "<foreach collection='list' item='o' separator=','>(#{o.userId}, #{o.orderId}, #{o.goodsId})</foreach></script>")
+    int insertSeckillOrderBatch(List<SeckillOrder> seckillOrders);
+
     /**
      * 获取订单信息
      *
@@ -2,23 +2,32 @@ package com.seckill.order.service;
 
 import com.seckill.common.api.cache.RedisServiceApi;
 import com.seckill.common.api.cache.vo.OrderKeyPrefix;
+import com.seckill.common.api.cache.vo.RedisBatch;
 import com.seckill.common.api.goods.vo.GoodsVo;
 import com.seckill.common.api.order.OrderServiceApi;
 import com.seckill.common.api.user.vo.UserVo;
 import com.seckill.common.domain.OrderInfo;
 import com.seckill.common.domain.SeckillOrder;
+import com.seckill.common.util.OrderIdGenerator;
 import com.seckill.order.dao.OrderMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.dubbo.config.annotation.Reference;
 import org.apache.dubbo.config.annotation.Service;
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 @Service(interfaceClass = OrderServiceApi.class)
 @Slf4j
-public class OrderServiceImpl implements OrderServiceApi
+public class OrderServiceImpl implements OrderServiceApi, InitializingBean
 {
     @Autowired
     OrderMapper orderMapper;
@@ -26,6 +35,20 @@ public class OrderServiceImpl implements OrderServiceApi
     @Reference(interfaceClass = RedisServiceApi.class)
     RedisServiceApi redisService;
 
+    /**
+     * 订单id的节点号，多个订单服务实例需要配置不同的值
+     */
+    @Value("${seckill.order.workerId:0}")
+    private int workerId;
+
+    private OrderIdGenerator idGenerator;
+
+    @Override
+    public void afterPropertiesSet()
+    {
+        idGenerator = new OrderIdGenerator(workerId);
+    }
+
     @Override
     public OrderInfo getOrderById(long orderId)
     {
@@ -38,16 +61,98 @@ public class OrderServiceImpl implements OrderServiceApi
         return orderMapper.getSeckillOrderByUserIdAndGoodsId(userId,goodsId);
     }
 
+    @Override
+    public List<SeckillOrder> getSeckillOrdersByGoodsId(long goodsId, List<Long> userIds)
+    {
+        if (userIds.isEmpty())
+            return new ArrayList<>();
+        return orderMapper.listSeckillOrdersByGoodsId(goodsId,userIds);
+    }
+
+    /**
+     * 创建订单；用户已有该商品的秒杀订单时（重试、重复投递）直接返回已有订单，不再写入。
+     * 并发的重复请求由 seckill_order 上 (user_id, goods_id) 的唯一索引拒绝，事务回滚
+     * <p>
+     * 与 createOrders 走同一条路径，订单id预先分配，不再通过 last_insert_id() 读回
+     */
     @Transactional
     @Override
     public OrderInfo createOrder(UserVo user, GoodsVo goods)
     {
-        //订单信息
-        OrderInfo orderInfo = new OrderInfo();
-        //秒杀订单信息
-        SeckillOrder seckillOrder = new SeckillOrder();
+        return createOrders(goods, Collections.singletonList(user)).get(0);
+    }
+
+    /**
+     * 批量创建订单：订单id由 OrderIdGenerator 预先分配，order_info 与 seckill_order 各一条多行 INSERT，
+     * 不需要读回自增id；秒杀订单通过一次批量操作（pipeline）写入redis
+     * 已有秒杀订单的用户直接返回已有订单，返回的列表与 users 一一对应
+     * <p>
+     * 并发的重复请求由 seckill_order 上 (user_id, goods_id) 的唯一索引（见 sql/seckill_order.sql）拒绝：
+     * DuplicateKeyException 不在这里处理，抛给调用方，秒杀服务的事务随之回滚，已经扣减的库存不会丢失
+     */
+    @Transactional
+    @Override
+    public List<OrderInfo> createOrders(GoodsVo goods, List<UserVo> users)
+    {
+        if (users.isEmpty())
+            return Collections.emptyList();
+
+        List<Long> userIds = new ArrayList<>(users.size());
+        for (UserVo user : users)
+            userIds.add(user.getUuid());
+        Map<Long, Long> existing = new HashMap<>();
+        for (SeckillOrder seckillOrder : orderMapper.listSeckillOrdersByGoodsId(goods.getId(), userIds))
+            existing.put(seckillOrder.getUserId(), seckillOrder.getOrderId());
 
-        orderInfo.setCreateDate(new Date());
+        Date now = new Date();
+        long[] ids = idGenerator.nextIds(users.size() - existing.size());
+        List<OrderInfo> result = new ArrayList<>(users.size());
+        List<OrderInfo> orders = new ArrayList<>(users.size());
+        for (UserVo user : users)
+        {
+            Long orderId = existing.get(user.getUuid());
+            if (orderId != null)
+            {
+                result.add(orderMapper.getOrderById(orderId));
+                continue;
+            }
+            OrderInfo orderInfo = newOrderInfo(user, goods, now);
+            orderInfo.setId(ids[orders.size()]);
+            orders.add(orderInfo);
+            result.add(orderInfo);
+        }
+        if (orders.isEmpty())
+            return result;
+        if (!existing.isEmpty())
+            log.info("商品{}的{}个用户已有秒杀订单，不再重复创建", goods.getId(), existing.size());
+
+        orderMapper.insertBatch(orders);
+        log.debug("{}条订单信息写入order_info表中",orders.size());
+
+        List<SeckillOrder> seckillOrders = new ArrayList<>(orders.size());
+        RedisBatch batch = new RedisBatch();
+        for (OrderInfo orderInfo : orders)
+        {
+            SeckillOrder seckillOrder = new SeckillOrder();
+            seckillOrder.setGoodsId(goods.getId());
+            seckillOrder.setOrderId(orderInfo.getId());
+            seckillOrder.setUserId(orderInfo.getUserId());
+            seckillOrders.add(seckillOrder);
+            batch.set(OrderKeyPrefix.SK_ORDER,":"+orderInfo.getUserId()+"_"+goods.getId(),seckillOrder);
+        }
+        orderMapper.insertSeckillOrderBatch(seckillOrders);
+        log.debug("{}条秒杀订单写入seckill_order表中",seckillOrders.size());
+
+        //秒杀订单写入redis中
+        redisService.executeBatch(batch);
+
+        return result;
+    }
+
+    private OrderInfo newOrderInfo(UserVo user, GoodsVo goods, Date createDate)
+    {
+        OrderInfo orderInfo = new OrderInfo();
+        orderInfo.setCreateDate(createDate);
         orderInfo.setDeliveryAddrId(0L);
         orderInfo.setGoodsCount(1);// 订单中商品的数量
         orderInfo.setGoodsId(goods.getId());
@@ -56,21 +161,6 @@ public class OrderServiceImpl implements OrderServiceApi
         orderInfo.setOrderChannel(1);
         orderInfo.setStatus(0);
         orderInfo.setUserId(user.getUuid());
-
-
-        long orderId=orderMapper.insert(orderInfo);
-        log.debug("订单信息写入order_info表中：{}",orderId);
-
-        seckillOrder.setGoodsId(goods.getId());
-        seckillOrder.setOrderId(orderInfo.getId());
-        seckillOrder.setUserId(user.getUuid());
-        orderMapper.insertSeckillOrder(seckillOrder);
-        log.debug("将秒杀订单写入seckill_order表中");
-
-        //秒杀订单写入redis中
-        redisService.set(OrderKeyPrefix.SK_ORDER,":"+user.getUuid()+"_"+goods.getId(),seckillOrder);
-
         return orderInfo;
-
     }
 }
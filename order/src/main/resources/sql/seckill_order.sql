@@ -0,0 +1,15 @@
+-- 秒杀订单表：(user_id, goods_id) 上的唯一索引保证每个用户每个商品只有一个秒杀订单，
+-- 并发的重复下单由数据库拒绝（DuplicateKeyException），秒杀服务的事务回滚，见 OrderServiceImpl.createOrders
+CREATE TABLE IF NOT EXISTS `seckill_order`
+(
+    `id`       BIGINT(20) NOT NULL AUTO_INCREMENT,
+    `user_id`  BIGINT(20) DEFAULT NULL COMMENT '用户id',
+    `order_id` BIGINT(20) DEFAULT NULL COMMENT '订单id',
+    `goods_id` BIGINT(20) DEFAULT NULL COMMENT '商品id',
+    PRIMARY KEY (`id`),
+    UNIQUE KEY `u_uid_gid` (`user_id`, `goods_id`) USING BTREE
+) ENGINE = InnoDB
+  DEFAULT CHARSET = utf8mb4;
+
+-- 已有的表补充唯一索引（需要先清理重复的秒杀订单）：
+-- ALTER TABLE `seckill_order` ADD UNIQUE INDEX `u_uid_gid` (`user_id`, `goods_id`);
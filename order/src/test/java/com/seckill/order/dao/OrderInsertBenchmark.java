@@ -0,0 +1,203 @@
+package com.seckill.order.dao;
+
+import com.seckill.common.domain.OrderInfo;
+import com.seckill.common.domain.SeckillOrder;
+import com.seckill.common.util.OrderIdGenerator;
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 写订单的吞吐量（订单/秒）：逐条写入与批量写入的对比
+ * <p>
+ * 使用 OrderMapper 上的语句，数据库为内存中的 H2（MySQL 兼容模式），表结构与 order_info、seckill_order 一致；
+ * 每种方式都与 OrderServiceImpl 一样先查询已有订单，订单id由 OrderIdGenerator 预先分配
+ * <ul>
+ * <li>perOrder：每个订单一个事务，查询 + 两条单行 INSERT，即原来 createOrder 去掉 last_insert_id() 之后的写法</li>
+ * <li>multiRow：每 BATCH 个订单一个事务，一次批量查询 + 两条多行 INSERT，即 createOrders 的写法</li>
+ * <li>jdbcBatch：每 BATCH 个订单一个事务，一次批量查询 + 单行 INSERT 以 JDBC batch 提交</li>
+ * </ul>
+ * 内存数据库没有网络往返，实际的 MySQL 上批量写入的优势会更明显
+ * <p>
+ * 运行：mvn -pl order test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.seckill.order.dao.OrderInsertBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class OrderInsertBenchmark
+{
+    private static final int BATCH = 100;
+
+    private static final long GOODS_ID = 1L;
+
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS order_info (id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY, user_id BIGINT, goods_id BIGINT, "
+                    + "delivery_addr_id BIGINT, goods_name VARCHAR(30), goods_count INT, goods_price DECIMAL(10,2), order_channel TINYINT, "
+                    + "status TINYINT, create_date DATETIME, pay_date DATETIME)",
+            "CREATE TABLE IF NOT EXISTS seckill_order (id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY, user_id BIGINT, order_id BIGINT, goods_id BIGINT)",
+            "CREATE UNIQUE INDEX IF NOT EXISTS u_uid_gid ON seckill_order (user_id, goods_id)"
+    };
+
+    private final OrderIdGenerator idGenerator = new OrderIdGenerator(0);
+
+    private final AtomicLong userIds = new AtomicLong(18900000000L);
+
+    private SqlSessionFactory sessionFactory;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        PooledDataSource dataSource = new PooledDataSource("org.h2.Driver",
+                "jdbc:h2:mem:seckill;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        dataSource.setPoolMaximumActiveConnections(16);
+        dataSource.setPoolMaximumIdleConnections(16);
+        Configuration configuration = new Configuration(new Environment("benchmark", new JdbcTransactionFactory(), dataSource));
+        configuration.setMapUnderscoreToCamelCase(true);
+        configuration.addMapper(OrderMapper.class);
+        sessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+        execute(SCHEMA);
+    }
+
+    /**
+     * 每轮之后清空，表的大小不随运行时间增长
+     */
+    @TearDown(Level.Iteration)
+    public void truncate()
+    {
+        execute("TRUNCATE TABLE order_info", "TRUNCATE TABLE seckill_order");
+    }
+
+    @Benchmark
+    public void perOrder()
+    {
+        OrderInfo orderInfo = newOrders(1).get(0);
+        try (SqlSession session = sessionFactory.openSession(false))
+        {
+            OrderMapper mapper = session.getMapper(OrderMapper.class);
+            mapper.getSeckillOrderByUserIdAndGoodsId(orderInfo.getUserId(), GOODS_ID);
+            mapper.insert(orderInfo);
+            mapper.insertSeckillOrder(seckillOrder(orderInfo));
+            session.commit();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void multiRow()
+    {
+        List<OrderInfo> orders = newOrders(BATCH);
+        try (SqlSession session = sessionFactory.openSession(false))
+        {
+            OrderMapper mapper = session.getMapper(OrderMapper.class);
+            mapper.listSeckillOrdersByGoodsId(GOODS_ID, userIds(orders));
+            mapper.insertBatch(orders);
+            List<SeckillOrder> seckillOrders = new ArrayList<>(orders.size());
+            for (OrderInfo orderInfo : orders)
+                seckillOrders.add(seckillOrder(orderInfo));
+            mapper.insertSeckillOrderBatch(seckillOrders);
+            session.commit();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void jdbcBatch()
+    {
+        List<OrderInfo> orders = newOrders(BATCH);
+        try (SqlSession session = sessionFactory.openSession(ExecutorType.BATCH, false))
+        {
+            OrderMapper mapper = session.getMapper(OrderMapper.class);
+            mapper.listSeckillOrdersByGoodsId(GOODS_ID, userIds(orders));
+            for (OrderInfo orderInfo : orders)
+                mapper.insert(orderInfo);
+            for (OrderInfo orderInfo : orders)
+                mapper.insertSeckillOrder(seckillOrder(orderInfo));
+            session.commit();
+        }
+    }
+
+    private List<OrderInfo> newOrders(int n)
+    {
+        long[] ids = idGenerator.nextIds(n);
+        long firstUserId = userIds.getAndAdd(n);
+        Date now = new Date();
+        List<OrderInfo> orders = new ArrayList<>(n);
+        for (int i = 0; i < n; i++)
+        {
+            OrderInfo orderInfo = new OrderInfo();
+            orderInfo.setId(ids[i]);
+            orderInfo.setUserId(firstUserId + i);
+            orderInfo.setGoodsId(GOODS_ID);
+            orderInfo.setDeliveryAddrId(0L);
+            orderInfo.setGoodsName("benchmark");
+            orderInfo.setGoodsCount(1);
+            orderInfo.setGoodsPrice(0.01);
+            orderInfo.setOrderChannel(1);
+            orderInfo.setStatus(0);
+            orderInfo.setCreateDate(now);
+            orders.add(orderInfo);
+        }
+        return orders;
+    }
+
+    private static SeckillOrder seckillOrder(OrderInfo orderInfo)
+    {
+        SeckillOrder seckillOrder = new SeckillOrder();
+        seckillOrder.setGoodsId(orderInfo.getGoodsId());
+        seckillOrder.setOrderId(orderInfo.getId());
+        seckillOrder.setUserId(orderInfo.getUserId());
+        return seckillOrder;
+    }
+
+    private static List<Long> userIds(List<OrderInfo> orders)
+    {
+        List<Long> userIds = new ArrayList<>(orders.size());
+        for (OrderInfo orderInfo : orders)
+            userIds.add(orderInfo.getUserId());
+        return userIds;
+    }
+
+    private void execute(String... sqls)
+    {
+        try (SqlSession session = sessionFactory.openSession(true);
+             Statement statement = session.getConnection().createStatement())
+        {
+            for (String sql : sqls)
+                statement.execute(sql);
+        } catch (SQLException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .include(OrderInsertBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -4,6 +4,7 @@ import com.seckill.user.domain.SeckillUser;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Update;
+import org.apache.ibatis.session.ResultHandler;
 
 @Mapper
 public interface SeckillUserMapper
@@ -41,5 +42,12 @@ public interface SeckillUserMapper
      */
     long findPhone(long phone);
 
+    /**
+     * 按 id 顺序流式读取所有用户的手机号，逐条交给 handler，不会一次性加载到内存
+     *
+     * @param handler 手机号的处理器
+     */
+    void streamPhones(ResultHandler<Long> handler);
+
 
 }
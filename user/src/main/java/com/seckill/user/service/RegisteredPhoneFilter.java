@@ -0,0 +1,329 @@
+package com.seckill.user.service;
+
+import com.seckill.cache.client.RedisChannelSubscriber;
+import com.seckill.common.api.cache.RedisServiceApi;
+import com.seckill.common.api.cache.vo.LeaseKeyPrefix;
+import com.seckill.common.api.cache.vo.SkUserKeyPrefix;
+import com.seckill.common.util.ScalableBloomFilter;
+import com.seckill.common.util.UUIDUtil;
+import com.seckill.user.dao.SeckillUserMapper;
+import org.apache.dubbo.config.annotation.Reference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+
+/**
+ * 已注册手机号的布隆过滤器，登录和注册时过滤一定不存在的手机号，不再查询redis中的用户缓存和数据库
+ * <p>
+ * 1. 本地位图是所有已注册手机号的副本：订阅 CHANNEL 之后，在后台线程中从 seckill_user 流式读取所有手机号写入本地位图，
+ *    之后注册的手机号由注册所在的节点广播，各节点写入本地位图；
+ *    加载完成后本地位图没有命中即一定没有注册，直接返回，不访问redis
+ * 2. 加载完成之前（预热期间）本地位图没有命中时查询redis位图（一次往返），命中后写入本地位图；
+ *    redis位图也没有加载完成时认为手机号可能存在，按原来的流程查询
+ * 3. 第一个启动的节点（持有 PHONE_BLOOM_LOAD 租约）同时写入redis位图，写完后设置加载完成标记
+ * 4. 手机号按redis中的插入计数（COUNT）选择所在的级：写入redis位图的加载按批从该计数中预留序号，
+ *    注册时取该计数的下一个序号，两者不会选到同一个序号
+ * 5. 订阅断开期间可能错过了广播，断开后重新进入预热，重新订阅后再次从数据库加载
+ * 6. 注册的手机号先写入本地位图，再写入redis和广播；写入redis或广播失败时其他节点可能缺少该手机号，
+ *    本节点回到预热（没有命中时查询redis），并重新从数据库加载
+ * <p>
+ * redis 中的位图丢失（如 redis 未持久化时重启）后需要删除加载完成标记并重启 user 服务重新加载
+ */
+@Component
+public class RegisteredPhoneFilter implements InitializingBean, DisposableBean
+{
+    private static Logger logger = LoggerFactory.getLogger(RegisteredPhoneFilter.class);
+
+    /**
+     * 注册成功的手机号在节点间广播的频道，消息为 "级:手机号"
+     */
+    public static final String CHANNEL = "seckill:phone";
+
+    private static final String BITS = "bits";
+
+    private static final String COUNT = "count";
+
+    private static final String LOADED = "loaded";
+
+    /**
+     * 启动加载时每批写入 redis 的位数
+     */
+    private static final int PUSH_BATCH_BITS = 10000;
+
+    /**
+     * 写入redis位图的加载每次从插入计数中预留的序号数量
+     */
+    private static final int RESERVE_BATCH = 1000;
+
+    @Autowired
+    private SeckillUserMapper userMapper;
+
+    @Reference(interfaceClass = RedisServiceApi.class)
+    private RedisServiceApi redisService;
+
+    @Value("${seckill.phoneFilter.initialCapacity:1000000}")
+    private long initialCapacity;
+
+    @Value("${seckill.phoneFilter.fpp:0.01}")
+    private double fpp;
+
+    @Value("${seckill.phoneFilter.maxStages:6}")
+    private int maxStages;
+
+    @Value("${redis.host:127.0.0.1}")
+    private String host;
+
+    @Value("${redis.port:6379}")
+    private int port;
+
+    @Value("${redis.timeout:1000}")
+    private int timeout;
+
+    private ScalableBloomFilter filter;
+
+    /**
+     * 本地位图是否包含所有已注册的手机号：订阅期间从数据库加载完成后为 true，订阅断开后为 false
+     */
+    private volatile boolean replicaReady;
+
+    private volatile boolean remoteReady;
+
+    /**
+     * 已知的最大级，注册时读取插入计数失败则按该级写入本地位图
+     */
+    private volatile int currentStage;
+
+    /**
+     * 以下状态由 this 保护：每次（重新）订阅 generation 加一，加载期间重新订阅过时再加载一次
+     */
+    private int generation;
+
+    private boolean subscribed;
+
+    private boolean loading;
+
+    private RedisChannelSubscriber subscriber;
+
+    @Override
+    public void afterPropertiesSet()
+    {
+        filter = new ScalableBloomFilter(initialCapacity, fpp, maxStages);
+        subscriber = new RedisChannelSubscriber(host, port, timeout, CHANNEL, this::onMessage);
+        // 订阅成功之后才从数据库加载，加载期间注册的手机号由广播补上
+        subscriber.setOnSubscribed(this::subscribed);
+        subscriber.setOnDisconnected(this::disconnected);
+        subscriber.start();
+    }
+
+    @Override
+    public void destroy()
+    {
+        subscriber.close();
+    }
+
+    /**
+     * @param phone 手机号
+     * @return false 表示该手机号一定没有注册
+     */
+    public boolean mightContain(long phone)
+    {
+        String value = String.valueOf(phone);
+        if (filter.mightContain(value))
+            return true;
+        if (replicaReady)
+            return false;
+
+        // 预热期间：其他节点注册的手机号可能只在redis位图中
+        if (!remoteReady)
+        {
+            remoteReady = redisService.exists(SkUserKeyPrefix.PHONE_BLOOM, LOADED);
+            if (!remoteReady)
+                return true;
+        }
+        int stage = filter.matchedStage(redisService.getBits(SkUserKeyPrefix.PHONE_BLOOM, BITS, filter.offsets(value)));
+        if (stage < 0)
+            return false;
+        noteStage(stage);
+        filter.put(value, stage);
+        return true;
+    }
+
+    /**
+     * 注册成功后调用，需要在释放注册锁之前完成，避免同一手机号的并发注册被误判为不存在
+     * <p>
+     * 用户已经写入数据库，写入redis或广播失败时不影响注册结果，本节点重新从数据库加载（见 6）
+     */
+    public void put(long phone)
+    {
+        String value = String.valueOf(phone);
+        // 先写入本地位图，redis不可用时本节点也能查到刚注册的手机号
+        filter.put(value, currentStage);
+        try
+        {
+            long index = redisService.incr(SkUserKeyPrefix.PHONE_BLOOM, COUNT) - 1;
+            int stage = filter.stageOf(index);
+            noteStage(stage);
+            long[] offsets = filter.offsets(value, stage);
+            filter.set(offsets);
+            redisService.setBits(SkUserKeyPrefix.PHONE_BLOOM, BITS, offsets);
+            redisService.publish(CHANNEL, stage + ":" + phone);
+        } catch (RuntimeException e)
+        {
+            logger.error("手机号写入布隆过滤器失败，重新从数据库加载：" + phone, e);
+            resync();
+        }
+    }
+
+    /**
+     * 其他节点注册的手机号
+     */
+    private void onMessage(String message)
+    {
+        int separator = message.indexOf(':');
+        if (separator <= 0)
+        {
+            logger.warn("无法解析的手机号广播：{}", message);
+            return;
+        }
+        int stage = Integer.parseInt(message.substring(0, separator));
+        noteStage(stage);
+        filter.put(message.substring(separator + 1), stage);
+    }
+
+    private void noteStage(int stage)
+    {
+        if (stage > currentStage)
+            currentStage = stage;
+    }
+
+    private synchronized void subscribed()
+    {
+        subscribed = true;
+        reload();
+    }
+
+    /**
+     * 本地位图可能不完整：回到预热，订阅中时重新从数据库加载
+     */
+    private synchronized void resync()
+    {
+        replicaReady = false;
+        if (subscribed)
+            reload();
+    }
+
+    private synchronized void reload()
+    {
+        generation++;
+        if (loading)
+            return;
+        loading = true;
+        Thread loader = new Thread(this::loadUntilStable, "phone-filter-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    private synchronized void disconnected()
+    {
+        subscribed = false;
+        replicaReady = false;
+    }
+
+    /**
+     * 从数据库加载，加载期间重新订阅过（可能错过了广播）时再加载一次；订阅断开时等待重新订阅后再加载
+     */
+    private void loadUntilStable()
+    {
+        for (; ; )
+        {
+            int current;
+            synchronized (this)
+            {
+                current = generation;
+            }
+            boolean loaded = load();
+            synchronized (this)
+            {
+                if (!loaded || !subscribed)
+                {
+                    loading = false;
+                    return;
+                }
+                if (generation == current)
+                {
+                    replicaReady = true;
+                    loading = false;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return 是否加载成功
+     */
+    private boolean load()
+    {
+        try
+        {
+            boolean loaded = redisService.exists(SkUserKeyPrefix.PHONE_BLOOM, LOADED);
+            boolean push = !loaded && redisService.setIfAbsent(LeaseKeyPrefix.PHONE_BLOOM_LOAD, "", UUIDUtil.uuid());
+
+            long start = System.currentTimeMillis();
+            long[] count = new long[1];
+            // 写入redis位图时从插入计数中预留的序号区间 [reserved[0], reserved[1])
+            long[] reserved = new long[2];
+            long[] pending = new long[PUSH_BATCH_BITS + 64];
+            int[] size = new int[1];
+            userMapper.streamPhones(context -> {
+                String value = String.valueOf(context.getResultObject());
+                long index = count[0]++;
+                if (push)
+                {
+                    if (reserved[0] == reserved[1])
+                    {
+                        reserved[1] = redisService.incrBy(SkUserKeyPrefix.PHONE_BLOOM, COUNT, RESERVE_BATCH);
+                        reserved[0] = reserved[1] - RESERVE_BATCH;
+                    }
+                    index = reserved[0]++;
+                }
+                int stage = filter.stageOf(index);
+                noteStage(stage);
+                long[] offsets = filter.offsets(value, stage);
+                filter.set(offsets);
+                if (push)
+                {
+                    System.arraycopy(offsets, 0, pending, size[0], offsets.length);
+                    size[0] += offsets.length;
+                    if (size[0] >= PUSH_BATCH_BITS)
+                    {
+                        redisService.setBits(SkUserKeyPrefix.PHONE_BLOOM, BITS, Arrays.copyOf(pending, size[0]));
+                        size[0] = 0;
+                    }
+                }
+            });
+
+            if (push)
+            {
+                if (size[0] > 0)
+                    redisService.setBits(SkUserKeyPrefix.PHONE_BLOOM, BITS, Arrays.copyOf(pending, size[0]));
+                redisService.set(SkUserKeyPrefix.PHONE_BLOOM, LOADED, true);
+                redisService.delete(LeaseKeyPrefix.PHONE_BLOOM_LOAD, "");
+                remoteReady = true;
+            }
+            logger.info("已注册手机号布隆过滤器加载完成：{} 个手机号，耗时 {} ms，写入redis：{}",
+                    count[0], System.currentTimeMillis() - start, push);
+            return true;
+        } catch (RuntimeException e)
+        {
+            logger.error("已注册手机号布隆过滤器加载失败，本地没有命中的手机号仍查询redis", e);
+            return false;
+        }
+    }
+}
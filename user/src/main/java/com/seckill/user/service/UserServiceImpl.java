@@ -12,7 +12,9 @@ import com.seckill.common.domain.SeckillOrder;
 import com.seckill.common.domain.SeckillUser;
 import com.seckill.common.exception.GlobalException;
 import com.seckill.common.result.CodeMsg;
+import com.seckill.common.util.LockWatchdog;
 import com.seckill.common.util.MD5Util;
+import com.seckill.common.util.SingleFlightLoader;
 import com.seckill.common.util.UUIDUtil;
 import com.seckill.user.dao.SeckillUserMapper;
 import org.apache.dubbo.config.annotation.Reference;
@@ -42,6 +44,26 @@ public class UserServiceImpl implements UserServiceApi
     @Reference(interfaceClass = DLockApi.class)
     private DLockApi dLock;
 
+    /**
+     * 注册锁的租期，由看门狗续期，进程退出后最多占用一个租期
+     */
+    private static final long REGISTER_LOCK_LEASE = 5 * 1000;
+
+    /**
+     * 同一手机号并发注册时的最长等待时间，需要小于dubbo调用的超时时间
+     */
+    private static final long REGISTER_LOCK_WAIT = 500;
+
+    private final LockWatchdog lockWatchdog = new LockWatchdog();
+
+    @Autowired
+    private RegisteredPhoneFilter phoneFilter;
+
+    /**
+     * 合并同一手机号并发的缓存未命中，只有一个请求查询数据库
+     */
+    private final SingleFlightLoader cacheLoader = new SingleFlightLoader(() -> redisService);
+
     @Override
     public int login(String username, String password)
     {
@@ -58,43 +80,51 @@ public class UserServiceImpl implements UserServiceApi
     public CodeMsg register(RegisterVo userModel)
     {
 
-        // 加锁
+        // 加锁，同一手机号正在注册时短暂等待
         String uniqueValue = UUIDUtil.uuid() + "-" + Thread.currentThread().getId();
         String lockKey = "redis-lock" + userModel.getPhone();
-        boolean lock = dLock.lock(lockKey, uniqueValue, 60 * 1000);
+        boolean lock = dLock.tryLock(lockKey, uniqueValue, REGISTER_LOCK_WAIT, REGISTER_LOCK_LEASE);
         if (!lock)
             return CodeMsg.WAIT_REGISTER_DONE;
         logger.debug("注册接口加锁成功");
 
-        // 检查用户是否注册
-        com.seckill.common.domain.SeckillUser user = this.getSeckillUserByPhone(userModel.getPhone());
-
-        // 用户已经注册
-        if (user != null)
+        long id;
+        boolean unlock;
+        LockWatchdog.Renewal renewal = lockWatchdog.watch(dLock, lockKey, uniqueValue, REGISTER_LOCK_LEASE);
+        try
         {
-            dLock.unlock(lockKey, uniqueValue);
-            return CodeMsg.USER_EXIST;
-        }
+            // 检查用户是否注册
+            com.seckill.common.domain.SeckillUser user = this.getSeckillUserByPhone(userModel.getPhone());
+
+            // 用户已经注册
+            if (user != null)
+                return CodeMsg.USER_EXIST;
 
-        // 生成skuser对象
-        com.seckill.common.domain.SeckillUser newUser = new com.seckill.common.domain.SeckillUser();
+            // 生成skuser对象
+            com.seckill.common.domain.SeckillUser newUser = new com.seckill.common.domain.SeckillUser();
 
-        newUser.setPhone(userModel.getPhone());
-        newUser.setNickname(userModel.getNickname());
-        newUser.setHead(userModel.getHead());
+            newUser.setPhone(userModel.getPhone());
+            newUser.setNickname(userModel.getNickname());
+            newUser.setHead(userModel.getHead());
 
-        newUser.setSalt(MD5Util.SALT);
+            newUser.setSalt(MD5Util.SALT);
 
-        String dbPass = MD5Util.formPassToDbPass(userModel.getPassword(), MD5Util.SALT);
-        newUser.setPassword(dbPass);
+            String dbPass = MD5Util.formPassToDbPass(userModel.getPassword(), MD5Util.SALT);
+            newUser.setPassword(dbPass);
 
-        Date date = new Date(System.currentTimeMillis());
-        newUser.setRegisterDate(date);
+            Date date = new Date(System.currentTimeMillis());
+            newUser.setRegisterDate(date);
 
-        // 写入数据库
-        long id = userMapper.insertUser(newUser);
+            // 写入数据库
+            id = userMapper.insertUser(newUser);
+            if (id > 0)
+                phoneFilter.put(userModel.getPhone());
+        } finally
+        {
+            renewal.cancel();
+            unlock = dLock.unlock(lockKey, uniqueValue);
+        }
 
-        boolean unlock = dLock.unlock(lockKey, uniqueValue);
         if (!unlock)
             return CodeMsg.REGISTER_FAIL;
         logger.debug("注册接口解锁成功");
@@ -188,26 +218,19 @@ public class UserServiceImpl implements UserServiceApi
      * <p>
      * 对象级缓存
      * 从缓存中查询 SeckillUser 对象，如果 SeckillUser 在缓存中存在，则直接返回，否则从数据库返回
+     * 同一手机号的并发未命中只查询一次数据库，见 SingleFlightLoader
+     * 布隆过滤器判定一定没有注册的手机号直接返回 null，见 RegisteredPhoneFilter
      *
      * @param phone 用户手机号码
      * @return SeckillUser
      */
     private com.seckill.common.domain.SeckillUser getSeckillUserByPhone(Long phone)
     {
+        if (!phoneFilter.mightContain(phone))
+            return null;
 
-        // 1. 从redis中获取用户数据缓存
-        com.seckill.common.domain.SeckillUser user = redisService.get(SkUserKeyPrefix.SK_USER_PHONE, "_" + phone, com.seckill.common.domain.SeckillUser.class);
-
-
-        if (user != null)
-            return user;
-
-        // 2. 如果缓存中没有用户数据，则从数据库中查询数据并将数据写入缓存
-        // 先从数据库中取出数据
-        user = userMapper.getUserByPhone(phone);
-        // 然后将数据返回并将数据缓存在redis中
-        if (user != null)
-            redisService.set(SkUserKeyPrefix.SK_USER_PHONE, "_" + phone, user);
-        return user;
+        // 先从redis中获取用户数据缓存，缓存中没有时从数据库中查询并写入缓存
+        return cacheLoader.get(SkUserKeyPrefix.SK_USER_PHONE, "_" + phone, com.seckill.common.domain.SeckillUser.class,
+                () -> userMapper.getUserByPhone(phone));
     }
 }
\ No newline at end of file